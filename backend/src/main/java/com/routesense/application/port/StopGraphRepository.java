@@ -1,9 +1,14 @@
 package com.routesense.application.port;
 
+import com.routesense.domain.model.CompactGraph;
+import com.routesense.domain.model.ConnectionTimetable;
 import com.routesense.domain.model.FootpathEdge;
+import com.routesense.domain.model.GraphGeneration;
 import com.routesense.domain.model.ScheduledConnection;
 import com.routesense.domain.model.Stop;
 import com.routesense.domain.model.StopEdge;
+import com.routesense.domain.model.StopSpatialIndex;
+import com.routesense.domain.model.TransitTimetable;
 
 import java.util.List;
 import java.util.Map;
@@ -11,6 +16,14 @@ import java.util.Map;
 // Repository interface for accessing the stop graph and schedule data.
 
 public interface StopGraphRepository {
+    // Returns the live graph generation. Callers that use several of the structures below should read the generation
+    // once and take everything from it, so a feed reload in the middle of a request can't mix two feed versions.
+    GraphGeneration getGraph();
+
+    // Builds a new generation from the current GTFS files while the live one keeps serving, then swaps it in atomically.
+    // Returns the generation that is live afterwards (unchanged if the feed hasn't changed since the last load).
+    GraphGeneration reload();
+
     // Returns a map of stop ID -> Stop object, containing all stops in the system.
     Map<String, Stop> getStops();
 
@@ -29,7 +42,23 @@ public interface StopGraphRepository {
     // Used to draw accurate train polylines on the map instead of straight lines between stops.
     Map<String, List<double[]>> getRouteShapes();
 
-    // Returns walking links between nearby stops (within 300 m).
+    // Returns walking links between nearby stops (within the app.gtfs.footpaths walking budget).
     // Used by the Dijkstra to allow mid-journey transfers between e.g. a train station and a nearby bus stop.
     Map<String, List<FootpathEdge>> getFootpaths();
+
+    // Returns the schedule grouped into FIFO route patterns with dense integer stop indices.
+    // Used by the RAPTOR router, which scans whole patterns per round instead of single connections.
+    TransitTimetable getTransitTimetable();
+
+    // Returns every stop-to-stop hop of every trip as one array sorted by departure time.
+    // Used by the Connection Scan router, which answers a query with a single forward scan.
+    ConnectionTimetable getConnectionTimetable();
+
+    // Returns stops, routes, edges, scheduled connections and footpaths as dense int arrays (CSR layout).
+    // Used by the Dijkstra searches so their inner loops are array lookups instead of String-keyed map lookups.
+    CompactGraph getCompactGraph();
+
+    // Returns a grid index over stop coordinates with radius and nearest-k queries, filterable by
+    // "has schedule", "has train" and "has outgoing edges". Used to snap map pins and stops to nearby stops.
+    StopSpatialIndex getStopSpatialIndex();
 }
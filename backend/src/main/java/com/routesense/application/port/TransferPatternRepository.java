@@ -0,0 +1,14 @@
+package com.routesense.application.port;
+
+import com.routesense.application.routing.TransferPatternSnapshot;
+
+// Repository interface for the precomputed transfer patterns, kept next to the graph snapshot so a restart on
+// the same feed doesn't have to learn and precompute its popular journeys again.
+
+public interface TransferPatternRepository {
+    // Returns the saved patterns, or null if nothing has been saved yet or the file is unreadable.
+    TransferPatternSnapshot load();
+
+    // Replaces the saved patterns. Failures are logged, not thrown: the patterns can always be recomputed.
+    void save(TransferPatternSnapshot snapshot);
+}
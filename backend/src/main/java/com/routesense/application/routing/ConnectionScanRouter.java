@@ -0,0 +1,257 @@
+package com.routesense.application.routing;
+
+import com.routesense.domain.model.ConnectionTimetable;
+import com.routesense.domain.model.TransitTimetable;
+import com.routesense.domain.model.TransportMode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+// Earliest-arrival Connection Scan Algorithm (CSA) over the time-sorted connection array.
+// Starting from the first connection departing after the query time, each connection is looked at exactly once:
+// it is usable if we are already on its trip or were at its departure stop in time, and if it improves its
+// arrival stop we record how we got there and walk one footpath hop onwards. The scan stops as soon as
+// connections depart later than the best arrival at any target, so short urban queries touch very little.
+// latestDeparture runs the same scan backwards from an arrive-by deadline.
+@Component
+public class ConnectionScanRouter {
+
+    private static final int UNREACHED   = Integer.MAX_VALUE;
+    private static final int UNREACHABLE = Integer.MIN_VALUE;   // backward scan: no way to reach the targets in time
+
+    // Returns the earliest-arriving journey from originStop (ready to board at departureTime) to any target stop,
+    // or null if none is reachable. targetEgressSeconds[i] is the walk from targetStops[i] to the actual destination.
+    // Pass the day's timetables (DayTimetable) so only trips running that day are scanned.
+    public ScheduledPath route(
+            TransitTimetable    timetable,
+            ConnectionTimetable connections,
+            int                 originStop,
+            int                 departureTime,
+            int[]               targetStops,
+            int[]               targetEgressSeconds
+    ) {
+        int stopCount = timetable.stopCount();
+        if (originStop < 0 || originStop >= stopCount || targetStops.length == 0) {
+            return null;
+        }
+
+        int[] egressByStop = new int[stopCount];
+        Arrays.fill(egressByStop, -1);
+        for (int i = 0; i < targetStops.length; i++) {
+            int target = targetStops[i];
+            if (target < 0) continue;
+            egressByStop[target] = egressByStop[target] < 0
+                    ? targetEgressSeconds[i] : Math.min(egressByStop[target], targetEgressSeconds[i]);
+        }
+
+        int[] arrival        = new int[stopCount];
+        int[] boardedAt      = new int[stopCount];  // connection where the ride into this stop was boarded, or -1
+        int[] alightedFrom   = new int[stopCount];  // connection that arrived at this stop, or -1
+        int[] walkFrom       = new int[stopCount];  // stop this stop was walked to from, or -1
+        int[] tripBoardedAt  = new int[connections.tripCount()];
+        Arrays.fill(arrival, UNREACHED);
+        Arrays.fill(boardedAt, -1);
+        Arrays.fill(alightedFrom, -1);
+        Arrays.fill(walkFrom, -1);
+        Arrays.fill(tripBoardedAt, -1);
+
+        arrival[originStop] = departureTime;
+        int bestTarget = egressByStop[originStop] >= 0 ? departureTime + egressByStop[originStop] : UNREACHED;
+        bestTarget = relaxFootpaths(timetable, originStop, departureTime, arrival, walkFrom, egressByStop, bestTarget);
+
+        for (int c = connections.firstDepartingAtOrAfter(departureTime); c < connections.connectionCount(); c++) {
+            int departure = connections.departureTime(c);
+            if (departure >= bestTarget) break;
+            // Cancelled because the request deadline passed (checked every 1024 connections to keep the scan tight)
+            if ((c & 1023) == 0 && Thread.currentThread().isInterrupted()) return null;
+
+            int trip = connections.trip(c);
+            if (tripBoardedAt[trip] < 0) {
+                if (arrival[connections.departureStop(c)] > departure) continue;
+                tripBoardedAt[trip] = c;
+            }
+
+            int stop        = connections.arrivalStop(c);
+            int arrivalTime = connections.arrivalTime(c);
+            if (arrivalTime >= arrival[stop]) continue;
+
+            arrival[stop]      = arrivalTime;
+            boardedAt[stop]    = tripBoardedAt[trip];
+            alightedFrom[stop] = c;
+            walkFrom[stop]     = -1;
+            if (egressByStop[stop] >= 0) {
+                bestTarget = Math.min(bestTarget, arrivalTime + egressByStop[stop]);
+            }
+            bestTarget = relaxFootpaths(timetable, stop, arrivalTime, arrival, walkFrom, egressByStop, bestTarget);
+        }
+
+        int bestStop = -1;
+        int bestTime = UNREACHED;
+        for (int target : targetStops) {
+            if (target < 0 || arrival[target] == UNREACHED) continue;
+            int total = arrival[target] + egressByStop[target];
+            if (total < bestTime) {
+                bestTime = total;
+                bestStop = target;
+            }
+        }
+        if (bestStop < 0) {
+            return null;
+        }
+        return reconstruct(timetable, connections, bestStop, originStop, departureTime,
+                arrival, boardedAt, alightedFrom, walkFrom);
+    }
+
+    // Returns the latest time one can leave originStop and still reach a target stop by arriveBy (targetEgressSeconds[i]
+    // being the walk from targetStops[i] to the actual destination), or -1 if no connection gets there in time.
+    // This is the CSA scan run backwards: connections are taken latest-departing first from arriveBy, a trip counts
+    // as reaching the targets once any later hop of it alights somewhere still in time, and the scan stops as soon
+    // as connections depart earlier than the best departure already found at the origin. FootpathBuilder keeps the
+    // footpath graph symmetric (only mutual links), so a stop's outgoing walks double as its incoming ones.
+    public int latestDeparture(
+            TransitTimetable    timetable,
+            ConnectionTimetable connections,
+            int                 originStop,
+            int                 arriveBy,
+            int[]               targetStops,
+            int[]               targetEgressSeconds
+    ) {
+        int stopCount = timetable.stopCount();
+        if (originStop < 0 || originStop >= stopCount || targetStops.length == 0) {
+            return -1;
+        }
+
+        int[]     latest      = new int[stopCount];  // latest time we can be at the stop and still make it
+        boolean[] tripReaches = new boolean[connections.tripCount()];
+        Arrays.fill(latest, UNREACHABLE);
+        for (int i = 0; i < targetStops.length; i++) {
+            int target = targetStops[i];
+            if (target < 0) continue;
+            int leaveBy = arriveBy - targetEgressSeconds[i];
+            if (leaveBy > latest[target]) {
+                latest[target] = leaveBy;
+                relaxIncomingFootpaths(timetable, target, leaveBy, latest);
+            }
+        }
+
+        for (int c = connections.firstDepartingAtOrAfter(arriveBy + 1) - 1; c >= 0; c--) {
+            int departure = connections.departureTime(c);
+            if (departure <= latest[originStop]) break;
+            if ((c & 1023) == 0 && Thread.currentThread().isInterrupted()) return -1;
+
+            int trip = connections.trip(c);
+            if (!tripReaches[trip]) {
+                if (connections.arrivalTime(c) > latest[connections.arrivalStop(c)]) continue;
+                tripReaches[trip] = true;
+            }
+
+            int stop = connections.departureStop(c);
+            if (departure <= latest[stop]) continue;
+            latest[stop] = departure;
+            relaxIncomingFootpaths(timetable, stop, departure, latest);
+        }
+        return latest[originStop] == UNREACHABLE ? -1 : Math.max(latest[originStop], 0);
+    }
+
+    // One footpath hop into a stop we must leave by 'leaveBy' — the backward mirror of relaxFootpaths.
+    private void relaxIncomingFootpaths(TransitTimetable timetable, int stop, int leaveBy, int[] latest) {
+        for (int slot = timetable.footpathStart(stop); slot < timetable.footpathEnd(stop); slot++) {
+            int source    = timetable.footpathTarget(slot);
+            int walkStart = leaveBy - timetable.footpathSeconds(slot);
+            if (walkStart > latest[source]) {
+                latest[source] = walkStart;
+            }
+        }
+    }
+
+    // One footpath hop from a stop just reached by vehicle (or the origin). Walks never chain.
+    // Returns the updated best arrival at any target, including egress.
+    private int relaxFootpaths(
+            TransitTimetable timetable,
+            int              source,
+            int              readyAt,
+            int[]            arrival,
+            int[]            walkFrom,
+            int[]            egressByStop,
+            int              bestTarget
+    ) {
+        for (int slot = timetable.footpathStart(source); slot < timetable.footpathEnd(source); slot++) {
+            int target  = timetable.footpathTarget(slot);
+            int walkEnd = readyAt + timetable.footpathSeconds(slot);
+            if (walkEnd >= arrival[target]) continue;
+
+            arrival[target]  = walkEnd;
+            walkFrom[target] = source;
+            if (egressByStop[target] >= 0) {
+                bestTarget = Math.min(bestTarget, walkEnd + egressByStop[target]);
+            }
+        }
+        return bestTarget;
+    }
+
+    // Follows the journey pointers back to the origin, expanding each ride into one PathLeg per hop
+    // so the result has the same shape as the other routers' output.
+    private ScheduledPath reconstruct(
+            TransitTimetable    timetable,
+            ConnectionTimetable connections,
+            int                 stop,
+            int                 originStop,
+            int                 departureTime,
+            int[]               arrival,
+            int[]               boardedAt,
+            int[]               alightedFrom,
+            int[]               walkFrom
+    ) {
+        LinkedList<PathLeg> legs = new LinkedList<>();
+        int finalArrival = arrival[stop];
+        int rides        = 0;
+        int current      = stop;
+
+        while (current != originStop) {
+            int walkSource = walkFrom[current];
+            if (walkSource >= 0) {
+                legs.addFirst(new PathLeg(
+                        timetable.stopId(walkSource),
+                        timetable.stopId(current),
+                        null,
+                        null,
+                        TransportMode.WALK,
+                        arrival[walkSource],
+                        arrival[current]
+                ));
+                current = walkSource;
+                continue;
+            }
+
+            int exit = alightedFrom[current];
+            int board = boardedAt[current];
+            if (exit < 0 || board < 0) {
+                return null; // inconsistent labels — should not happen
+            }
+            int trip    = connections.trip(exit);
+            int pattern = connections.tripPattern(trip);
+            int index   = connections.tripIndexInPattern(trip);
+            for (int position = connections.position(exit); position >= connections.position(board); position--) {
+                legs.addFirst(new PathLeg(
+                        timetable.stopId(timetable.patternStop(pattern, position)),
+                        timetable.stopId(timetable.patternStop(pattern, position + 1)),
+                        timetable.patternRouteId(pattern),
+                        timetable.patternShortName(pattern),
+                        timetable.patternMode(pattern),
+                        timetable.time(pattern, index, position),
+                        timetable.time(pattern, index, position + 1),
+                        timetable.globalTrip(pattern, index)
+                ));
+            }
+            current = connections.departureStop(board);
+            rides++;
+        }
+
+        if (legs.isEmpty()) {
+            return null;
+        }
+        return new ScheduledPath(new ArrayList<>(legs), Math.max(0, finalArrival - departureTime), Math.max(0, rides - 1));
+    }
+}
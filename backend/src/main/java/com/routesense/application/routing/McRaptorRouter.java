@@ -0,0 +1,476 @@
+package com.routesense.application.routing;
+
+import com.routesense.application.service.EmissionsCalculator;
+import com.routesense.domain.model.TransitTimetable;
+import com.routesense.domain.model.TransportMode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+// Multi-criteria RAPTOR (McRAPTOR) over the route-pattern timetable: arrival time, number of transfers and CO2
+// are all tracked during the search, so one query returns the whole Pareto front — including the slower but
+// greener journey (a train instead of two buses, say) that a fixed transfer penalty would never surface.
+//
+// Same rounds as RaptorRouter (round k = k vehicle trips), but every stop holds a small bag of (arrival, CO2) labels
+// instead of a single arrival, and a pattern is scanned with a bag of boarded trips instead of a single trip.
+// CO2 comes from the EmissionsCalculator factor of the pattern's mode times the distance ridden; walking is free.
+//
+// To stay fast the bags are bounded: at a stop, a label saving less than 10% (or 10 g) of CO2 over a faster one counts
+// as dominated, and a full bag makes room for a faster label by dropping its slowest one. Journeys reaching the
+// destination only need to save 10 g over a faster one, so every journey pruned on the way stays covered by one
+// that is nearly as green. Labels live in flat int arrays, never objects.
+@Component
+public class McRaptorRouter {
+
+    // Round k allows k vehicle trips, so 5 rounds = up to 4 transfers
+    private static final int MAX_ROUNDS = 5;
+
+    // Labels kept per stop, and boarded trips kept per pattern scan
+    private static final int MAX_LABELS_PER_STOP = 6;
+
+    // CO2 savings smaller than this (absolute, or percent of the journey's CO2) don't justify keeping a slower journey
+    private static final int CO2_TOLERANCE_GRAMS   = 10;
+    private static final int CO2_TOLERANCE_PERCENT = 10;
+
+    // Grams of CO2 per metre ridden, by TransportMode ordinal
+    private final double[] gramsPerMeterByMode;
+
+    public McRaptorRouter(EmissionsCalculator emissionsCalculator) {
+        TransportMode[] modes = TransportMode.values();
+        gramsPerMeterByMode = new double[modes.length];
+        for (TransportMode mode : modes) {
+            gramsPerMeterByMode[mode.ordinal()] = emissionsCalculator.emissionFactor(mode) / 1000.0;
+        }
+    }
+
+    // Grams of CO2 per metre ridden on the given mode, as the search charges it
+    double gramsPerMeter(TransportMode mode) {
+        return gramsPerMeterByMode[mode.ordinal()];
+    }
+
+    // Returns the Pareto-optimal journeys (arrival time × transfers × CO2) from originStop, ready to board at
+    // departureTime, to any of the target stops, ordered by transfers then arrival. targetEgressSeconds[i] is the walk
+    // from targetStops[i] to the actual destination. Pass the day's timetable (DayTimetable) so only trips running that day are boarded.
+    public List<ScheduledPath> route(
+            TransitTimetable timetable,
+            int              originStop,
+            int              departureTime,
+            int[]            targetStops,
+            int[]            targetEgressSeconds
+    ) {
+        int stopCount = timetable.stopCount();
+        if (originStop < 0 || originStop >= stopCount || targetStops.length == 0) {
+            return List.of();
+        }
+        return new Search(timetable, targetStops, targetEgressSeconds).run(originStop, departureTime);
+    }
+
+    // The state of one query. A label is an index into the flat label arrays; bag holds the labels of each stop
+    // that no other label (of this or an earlier round) dominates, in slots [stop * MAX_LABELS_PER_STOP, + bagSize[stop]).
+    private final class Search {
+        private final TransitTimetable timetable;
+        private final int[]            targetStops;
+        private final int[]            egressByStop;
+
+        // Label storage, grown on demand. pattern is -1 for the origin and for walks (parent = where the walk started).
+        private int[] arrival;
+        private int[] co2;
+        private int[] parent;
+        private int[] labelStop;
+        private int[] labelRound;
+        private int[] pattern;
+        private int[] trip;
+        private int[] boardPosition;
+        private int[] alightPosition;
+        private int   labelCount;
+
+        private final int[] bag;
+        private final int[] bagSize;
+
+        // Labels that reached a destination stop, with egress included in targetArrival
+        private int[] targetLabels  = new int[16];
+        private int[] targetArrival = new int[16];
+        private int   targetCount;
+
+        // The previous round's labels, by stop: what a pattern scan may board from
+        private final int[] boardableStart;
+        private final int[] boardableCount;
+        private final int[] boardableStops;
+        private int[]       boardable = new int[64];
+
+        private final boolean[] marked;
+        private final int[]     markedStops;
+        private int             markedCount;
+        private final int[]     queuedFromPosition;
+        private final int[]     queuedPatterns;
+        private final int[]     rideImproved;
+
+        // Bag of boarded trips during one pattern scan. routeCo2Offset is the label's CO2 minus the CO2 of riding
+        // from the pattern's first stop to where it boarded, so every entry's CO2 at a position is offset + rate × distance.
+        private final int[]    routeTrip        = new int[MAX_LABELS_PER_STOP];
+        private final int[]    routeBoardPos    = new int[MAX_LABELS_PER_STOP];
+        private final int[]    routeParent      = new int[MAX_LABELS_PER_STOP];
+        private final double[] routeCo2Offset   = new double[MAX_LABELS_PER_STOP];
+        private int            routeSize;
+
+        Search(TransitTimetable timetable, int[] targetStops, int[] targetEgressSeconds) {
+            int stopCount = timetable.stopCount();
+            this.timetable   = timetable;
+            this.targetStops = targetStops;
+
+            egressByStop = new int[stopCount];
+            Arrays.fill(egressByStop, -1);
+            for (int i = 0; i < targetStops.length; i++) {
+                int target = targetStops[i];
+                if (target < 0) continue;
+                egressByStop[target] = egressByStop[target] < 0
+                        ? targetEgressSeconds[i] : Math.min(egressByStop[target], targetEgressSeconds[i]);
+            }
+
+            int capacity = 1024;
+            arrival        = new int[capacity];
+            co2            = new int[capacity];
+            parent         = new int[capacity];
+            labelStop      = new int[capacity];
+            labelRound     = new int[capacity];
+            pattern        = new int[capacity];
+            trip           = new int[capacity];
+            boardPosition  = new int[capacity];
+            alightPosition = new int[capacity];
+
+            bag                = new int[stopCount * MAX_LABELS_PER_STOP];
+            bagSize            = new int[stopCount];
+            boardableStart     = new int[stopCount];
+            boardableCount     = new int[stopCount];
+            boardableStops     = new int[stopCount];
+            marked             = new boolean[stopCount];
+            markedStops        = new int[stopCount];
+            queuedFromPosition = new int[timetable.patternCount()];
+            queuedPatterns     = new int[timetable.patternCount()];
+            rideImproved       = new int[stopCount];
+            Arrays.fill(queuedFromPosition, -1);
+        }
+
+        List<ScheduledPath> run(int originStop, int departureTime) {
+            // Round 0: standing at the origin, plus one walk to any nearby stop
+            int origin = offer(originStop, departureTime, 0, -1, 0, -1, -1, -1, -1);
+            mark(originStop);
+            relaxFootpaths(origin, 0);
+            collectTargets(0);
+
+            for (int round = 1; round <= MAX_ROUNDS && markedCount > 0; round++) {
+                // Cancelled because the request deadline passed — keep what earlier rounds found
+                if (Thread.currentThread().isInterrupted()) break;
+
+                // Step 1: snapshot the previous round's labels of every marked stop and queue the patterns through it,
+                // remembering the earliest marked position
+                int boardableSize = 0;
+                int queuedCount   = 0;
+                for (int m = 0; m < markedCount; m++) {
+                    int stop = markedStops[m];
+                    marked[stop]         = false;
+                    boardableStops[m]    = stop;
+                    boardableStart[stop] = boardableSize;
+                    for (int i = 0; i < bagSize[stop]; i++) {
+                        int label = bag[stop * MAX_LABELS_PER_STOP + i];
+                        if (labelRound[label] != round - 1) continue;
+                        if (boardableSize == boardable.length) boardable = Arrays.copyOf(boardable, boardableSize * 2);
+                        boardable[boardableSize++] = label;
+                    }
+                    boardableCount[stop] = boardableSize - boardableStart[stop];
+
+                    for (int slot = timetable.stopPatternStart(stop); slot < timetable.stopPatternEnd(stop); slot++) {
+                        int p        = timetable.stopPattern(slot);
+                        int position = timetable.stopPatternPosition(slot);
+                        if (timetable.tripCount(p) == 0) continue; // no trip of this pattern runs today
+                        if (queuedFromPosition[p] < 0) {
+                            queuedPatterns[queuedCount++] = p;
+                            queuedFromPosition[p]         = position;
+                        } else if (position < queuedFromPosition[p]) {
+                            queuedFromPosition[p] = position;
+                        }
+                    }
+                }
+                int boardableStopCount = markedCount;
+                markedCount = 0;
+
+                // Step 2: scan each queued pattern once with a bag of boarded trips
+                int rideImprovedCount = 0;
+                for (int q = 0; q < queuedCount; q++) {
+                    int p    = queuedPatterns[q];
+                    int from = queuedFromPosition[p];
+                    queuedFromPosition[p] = -1;
+                    double rate = gramsPerMeterByMode[timetable.patternMode(p).ordinal()];
+
+                    routeSize = 0;
+                    int length = timetable.patternLength(p);
+                    for (int position = from; position < length; position++) {
+                        int stop     = timetable.patternStop(p, position);
+                        int distance = timetable.distanceMeters(p, position);
+
+                        for (int r = 0; r < routeSize; r++) {
+                            int time     = timetable.time(p, routeTrip[r], position);
+                            int emission = (int) Math.round(routeCo2Offset[r] + rate * distance);
+                            int label    = offer(stop, time, emission, routeParent[r], round,
+                                    p, routeTrip[r], routeBoardPos[r], position);
+                            if (label >= 0 && !marked[stop]) {
+                                mark(stop);
+                                rideImproved[rideImprovedCount++] = stop;
+                            }
+                        }
+
+                        // Board from every label the previous round left here
+                        if (position == length - 1) continue;
+                        for (int i = 0; i < boardableCount[stop]; i++) {
+                            int label   = boardable[boardableStart[stop] + i];
+                            int earlier = timetable.earliestTrip(p, position, arrival[label]);
+                            if (earlier >= 0) {
+                                board(earlier, position, label, co2[label] - rate * distance);
+                            }
+                        }
+                    }
+                }
+                for (int i = 0; i < boardableStopCount; i++) {
+                    boardableCount[boardableStops[i]] = 0;
+                }
+
+                // Step 3: one footpath hop from every vehicle label this round (no walk → walk chaining)
+                for (int i = 0; i < rideImprovedCount; i++) {
+                    int stop = rideImproved[i];
+                    for (int b = 0; b < bagSize[stop]; b++) {
+                        int label = bag[stop * MAX_LABELS_PER_STOP + b];
+                        if (labelRound[label] == round && pattern[label] >= 0) {
+                            relaxFootpaths(label, round);
+                        }
+                    }
+                }
+
+                collectTargets(round);
+            }
+
+            // Reconstruct every surviving destination label, fewest transfers first
+            List<int[]> order = new ArrayList<>(targetCount);
+            for (int t = 0; t < targetCount; t++) {
+                order.add(new int[]{ labelRound[targetLabels[t]], targetArrival[t], targetLabels[t] });
+            }
+            order.sort(Comparator.<int[]>comparingInt(o -> o[0]).thenComparingInt(o -> o[1]));
+            List<ScheduledPath> paretoSet = new ArrayList<>(order.size());
+            for (int[] entry : order) {
+                ScheduledPath path = reconstruct(entry[2], originStop, departureTime);
+                if (path != null) {
+                    paretoSet.add(path);
+                }
+            }
+            return paretoSet;
+        }
+
+        private void mark(int stop) {
+            marked[stop] = true;
+            markedStops[markedCount++] = stop;
+        }
+
+        // Adds a boarded trip to the pattern-scan bag unless an entry on an earlier-or-same trip with no more CO2 has it beaten
+        private void board(int boardedTrip, int position, int label, double co2Offset) {
+            for (int r = 0; r < routeSize; r++) {
+                if (routeTrip[r] <= boardedTrip && routeCo2Offset[r] <= co2Offset + CO2_TOLERANCE_GRAMS) return;
+            }
+            int kept = 0;
+            for (int r = 0; r < routeSize; r++) {
+                if (boardedTrip <= routeTrip[r] && co2Offset <= routeCo2Offset[r]) continue; // dominated by the new entry
+                copyRouteEntry(r, kept++);
+            }
+            routeSize = kept;
+            if (routeSize == MAX_LABELS_PER_STOP) {
+                // Full: the new entry replaces the one on the latest trip if it rides an earlier one
+                int latest = 0;
+                for (int r = 1; r < routeSize; r++) {
+                    if (routeTrip[r] > routeTrip[latest]) latest = r;
+                }
+                if (routeTrip[latest] <= boardedTrip) return;
+                copyRouteEntry(--routeSize, latest);
+            }
+            routeTrip[routeSize]      = boardedTrip;
+            routeBoardPos[routeSize]  = position;
+            routeParent[routeSize]    = label;
+            routeCo2Offset[routeSize] = co2Offset;
+            routeSize++;
+        }
+
+        private void copyRouteEntry(int from, int to) {
+            routeTrip[to]      = routeTrip[from];
+            routeBoardPos[to]  = routeBoardPos[from];
+            routeParent[to]    = routeParent[from];
+            routeCo2Offset[to] = routeCo2Offset[from];
+        }
+
+        // Walks from a label's stop to its footpath neighbours, adding a walk label (same CO2) wherever it survives.
+        private void relaxFootpaths(int from, int round) {
+            int source = labelStop[from];
+            for (int slot = timetable.footpathStart(source); slot < timetable.footpathEnd(source); slot++) {
+                int target = timetable.footpathTarget(slot);
+                int label  = offer(target, arrival[from] + timetable.footpathSeconds(slot), co2[from], from, round,
+                        -1, -1, -1, -1);
+                if (label >= 0 && !marked[target]) {
+                    mark(target);
+                }
+            }
+        }
+
+        // Stores a new label at the stop if nothing in its bag or among the destination labels dominates it, dropping
+        // the bag labels it dominates. Returns the label, or -1 if it was dominated.
+        private int offer(int stop, int time, int emission, int parentLabel, int round,
+                          int viaPattern, int viaTrip, int boardPos, int alightPos) {
+            for (int t = 0; t < targetCount; t++) {
+                if (targetArrival[t] <= time && co2[targetLabels[t]] <= emission + CO2_TOLERANCE_GRAMS) return -1;
+            }
+            int base = stop * MAX_LABELS_PER_STOP;
+            for (int i = 0; i < bagSize[stop]; i++) {
+                int other = bag[base + i];
+                if (arrival[other] <= time && asGreen(co2[other], emission)) return -1;
+            }
+
+            int kept = 0;
+            for (int i = 0; i < bagSize[stop]; i++) {
+                int other = bag[base + i];
+                if (time <= arrival[other] && emission <= co2[other]) continue; // dominated by the new label
+                bag[base + kept++] = other;
+            }
+            bagSize[stop] = kept;
+            if (kept == MAX_LABELS_PER_STOP) {
+                // Full: a faster label takes the slot of the slowest one, so the earliest arrival is never lost
+                int slowest = 0;
+                for (int i = 1; i < kept; i++) {
+                    if (arrival[bag[base + i]] > arrival[bag[base + slowest]]) slowest = i;
+                }
+                if (arrival[bag[base + slowest]] <= time) return -1;
+                bag[base + slowest] = bag[base + --kept];
+                bagSize[stop] = kept;
+            }
+
+            if (labelCount == arrival.length) grow();
+            int label = labelCount++;
+            arrival[label]        = time;
+            co2[label]            = emission;
+            parent[label]         = parentLabel;
+            labelStop[label]      = stop;
+            labelRound[label]     = round;
+            pattern[label]        = viaPattern;
+            trip[label]           = viaTrip;
+            boardPosition[label]  = boardPos;
+            alightPosition[label] = alightPos;
+            bag[base + bagSize[stop]++] = label;
+            return label;
+        }
+
+        // True if a journey emitting 'other' grams is practically as green as one emitting 'candidate'
+        private boolean asGreen(int other, int candidate) {
+            return other <= candidate + Math.max(CO2_TOLERANCE_GRAMS, candidate * CO2_TOLERANCE_PERCENT / 100);
+        }
+
+        private void grow() {
+            int capacity = arrival.length * 2;
+            arrival        = Arrays.copyOf(arrival, capacity);
+            co2            = Arrays.copyOf(co2, capacity);
+            parent         = Arrays.copyOf(parent, capacity);
+            labelStop      = Arrays.copyOf(labelStop, capacity);
+            labelRound     = Arrays.copyOf(labelRound, capacity);
+            pattern        = Arrays.copyOf(pattern, capacity);
+            trip           = Arrays.copyOf(trip, capacity);
+            boardPosition  = Arrays.copyOf(boardPosition, capacity);
+            alightPosition = Arrays.copyOf(alightPosition, capacity);
+        }
+
+        // Moves this round's labels at destination stops into the destination set, unless an earlier-found journey is
+        // at least as fast (egress included) and as green. Same-round entries they beat are dropped; earlier rounds'
+        // entries have fewer transfers and stay.
+        private void collectTargets(int round) {
+            for (int target : targetStops) {
+                if (target < 0) continue;
+                int base = target * MAX_LABELS_PER_STOP;
+                for (int i = 0; i < bagSize[target]; i++) {
+                    int label = bag[base + i];
+                    if (labelRound[label] != round || alreadyCollected(label)) continue;
+                    int total = arrival[label] + egressByStop[target];
+
+                    boolean dominated = false;
+                    for (int t = 0; t < targetCount && !dominated; t++) {
+                        dominated = targetArrival[t] <= total && co2[targetLabels[t]] <= co2[label] + CO2_TOLERANCE_GRAMS;
+                    }
+                    if (dominated) continue;
+
+                    int kept = 0;
+                    for (int t = 0; t < targetCount; t++) {
+                        int other = targetLabels[t];
+                        if (labelRound[other] == round && total <= targetArrival[t] && co2[label] <= co2[other]) continue;
+                        targetLabels[kept]  = other;
+                        targetArrival[kept] = targetArrival[t];
+                        kept++;
+                    }
+                    targetCount = kept;
+                    if (targetCount == targetLabels.length) {
+                        targetLabels  = Arrays.copyOf(targetLabels, targetCount * 2);
+                        targetArrival = Arrays.copyOf(targetArrival, targetCount * 2);
+                    }
+                    targetLabels[targetCount]  = label;
+                    targetArrival[targetCount] = total;
+                    targetCount++;
+                }
+            }
+        }
+
+        private boolean alreadyCollected(int label) {
+            for (int t = 0; t < targetCount; t++) {
+                if (targetLabels[t] == label) return true;
+            }
+            return false;
+        }
+
+        // Follows the parent labels back to the origin, expanding each ride into one PathLeg per hop
+        // so the result has the same shape as the other routers' output.
+        private ScheduledPath reconstruct(int label, int originStop, int departureTime) {
+            LinkedList<PathLeg> legs = new LinkedList<>();
+            int finalArrival = arrival[label];
+            int current      = label;
+
+            while (parent[current] >= 0) {
+                int previous = parent[current];
+                int p        = pattern[current];
+                if (p < 0) {
+                    legs.addFirst(new PathLeg(
+                            timetable.stopId(labelStop[previous]),
+                            timetable.stopId(labelStop[current]),
+                            null,
+                            null,
+                            TransportMode.WALK,
+                            arrival[previous],
+                            arrival[current]
+                    ));
+                } else {
+                    for (int position = alightPosition[current] - 1; position >= boardPosition[current]; position--) {
+                        legs.addFirst(new PathLeg(
+                                timetable.stopId(timetable.patternStop(p, position)),
+                                timetable.stopId(timetable.patternStop(p, position + 1)),
+                                timetable.patternRouteId(p),
+                                timetable.patternShortName(p),
+                                timetable.patternMode(p),
+                                timetable.time(p, trip[current], position),
+                                timetable.time(p, trip[current], position + 1),
+                                timetable.globalTrip(p, trip[current])
+                        ));
+                    }
+                }
+                current = previous;
+            }
+
+            if (legs.isEmpty() || labelStop[current] != originStop) {
+                return null;
+            }
+            int transfers = Math.max(0, labelRound[label] - 1);
+            return new ScheduledPath(new ArrayList<>(legs), Math.max(0, finalArrival - departureTime), transfers);
+        }
+    }
+}
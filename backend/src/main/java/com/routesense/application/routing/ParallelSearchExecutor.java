@@ -0,0 +1,114 @@
+package com.routesense.application.routing;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the independent (origin candidate × destination candidate × variant) searches of one journey request
+// on a shared, bounded thread pool so a request takes as long as its slowest search instead of the sum of all.
+// Each request gets a deadline; searches still queued or running when it passes are cancelled and left out.
+// Searches that do not fit in the queue are rejected and count as timed out: running them on the request
+// thread would put them beyond the reach of the deadline, which is when the pool is busiest.
+@Component
+public class ParallelSearchExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelSearchExecutor.class);
+
+    // Queued searches per worker before further searches are rejected (back-pressure)
+    private static final int QUEUE_SLOTS_PER_THREAD = 64;
+
+    // Worker threads; 0 means one per available core
+    @Value("${app.routing.search.threads:0}")
+    private int threads;
+
+    // Wall-clock budget for all searches of one request
+    @Value("${app.routing.search.deadline-ms:3000}")
+    private long deadlineMillis;
+
+    private ThreadPoolExecutor pool;
+
+    @PostConstruct
+    public void start() {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        pool = new ThreadPoolExecutor(
+                size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(size * QUEUE_SLOTS_PER_THREAD),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "route-search-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        LOGGER.info("Route search pool started: {} threads, {} ms deadline per request", size, deadlineMillis);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    // Runs every task and returns their results in task order, so callers can merge them deterministically.
+    // A task that failed, was rejected by a full queue, or had not finished by the deadline, contributes null.
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+        if (tasks.isEmpty()) {
+            return List.of();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            try {
+                futures.add(pool.submit(task));
+            } catch (RejectedExecutionException e) {
+                futures.add(null);
+            }
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        int timedOut = 0;
+        for (Future<T> future : futures) {
+            if (future == null) {
+                timedOut++;
+                results.add(null);
+                continue;
+            }
+            try {
+                results.add(future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException | CancellationException e) {
+                future.cancel(true);
+                timedOut++;
+                results.add(null);
+            } catch (ExecutionException e) {
+                LOGGER.warn("Route search task failed", e.getCause());
+                results.add(null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                results.add(null);
+            }
+        }
+        if (timedOut > 0) {
+            LOGGER.warn("{} of {} route searches were rejected or missed the {} ms deadline", timedOut, tasks.size(), deadlineMillis);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,26 @@
+package com.routesense.application.routing;
+
+import com.routesense.domain.model.TransportMode;
+
+// One hop of a scheduled journey: board at fromStopId on a named route, alight at toStopId.
+// Walk hops (footpath transfers) have a null routeId and mode WALK.
+// trip is the ride's TransitTimetable.globalTrip, so consecutive hops of one vehicle trip can be told apart from a
+// zero-wait change between two trips of the same route; NO_TRIP for walks and for the Dijkstra, which doesn't track trips.
+public record PathLeg(
+        String        fromStopId,
+        String        toStopId,
+        String        routeId,
+        String        routeShortName,
+        TransportMode mode,
+        int           departureSeconds,
+        int           arrivalSeconds,
+        int           trip
+) {
+
+    public static final int NO_TRIP = -1;
+
+    public PathLeg(String fromStopId, String toStopId, String routeId, String routeShortName, TransportMode mode,
+                   int departureSeconds, int arrivalSeconds) {
+        this(fromStopId, toStopId, routeId, routeShortName, mode, departureSeconds, arrivalSeconds, NO_TRIP);
+    }
+}
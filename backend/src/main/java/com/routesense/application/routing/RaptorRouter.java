@@ -0,0 +1,402 @@
+package com.routesense.application.routing;
+
+import com.routesense.domain.model.TransitTimetable;
+import com.routesense.domain.model.TransportMode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+// Round-based public transit routing (RAPTOR) over the route-pattern timetable.
+// Round k finds the earliest arrival at every stop using at most k vehicle trips, so a single query yields the
+// full Pareto set of arrival time × number of transfers — no transfer-penalty tuning or repeated searches needed.
+//
+// Each round:
+//   1. Collect the patterns serving any stop improved in the previous round (from the earliest such stop).
+//   2. Scan each pattern once, riding the earliest catchable trip and hopping on an earlier one when possible.
+//   3. Relax one footpath hop from every stop reached by a vehicle this round (no walk → walk chaining).
+// routeRange answers a whole departure window the rRAPTOR way, re-running the rounds for each departure on the same labels.
+@Component
+public class RaptorRouter {
+
+    // Round k allows k vehicle trips, so 5 rounds = up to 4 transfers
+    private static final int MAX_ROUNDS = 5;
+    private static final int UNREACHED  = Integer.MAX_VALUE;
+
+    // Returns the Pareto-optimal journeys from originStop (ready to board at departureTime) to any of the target stops,
+    // ordered by number of transfers. targetEgressSeconds[i] is the walk from targetStops[i] to the actual destination
+    // and is counted when comparing arrivals, so a slightly later bus to the exact stop can beat an earlier one further away.
+    // Pass the day's timetable (DayTimetable) so only trips running that day are boarded.
+    public List<ScheduledPath> route(
+            TransitTimetable timetable,
+            int              originStop,
+            int              departureTime,
+            int[]            targetStops,
+            int[]            targetEgressSeconds
+    ) {
+        if (originStop < 0 || originStop >= timetable.stopCount() || targetStops.length == 0) {
+            return List.of();
+        }
+        return new Search(timetable, originStop, targetStops, targetEgressSeconds).run(departureTime);
+    }
+
+    // Profile query (rRAPTOR): every journey departing between windowStart and windowEnd that no later-departing journey
+    // beats on arrival time with as few transfers, ordered by departure. One RAPTOR run per distinct departure time at
+    // the origin (or a stop one walk away), latest first, with the labels kept between runs: a run only touches stops
+    // it reaches earlier than every later departure already could, so the whole window costs little more than one query.
+    public List<ScheduledPath> routeRange(
+            TransitTimetable timetable,
+            int              originStop,
+            int              windowStart,
+            int              windowEnd,
+            int[]            targetStops,
+            int[]            targetEgressSeconds
+    ) {
+        if (originStop < 0 || originStop >= timetable.stopCount() || targetStops.length == 0) {
+            return List.of();
+        }
+
+        Search                    search     = new Search(timetable, originStop, targetStops, targetEgressSeconds);
+        int[]                     departures = departuresInWindow(timetable, originStop, windowStart, windowEnd);
+        LinkedList<ScheduledPath> profile    = new LinkedList<>();
+        for (int i = departures.length - 1; i >= 0; i--) {
+            // Cancelled because the request deadline passed — keep the later departures already found
+            if (Thread.currentThread().isInterrupted()) break;
+            List<ScheduledPath> found = search.run(departures[i]);
+            for (int j = found.size() - 1; j >= 0; j--) {
+                profile.addFirst(found.get(j));
+            }
+        }
+        return new ArrayList<>(profile);
+    }
+
+    // Distinct times within the window at which leaving the origin lets us board something: a departure at the origin
+    // itself, or one at a footpath neighbour minus the walk there. Ascending.
+    private static int[] departuresInWindow(TransitTimetable timetable, int originStop, int windowStart, int windowEnd) {
+        int[] times = new int[64];
+        int   count = 0;
+        for (int slot = timetable.footpathStart(originStop) - 1; slot < timetable.footpathEnd(originStop); slot++) {
+            boolean atOrigin = slot < timetable.footpathStart(originStop);
+            int     stop     = atOrigin ? originStop : timetable.footpathTarget(slot);
+            int     walk     = atOrigin ? 0 : timetable.footpathSeconds(slot);
+            for (int s = timetable.stopPatternStart(stop); s < timetable.stopPatternEnd(stop); s++) {
+                int pattern  = timetable.stopPattern(s);
+                int position = timetable.stopPatternPosition(s);
+                if (position == timetable.patternLength(pattern) - 1) continue; // last stop, nothing to board
+                int trip = timetable.earliestTrip(pattern, position, windowStart + walk);
+                for (; trip >= 0 && trip < timetable.tripCount(pattern); trip++) {
+                    int leave = timetable.time(pattern, trip, position) - walk;
+                    if (leave > windowEnd) break;
+                    if (count == times.length) times = Arrays.copyOf(times, count * 2);
+                    times[count++] = leave;
+                }
+            }
+        }
+
+        Arrays.sort(times, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || times[i] != times[distinct - 1]) times[distinct++] = times[i];
+        }
+        return Arrays.copyOf(times, distinct);
+    }
+
+    // The state of one query. bestArrival[k][stop] is the earliest arrival at the stop with at most k trips and
+    // bestTarget[k] the earliest at the destination (egress included); both only ever improve, which is what lets a
+    // profile query reuse them for an earlier departure: anything that doesn't beat them is dominated by a journey
+    // leaving later. Within a single run they are the usual RAPTOR pruning bounds.
+    private static final class Search {
+        private final TransitTimetable timetable;
+        private final int              originStop;
+        private final int[]            targetStops;
+        private final int[]            egressByStop;
+        private final Labels           labels;
+        private final int[][]          bestArrival;
+        private final int[]            bestTarget;
+        private final int[]            bestCollected;      // best target arrival already returned, per round (prefix-min)
+        private final boolean[]        marked;
+        private final int[]            markedStops;
+        private final int[]            queuedFromPosition;
+        private final int[]            queuedPatterns;
+        private final int[]            rideImproved;
+        private int                    markedCount;
+
+        Search(TransitTimetable timetable, int originStop, int[] targetStops, int[] targetEgressSeconds) {
+            int stopCount = timetable.stopCount();
+            this.timetable   = timetable;
+            this.originStop  = originStop;
+            this.targetStops = targetStops;
+            this.labels      = new Labels(MAX_ROUNDS + 1, stopCount);
+
+            egressByStop = new int[stopCount];
+            Arrays.fill(egressByStop, -1);
+            for (int i = 0; i < targetStops.length; i++) {
+                int target = targetStops[i];
+                if (target < 0) continue;
+                egressByStop[target] = egressByStop[target] < 0
+                        ? targetEgressSeconds[i] : Math.min(egressByStop[target], targetEgressSeconds[i]);
+            }
+
+            bestArrival   = new int[MAX_ROUNDS + 1][stopCount];
+            bestTarget    = new int[MAX_ROUNDS + 1];
+            bestCollected = new int[MAX_ROUNDS + 1];
+            for (int k = 0; k <= MAX_ROUNDS; k++) {
+                Arrays.fill(bestArrival[k], UNREACHED);
+            }
+            Arrays.fill(bestTarget, UNREACHED);
+            Arrays.fill(bestCollected, UNREACHED);
+
+            marked             = new boolean[stopCount];
+            markedStops        = new int[stopCount];
+            queuedFromPosition = new int[timetable.patternCount()];
+            queuedPatterns     = new int[timetable.patternCount()];
+            rideImproved       = new int[stopCount];
+            Arrays.fill(queuedFromPosition, -1);
+        }
+
+        // One RAPTOR query from the origin at departureTime. Returns the journeys that beat everything found before.
+        List<ScheduledPath> run(int departureTime) {
+            // Round 0: standing at the origin, plus one walk to any nearby stop
+            labels.arrival[0][originStop]     = departureTime;
+            labels.rideArrival[0][originStop] = departureTime;
+            labels.walkFrom[0][originStop]    = -1;
+            improve(0, originStop, departureTime);
+            mark(originStop);
+            relaxFootpaths(0, new int[]{ originStop }, 1);
+
+            List<ScheduledPath> paretoSet = new ArrayList<>();
+            collectRoundResult(0, departureTime, paretoSet);
+
+            for (int round = 1; round <= MAX_ROUNDS && markedCount > 0; round++) {
+                // Cancelled because the request deadline passed — keep what earlier rounds found
+                if (Thread.currentThread().isInterrupted()) break;
+
+                // Step 1: queue every pattern through a marked stop, remembering the earliest marked position
+                int queuedCount = 0;
+                for (int m = 0; m < markedCount; m++) {
+                    int stop = markedStops[m];
+                    marked[stop] = false;
+                    for (int slot = timetable.stopPatternStart(stop); slot < timetable.stopPatternEnd(stop); slot++) {
+                        int pattern  = timetable.stopPattern(slot);
+                        int position = timetable.stopPatternPosition(slot);
+                        if (timetable.tripCount(pattern) == 0) continue; // no trip of this pattern runs today
+                        if (queuedFromPosition[pattern] < 0) {
+                            queuedPatterns[queuedCount++] = pattern;
+                            queuedFromPosition[pattern]   = position;
+                        } else if (position < queuedFromPosition[pattern]) {
+                            queuedFromPosition[pattern] = position;
+                        }
+                    }
+                }
+                markedCount = 0;
+
+                // Step 2: scan each queued pattern once
+                int rideImprovedCount = 0;
+                for (int q = 0; q < queuedCount; q++) {
+                    int pattern = queuedPatterns[q];
+                    int from    = queuedFromPosition[pattern];
+                    queuedFromPosition[pattern] = -1;
+
+                    int trip      = -1;
+                    int boardPos  = -1;
+                    int length    = timetable.patternLength(pattern);
+                    for (int position = from; position < length; position++) {
+                        int stop = timetable.patternStop(pattern, position);
+
+                        if (trip >= 0) {
+                            int arrival = timetable.time(pattern, trip, position);
+                            if (arrival < bestArrival[round][stop] && arrival < bestTarget[round]) {
+                                labels.setRide(round, stop, arrival, pattern, trip, boardPos, position);
+                                improve(round, stop, arrival);
+                                if (!marked[stop]) {
+                                    mark(stop);
+                                    rideImproved[rideImprovedCount++] = stop;
+                                }
+                            }
+                        }
+
+                        // Could we have been here in the previous round in time for an earlier trip?
+                        int readyAt = labels.arrival[round - 1][stop];
+                        if (readyAt != UNREACHED && (trip < 0 || readyAt <= timetable.time(pattern, trip, position))) {
+                            int earlier = timetable.earliestTrip(pattern, position, readyAt);
+                            if (earlier >= 0 && (trip < 0 || earlier < trip)) {
+                                trip     = earlier;
+                                boardPos = position;
+                            }
+                        }
+                    }
+                }
+
+                // Step 3: one footpath hop from every stop a vehicle reached this round
+                relaxFootpaths(round, rideImproved, rideImprovedCount);
+
+                collectRoundResult(round, departureTime, paretoSet);
+            }
+
+            // Leave nothing marked for the next run of a profile query
+            for (int m = 0; m < markedCount; m++) {
+                marked[markedStops[m]] = false;
+            }
+            markedCount = 0;
+            return paretoSet;
+        }
+
+        private void mark(int stop) {
+            marked[stop] = true;
+            markedStops[markedCount++] = stop;
+        }
+
+        // Records a new best arrival in 'round', which also bounds every later round (a journey with fewer trips will do)
+        private void improve(int round, int stop, int arrival) {
+            int total = egressByStop[stop] >= 0 ? arrival + egressByStop[stop] : UNREACHED;
+            for (int k = round; k <= MAX_ROUNDS; k++) {
+                bestArrival[k][stop] = Math.min(bestArrival[k][stop], arrival);
+                bestTarget[k]        = Math.min(bestTarget[k], total);
+            }
+        }
+
+        // Walks from each source stop (using its vehicle arrival time) to its footpath neighbours.
+        private void relaxFootpaths(int round, int[] sources, int sourceCount) {
+            for (int i = 0; i < sourceCount; i++) {
+                int source    = sources[i];
+                int departure = labels.rideArrival[round][source];
+                for (int slot = timetable.footpathStart(source); slot < timetable.footpathEnd(source); slot++) {
+                    int target  = timetable.footpathTarget(slot);
+                    int arrival = departure + timetable.footpathSeconds(slot);
+                    if (arrival >= bestArrival[round][target] || arrival >= bestTarget[round]) continue;
+
+                    labels.arrival[round][target]  = arrival;
+                    labels.walkFrom[round][target] = source;
+                    improve(round, target, arrival);
+                    if (!marked[target]) {
+                        mark(target);
+                    }
+                }
+            }
+        }
+
+        // Picks the best target reached in this round. If it beats every earlier round (and, in a profile query, every
+        // later departure with as few trips) it is a new Pareto point: reconstruct it and add it to the result.
+        private void collectRoundResult(int round, int departureTime, List<ScheduledPath> paretoSet) {
+            int bestStop = -1;
+            int bestTime = bestCollected[round];
+            for (int target : targetStops) {
+                if (target < 0) continue;
+                int arrival = labels.arrival[round][target];
+                if (arrival == UNREACHED) continue;
+                int total = arrival + egressByStop[target];
+                if (total < bestTime) {
+                    bestTime = total;
+                    bestStop = target;
+                }
+            }
+            if (bestStop < 0) {
+                return;
+            }
+
+            for (int k = round; k <= MAX_ROUNDS; k++) {
+                bestCollected[k] = Math.min(bestCollected[k], bestTime);
+            }
+            ScheduledPath path = reconstruct(round, bestStop, departureTime);
+            if (path != null) {
+                paretoSet.add(path);
+            }
+        }
+
+        // Follows the labels back from (round, stop) to the origin, expanding each ride into one PathLeg per hop
+        // so the result has the same shape as the Dijkstra router's output.
+        private ScheduledPath reconstruct(int round, int stop, int departureTime) {
+            LinkedList<PathLeg> legs = new LinkedList<>();
+            int     finalArrival = labels.arrival[round][stop];
+            int     k            = round;
+            int     current      = stop;
+            boolean followWalk   = true;
+
+            while (!(k == 0 && current == originStop)) {
+                int walkSource = labels.walkFrom[k][current];
+                if (followWalk && walkSource >= 0) {
+                    legs.addFirst(new PathLeg(
+                            timetable.stopId(walkSource),
+                            timetable.stopId(current),
+                            null,
+                            null,
+                            TransportMode.WALK,
+                            labels.rideArrival[k][walkSource],
+                            labels.arrival[k][current]
+                    ));
+                    current    = walkSource;
+                    followWalk = false;
+                    continue;
+                }
+                if (k == 0) {
+                    return null; // inconsistent labels — should not happen
+                }
+
+                int pattern  = labels.pattern[k][current];
+                int trip     = labels.trip[k][current];
+                int boardPos = labels.boardPosition[k][current];
+                int alightPos = labels.alightPosition[k][current];
+                for (int position = alightPos - 1; position >= boardPos; position--) {
+                    legs.addFirst(new PathLeg(
+                            timetable.stopId(timetable.patternStop(pattern, position)),
+                            timetable.stopId(timetable.patternStop(pattern, position + 1)),
+                            timetable.patternRouteId(pattern),
+                            timetable.patternShortName(pattern),
+                            timetable.patternMode(pattern),
+                            timetable.time(pattern, trip, position),
+                            timetable.time(pattern, trip, position + 1),
+                            timetable.globalTrip(pattern, trip)
+                    ));
+                }
+                current    = timetable.patternStop(pattern, boardPos);
+                k--;
+                followWalk = true;
+            }
+
+            if (legs.isEmpty()) {
+                return null;
+            }
+            int transfers = Math.max(0, round - 1);
+            return new ScheduledPath(new ArrayList<>(legs), Math.max(0, finalArrival - departureTime), transfers);
+        }
+    }
+
+    // Per-round labels. arrival is the best arrival at a stop in that round (vehicle or walk); rideArrival is the
+    // vehicle-only arrival, which is what footpaths start from so walks never chain.
+    private static final class Labels {
+        final int[][] arrival;
+        final int[][] rideArrival;
+        final int[][] walkFrom;
+        final int[][] pattern;
+        final int[][] trip;
+        final int[][] boardPosition;
+        final int[][] alightPosition;
+
+        Labels(int rounds, int stopCount) {
+            arrival        = new int[rounds][stopCount];
+            rideArrival    = new int[rounds][stopCount];
+            walkFrom       = new int[rounds][stopCount];
+            pattern        = new int[rounds][stopCount];
+            trip           = new int[rounds][stopCount];
+            boardPosition  = new int[rounds][stopCount];
+            alightPosition = new int[rounds][stopCount];
+            for (int k = 0; k < rounds; k++) {
+                Arrays.fill(arrival[k], UNREACHED);
+                Arrays.fill(rideArrival[k], UNREACHED);
+                Arrays.fill(walkFrom[k], -1);
+            }
+        }
+
+        void setRide(int round, int stop, int time, int pattern, int trip, int boardPos, int alightPos) {
+            this.arrival[round][stop]        = time;
+            this.rideArrival[round][stop]    = time;
+            this.walkFrom[round][stop]       = -1;
+            this.pattern[round][stop]        = pattern;
+            this.trip[round][stop]           = trip;
+            this.boardPosition[round][stop]  = boardPos;
+            this.alightPosition[round][stop] = alightPos;
+        }
+    }
+}
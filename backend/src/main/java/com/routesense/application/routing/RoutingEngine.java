@@ -0,0 +1,22 @@
+package com.routesense.application.routing;
+
+import java.util.Locale;
+
+// Which algorithm answers schedule-aware journey searches. Selected with app.routing.engine.
+public enum RoutingEngine {
+    MCRAPTOR,   // RAPTOR with CO2 as a third criterion; one pass returns the arrival time × transfers × CO2 Pareto set
+    RAPTOR,     // round-based route-pattern scan; one pass returns the arrival time × transfers Pareto set
+    TRIP_BASED, // rides boarded trips forward over precomputed trip-to-trip transfers; same Pareto set as RAPTOR
+    CSA,        // connection scan over the time-sorted connection array; one pass returns the earliest arrival
+    DIJKSTRA;   // original priority-queue search, run once per transfer-penalty variant
+
+    // Parses the configured value ("trip-based" and "trip_based" both work), defaulting to MCRAPTOR for blank or unknown values.
+    public static RoutingEngine fromProperty(String value) {
+        if (value == null || value.isBlank()) return MCRAPTOR;
+        try {
+            return RoutingEngine.valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return MCRAPTOR;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.routesense.application.routing;
+
+import java.util.List;
+
+// A complete journey found by one of the schedule-aware routers (Dijkstra or RAPTOR).
+public record ScheduledPath(
+        List<PathLeg> legs,
+        int           totalDurationSeconds,
+        int           transfers
+) {}
@@ -0,0 +1,529 @@
+package com.routesense.application.routing;
+
+import com.routesense.application.port.TransferPatternRepository;
+import com.routesense.domain.model.DayTimetable;
+import com.routesense.domain.model.DayTimetableCache;
+import com.routesense.domain.model.GraphGeneration;
+import com.routesense.domain.model.TransitTimetable;
+import com.routesense.domain.model.TransportMode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Transfer patterns for the journeys people actually search. Repeated searches between the same two stops keep
+// finding the same few ways of getting there — the direct bus, bus then train at the station, and so on — so once
+// a stop pair has been searched popular-after times, a background pool profiles it over whole service days
+// (range RAPTOR over every departure, plus McRAPTOR every half hour for the greener journeys) and keeps only each
+// optimal journey's transfer pattern: the stops where it boards, alights and walks. From then on a query for the pair
+// evaluates those few patterns against the day's timetable, one earliestTrip lookup per ride, instead of searching.
+// If no pattern gets through (say a service was cancelled on that date), the caller runs the full search as before.
+//
+// Patterns belong to one graph generation and cover today's and tomorrow's services. A feed reload or a new day starts
+// an empty table, and pairs that are already popular are recomputed on their next search; the query counts survive
+// both. Everything is saved through TransferPatternRepository whenever the pool runs idle, so a restart on the same
+// feed keeps its patterns.
+//
+// Encoding (one int[] per stop pair): per pattern its length n, then n entries — the origin stop, then for each hop
+// the stop it reaches: the stop index for a ride, ~stop index (negative) for a walk.
+@Component
+public class TransferPatternRouter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransferPatternRouter.class);
+
+    // Service days patterns are computed for: today and tomorrow, the two dates DayTimetableCache always keeps
+    private static final int PATTERN_DAYS = 2;
+
+    // Departures profiled per service day: the whole continuous time axis of a DayTimetable (the date and the next one)
+    private static final int PROFILE_SECONDS = 2 * DayTimetable.DAY_SECONDS;
+
+    // McRAPTOR runs at this interval across the profile pick up journeys that are slower but greener
+    private static final int GREEN_SAMPLE_SECONDS = 1800;
+
+    // As in McRaptorRouter at the destination: a slower journey must save at least this much CO2 to be kept
+    private static final int CO2_TOLERANCE_GRAMS = 10;
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    // Answer repeated searches from precomputed transfer patterns
+    @Value("${app.routing.transfer-patterns.enabled:true}")
+    private boolean enabled;
+
+    // Searches of a stop pair before its patterns are precomputed
+    @Value("${app.routing.transfer-patterns.popular-after:3}")
+    private int popularAfter;
+
+    // Most stop pairs with patterns per generation
+    @Value("${app.routing.transfer-patterns.max-pairs:2000}")
+    private int maxPairs;
+
+    // Background precomputation threads. Each popular pair costs a range RAPTOR plus a McRAPTOR per departure on two
+    // days, and this pool competes with the search pool for cores (thread priorities are ignored on Linux), so keep it small
+    @Value("${app.routing.transfer-patterns.threads:1}")
+    private int threads;
+
+    private final RaptorRouter              raptorRouter;
+    private final McRaptorRouter            mcRaptorRouter;
+    private final TransferPatternRepository repository;
+
+    // Searches per stop pair, by stop ID so the counts carry over to the next generation
+    private final ConcurrentHashMap<StopPair, AtomicInteger> queryCounts = new ConcurrentHashMap<>();
+
+    // Precomputations queued or running; the patterns are saved when this drops back to zero
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private volatile PatternTable table = PatternTable.NONE;
+
+    // Loaded at startup and applied to the first table if it is for the same feed and day. Guarded by this.
+    private TransferPatternSnapshot saved;
+
+    private ExecutorService pool;
+
+    public TransferPatternRouter(RaptorRouter raptorRouter, McRaptorRouter mcRaptorRouter, TransferPatternRepository repository) {
+        this.raptorRouter   = raptorRouter;
+        this.mcRaptorRouter = mcRaptorRouter;
+        this.repository     = repository;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        int size = Math.max(1, threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, "transfer-patterns-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        synchronized (this) {
+            saved = repository.load();
+            if (saved != null) {
+                for (TransferPatternSnapshot.Entry entry : saved.entries()) {
+                    queryCounts.put(new StopPair(entry.originStopId(), entry.destinationStopId()), new AtomicInteger(entry.queries()));
+                }
+            }
+        }
+        LOGGER.info("Transfer pattern pool started: {} threads, stop pairs precomputed after {} searches", size, popularAfter);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    // Counts one search from origin to destination (stop indices of the generation's timetables) and queues the pair's
+    // precomputation once it is popular. targetStops / targetEgressSeconds are the stops that count as arrived and the
+    // walk from each to the destination, exactly as the search uses them.
+    public void recordQuery(GraphGeneration generation, int origin, int destination, int[] targetStops, int[] targetEgressSeconds) {
+        if (pool == null || origin < 0 || destination < 0 || targetStops.length == 0) {
+            return;
+        }
+        PatternTable current = tableFor(generation);
+        if (current == null) {
+            return;
+        }
+
+        StopPair      pair  = new StopPair(current.timetable.stopId(origin), current.timetable.stopId(destination));
+        AtomicInteger count = queryCounts.get(pair);
+        if (count == null) {
+            // Map pins snap to all sorts of stops; don't let an endless stream of one-off pairs grow the counts forever
+            if (queryCounts.size() >= maxPairs * 8) return;
+            count = queryCounts.computeIfAbsent(pair, p -> new AtomicInteger());
+        }
+        if (count.incrementAndGet() < popularAfter) {
+            return;
+        }
+
+        long key = key(origin, destination);
+        if (current.patterns.containsKey(key) || current.queued.size() >= maxPairs || !current.queued.add(key)) {
+            return;
+        }
+        pending.incrementAndGet();
+        pool.execute(() -> {
+            try {
+                precompute(current, key, origin, targetStops, targetEgressSeconds);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Transfer pattern precomputation for {} -> {} failed", pair.originStopId(), pair.destinationStopId(), e);
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    save();
+                }
+            }
+        });
+    }
+
+    // Answers a query from the pair's stored patterns, or returns null if there are none (the pair isn't popular yet,
+    // is still being precomputed, or the date isn't covered) so the caller runs the full search. Like the engine it
+    // stands in for, it returns the earliest arrival for CSA, the arrival × transfers Pareto set for RAPTOR, and also
+    // keeps the greener journeys for McRAPTOR; ordered by transfers then arrival.
+    public List<ScheduledPath> route(
+            GraphGeneration generation,
+            DayTimetable    day,
+            RoutingEngine   engine,
+            int             origin,
+            int             destination,
+            int             departureTime,
+            int[]           targetStops,
+            int[]           targetEgressSeconds
+    ) {
+        PatternTable current = table;
+        if (pool == null || current.generation != generation.number()) {
+            return null;
+        }
+        long dayOffset = ChronoUnit.DAYS.between(current.firstDate, day.date());
+        if (dayOffset < 0 || dayOffset >= PATTERN_DAYS) {
+            return null;
+        }
+        int[] patterns = current.patterns.get(key(origin, destination));
+        if (patterns == null) {
+            return null;
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (int start = 0; start < patterns.length; start += patterns[start] + 1) {
+            Candidate candidate = evaluate(day.transitTimetable(), patterns, start + 1, patterns[start],
+                    departureTime, targetStops, targetEgressSeconds);
+            if (candidate != null) {
+                candidates.add(candidate);
+            }
+        }
+
+        List<Candidate> kept = nonDominated(candidates, engine);
+        if (kept.isEmpty()) {
+            return null;
+        }
+        kept.sort(Comparator.comparingInt(Candidate::rides).thenComparingInt(Candidate::total));
+        List<ScheduledPath> paths = new ArrayList<>(kept.size());
+        for (Candidate candidate : kept) {
+            paths.add(new ScheduledPath(candidate.legs(),
+                    Math.max(0, candidate.arrival() - departureTime), Math.max(0, candidate.rides() - 1)));
+        }
+        return paths;
+    }
+
+    // Evaluation
+
+    // Follows one pattern from departureTime: every ride takes the earliest trip of any route pattern serving both of
+    // its stops in order (the greener one on a tie), every walk its footpath. Null if a hop can't be made.
+    private Candidate evaluate(
+            TransitTimetable timetable,
+            int[]            patterns,
+            int              start,
+            int              length,
+            int              departureTime,
+            int[]            targetStops,
+            int[]            targetEgressSeconds
+    ) {
+        List<PathLeg> legs  = new ArrayList<>();
+        int           stop  = patterns[start];
+        int           time  = departureTime;
+        int           rides = 0;
+        double        co2   = 0;
+
+        for (int hop = start + 1; hop < start + length; hop++) {
+            int entry = patterns[hop];
+            if (entry < 0) {
+                int next = ~entry;
+                int walk = walkSeconds(timetable, stop, next);
+                if (walk < 0) return null;
+                legs.add(new PathLeg(timetable.stopId(stop), timetable.stopId(next), null, null,
+                        TransportMode.WALK, time, time + walk));
+                time += walk;
+                stop  = next;
+                continue;
+            }
+
+            int    bestPattern  = -1;
+            int    bestTrip     = -1;
+            int    bestFrom     = -1;
+            int    bestTo       = -1;
+            int    bestArrival  = UNREACHED;
+            double bestEmission = 0;
+            for (int slot = timetable.stopPatternStart(stop); slot < timetable.stopPatternEnd(stop); slot++) {
+                int pattern = timetable.stopPattern(slot);
+                int from    = timetable.stopPatternPosition(slot);
+                int to      = positionAfter(timetable, pattern, from, entry);
+                if (to < 0) continue;
+                int trip = timetable.earliestTrip(pattern, from, time);
+                if (trip < 0) continue;
+
+                int    arrival  = timetable.time(pattern, trip, to);
+                double emission = mcRaptorRouter.gramsPerMeter(timetable.patternMode(pattern))
+                        * (timetable.distanceMeters(pattern, to) - timetable.distanceMeters(pattern, from));
+                if (arrival < bestArrival || (arrival == bestArrival && emission < bestEmission)) {
+                    bestPattern  = pattern;
+                    bestTrip     = trip;
+                    bestFrom     = from;
+                    bestTo       = to;
+                    bestArrival  = arrival;
+                    bestEmission = emission;
+                }
+            }
+            if (bestPattern < 0) return null;
+
+            for (int position = bestFrom; position < bestTo; position++) {
+                legs.add(new PathLeg(
+                        timetable.stopId(timetable.patternStop(bestPattern, position)),
+                        timetable.stopId(timetable.patternStop(bestPattern, position + 1)),
+                        timetable.patternRouteId(bestPattern),
+                        timetable.patternShortName(bestPattern),
+                        timetable.patternMode(bestPattern),
+                        timetable.time(bestPattern, bestTrip, position),
+                        timetable.time(bestPattern, bestTrip, position + 1),
+                        timetable.globalTrip(bestPattern, bestTrip)
+                ));
+            }
+            time  = bestArrival;
+            co2  += bestEmission;
+            stop  = entry;
+            rides++;
+        }
+
+        int egress = egressSeconds(stop, targetStops, targetEgressSeconds);
+        if (egress < 0 || legs.isEmpty()) {
+            return null;
+        }
+        return new Candidate(legs, time, time + egress, rides, co2);
+    }
+
+    // Drops every candidate another one beats: arriving no later (egress included) with no more rides and, for
+    // McRAPTOR, not at least CO2_TOLERANCE_GRAMS more CO2. CSA only ever returns the earliest arrival.
+    private List<Candidate> nonDominated(List<Candidate> candidates, RoutingEngine engine) {
+        candidates.sort(Comparator.comparingInt(Candidate::total)
+                .thenComparingInt(Candidate::rides)
+                .thenComparingDouble(Candidate::co2));
+        List<Candidate> kept = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (engine == RoutingEngine.CSA && !kept.isEmpty()) break;
+            boolean dominated = false;
+            for (Candidate better : kept) {
+                if (better.rides() <= candidate.rides()
+                        && (engine != RoutingEngine.MCRAPTOR || better.co2() < candidate.co2() + CO2_TOLERANCE_GRAMS)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) {
+                kept.add(candidate);
+            }
+        }
+        return kept;
+    }
+
+    // First position after 'from' where the pattern calls at stop, or -1
+    private static int positionAfter(TransitTimetable timetable, int pattern, int from, int stop) {
+        for (int position = from + 1; position < timetable.patternLength(pattern); position++) {
+            if (timetable.patternStop(pattern, position) == stop) return position;
+        }
+        return -1;
+    }
+
+    // Footpath seconds from one stop to another, or -1 if they aren't linked
+    private static int walkSeconds(TransitTimetable timetable, int from, int to) {
+        for (int slot = timetable.footpathStart(from); slot < timetable.footpathEnd(from); slot++) {
+            if (timetable.footpathTarget(slot) == to) return timetable.footpathSeconds(slot);
+        }
+        return -1;
+    }
+
+    // Walk from a target stop to the destination, or -1 if the stop isn't a target
+    private static int egressSeconds(int stop, int[] targetStops, int[] targetEgressSeconds) {
+        int best = -1;
+        for (int i = 0; i < targetStops.length; i++) {
+            if (targetStops[i] == stop && (best < 0 || targetEgressSeconds[i] < best)) {
+                best = targetEgressSeconds[i];
+            }
+        }
+        return best;
+    }
+
+    // Precomputation
+
+    // Profiles the pair over each covered service day and stores the distinct transfer patterns of every journey found
+    private void precompute(PatternTable table, long key, int origin, int[] targetStops, int[] targetEgressSeconds) {
+        if (table != this.table) {
+            return; // superseded by a feed reload or a new day
+        }
+        long started = System.nanoTime();
+        Set<List<Integer>> found = new LinkedHashSet<>();
+        for (int d = 0; d < PATTERN_DAYS; d++) {
+            TransitTimetable timetable = table.dayTimetables.forDate(table.firstDate.plusDays(d)).transitTimetable();
+            for (ScheduledPath path : raptorRouter.routeRange(timetable, origin, 0, PROFILE_SECONDS, targetStops, targetEgressSeconds)) {
+                addPattern(found, timetable, origin, path);
+            }
+            for (int time = 0; time < PROFILE_SECONDS; time += GREEN_SAMPLE_SECONDS) {
+                if (Thread.currentThread().isInterrupted()) return;
+                for (ScheduledPath path : mcRaptorRouter.route(timetable, origin, time, targetStops, targetEgressSeconds)) {
+                    addPattern(found, timetable, origin, path);
+                }
+            }
+        }
+
+        table.patterns.put(key, encode(found));
+        LOGGER.debug("Transfer patterns for {} -> {}: {} patterns in {} ms",
+                table.timetable.stopId(origin), table.timetable.stopId((int) key),
+                found.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Reduces a journey to its transfer pattern. Consecutive hops of one vehicle trip are a single ride; a change
+    // between two trips of the same route (interlined or looping services) stays a transfer even with no wait.
+    private static void addPattern(Set<List<Integer>> found, TransitTimetable timetable, int origin, ScheduledPath path) {
+        List<Integer> pattern      = new ArrayList<>();
+        PathLeg       previousRide = null;
+        pattern.add(origin);
+        for (PathLeg leg : path.legs()) {
+            int stop = timetable.indexOf(leg.toStopId());
+            if (stop < 0) return;
+            if (leg.routeId() == null) {
+                pattern.add(~stop);
+                previousRide = null;
+            } else if (previousRide != null && leg.trip() != PathLeg.NO_TRIP && leg.trip() == previousRide.trip()) {
+                pattern.set(pattern.size() - 1, stop);
+                previousRide = leg;
+            } else {
+                pattern.add(stop);
+                previousRide = leg;
+            }
+        }
+        if (pattern.size() > 1) {
+            found.add(pattern);
+        }
+    }
+
+    private static int[] encode(Set<List<Integer>> patterns) {
+        int size = 0;
+        for (List<Integer> pattern : patterns) {
+            size += pattern.size() + 1;
+        }
+        int[] encoded = new int[size];
+        int   next    = 0;
+        for (List<Integer> pattern : patterns) {
+            encoded[next++] = pattern.size();
+            for (int entry : pattern) {
+                encoded[next++] = entry;
+            }
+        }
+        return encoded;
+    }
+
+    // Tables and persistence
+
+    // The table for the generation and today, replacing the live one when either changed. Null for a request still
+    // running on a generation that has already been replaced.
+    private PatternTable tableFor(GraphGeneration generation) {
+        LocalDate    today   = LocalDate.now();
+        PatternTable current = table;
+        if (current.generation == generation.number() && current.firstDate.equals(today)) {
+            return current;
+        }
+        synchronized (this) {
+            current = table;
+            if (current.generation == generation.number() && current.firstDate.equals(today)) {
+                return current;
+            }
+            if (current.generation > generation.number()) {
+                return null;
+            }
+            PatternTable fresh = new PatternTable(generation, today);
+            if (saved != null) {
+                restore(fresh, saved);
+                saved = null;
+            }
+            table = fresh;
+            return fresh;
+        }
+    }
+
+    // Takes over the saved patterns if they were computed from the same feed for the same days
+    private static void restore(PatternTable table, TransferPatternSnapshot snapshot) {
+        if (snapshot.feedChecksum() != table.feedChecksum || !snapshot.firstDate().equals(table.firstDate)
+                || snapshot.days() != PATTERN_DAYS || snapshot.stopCount() != table.timetable.stopCount()) {
+            return;
+        }
+        for (TransferPatternSnapshot.Entry entry : snapshot.entries()) {
+            int origin      = table.timetable.indexOf(entry.originStopId());
+            int destination = table.timetable.indexOf(entry.destinationStopId());
+            if (entry.patterns() == null || origin < 0 || destination < 0) continue;
+            long key = key(origin, destination);
+            table.patterns.put(key, entry.patterns());
+            table.queued.add(key);
+        }
+        LOGGER.info("Restored transfer patterns for {} stop pairs", table.patterns.size());
+    }
+
+    // Saves the live table's patterns along with every query count. Called when the pool runs idle.
+    private synchronized void save() {
+        PatternTable current = table;
+        if (current.timetable == null) {
+            return;
+        }
+        List<TransferPatternSnapshot.Entry> entries = new ArrayList<>(queryCounts.size());
+        for (Map.Entry<StopPair, AtomicInteger> count : queryCounts.entrySet()) {
+            StopPair pair        = count.getKey();
+            int      origin      = current.timetable.indexOf(pair.originStopId());
+            int      destination = current.timetable.indexOf(pair.destinationStopId());
+            int[]    patterns    = origin >= 0 && destination >= 0 ? current.patterns.get(key(origin, destination)) : null;
+            entries.add(new TransferPatternSnapshot.Entry(pair.originStopId(), pair.destinationStopId(), count.getValue().get(), patterns));
+        }
+        repository.save(new TransferPatternSnapshot(current.feedChecksum, current.firstDate, PATTERN_DAYS,
+                current.timetable.stopCount(), entries));
+    }
+
+    private static long key(int origin, int destination) {
+        return ((long) origin << 32) | (destination & 0xFFFFFFFFL);
+    }
+
+    // The patterns of one generation, computed for the PATTERN_DAYS service days from firstDate
+    private static final class PatternTable {
+        static final PatternTable NONE = new PatternTable();
+
+        final long                           generation;
+        final long                           feedChecksum;
+        final LocalDate                      firstDate;
+        final TransitTimetable               timetable;
+        final DayTimetableCache              dayTimetables;
+        final ConcurrentHashMap<Long, int[]> patterns = new ConcurrentHashMap<>();
+        final Set<Long>                      queued   = ConcurrentHashMap.newKeySet();
+
+        PatternTable(GraphGeneration generation, LocalDate firstDate) {
+            this.generation    = generation.number();
+            this.feedChecksum  = generation.feedChecksum();
+            this.firstDate     = firstDate;
+            this.timetable     = generation.transitTimetable();
+            this.dayTimetables = generation.dayTimetables();
+        }
+
+        private PatternTable() {
+            this.generation    = -1;
+            this.feedChecksum  = 0;
+            this.firstDate     = LocalDate.MIN;
+            this.timetable     = null;
+            this.dayTimetables = null;
+        }
+    }
+
+    private record StopPair(String originStopId, String destinationStopId) {}
+
+    // One evaluated pattern: arrival at its last stop, total including the egress walk, rides and grams of CO2
+    private record Candidate(List<PathLeg> legs, int arrival, int total, int rides, double co2) {}
+}
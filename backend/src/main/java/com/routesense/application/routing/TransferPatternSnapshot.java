@@ -0,0 +1,18 @@
+package com.routesense.application.routing;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// What TransferPatternRouter persists between restarts: how often each (origin, destination) stop pair was searched,
+// and the transfer patterns precomputed for the popular ones. Patterns use the stop numbering of the feed identified
+// by feedChecksum and were computed for the service dates firstDate .. firstDate + days - 1; stopCount guards the numbering.
+public record TransferPatternSnapshot(
+        long        feedChecksum,
+        LocalDate   firstDate,
+        int         days,
+        int         stopCount,
+        List<Entry> entries) {
+
+    // patterns is null when the pair hasn't been precomputed (see TransferPatternRouter for the encoding)
+    public record Entry(String originStopId, String destinationStopId, int queries, int[] patterns) {}
+}
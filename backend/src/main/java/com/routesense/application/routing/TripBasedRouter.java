@@ -0,0 +1,298 @@
+package com.routesense.application.routing;
+
+import com.routesense.domain.model.TransitTimetable;
+import com.routesense.domain.model.TripTransfers;
+import com.routesense.domain.model.TransportMode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+// Trip-based public transit routing (TB) over the route-pattern timetable and its precomputed TripTransfers.
+// The search works on trips rather than stops: a boarded trip is ridden forward by array index through its stop
+// times, and the only places it branches are the transfers precomputed for those stop events. Round n holds the
+// trip segments reachable with n vehicles, so like RAPTOR one query returns the arrival time × transfers Pareto set.
+//
+// Each trip remembers the earliest position it has been boarded at (later trips of its pattern inherit it, since
+// they can never be better), so a segment is only ever scanned from a stop no earlier segment covered.
+// The transfers are built with each DayTimetable (DayTimetable.tripTransfers), so a search never computes them.
+@Component
+public class TripBasedRouter {
+
+    // Round n allows n vehicle trips, so 5 rounds = up to 4 transfers (as in RaptorRouter)
+    private static final int MAX_ROUNDS = 5;
+    private static final int UNREACHED  = Integer.MAX_VALUE;
+
+    // Returns the Pareto-optimal journeys from originStop (ready to board at departureTime) to any of the target stops,
+    // ordered by number of transfers. targetEgressSeconds[i] is the walk from targetStops[i] to the actual destination.
+    // Pass the day's timetable and its transfers (DayTimetable) so only trips running that day are boarded.
+    public List<ScheduledPath> route(
+            TransitTimetable timetable,
+            TripTransfers    transfers,
+            int              originStop,
+            int              departureTime,
+            int[]            targetStops,
+            int[]            targetEgressSeconds
+    ) {
+        if (originStop < 0 || originStop >= timetable.stopCount() || targetStops.length == 0) {
+            return List.of();
+        }
+        return new Search(timetable, transfers, originStop, departureTime, targetStops, targetEgressSeconds).run();
+    }
+
+    // The state of one query. Segments are appended round by round to parallel arrays: the trip, the position it was
+    // boarded at, the end of the stretch still worth scanning (exclusive), and the segment and position it came from.
+    private static final class Search {
+        private final TransitTimetable timetable;
+        private final TripTransfers    transfers;
+        private final int              originStop;
+        private final int              departureTime;
+
+        // Cheapest way to finish from a stop: tailSeconds = walk to the target (tailVia, or none if it is one) + egress
+        private final int[] tailSeconds;
+        private final int[] tailWalk;
+        private final int[] tailVia;
+
+        private final int[] reachedPosition;  // per global trip: earliest position any segment boarded it at
+
+        private int[] segmentPattern  = new int[64];
+        private int[] segmentTrip     = new int[64];
+        private int[] segmentFrom     = new int[64];
+        private int[] segmentTo       = new int[64];
+        private int[] segmentParent   = new int[64];
+        private int[] segmentAlighted = new int[64];  // position in the parent's trip where we got off
+        private int   segmentCount;
+
+        Search(
+                TransitTimetable timetable,
+                TripTransfers    transfers,
+                int              originStop,
+                int              departureTime,
+                int[]            targetStops,
+                int[]            targetEgressSeconds
+        ) {
+            int stopCount = timetable.stopCount();
+            this.timetable     = timetable;
+            this.transfers     = transfers;
+            this.originStop    = originStop;
+            this.departureTime = departureTime;
+
+            int[] egressByStop = new int[stopCount];
+            Arrays.fill(egressByStop, -1);
+            for (int i = 0; i < targetStops.length; i++) {
+                int target = targetStops[i];
+                if (target < 0) continue;
+                egressByStop[target] = egressByStop[target] < 0
+                        ? targetEgressSeconds[i] : Math.min(egressByStop[target], targetEgressSeconds[i]);
+            }
+
+            // Alighting at a target, or one footpath from it (FootpathBuilder keeps only mutual links, so the target's own list will do)
+            tailSeconds = new int[stopCount];
+            tailWalk    = new int[stopCount];
+            tailVia     = new int[stopCount];
+            Arrays.fill(tailSeconds, UNREACHED);
+            Arrays.fill(tailVia, -1);
+            for (int target = 0; target < stopCount; target++) {
+                if (egressByStop[target] >= 0 && egressByStop[target] < tailSeconds[target]) {
+                    tailSeconds[target] = egressByStop[target];
+                    tailWalk[target]    = 0;
+                    tailVia[target]     = -1;
+                }
+            }
+            for (int target : targetStops) {
+                if (target < 0) continue;
+                for (int slot = timetable.footpathStart(target); slot < timetable.footpathEnd(target); slot++) {
+                    int stop  = timetable.footpathTarget(slot);
+                    int total = timetable.footpathSeconds(slot) + egressByStop[target];
+                    if (total < tailSeconds[stop]) {
+                        tailSeconds[stop] = total;
+                        tailWalk[stop]    = timetable.footpathSeconds(slot);
+                        tailVia[stop]     = target;
+                    }
+                }
+            }
+
+            reachedPosition = new int[timetable.globalTripCount()];
+            for (int p = 0; p < timetable.patternCount(); p++) {
+                for (int t = 0; t < timetable.tripCount(p); t++) {
+                    reachedPosition[timetable.globalTrip(p, t)] = timetable.patternLength(p);
+                }
+            }
+        }
+
+        List<ScheduledPath> run() {
+            List<ScheduledPath> paretoSet = new ArrayList<>();
+
+            // Round 0: standing at the origin, or one walk from it
+            int bestTotal = tailSeconds[originStop] == UNREACHED ? UNREACHED : departureTime + tailSeconds[originStop];
+            if (tailVia[originStop] >= 0) {
+                paretoSet.add(walkOnly());
+            }
+
+            // Round 1 starts with the first catchable trip of every pattern at the origin or a footpath neighbour
+            for (int slot = timetable.footpathStart(originStop) - 1; slot < timetable.footpathEnd(originStop); slot++) {
+                boolean atOrigin = slot < timetable.footpathStart(originStop);
+                int     stop     = atOrigin ? originStop : timetable.footpathTarget(slot);
+                int     ready    = atOrigin ? departureTime : departureTime + timetable.footpathSeconds(slot);
+                for (int s = timetable.stopPatternStart(stop); s < timetable.stopPatternEnd(stop); s++) {
+                    int pattern  = timetable.stopPattern(s);
+                    int position = timetable.stopPatternPosition(s);
+                    if (position == timetable.patternLength(pattern) - 1) continue; // last stop, nothing to board
+                    int trip = timetable.earliestTrip(pattern, position, ready);
+                    if (trip >= 0) {
+                        enqueue(pattern, trip, position, -1, -1);
+                    }
+                }
+            }
+
+            int roundStart = 0;
+            for (int round = 1; round <= MAX_ROUNDS && roundStart < segmentCount; round++) {
+                // Cancelled because the request deadline passed — keep what earlier rounds found
+                if (Thread.currentThread().isInterrupted()) break;
+
+                int roundEnd     = segmentCount;
+                int foundSegment = -1;
+                int foundAt      = -1;
+                for (int segment = roundStart; segment < roundEnd; segment++) {
+                    int pattern = segmentPattern[segment];
+                    int trip    = segmentTrip[segment];
+                    for (int position = segmentFrom[segment] + 1; position < segmentTo[segment]; position++) {
+                        int arrival = timetable.time(pattern, trip, position);
+                        if (arrival >= bestTotal) break; // nothing further along this trip can win any more
+
+                        int stop = timetable.patternStop(pattern, position);
+                        if (tailSeconds[stop] != UNREACHED && arrival + tailSeconds[stop] < bestTotal) {
+                            bestTotal    = arrival + tailSeconds[stop];
+                            foundSegment = segment;
+                            foundAt      = position;
+                        }
+                        if (round == MAX_ROUNDS) continue;
+
+                        int event = timetable.stopTimeIndex(pattern, trip, position);
+                        for (int t = transfers.transferStart(event); t < transfers.transferEnd(event); t++) {
+                            enqueue(transfers.targetPattern(t), transfers.targetTrip(t), transfers.targetPosition(t),
+                                    segment, position);
+                        }
+                    }
+                }
+                if (foundSegment >= 0) {
+                    ScheduledPath path = reconstruct(round, foundSegment, foundAt);
+                    if (path != null) {
+                        paretoSet.add(path);
+                    }
+                }
+                roundStart = roundEnd;
+            }
+            return paretoSet;
+        }
+
+        // Queues the trip from 'position' on unless a segment already boarded it there or earlier. The trip is only
+        // scanned up to where an earlier segment took over, and later trips of the pattern are marked the same way.
+        private void enqueue(int pattern, int trip, int position, int parent, int alighted) {
+            int reached = reachedPosition[timetable.globalTrip(pattern, trip)];
+            if (position >= reached) return;
+
+            if (segmentCount == segmentPattern.length) {
+                int capacity = segmentCount * 2;
+                segmentPattern  = Arrays.copyOf(segmentPattern, capacity);
+                segmentTrip     = Arrays.copyOf(segmentTrip, capacity);
+                segmentFrom     = Arrays.copyOf(segmentFrom, capacity);
+                segmentTo       = Arrays.copyOf(segmentTo, capacity);
+                segmentParent   = Arrays.copyOf(segmentParent, capacity);
+                segmentAlighted = Arrays.copyOf(segmentAlighted, capacity);
+            }
+            segmentPattern[segmentCount]  = pattern;
+            segmentTrip[segmentCount]     = trip;
+            segmentFrom[segmentCount]     = position;
+            segmentTo[segmentCount]       = Math.min(reached + 1, timetable.patternLength(pattern));
+            segmentParent[segmentCount]   = parent;
+            segmentAlighted[segmentCount] = alighted;
+            segmentCount++;
+
+            for (int later = trip; later < timetable.tripCount(pattern); later++) {
+                int global = timetable.globalTrip(pattern, later);
+                if (reachedPosition[global] <= position) break;
+                reachedPosition[global] = position;
+            }
+        }
+
+        // The round-0 journey: a walk from the origin straight to a target stop
+        private ScheduledPath walkOnly() {
+            int walk = tailWalk[originStop];
+            return new ScheduledPath(List.of(walkLeg(originStop, tailVia[originStop], departureTime, departureTime + walk)),
+                    walk, 0);
+        }
+
+        // Follows the segments back to the origin, expanding each ride into one PathLeg per hop and adding the walks
+        // between them, so the result has the same shape as the other routers' output.
+        private ScheduledPath reconstruct(int round, int segment, int alightAt) {
+            LinkedList<PathLeg> legs = new LinkedList<>();
+            int stop         = timetable.patternStop(segmentPattern[segment], alightAt);
+            int finalArrival = timetable.time(segmentPattern[segment], segmentTrip[segment], alightAt);
+            if (tailVia[stop] >= 0) {
+                legs.addFirst(walkLeg(stop, tailVia[stop], finalArrival, finalArrival + tailWalk[stop]));
+                finalArrival += tailWalk[stop];
+            }
+
+            int current = segment;
+            int alight  = alightAt;
+            while (current >= 0) {
+                int pattern = segmentPattern[current];
+                int trip    = segmentTrip[current];
+                int board   = segmentFrom[current];
+                for (int position = alight - 1; position >= board; position--) {
+                    legs.addFirst(new PathLeg(
+                            timetable.stopId(timetable.patternStop(pattern, position)),
+                            timetable.stopId(timetable.patternStop(pattern, position + 1)),
+                            timetable.patternRouteId(pattern),
+                            timetable.patternShortName(pattern),
+                            timetable.patternMode(pattern),
+                            timetable.time(pattern, trip, position),
+                            timetable.time(pattern, trip, position + 1),
+                            timetable.globalTrip(pattern, trip)
+                    ));
+                }
+
+                int boardStop = timetable.patternStop(pattern, board);
+                int parent    = segmentParent[current];
+                int fromStop;
+                int walkStart;
+                if (parent >= 0) {
+                    fromStop  = timetable.patternStop(segmentPattern[parent], segmentAlighted[current]);
+                    walkStart = timetable.time(segmentPattern[parent], segmentTrip[parent], segmentAlighted[current]);
+                } else {
+                    fromStop  = originStop;
+                    walkStart = departureTime;
+                }
+                if (fromStop != boardStop) {
+                    int walk = footpathSeconds(fromStop, boardStop);
+                    if (walk < 0) {
+                        return null; // inconsistent segments — should not happen
+                    }
+                    legs.addFirst(walkLeg(fromStop, boardStop, walkStart, walkStart + walk));
+                }
+                alight  = segmentAlighted[current];
+                current = parent;
+            }
+
+            if (legs.isEmpty()) {
+                return null;
+            }
+            return new ScheduledPath(new ArrayList<>(legs), Math.max(0, finalArrival - departureTime), round - 1);
+        }
+
+        private PathLeg walkLeg(int from, int to, int start, int end) {
+            return new PathLeg(timetable.stopId(from), timetable.stopId(to), null, null, TransportMode.WALK, start, end);
+        }
+
+        // Walking time of the footpath from one stop to another, or -1 if there is none
+        private int footpathSeconds(int from, int to) {
+            for (int slot = timetable.footpathStart(from); slot < timetable.footpathEnd(from); slot++) {
+                if (timetable.footpathTarget(slot) == to) return timetable.footpathSeconds(slot);
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.routesense.application.usecase;
+
+import com.routesense.application.port.StopGraphRepository;
+import com.routesense.domain.model.GraphGeneration;
+import org.springframework.stereotype.Service;
+
+// Reports which transit graph generation is currently serving requests, so operators can confirm a feed update went live.
+@Service
+public class GetGraphGenerationUseCase {
+
+    private final StopGraphRepository stopGraphRepository;
+
+    public GetGraphGenerationUseCase(StopGraphRepository stopGraphRepository) {
+        this.stopGraphRepository = stopGraphRepository;
+    }
+
+    public GraphGeneration execute() {
+        return stopGraphRepository.getGraph();
+    }
+}
@@ -0,0 +1,22 @@
+package com.routesense.application.usecase;
+
+import com.routesense.application.port.StopGraphRepository;
+import com.routesense.domain.model.GraphGeneration;
+import org.springframework.stereotype.Service;
+
+// Rebuilds the transit graph from the current GTFS files and swaps it in without a restart.
+// Searches already in flight finish on the generation they started with; new searches see the new one.
+@Service
+public class ReloadGraphUseCase {
+
+    private final StopGraphRepository stopGraphRepository;
+
+    public ReloadGraphUseCase(StopGraphRepository stopGraphRepository) {
+        this.stopGraphRepository = stopGraphRepository;
+    }
+
+    // Returns the generation that is live afterwards — the same one as before if the feed hasn't changed
+    public GraphGeneration execute() {
+        return stopGraphRepository.reload();
+    }
+}
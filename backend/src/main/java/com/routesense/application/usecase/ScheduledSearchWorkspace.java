@@ -0,0 +1,195 @@
+package com.routesense.application.usecase;
+
+import java.util.Arrays;
+
+// Reusable memory for SearchJourneyUseCase's schedule-aware Dijkstra, one per search thread, so a query allocates
+// nothing: every (stop, route) state of the CompactGraph has one label slot in flat primitive arrays, parents are
+// state indices, and the queue is an indexed binary heap of states that lowers a key in place instead of queuing a
+// second entry.
+//
+// Slots are not cleared between searches. Each search gets a new epoch, and a slot whose stamp is older counts as
+// unreached, so starting a search costs nothing however large the state space is.
+final class ScheduledSearchWorkspace {
+
+    static final int NONE = -1;
+
+    private static final ThreadLocal<ScheduledSearchWorkspace> PER_THREAD =
+            ThreadLocal.withInitial(ScheduledSearchWorkspace::new);
+
+    // heapPosition of a state that has left the queue for good
+    private static final int SETTLED = -2;
+
+    private int   epoch;
+    private int[] stamp = new int[0];
+
+    // Label of each state, valid while stamp[state] == epoch
+    private int[]     stop        = new int[0];
+    private int[]     route       = new int[0];
+    private int[]     arrivalTime = new int[0];
+    private int[]     transfers   = new int[0];
+    private int[]     score       = new int[0];
+    private int[]     estimate    = new int[0];  // score + lower bound to the goal; the heap key
+    private int[]     parent      = new int[0];  // state we came from, NONE at the origin
+    private int[]     connection  = new int[0];  // CompactGraph connection ridden here, NONE for walks and the origin
+    private boolean[] walkedHere  = new boolean[0];
+
+    // Indexed min-heap over estimate; heapPosition[state] is the state's slot, NONE if never queued, SETTLED once popped
+    private int[] heap         = new int[0];
+    private int[] heapPosition = new int[0];
+    private int   heapSize;
+
+    private ScheduledSearchWorkspace() {}
+
+    // The calling thread's workspace, emptied for a search over stateCount states
+    static ScheduledSearchWorkspace begin(int stateCount) {
+        ScheduledSearchWorkspace workspace = PER_THREAD.get();
+        workspace.reset(stateCount);
+        return workspace;
+    }
+
+    private void reset(int stateCount) {
+        if (stamp.length != stateCount) {
+            // First search on this thread, or a feed reload changed the state space
+            stamp        = new int[stateCount];
+            stop         = new int[stateCount];
+            route        = new int[stateCount];
+            arrivalTime  = new int[stateCount];
+            transfers    = new int[stateCount];
+            score        = new int[stateCount];
+            estimate     = new int[stateCount];
+            parent       = new int[stateCount];
+            connection   = new int[stateCount];
+            walkedHere   = new boolean[stateCount];
+            heap         = new int[stateCount];
+            heapPosition = new int[stateCount];
+            epoch        = 0;
+        }
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        heapSize = 0;
+    }
+
+    // Whether a label with this score would beat the state's current one. A settled state is final: with a
+    // consistent lower bound nothing popped later can reach it with a lower score.
+    boolean improves(int state, int newScore) {
+        if (stamp[state] != epoch) return true;
+        return heapPosition[state] != SETTLED && newScore < score[state];
+    }
+
+    // Sets the state's label and queues it, or moves it up the queue if it was already waiting
+    void label(
+            int     state,
+            int     stopIndex,
+            int     routeIndex,
+            int     arrival,
+            int     transferCount,
+            int     newScore,
+            int     newEstimate,
+            int     parentState,
+            int     connectionIndex,
+            boolean walked
+    ) {
+        if (stamp[state] != epoch) {
+            stamp[state]        = epoch;
+            heapPosition[state] = NONE;
+        }
+        stop[state]        = stopIndex;
+        route[state]       = routeIndex;
+        arrivalTime[state] = arrival;
+        transfers[state]   = transferCount;
+        score[state]       = newScore;
+        estimate[state]    = newEstimate;
+        parent[state]      = parentState;
+        connection[state]  = connectionIndex;
+        walkedHere[state]  = walked;
+
+        int position = heapPosition[state];
+        if (position == NONE) {
+            position = heapSize++;
+        }
+        siftUp(state, position);
+    }
+
+    boolean isEmpty() {
+        return heapSize == 0;
+    }
+
+    // Removes and returns the queued state with the lowest estimate; it is settled from then on
+    int poll() {
+        int top = heap[0];
+        heapPosition[top] = SETTLED;
+        heapSize--;
+        if (heapSize > 0) {
+            siftDown(heap[heapSize], 0);
+        }
+        return top;
+    }
+
+    int stop(int state) {
+        return stop[state];
+    }
+
+    int route(int state) {
+        return route[state];
+    }
+
+    int arrivalTime(int state) {
+        return arrivalTime[state];
+    }
+
+    int transfers(int state) {
+        return transfers[state];
+    }
+
+    int score(int state) {
+        return score[state];
+    }
+
+    int estimate(int state) {
+        return estimate[state];
+    }
+
+    int parent(int state) {
+        return parent[state];
+    }
+
+    int connection(int state) {
+        return connection[state];
+    }
+
+    boolean walkedHere(int state) {
+        return walkedHere[state];
+    }
+
+    private void siftUp(int state, int position) {
+        int key = estimate[state];
+        while (position > 0) {
+            int parentPosition = (position - 1) >>> 1;
+            int above          = heap[parentPosition];
+            if (estimate[above] <= key) break;
+            heap[position]      = above;
+            heapPosition[above] = position;
+            position = parentPosition;
+        }
+        heap[position]      = state;
+        heapPosition[state] = position;
+    }
+
+    private void siftDown(int state, int position) {
+        int key = estimate[state];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && estimate[heap[child + 1]] < estimate[heap[child]]) child++;
+            int below = heap[child];
+            if (estimate[below] >= key) break;
+            heap[position]      = below;
+            heapPosition[below] = position;
+            position = child;
+        }
+        heap[position]      = state;
+        heapPosition[state] = position;
+    }
+}
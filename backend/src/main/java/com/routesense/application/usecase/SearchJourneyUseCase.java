@@ -1,36 +1,56 @@
 package com.routesense.application.usecase;
 
 import com.routesense.application.port.StopGraphRepository;
+import com.routesense.application.routing.ConnectionScanRouter;
+import com.routesense.application.routing.McRaptorRouter;
+import com.routesense.application.routing.ParallelSearchExecutor;
+import com.routesense.application.routing.PathLeg;
+import com.routesense.application.routing.RaptorRouter;
+import com.routesense.application.routing.RoutingEngine;
+import com.routesense.application.routing.ScheduledPath;
+import com.routesense.application.routing.TransferPatternRouter;
+import com.routesense.application.routing.TripBasedRouter;
 import com.routesense.application.service.EmissionsCalculator;
-import com.routesense.domain.model.FootpathEdge;
+import com.routesense.domain.model.CompactGraph;
+import com.routesense.domain.model.ContractionHierarchy;
+import com.routesense.domain.model.DayTimetable;
+import com.routesense.domain.model.EdgeWeightProfile;
+import com.routesense.domain.model.GraphGeneration;
 import com.routesense.domain.model.JourneyLeg;
 import com.routesense.domain.model.JourneyOption;
 import com.routesense.domain.model.JourneyOptionType;
 import com.routesense.domain.model.JourneySearchResult;
+import com.routesense.domain.model.LandmarkLowerBounds;
 import com.routesense.domain.model.ScheduledConnection;
 import com.routesense.domain.model.Stop;
 import com.routesense.domain.model.StopEdge;
+import com.routesense.domain.model.StopSpatialIndex;
+import com.routesense.domain.model.TransitTimetable;
 import com.routesense.domain.model.TransportMode;
 import com.routesense.infrastructure.routing.OpenRouteServiceClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
-// The core of RouteSense — takes an origin and destination, runs schedule-aware Dijkstra over the GTFS
-// graph, scores the options on time/transfers/CO2, and returns ranked results with a recommendation.
+// The core of RouteSense — takes an origin and destination, runs schedule-aware routing (McRAPTOR by default,
+// RAPTOR, CSA, or the original Dijkstra) over the GTFS graph, scores the options on time/transfers/CO2, and returns
+// ranked results with a recommendation.
 
 @Component
 public class SearchJourneyUseCase {
@@ -46,53 +66,87 @@ public class SearchJourneyUseCase {
     private static final int TRANSFER_SCORE_PENALTY = 3600;
 
     // 10-minute penalty per transfer in the fastest variant — ensures a direct bus
-    // is always preferred unless a multi-transfer route saves at least 10 min per transfer
+    // is always preferred unless a multi-transfer route saves at least 10 min per transfer.
+    // RAPTOR uses the same penalty to pick the "later" alternative from its Pareto set.
     private static final int FASTEST_TRANSFER_PENALTY_SECONDS = 600;
 
-    // Fallback Dijkstra constants (used only when schedule data is empty)
-    private static final int    BALANCED_TRANSFER_PENALTY_SECONDS = 300;
+    // Fallback search constants (used only when schedule data is empty)
     private static final double WALK_SPEED_KMH = 4.8;
     private static final int    ROUTING_CANDIDATE_LIMIT = 8;
     private static final double ROUTING_CANDIDATE_RADIUS_KM= 20.0;
 
+    // Longest departure window a profile query may ask for
+    private static final int MAX_DEPARTURE_WINDOW_MINUTES = 240;
+
     
     private final StopGraphRepository      stopGraphRepository;
     private final EmissionsCalculator      emissionsCalculator;
     private final OpenRouteServiceClient   openRouteServiceClient;
-
-    // Spring injects these three — the GTFS graph, the CO2 calculator, and the car routing API client
+    private final RaptorRouter             raptorRouter;
+    private final McRaptorRouter           mcRaptorRouter;
+    private final TripBasedRouter          tripBasedRouter;
+    private final ConnectionScanRouter     connectionScanRouter;
+    private final TransferPatternRouter    transferPatternRouter;
+    private final ParallelSearchExecutor   searchExecutor;
+
+    // Which schedule-aware router to use: "mcraptor" (default), "raptor", "trip-based", "csa" or "dijkstra"
+    @Value("${app.routing.engine:mcraptor}")
+    private String routingEngine;
+
+    // Spring injects these — the GTFS graph, the CO2 calculator, the car routing API client, the timetable routers,
+    // the transfer patterns of popular journeys, and the thread pool the candidate searches fan out on
     public SearchJourneyUseCase(
             StopGraphRepository    stopGraphRepository,
             EmissionsCalculator    emissionsCalculator,
-            OpenRouteServiceClient openRouteServiceClient
+            OpenRouteServiceClient openRouteServiceClient,
+            RaptorRouter           raptorRouter,
+            McRaptorRouter         mcRaptorRouter,
+            TripBasedRouter        tripBasedRouter,
+            ConnectionScanRouter   connectionScanRouter,
+            TransferPatternRouter  transferPatternRouter,
+            ParallelSearchExecutor searchExecutor
     ) {
         this.stopGraphRepository    = stopGraphRepository;
         this.emissionsCalculator    = emissionsCalculator;
         this.openRouteServiceClient = openRouteServiceClient;
+        this.raptorRouter           = raptorRouter;
+        this.mcRaptorRouter         = mcRaptorRouter;
+        this.tripBasedRouter        = tripBasedRouter;
+        this.connectionScanRouter   = connectionScanRouter;
+        this.transferPatternRouter  = transferPatternRouter;
+        this.searchExecutor         = searchExecutor;
     }
 
     // Main entry point — called by JourneyController when the user hits "Go".
     // Accepts either a stop ID (typed name) or lat/lon coordinates (map pin) for each end of the journey.
+    // serviceDate picks which GTFS services run (calendar.txt / calendar_dates.txt); null means today.
+    // departureWindowMinutes asks for every worthwhile departure in that window after the departure time (a profile
+    // query) instead of the best journeys plus one later alternative; it is ignored for arrive-by searches.
     public JourneySearchResult execute(
-            String  originStopId,
-            Double  originLat,
-            Double  originLon,
-            String  destinationStopId,
-            Double  destinationLat,
-            Double  destinationLon,
-            Integer departureTimeSeconds,
-            Integer arriveBySeconds
+            String    originStopId,
+            Double    originLat,
+            Double    originLon,
+            String    destinationStopId,
+            Double    destinationLat,
+            Double    destinationLon,
+            Integer   departureTimeSeconds,
+            Integer   arriveBySeconds,
+            Integer   departureWindowMinutes,
+            LocalDate serviceDate
     ) {
-        Map<String, Stop>stops= stopGraphRepository.getStops();// for stop details and coordinates
-        Map<String, List<StopEdge>>adjacencyList=stopGraphRepository.getAdjacencyList();// for Dijkstra and nearby stop search
-        Map<String, List<ScheduledConnection>> schedule = stopGraphRepository.getSchedule();// for schedule-aware Dijkstra
-        Map<String, String>routeShortNames = stopGraphRepository.getRouteShortNames();// for display purposes only, not needed for routing logic
-        Map<String, List<double[]>>routeShapes = stopGraphRepository.getRouteShapes();// for map display of routes
-        Map<String, List<FootpathEdge>>footpaths = stopGraphRepository.getFootpaths();// for walking transfers between nearby stops
+        // Everything below comes from one graph generation, so a feed reload mid-search can't mix two timetables
+        GraphGeneration generation = stopGraphRepository.getGraph();
+        Map<String, Stop>stops= generation.stops();// for stop details and coordinates
+        Map<String, List<StopEdge>>adjacencyList=generation.adjacencyList();// for Dijkstra and nearby stop search
+        Map<String, List<ScheduledConnection>> schedule = generation.scheduleByStop();// for schedule-aware Dijkstra
+        Map<String, String>routeShortNames = generation.routeShortNames();// for display purposes only, not needed for routing logic
+        Map<String, List<double[]>>routeShapes = generation.routeShapes();// for map display of routes
+        CompactGraph graph = generation.compactGraph();// int-indexed edges and footpaths for the fallback Dijkstra
+        StopSpatialIndex spatialIndex = generation.stopSpatialIndex();// grid index for nearby / nearest stop lookups
 
         // Map pin → find nearby stop(s) to use as routing targets; typed stop ID → use directly
         List<String> destCandidates = resolveDestinationCandidates(
-                destinationStopId, destinationLat, destinationLon, stops, schedule);
+                destinationStopId, destinationLat, destinationLon, spatialIndex);
 
         if (destCandidates.isEmpty()) {
             return new JourneySearchResult(List.of(), 0.0);
@@ -105,10 +159,17 @@ public class SearchJourneyUseCase {
         // When "arrive by" is set, start searching 3 hours before the target so we find real options.
         // Otherwise fall back to the explicit departure time or the current time.
         int startTime = computeStartTime(departureTimeSeconds, arriveBySeconds);
+        Integer windowSeconds = arriveBySeconds == null && departureWindowMinutes != null && departureWindowMinutes > 0
+                ? Math.min(departureWindowMinutes, MAX_DEPARTURE_WINDOW_MINUTES) * 60 : null;
+
+        // Timetables holding only the trips running on the travel date (RAPTOR patterns, CSA connections and the
+        // Dijkstra schedule), with the next day's trips after 24:00 so a late search rolls over into the next morning
+        LocalDate    travelDate = serviceDate != null ? serviceDate : LocalDate.now();
+        DayTimetable day        = generation.dayTimetables().forDate(travelDate);
 
         //Resolve effective origin(s)
         List<StopDistance> originCandidates = resolveOriginCandidates(
-                originStopId, originLat, originLon, stops, adjacencyList, schedule);
+                originStopId, originLat, originLon, spatialIndex);
         if (originCandidates.isEmpty()) {
             return new JourneySearchResult(List.of(), 0.0);
         }
@@ -131,15 +192,16 @@ public class SearchJourneyUseCase {
         Set<String>         seenSignatures = new HashSet<>();
 
         if (!schedule.isEmpty()) {
-            runScheduledSearch(originCandidates, destCandidates, schedule, stops,
-                    footpaths, adjacencyList, startTime, routeShapes, optionsToScore, seenSignatures);
+            runScheduledSearch(originCandidates, destCandidates, stops, spatialIndex,
+                    generation, day, startTime, arriveBySeconds, windowSeconds, routeShapes, optionsToScore, seenSignatures);
         }
 
-        // If schedule-aware search found nothing (e.g. no more departures today), fall back to
+        // If schedule-aware search found nothing (e.g. no service connects the two stops within the next day), fall back to
         // the time-unaware Dijkstra so the user always gets route options.
-        if (optionsToScore.isEmpty()) {
+        boolean fallback = optionsToScore.isEmpty();
+        if (fallback) {
             runFallbackDijkstra(effectiveOriginStopId, destinationStopId,
-                    stops, adjacencyList, routeShortNames, extraOriginWalkSeconds, optionsToScore, seenSignatures);
+                    stops, adjacencyList, graph, generation.fallbackHierarchies(), spatialIndex, routeShortNames, extraOriginWalkSeconds, optionsToScore, seenSignatures);
         }
 
         List<JourneyOption> scoredPublicOptions = new ArrayList<>(scoreAndRecommend(optionsToScore));
@@ -147,9 +209,11 @@ public class SearchJourneyUseCase {
                 .thenComparingInt(JourneyOption::getTransfers)
                 .thenComparingDouble(JourneyOption::getCo2Grams));
 
-        // When the user asked to "arrive by" a specific time, discard any routes whose estimated
-        // arrival time (startTime + duration) would be after that target.
-        if (arriveBySeconds != null) {
+        // When the user asked to "arrive by" a specific time, discard fallback routes whose estimated
+        // arrival time (startTime + duration) would be after that target, i.e. keep them to the 3-hour arrive-by window.
+        // Scheduled options are left alone: searchFrom already dropped those arriving late, measured from the
+        // backward scan's latest departure, so a valid journey longer than 3 hours is not lost here.
+        if (arriveBySeconds != null && fallback) {
             final int deadline = arriveBySeconds;
             final int base     = startTime;
             scoredPublicOptions = scoredPublicOptions.stream()
@@ -191,8 +255,7 @@ public class SearchJourneyUseCase {
             String destinationStopId,
             Double destinationLat,
             Double destinationLon,
-            Map<String, Stop> stops,
-            Map<String, List<ScheduledConnection>> schedule
+            StopSpatialIndex spatialIndex
     ) {
         // Build a list of destination stop IDs to try. When coordinates are given we try:
         //   1. The nearest scheduled stop within 600 m (a nearby bus stop the user might mean)
@@ -203,15 +266,15 @@ public class SearchJourneyUseCase {
         List<String> destCandidates = new ArrayList<>();
         if (destinationLat != null && destinationLon != null && (destinationStopId == null || destinationStopId.isBlank())) {
             // Nearest scheduled bus stop within 600 m
-            List<StopDistance> nearbyDest = findNearbyStops(destinationLat, destinationLon, 0.6, stops).stream()
-                    .filter(sd -> !schedule.getOrDefault(sd.stopId(), List.of()).isEmpty())
-                    .collect(Collectors.toList());
-            if (!nearbyDest.isEmpty()) {
-                destCandidates.add(nearbyDest.get(0).stopId());
+            StopDistance nearbyDest = findNearestStop(
+                    destinationLat, destinationLon, 0.6, StopSpatialIndex.HAS_SCHEDULE, spatialIndex);
+            if (nearbyDest != null) {
+                destCandidates.add(nearbyDest.stopId());
             }
 
             // Always also try the nearest train station within 20 km
-            StopDistance nearestTrainDest = findNearestTrainStop(destinationLat, destinationLon, stops, schedule, 20.0);
+            StopDistance nearestTrainDest = findNearestStop(
+                    destinationLat, destinationLon, 20.0, StopSpatialIndex.HAS_TRAIN, spatialIndex);
             if (nearestTrainDest != null && !destCandidates.contains(nearestTrainDest.stopId())) {
                 destCandidates.add(nearestTrainDest.stopId());
             }
@@ -219,14 +282,13 @@ public class SearchJourneyUseCase {
             // If no stop was found within a walkable distance (bus within 600 m or train within 2 km),
             // also add the nearest scheduled stop within 20 km. This handles pins in rural areas where
             // a distant train station was already added but the nearest bus stop is closer and more useful.
-            boolean hasWalkableDest = !nearbyDest.isEmpty() ||
+            boolean hasWalkableDest = nearbyDest != null ||
                     (nearestTrainDest != null && nearestTrainDest.distanceKm() <= 2.0);
             if (!hasWalkableDest) {
-                List<StopDistance> farDest = findNearbyStops(destinationLat, destinationLon, 20.0, stops).stream()
-                        .filter(sd -> !schedule.getOrDefault(sd.stopId(), List.of()).isEmpty())
-                        .collect(Collectors.toList());
-                if (!farDest.isEmpty() && !destCandidates.contains(farDest.get(0).stopId())) {
-                    destCandidates.add(farDest.get(0).stopId());
+                StopDistance farDest = findNearestStop(
+                        destinationLat, destinationLon, 20.0, StopSpatialIndex.HAS_SCHEDULE, spatialIndex);
+                if (farDest != null && !destCandidates.contains(farDest.stopId())) {
+                    destCandidates.add(farDest.stopId());
                 }
             }
         } else {
@@ -238,7 +300,8 @@ public class SearchJourneyUseCase {
     }
 
     // Returns the time (in seconds-since-midnight) to start the Dijkstra search from.
-    // When "arrive by" is set, we search from 3 hours before that target.
+    // When "arrive by" is set, this is 3 hours before that target — the window the final filter allows fallback
+    // routes; the scheduled search starts from the latest departure that still makes the deadline instead.
     // Otherwise we use the explicit departure time or the current time.
     private int computeStartTime(Integer departureTimeSeconds, Integer arriveBySeconds) {
         if (arriveBySeconds != null) {
@@ -258,9 +321,7 @@ public class SearchJourneyUseCase {
             String originStopId,
             Double originLat,
             Double originLon,
-            Map<String, Stop> stops,
-            Map<String, List<StopEdge>> adjacencyList,
-            Map<String, List<ScheduledConnection>> schedule
+            StopSpatialIndex spatialIndex
     ) {
         // When the user drops a map pin, consider ALL stops within 600 m as potential origins
         // (not just the single nearest). This is essential because two stops at the same
@@ -269,13 +330,15 @@ public class SearchJourneyUseCase {
             // Use the 3 nearest stops within 600 m.  Limiting to 3 avoids generating a flood of
             // near-identical options when many stops of the same bus line are nearby (e.g. Bus 405
             // passes through four stops all within 400 m of the pin).
-            List<StopDistance> nearby = findNearbyConnectedStops(originLat, originLon, 0.6, stops, adjacencyList);
-            List<StopDistance> candidates = new ArrayList<>(nearby.size() > 3 ? nearby.subList(0, 3) : nearby);
+            List<StopDistance> nearby = findNearestStops(
+                    originLat, originLon, 3, 0.6, StopSpatialIndex.HAS_OUTGOING_EDGES, spatialIndex);
+            List<StopDistance> candidates = new ArrayList<>(nearby);
 
             // Also look for the nearest train station within 5 km — train stations are typically
             // further from residential pins but still reachable on foot.  Only add if not already
             // in the candidate list (avoids duplicate when the user pins right next to a station).
-            StopDistance nearestTrain = findNearestTrainStop(originLat, originLon, stops, schedule, 20.0);
+            StopDistance nearestTrain = findNearestStop(
+                    originLat, originLon, 20.0, StopSpatialIndex.HAS_TRAIN, spatialIndex);
             if (nearestTrain != null) {
                 boolean alreadyPresent = candidates.stream()
                         .anyMatch(c -> c.stopId().equals(nearestTrain.stopId()));
@@ -289,11 +352,12 @@ public class SearchJourneyUseCase {
             boolean hasWalkableOrigin = !nearby.isEmpty() ||
                     (nearestTrain != null && nearestTrain.distanceKm() <= 2.0);
             if (!hasWalkableOrigin) {
-                List<StopDistance> farOrigin = findNearbyConnectedStops(originLat, originLon, 20.0, stops, adjacencyList);
-                if (!farOrigin.isEmpty()) {
-                    boolean alreadyPresent = candidates.stream().anyMatch(c -> c.stopId().equals(farOrigin.get(0).stopId()));
+                StopDistance farOrigin = findNearestStop(
+                        originLat, originLon, 20.0, StopSpatialIndex.HAS_OUTGOING_EDGES, spatialIndex);
+                if (farOrigin != null) {
+                    boolean alreadyPresent = candidates.stream().anyMatch(c -> c.stopId().equals(farOrigin.stopId()));
                     if (!alreadyPresent) {
-                        candidates.add(farOrigin.get(0));
+                        candidates.add(farOrigin);
                     }
                 }
             }
@@ -308,74 +372,252 @@ public class SearchJourneyUseCase {
         }
     }
 
-    // Runs the schedule-aware Dijkstra for every combination of origin and destination candidates.
-    // For each pair, we try three variants: fastest, fewest-transfers, and 30 min later.
-    // If it is late at night, we also retry from the start of the next day.
-    // Results are added to optionsToScore, deduplicated by signature.
+    // Runs the schedule-aware search for every combination of origin and destination candidates.
+    // RAPTOR returns the whole arrival time × transfers Pareto set in one pass, plus one pass 30 min later;
+    // McRAPTOR does the same with CO2 as a third criterion.
+    // CSA returns the earliest arrival, plus the earliest arrival 30 min later.
+    // The Dijkstra engine instead tries three variants: fastest, fewest-transfers, and 30 min later.
+    // The day's timetable continues past midnight into the next day's services, so a late search needs no retry.
+    // For "arrive by" a backward connection scan first finds, per origin, the latest departure that still makes the
+    // deadline; every variant then searches forward from there (the extra variant 30 min earlier instead of later),
+    // and paths arriving after the deadline are dropped.
+    // With a departure window, each candidate pair instead runs one RAPTOR profile query over the window, whatever the
+    // engine: it returns every departure worth taking (one not beaten by a later one) in a single pass.
+    // Every (destination, origin, variant) search is independent, so they all run in parallel on the search pool;
+    // results are then added to optionsToScore in candidate order, deduplicated by signature, exactly as a serial run would.
     private void runScheduledSearch(
             List<StopDistance> originCandidates,
             List<String> destCandidates,
-            Map<String, List<ScheduledConnection>> schedule,
             Map<String, Stop> stops,
-            Map<String, List<FootpathEdge>> footpaths,
-            Map<String, List<StopEdge>> adjacencyList,
+            StopSpatialIndex spatialIndex,
+            GraphGeneration generation,
+            DayTimetable day,
             int startTime,
+            Integer arriveBySeconds,
+            Integer windowSeconds,
             Map<String, List<double[]>> routeShapes,
             List<JourneyOption> optionsToScore,
             Set<String> seenSignatures
     ) {
+        RoutingEngine engine = RoutingEngine.fromProperty(routingEngine);
+        List<SearchTask> tasks = new ArrayList<>();
+        int alternativeOffset = arriveBySeconds != null ? -1800 : 1800;
+
         // Try each destination candidate in order; collect routes from whichever produce results.
         for (String destId : destCandidates) {
-            String scheduleDest = resolveScheduleStop(destId, schedule, stops, adjacencyList);
+            String scheduleDest = resolveScheduleStop(destId, spatialIndex);
             if (scheduleDest == null) continue;
 
+            // RAPTOR/CSA (and backward scan) targets: the destination stop itself plus every stop within walking distance of it
+            TargetStops targets = engine != RoutingEngine.DIJKSTRA || arriveBySeconds != null || windowSeconds != null
+                    ? buildTargetStops(scheduleDest, spatialIndex, day.transitTimetable()) : null;
+            LandmarkLowerBounds.Goal goal = engine == RoutingEngine.DIJKSTRA
+                    ? buildDijkstraGoal(scheduleDest, spatialIndex, day.compactGraph(), generation.landmarkBounds()) : null;
+
             // Try every nearby origin stop so we don't miss buses on the opposite side of the road.
             for (StopDistance candidate : originCandidates) {
-                int walkSecs     = walkingSeconds(candidate.distanceKm());
-                int boardingTime = startTime + walkSecs;
+                int walkSecs = walkingSeconds(candidate.distanceKm());
 
-                String scheduleOrigin = resolveScheduleStop(candidate.stopId(), schedule, stops, adjacencyList);
+                String scheduleOrigin = resolveScheduleStop(candidate.stopId(), spatialIndex);
                 if (scheduleOrigin == null) continue;
 
-                // Primary path: real departure times from GTFS schedule
-                ScheduledPath fastest = scheduleAwareDijkstra(
-                        scheduleOrigin, scheduleDest, schedule, stops, footpaths, boardingTime, FASTEST_TRANSFER_PENALTY_SECONDS);
-                ScheduledPath fewestTransfers = scheduleAwareDijkstra(
-                        scheduleOrigin, scheduleDest, schedule, stops, footpaths, boardingTime, TRANSFER_SCORE_PENALTY);
-                // 3rd option: next bus 30 minutes later (catches a different service)
-                ScheduledPath laterOption = scheduleAwareDijkstra(
-                        scheduleOrigin, scheduleDest, schedule, stops, footpaths, boardingTime + 1800, FASTEST_TRANSFER_PENALTY_SECONDS);
-                // If no buses found AND it is late night (after 21:00), retry from next morning.
-                boolean isLateNight = boardingTime > 21 * 3600;
-                if (fastest == null && isLateNight) {
-                    fastest = scheduleAwareDijkstra(scheduleOrigin, scheduleDest, schedule, stops, footpaths, 0, FASTEST_TRANSFER_PENALTY_SECONDS);
+                int origin      = day.transitTimetable().indexOf(scheduleOrigin);
+                int destination = day.transitTimetable().indexOf(scheduleDest);
+                BoardingTime boarding;
+                if (arriveBySeconds != null) {
+                    if (origin < 0 || targets.stops().length == 0) continue;
+                    int deadline = arriveBySeconds;
+                    boarding = new BoardingTime(() -> connectionScanRouter.latestDeparture(day.transitTimetable(),
+                            day.connectionTimetable(), origin, deadline, targets.stops(), targets.egressSeconds()));
+                } else {
+                    int boardingTime = startTime + walkSecs;
+                    boarding = new BoardingTime(() -> boardingTime);
                 }
-                if (fewestTransfers == null && isLateNight) {
-                    fewestTransfers = scheduleAwareDijkstra(
-                            scheduleOrigin, scheduleDest, schedule, stops, footpaths, 0, TRANSFER_SCORE_PENALTY);
+
+                if (windowSeconds != null) {
+                    if (origin < 0 || targets.stops().length == 0) continue;
+
+                    // Profile query: every non-dominated departure in the window
+                    int window = windowSeconds;
+                    tasks.add(new SearchTask(destId, walkSecs, () -> searchFrom(boarding, 0, null,
+                            from -> raptorRouter.routeRange(day.transitTimetable(), origin, from, from + window,
+                                    targets.stops(), targets.egressSeconds()))));
+                    continue;
                 }
-                if (laterOption == null && isLateNight) {
-                    laterOption = scheduleAwareDijkstra(
-                            scheduleOrigin, scheduleDest, schedule, stops, footpaths, 3600, FASTEST_TRANSFER_PENALTY_SECONDS);
+
+                if (engine != RoutingEngine.DIJKSTRA) {
+                    if (origin < 0 || targets.stops().length == 0) continue;
+                    transferPatternRouter.recordQuery(generation, origin, destination, targets.stops(), targets.egressSeconds());
+
+                    // Primary pass (Pareto set for RAPTOR, earliest arrival for CSA), then the service 30 minutes later (earlier for arrive-by)
+                    tasks.add(new SearchTask(destId, walkSecs, () -> searchFrom(boarding, 0, arriveBySeconds,
+                            from -> routeOnTimetable(engine, generation, day, origin, destination, from, targets))));
+                    tasks.add(new SearchTask(destId, walkSecs, () -> bestAlternativeOption(searchFrom(boarding, alternativeOffset, arriveBySeconds,
+                            from -> routeOnTimetable(engine, generation, day, origin, destination, from, targets)))));
+                    continue;
                 }
 
-                addScheduledOption(optionsToScore, seenSignatures, fastest,        stops, walkSecs, destId, routeShapes);
-                addScheduledOption(optionsToScore, seenSignatures, fewestTransfers, stops, walkSecs, destId, routeShapes);
-                addScheduledOption(optionsToScore, seenSignatures, laterOption,     stops, walkSecs, destId, routeShapes);
+                // Primary path: real departure times from GTFS schedule
+                tasks.add(new SearchTask(destId, walkSecs, () -> searchFrom(boarding, 0, arriveBySeconds,
+                        from -> searchDijkstra(scheduleOrigin, scheduleDest, goal, day, from, FASTEST_TRANSFER_PENALTY_SECONDS))));
+                tasks.add(new SearchTask(destId, walkSecs, () -> searchFrom(boarding, 0, arriveBySeconds,
+                        from -> searchDijkstra(scheduleOrigin, scheduleDest, goal, day, from, TRANSFER_SCORE_PENALTY))));
+                // 3rd option: next bus 30 minutes later, or earlier for arrive-by (catches a different service)
+                tasks.add(new SearchTask(destId, walkSecs, () -> searchFrom(boarding, alternativeOffset, arriveBySeconds,
+                        from -> searchDijkstra(scheduleOrigin, scheduleDest, goal, day, from, FASTEST_TRANSFER_PENALTY_SECONDS))));
+            }
+        }
+
+        List<List<ScheduledPath>> results = searchExecutor.invokeAll(tasks);
+        for (int i = 0; i < tasks.size(); i++) {
+            List<ScheduledPath> paths = results.get(i);
+            if (paths == null) continue; // failed or missed the deadline
+            SearchTask task = tasks.get(i);
+            for (ScheduledPath path : paths) {
+                addScheduledOption(optionsToScore, seenSignatures, path, stops, task.walkSeconds(), task.destId(), routeShapes);
             }
         }
     }
 
+    // Runs one search variant from the candidate's boarding time shifted by offsetSeconds. For arrive-by, nothing is
+    // searched when no departure makes the deadline, and paths arriving after it are dropped.
+    private List<ScheduledPath> searchFrom(
+            BoardingTime                     boarding,
+            int                              offsetSeconds,
+            Integer                          arriveBySeconds,
+            IntFunction<List<ScheduledPath>> search
+    ) {
+        int boardingTime = boarding.get();
+        if (boardingTime < 0) return List.of();
+
+        int from = Math.max(0, boardingTime + offsetSeconds);
+        List<ScheduledPath> paths = search.apply(from);
+        if (arriveBySeconds == null) return paths;
+        return paths.stream()
+                .filter(p -> from + p.totalDurationSeconds() <= arriveBySeconds)
+                .collect(Collectors.toList());
+    }
+
+    // One schedule-aware Dijkstra variant
+    private List<ScheduledPath> searchDijkstra(
+            String                   scheduleOrigin,
+            String                   scheduleDest,
+            LandmarkLowerBounds.Goal goal,
+            DayTimetable             day,
+            int                      boardingTime,
+            int                      transferPenaltySeconds
+    ) {
+        ScheduledPath path = scheduleAwareDijkstra(scheduleOrigin, scheduleDest, goal, day.compactGraph(), boardingTime, transferPenaltySeconds);
+        return path != null ? List.of(path) : List.of();
+    }
+
+    // From the pass 30 min later, or earlier for arrive-by (mirroring the Dijkstra variant), we keep only the option
+    // that wins under the fastest-variant transfer penalty.
+    private List<ScheduledPath> bestAlternativeOption(List<ScheduledPath> alternativeSet) {
+        return alternativeSet.stream()
+                .min(Comparator.comparingInt((ScheduledPath p) ->
+                        p.totalDurationSeconds() + p.transfers() * FASTEST_TRANSFER_PENALTY_SECONDS))
+                .map(List::of)
+                .orElse(List.of());
+    }
+
+    // Runs one McRAPTOR, RAPTOR, trip-based or CSA query. One RAPTOR or trip-based pass gives the full Pareto set (fastest,
+    // fewest transfers and everything in between), one CSA pass the earliest arrival — so CSA yields at most one journey,
+    // RAPTOR and trip-based one per useful transfer count, and McRAPTOR additionally every greener journey that takes longer or changes more often.
+    // A popular stop pair is answered from its precomputed transfer patterns instead, with the same result shape.
+    private List<ScheduledPath> routeOnTimetable(
+            RoutingEngine   engine,
+            GraphGeneration generation,
+            DayTimetable    day,
+            int             origin,
+            int             destination,
+            int             departureTime,
+            TargetStops     targets
+    ) {
+        List<ScheduledPath> fromPatterns = transferPatternRouter.route(generation, day, engine,
+                origin, destination, departureTime, targets.stops(), targets.egressSeconds());
+        if (fromPatterns != null) {
+            return fromPatterns;
+        }
+        if (engine == RoutingEngine.CSA) {
+            ScheduledPath path = connectionScanRouter.route(day.transitTimetable(), day.connectionTimetable(),
+                    origin, departureTime, targets.stops(), targets.egressSeconds());
+            return path != null ? List.of(path) : List.of();
+        }
+        if (engine == RoutingEngine.MCRAPTOR) {
+            return mcRaptorRouter.route(day.transitTimetable(), origin, departureTime, targets.stops(), targets.egressSeconds());
+        }
+        if (engine == RoutingEngine.TRIP_BASED) {
+            return tripBasedRouter.route(day.transitTimetable(), day.tripTransfers(), origin, departureTime, targets.stops(), targets.egressSeconds());
+        }
+        return raptorRouter.route(day.transitTimetable(), origin, departureTime, targets.stops(), targets.egressSeconds());
+    }
+
+    // A* goal for the schedule-aware Dijkstra: the stops whose arrival can end its search, i.e. the destination and
+    // every stop within walking distance of it. Extra stops only loosen the lower bounds, missing ones would break them.
+    private LandmarkLowerBounds.Goal buildDijkstraGoal(
+            String              scheduleDest,
+            StopSpatialIndex    spatialIndex,
+            CompactGraph        graph,
+            LandmarkLowerBounds landmarkBounds
+    ) {
+        int destStop = spatialIndex.indexOf(scheduleDest);
+        if (destStop < 0) {
+            return landmarkBounds.goal(new int[]{ graph.indexOf(scheduleDest) });
+        }
+        List<StopDistance> nearby = findNearbyStops(spatialIndex.latitude(destStop), spatialIndex.longitude(destStop),
+                DEST_WALK_RADIUS_KM + GOAL_RADIUS_MARGIN_KM, 0, spatialIndex);
+        int[] goalStops = new int[nearby.size() + 1];
+        goalStops[0] = graph.indexOf(scheduleDest);
+        for (int i = 0; i < nearby.size(); i++) {
+            goalStops[i + 1] = graph.indexOf(nearby.get(i).stopId());
+        }
+        return landmarkBounds.goal(goalStops);
+    }
+
+    // Collects the stops that count as "arrived": the destination stop itself (no walk) and every stop
+    // within DEST_WALK_RADIUS_KM of it, each with the walking time still needed to reach the destination.
+    private TargetStops buildTargetStops(String scheduleDest, StopSpatialIndex spatialIndex, TransitTimetable timetable) {
+        int destStop = spatialIndex.indexOf(scheduleDest);
+        int destIdx  = timetable.indexOf(scheduleDest);
+        if (destStop < 0) {
+            return destIdx >= 0
+                    ? new TargetStops(new int[]{ destIdx }, new int[]{ 0 })
+                    : new TargetStops(new int[0], new int[0]);
+        }
+
+        List<StopDistance> nearby = findNearbyStops(
+                spatialIndex.latitude(destStop), spatialIndex.longitude(destStop), DEST_WALK_RADIUS_KM, 0, spatialIndex);
+        int[] targetStops   = new int[nearby.size()];
+        int[] egressSeconds = new int[nearby.size()];
+        int   count         = 0;
+        for (StopDistance sd : nearby) {
+            int idx = timetable.indexOf(sd.stopId());
+            if (idx < 0) continue;
+            targetStops[count]   = idx;
+            egressSeconds[count] = sd.stopId().equals(scheduleDest) ? 0 : walkingSeconds(sd.distanceKm());
+            count++;
+        }
+        return new TargetStops(
+                Arrays.copyOf(targetStops, count),
+                Arrays.copyOf(egressSeconds, count));
+    }
+
     // Max walking distance to count a nearby stop as "reached the destination"
     private static final double DEST_WALK_RADIUS_KM = 0.45;
+    // Extra radius for the A* goal stops, so rounding between distance functions can never leave a proximity stop out
+    private static final double GOAL_RADIUS_MARGIN_KM = 0.05;
+
+    // Label connection for the start state and walk legs (no scheduled vehicle)
+    private static final int NO_CONNECTION = -1;
 
     // -----------------------------------------------------------------------
     // scheduleAwareDijkstra — 12-step overview
     //
-    //  Step 1:  Start State          — create the initial TripState at the origin
-    //  Step 2:  Priority Queue       — always pop the lowest-score state first
-    //  Step 3:  bestScore map        — skip states we have already beaten
-    //  Step 4:  Pop best state       — queue.poll() at the top of the loop
+    //  Step 1:  Start State          — label the origin state in the search workspace
+    //  Step 2:  Priority Queue       — always pop the lowest score + lower bound to the destination first (A*)
+    //  Step 3:  bestScore labels     — skip states we have already beaten
+    //  Step 4:  Pop best state       — workspace.poll() at the top of the loop
     //  Step 5:  Exact dest check     — stop immediately if we reach the destination
     //  Step 6:  Proximity dest logic — record the closest stop within walk radius
     //  Step 7:  Explore connections  — loop over every bus departing from this stop
@@ -388,49 +630,60 @@ public class SearchJourneyUseCase {
     private ScheduledPath scheduleAwareDijkstra(
             String originStopId,
             String destinationStopId,
-            Map<String, List<ScheduledConnection>> schedule,
-            Map<String, Stop> stops,
-            Map<String, List<FootpathEdge>> footpaths,
+            LandmarkLowerBounds.Goal goal,
+            CompactGraph graph,
             int startTimeSeconds,
             int transferPenaltySeconds
     ) {
-        Stop destStop = stops.get(destinationStopId);
-        double destLat = destStop != null ? destStop.getLatitude()  : Double.NaN;
-        double destLon = destStop != null ? destStop.getLongitude() : Double.NaN;
-
-        // ===== STEP 3: bestScore map — tracks the lowest score seen for each (stopId, routeId) pair so we can skip stale queue entries =====
-        Map<String, Integer>bestScore = new HashMap<>();
-        // ===== STEP 2: Priority Queue — always processes the lowest-score state first, driving Dijkstra's greedy expansion =====
-        PriorityQueue<TripState> queue = new PriorityQueue<>(Comparator.comparingInt(TripState::score));
+        int origin      = graph.indexOf(originStopId);
+        int destination = graph.indexOf(destinationStopId);
+        if (origin < 0) {
+            return null;
+        }
+        double destLat = destination >= 0 ? graph.latitude(destination)  : Double.NaN;
+        double destLon = destination >= 0 ? graph.longitude(destination) : Double.NaN;
+
+        // ===== STEP 3: bestScore — every (stop, route) state keeps the lowest score seen so far in this thread's
+        // workspace, which is reused from search to search so a query allocates no labels or queue entries =====
+        ScheduledSearchWorkspace workspace = ScheduledSearchWorkspace.begin(graph.stateCount());
+        // ===== STEP 2: Priority Queue — always processes the state with the lowest estimate first: its score plus a lower bound
+        // on the time still needed to reach the destination (or a stop within walking distance of it). The bound never
+        // overestimates and is 0 at every such stop, so they still come off the queue in score order and the result is
+        // exactly the plain Dijkstra's; the search just heads towards the destination instead of spreading out evenly.
+        // A state waits in the queue at most once: a better score lowers its key in place. =====
 
         // ===== STEP 1: Start State — create the initial state at the origin stop, not on any route, at the specified start time, with zero transfers and zero score =====
-        TripState start = new TripState(originStopId, null, startTimeSeconds, 0, 0, null, null, false);
-        queue.add(start);
-        bestScore.put(stateKey(originStopId, null), 0);
+        workspace.label(graph.stateIndex(origin, CompactGraph.NO_ROUTE), origin, CompactGraph.NO_ROUTE, startTimeSeconds,
+                0, 0, 0, ScheduledSearchWorkspace.NONE, NO_CONNECTION, false);
 
-        TripState destinationState   = null;
-        TripState bestProximityState = null;
-        double    bestProximityDistKm = Double.MAX_VALUE;
+        int    destinationState    = ScheduledSearchWorkspace.NONE;
+        int    bestProximityState  = ScheduledSearchWorkspace.NONE;
+        double bestProximityDistKm = Double.MAX_VALUE;
         // Once we have a proximity candidate, keep looking for up to 10 min of extra
         // Dijkstra score to find a closer alighting stop (e.g. Eyre Square vs Saint Francis St).
         final int PROXIMITY_SLACK_S = 600;
 
-        while (!queue.isEmpty()) {
-            // ===== STEP 4: Pop best current state — take the lowest-score state from the queue =====
-            TripState current = queue.poll();
-
-            // Skip this entry if we already found a better path to this state.
-            if (current.score() > bestScore.getOrDefault(stateKey(current.stopId(), current.routeId()), Integer.MAX_VALUE)) {
-                continue;
+        while (!workspace.isEmpty()) {
+            // Cancelled because the request deadline passed — give up quietly
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
             }
 
-            // If we already have a proximity candidate and this state is much slower, stop exploring.
-            if (bestProximityState != null && current.score() > bestProximityState.score() + PROXIMITY_SLACK_S) {
+            // ===== STEP 4: Pop best current state — take the lowest-estimate state from the queue. Its score is final. =====
+            int current          = workspace.poll();
+            int currentStop      = workspace.stop(current);
+            int currentRoute     = workspace.route(current);
+            int currentArrival   = workspace.arrivalTime(current);
+            int currentTransfers = workspace.transfers(current);
+
+            // If we already have a proximity candidate and every state left is much slower, stop exploring.
+            if (bestProximityState != ScheduledSearchWorkspace.NONE
+                    && workspace.estimate(current) > workspace.score(bestProximityState) + PROXIMITY_SLACK_S) {
                 break;
             }
 
             // Step 5: Exact destination check — if we have reached the destination stop exactly, we are done.
-            if (current.stopId().equals(destinationStopId)) {
+            if (currentStop == destination) {
                 destinationState = current;
                 break;
             }
@@ -439,91 +692,91 @@ public class SearchJourneyUseCase {
             // Do NOT break here — continue so the bus can reach an even closer stop (e.g. Eyre Square
             // is closer to Ceannt Station than Saint Francis Street which comes one stop earlier).
             if (!Double.isNaN(destLat)) {
-                Stop cur = stops.get(current.stopId());
-                if (cur != null) {
-                    double dist = emissionsCalculator.haversineDistanceKm(
-                            cur.getLatitude(), cur.getLongitude(), destLat, destLon);
-
-                    // We use a walk radius of 450 m instead of 300 m to allow for slightly longer walks that may be more pleasant (e.g. walking through Eyre Square instead of along busy streets).  The recommendation engine will take the walk distance into account when scoring and recommending options, so a slightly longer walk to a much better bus route can still be recommended over a shorter walk to a worse route.
-                    if (dist <= DEST_WALK_RADIUS_KM && dist < bestProximityDistKm) {
-                        bestProximityDistKm = dist;
-                        bestProximityState  = current;
-                    }
+                double dist = emissionsCalculator.haversineDistanceKm(
+                        graph.latitude(currentStop), graph.longitude(currentStop), destLat, destLon);
+
+                // We use a walk radius of 450 m instead of 300 m to allow for slightly longer walks that may be more pleasant (e.g. walking through Eyre Square instead of along busy streets).  The recommendation engine will take the walk distance into account when scoring and recommending options, so a slightly longer walk to a much better bus route can still be recommended over a shorter walk to a worse route.
+                if (dist <= DEST_WALK_RADIUS_KM && dist < bestProximityDistKm) {
+                    bestProximityDistKm = dist;
+                    bestProximityState  = current;
                 }
             }
 
             // Step 7: Explore scheduled connections — look at all buses departing from this stop that haven't left yet.
-            for (ScheduledConnection conn : schedule.getOrDefault(current.stopId(), List.of())) {
-
-                // Can only board a bus that has not yet left.
-                if (conn.getDepartureTimeSeconds() < current.arrivalTime()) {
-                    continue;
-                }
+            // Departures are sorted, so binary-search straight to the first one we can still catch.
+            int firstCatchable = graph.firstConnectionAtOrAfter(currentStop, currentArrival);
+            for (int conn = firstCatchable; conn < graph.connectionEnd(currentStop); conn++) {
+                int nextStop  = graph.connectionTarget(conn);
+                int connRoute = graph.connectionRoute(conn);
 
                 // Step 8: Direction filter at the start — at the origin stop (no route yet, and not reached via a footpath walk),
                 // skip connections that move more than 100 m further from the destination.
                 // This prevents boarding a loop route in the wrong direction at the very start.
                 // We skip this filter after a footpath walk so we don't over-restrict stops near
                 // the origin where buses may briefly move away before continuing toward the destination.
-                if (current.routeId() == null && !current.walkedHere() && !Double.isNaN(destLat)) {
-                    Stop curStop  = stops.get(current.stopId());
-                    Stop nextStop = stops.get(conn.getToStopId());
-                    if (curStop != null && nextStop != null) {
-                        double curDist  = emissionsCalculator.haversineDistanceKm(
-                                curStop.getLatitude(),  curStop.getLongitude(),  destLat, destLon);
-                        double nextDist = emissionsCalculator.haversineDistanceKm(
-                                nextStop.getLatitude(), nextStop.getLongitude(), destLat, destLon);
-                        if (nextDist > curDist + 0.1) {
-                            continue; // first hop goes backwards — skip
-                        }
+                if (currentRoute == CompactGraph.NO_ROUTE && !workspace.walkedHere(current) && !Double.isNaN(destLat)) {
+                    double curDist  = emissionsCalculator.haversineDistanceKm(
+                            graph.latitude(currentStop), graph.longitude(currentStop), destLat, destLon);
+                    double nextDist = emissionsCalculator.haversineDistanceKm(
+                            graph.latitude(nextStop), graph.longitude(nextStop), destLat, destLon);
+                    if (nextDist > curDist + 0.1) {
+                        continue; // first hop goes backwards — skip
                     }
                 }
 
                 // Step 9: Transfer logic — boarding a different route than the one we are already on is a transfer.
-                // The very first boarding (routeId == null) is not counted as a transfer.
-                boolean isTransfer  = current.routeId() != null && !conn.getRouteId().equals(current.routeId());
-                int     newTransfers = current.transfers() + (isTransfer ? 1 : 0);
+                // The very first boarding (no route yet) is not counted as a transfer.
+                boolean isTransfer  = currentRoute != CompactGraph.NO_ROUTE && connRoute != currentRoute;
+                int     newTransfers = currentTransfers + (isTransfer ? 1 : 0);
                 // Step 10: Score calculation — Dijkstra score = arrival time + (transfers × penalty).
                 // Low penalty (10 min) finds the fastest route; high penalty (1 hour) finds the fewest-transfer route.
-                int     newScore     = conn.getArrivalTimeSeconds() + newTransfers * transferPenaltySeconds;
-
-                String nextKey = stateKey(conn.getToStopId(), conn.getRouteId());
-                if (newScore < bestScore.getOrDefault(nextKey, Integer.MAX_VALUE)) {
-                    bestScore.put(nextKey, newScore);
-                    queue.add(new TripState(
-                            conn.getToStopId(),
-                            conn.getRouteId(),
-                            conn.getArrivalTimeSeconds(),
+                int     newScore     = graph.connectionArrival(conn) + newTransfers * transferPenaltySeconds;
+
+                int nextKey = graph.stateIndex(nextStop, connRoute);
+                if (workspace.improves(nextKey, newScore)) {
+                    int remaining = remainingLowerBound(goal, nextStop);
+                    if (remaining == LandmarkLowerBounds.UNREACHED) continue; // the destination can't be reached from there
+                    workspace.label(
+                            nextKey,
+                            nextStop,
+                            connRoute,
+                            graph.connectionArrival(conn),
                             newTransfers,
                             newScore,
+                            newScore + remaining,
                             current,
                             conn,
                             false
-                    ));
+                    );
                 }
             }
 
-            // Step 11: Walking footpath — walk to any stop within 300 m.
+            // Step 11: Walking footpath — walk to any stop within the footpath walking budget.
             // This is what enables train → walk → bus journeys.
-            // We only walk one hop (walkedHere prevents chaining walk→walk→walk).
-            if (!current.walkedHere()) {
-                for (FootpathEdge fp : footpaths.getOrDefault(current.stopId(), List.of())) {
-                    int arriveAfterWalk = current.arrivalTime() + fp.walkSeconds();
-                    int walkScore       = arriveAfterWalk + current.transfers() * transferPenaltySeconds;
-                    // Keep the current routeId so that boarding transit at the new stop counts as a transfer
-                    String walkKey = stateKey(fp.toStopId(), current.routeId());
-                    if (walkScore < bestScore.getOrDefault(walkKey, Integer.MAX_VALUE)) {
-                        bestScore.put(walkKey, walkScore);
-                        queue.add(new TripState(
-                                fp.toStopId(),
-                                current.routeId(),  // maintain route context — boarding here will count as a transfer
+            // We only walk one hop (walkedHere prevents chaining walk→walk→walk); footpaths reach across the whole
+            // walking budget, so that one hop already covers walks past several stops.
+            if (!workspace.walkedHere(current)) {
+                for (int fp = graph.footpathStart(currentStop); fp < graph.footpathEnd(currentStop); fp++) {
+                    int walkTarget      = graph.footpathTarget(fp);
+                    int arriveAfterWalk = currentArrival + graph.footpathSeconds(fp);
+                    int walkScore       = arriveAfterWalk + currentTransfers * transferPenaltySeconds;
+                    // Keep the current route so that boarding transit at the new stop counts as a transfer
+                    int walkKey = graph.stateIndex(walkTarget, currentRoute);
+                    if (workspace.improves(walkKey, walkScore)) {
+                        int remaining = remainingLowerBound(goal, walkTarget);
+                        if (remaining == LandmarkLowerBounds.UNREACHED) continue;
+                        workspace.label(
+                                walkKey,
+                                walkTarget,
+                                currentRoute,       // maintain route context — boarding here will count as a transfer
                                 arriveAfterWalk,
-                                current.transfers(),
+                                currentTransfers,
                                 walkScore,
+                                walkScore + remaining,
                                 current,
-                                null,               // null connection = walk leg (no scheduled vehicle)
+                                NO_CONNECTION,      // no connection = walk leg (no scheduled vehicle)
                                 true                // walkedHere = true prevents further walk chaining
-                        ));
+                        );
                     }
                 }
             }
@@ -532,56 +785,68 @@ public class SearchJourneyUseCase {
         // Step 12: Reconstructing path — use the best state found (exact match or closest proximity stop)
         // and walk back through parent pointers to build the list of legs.
         // If no route was found at all, return null (the fallback Dijkstra will run instead).
-        if (destinationState == null) {
+        if (destinationState == ScheduledSearchWorkspace.NONE) {
             destinationState = bestProximityState;
         }
-        if (destinationState == null) {
+        if (destinationState == ScheduledSearchWorkspace.NONE) {
             return null;
         }
 
-        return reconstructScheduledPath(destinationState, startTimeSeconds);
+        return reconstructScheduledPath(workspace, destinationState, startTimeSeconds, graph);
+    }
+
+    // A* lower bound in seconds from stop to the search's goal stops; 0 (plain Dijkstra) without landmarks
+    private static int remainingLowerBound(LandmarkLowerBounds.Goal goal, int stop) {
+        return goal != null ? goal.lowerBound(stop) : 0;
     }
 
     // Walks back through the parent-pointer chain to build the list of legs.
-    // Each step is either a transit leg (connection != null) or a walk leg (connection == null).
-    private ScheduledPath reconstructScheduledPath(TripState destination, int startTime) {
+    // Each step is either a transit leg (connection set) or a walk leg (NO_CONNECTION).
+    private ScheduledPath reconstructScheduledPath(
+            ScheduledSearchWorkspace workspace,
+            int                      destination,
+            int                      startTime,
+            CompactGraph             graph
+    ) {
         LinkedList<PathLeg> legs = new LinkedList<>();
-        TripState current = destination;
+        int current = destination;
 
-        while (current.parent() != null) {
-            if (current.connection() != null) {
+        while (workspace.parent(current) != ScheduledSearchWorkspace.NONE) {
+            int parent = workspace.parent(current);
+            int conn   = workspace.connection(current);
+            if (conn != NO_CONNECTION) {
                 // Transit leg — use the scheduled connection for times and service name
-                ScheduledConnection conn = current.connection();
+                int route = graph.connectionRoute(conn);
                 legs.addFirst(new PathLeg(
-                        current.parent().stopId(),
-                        current.stopId(),
-                        conn.getRouteId(),
-                        conn.getRouteShortName(),
-                        conn.getMode(),
-                        conn.getDepartureTimeSeconds(),
-                        conn.getArrivalTimeSeconds()
+                        graph.stopId(workspace.stop(parent)),
+                        graph.stopId(workspace.stop(current)),
+                        graph.routeId(route),
+                        graph.routeShortName(route),
+                        graph.routeMode(route),
+                        graph.connectionDeparture(conn),
+                        graph.connectionArrival(conn)
                 ));
             } else {
                 // Walk leg — the user walks between two nearby stops (footpath transfer)
                 legs.addFirst(new PathLeg(
-                        current.parent().stopId(),
-                        current.stopId(),
+                        graph.stopId(workspace.stop(parent)),
+                        graph.stopId(workspace.stop(current)),
                         null,
                         null,
                         TransportMode.WALK,
-                        current.parent().arrivalTime(),
-                        current.arrivalTime()
+                        workspace.arrivalTime(parent),
+                        workspace.arrivalTime(current)
                 ));
             }
-            current = current.parent();
+            current = parent;
         }
 
         if (legs.isEmpty()) {
             return null;
         }
 
-        int totalDuration = destination.arrivalTime() - startTime;
-        return new ScheduledPath(new ArrayList<>(legs), Math.max(0, totalDuration), destination.transfers());
+        int totalDuration = workspace.arrivalTime(destination) - startTime;
+        return new ScheduledPath(new ArrayList<>(legs), Math.max(0, totalDuration), workspace.transfers(destination));
     }
 
     // Converts a ScheduledPath into a JourneyOption — builds the stop list, leg detail, CO2, and mode summary
@@ -817,30 +1082,36 @@ public class SearchJourneyUseCase {
     private record CarBaselineResult(JourneyOption option, List<List<Double>> geometry) {}
 
 
-    // Runs three Dijkstra variants (fastest, fewest transfers, balanced) when the schedule-aware search finds nothing.
+    // Runs three shortest-path variants (fastest, fewest transfers, balanced) when the schedule-aware search finds nothing,
+    // each on the generation's contraction hierarchy for that edge weighting.
     // Acts as a safety net — the user always gets route options even if GTFS schedule data is empty or stale.
     private void runFallbackDijkstra(
-            String                     effectiveOriginStopId,
-            String                     destinationStopId,
-            Map<String, Stop>          stops,
-            Map<String, List<StopEdge>> adjacencyList,
-            Map<String, String>        routeShortNames,
-            int                        extraOriginWalkSeconds,
-            List<JourneyOption>        optionsToScore,
-            Set<String>                seenSignatures
+            String                                       effectiveOriginStopId,
+            String                                       destinationStopId,
+            Map<String, Stop>                            stops,
+            Map<String, List<StopEdge>>                  adjacencyList,
+            CompactGraph                                 graph,
+            Map<EdgeWeightProfile, ContractionHierarchy> hierarchies,
+            StopSpatialIndex                             spatialIndex,
+            Map<String, String>                          routeShortNames,
+            int                                          extraOriginWalkSeconds,
+            List<JourneyOption>                          optionsToScore,
+            Set<String>                                  seenSignatures
     ) {
         RoutingAnchors anchors = resolveRoutingAnchors(
-                effectiveOriginStopId, destinationStopId, stops, adjacencyList);
+                effectiveOriginStopId, destinationStopId, stops, graph, hierarchies.get(EdgeWeightProfile.FASTEST), spatialIndex);
         if (anchors == null) {
             return;
         }
 
-        PathResult fastest = dijkstra(anchors.routingOriginStopId(), anchors.routingDestinationStopId(),
-                adjacencyList, edge -> edge.getTravelTimeSeconds()); // time-based Dijkstra finds the fastest route
-        PathResult fewestTransfers = dijkstra(anchors.routingOriginStopId(), anchors.routingDestinationStopId(),
-                adjacencyList, edge -> 1);// transfer-based Dijkstra finds the route with the fewest hops (transfers) regardless of time
-        PathResult balanced = dijkstra(anchors.routingOriginStopId(), anchors.routingDestinationStopId(),
-                adjacencyList, edge -> edge.getTravelTimeSeconds() + BALANCED_TRANSFER_PENALTY_SECONDS);// balanced Dijkstra finds a compromise route that is not too much slower than the fastest but has fewer transfers
+        String routingOrigin      = anchors.routingOriginStopId();
+        String routingDestination = anchors.routingDestinationStopId();
+        PathResult fastest         = shortestPath(routingOrigin, routingDestination, graph,
+                hierarchies.get(EdgeWeightProfile.FASTEST));     // travel time as weight finds the fastest route
+        PathResult fewestTransfers = shortestPath(routingOrigin, routingDestination, graph,
+                hierarchies.get(EdgeWeightProfile.FEWEST_HOPS)); // the route with the fewest hops (transfers) regardless of time
+        PathResult balanced        = shortestPath(routingOrigin, routingDestination, graph,
+                hierarchies.get(EdgeWeightProfile.BALANCED));    // a compromise that is not much slower than the fastest but has fewer transfers
 
         int totalOriginAccess = anchors.originAccessSeconds() + extraOriginWalkSeconds;
         addPublicTransportOption(optionsToScore, seenSignatures, fastest,        stops, adjacencyList, routeShortNames,
@@ -1046,25 +1317,26 @@ public class SearchJourneyUseCase {
             String requestedOriginStopId,
             String requestedDestinationStopId,
             Map<String, Stop> stopsById,
-            Map<String, List<StopEdge>> adjacencyList
+            CompactGraph graph,
+            ContractionHierarchy fastestHierarchy,
+            StopSpatialIndex spatialIndex
     ) {
-        PathResult direct = dijkstra(requestedOriginStopId, requestedDestinationStopId,
-                adjacencyList, edge -> edge.getTravelTimeSeconds());
+        PathResult direct = shortestPath(requestedOriginStopId, requestedDestinationStopId, graph, fastestHierarchy);
         if (direct != null) {
             return new RoutingAnchors(requestedOriginStopId, requestedDestinationStopId, 0, 0);
         }
 
         List<String> originCandidates = nearestStopCandidates(
-                requestedOriginStopId, stopsById, adjacencyList, ROUTING_CANDIDATE_LIMIT, ROUTING_CANDIDATE_RADIUS_KM, true);
+                requestedOriginStopId, spatialIndex, ROUTING_CANDIDATE_LIMIT, ROUTING_CANDIDATE_RADIUS_KM, true);
         List<String> destinationCandidates = nearestStopCandidates(
-                requestedDestinationStopId, stopsById, adjacencyList, ROUTING_CANDIDATE_LIMIT, ROUTING_CANDIDATE_RADIUS_KM, false);
+                requestedDestinationStopId, spatialIndex, ROUTING_CANDIDATE_LIMIT, ROUTING_CANDIDATE_RADIUS_KM, false);
 
         RoutingAnchors best            = null;
         int            bestTotalSeconds = Integer.MAX_VALUE;
 
         for (String originId : originCandidates) {
             for (String destId : destinationCandidates) {
-                PathResult candidate = dijkstra(originId, destId, adjacencyList, edge -> edge.getTravelTimeSeconds());
+                PathResult candidate = shortestPath(originId, destId, graph, fastestHierarchy);
                 if (candidate == null) continue;
 
                 int originAccess = estimateWalkingSecondsBetweenStops(requestedOriginStopId, originId, stopsById);
@@ -1083,33 +1355,20 @@ public class SearchJourneyUseCase {
 
     private List<String> nearestStopCandidates(
             String requestedStopId,
-            Map<String, Stop> stopsById,
-            Map<String, List<StopEdge>> adjacencyList,
+            StopSpatialIndex spatialIndex,
             int limit,
             double radiusKm,
             boolean requireOutgoingEdges
     ) {
-        Stop requestedStop = stopsById.get(requestedStopId);
-        if (requestedStop == null) return List.of();
-
-        List<StopDistance> candidates = new ArrayList<>();
-        for (Map.Entry<String, Stop> entry : stopsById.entrySet()) {
-            String candidateId = entry.getKey();
-            if (requireOutgoingEdges && adjacencyList.getOrDefault(candidateId, List.of()).isEmpty()) continue;
-
-            double distKm = emissionsCalculator.haversineDistanceKm(
-                    requestedStop.getLatitude(), requestedStop.getLongitude(),
-                    entry.getValue().getLatitude(), entry.getValue().getLongitude());
+        int requestedStop = spatialIndex.indexOf(requestedStopId);
+        if (requestedStop < 0) return List.of();
 
-            if (distKm <= radiusKm || candidateId.equals(requestedStopId)) {
-                candidates.add(new StopDistance(candidateId, distKm));
-            }
-        }
-
-        candidates.sort(Comparator.comparingDouble(StopDistance::distanceKm));
+        List<StopDistance> candidates = findNearestStops(
+                spatialIndex.latitude(requestedStop), spatialIndex.longitude(requestedStop), limit, radiusKm,
+                requireOutgoingEdges ? StopSpatialIndex.HAS_OUTGOING_EDGES : 0, spatialIndex);
         List<String> ids = new ArrayList<>();
-        for (int i = 0; i < candidates.size() && i < limit; i++) {
-            ids.add(candidates.get(i).stopId());
+        for (StopDistance candidate : candidates) {
+            ids.add(candidate.stopId());
         }
         if (!ids.contains(requestedStopId)) {
             ids.add(0, requestedStopId);
@@ -1120,70 +1379,17 @@ public class SearchJourneyUseCase {
    
     // Maps a stop to the nearest stop that has GTFS schedule data (within 500m).
     // e.g. "Saint Francis Street" (no schedule) → "Galway Ceannt" (has schedule)
-    private String resolveScheduleStop(
-            String stopId,
-            Map<String, List<ScheduledConnection>> schedule,
-            Map<String, Stop> stops,
-            Map<String, List<StopEdge>> adjacencyList
-    ) {
+    private String resolveScheduleStop(String stopId, StopSpatialIndex spatialIndex) {
         if (stopId == null) return null;
-        if (!schedule.getOrDefault(stopId, List.of()).isEmpty()) return stopId;
-
-        Stop base = stops.get(stopId);
-        if (base == null) return null;
-
-        String bestId = null;
-        double bestDist = Double.MAX_VALUE;
-        for (Map.Entry<String, Stop> entry : stops.entrySet()) {
-            if (schedule.getOrDefault(entry.getKey(), List.of()).isEmpty()) continue;
-            double dist = emissionsCalculator.haversineDistanceKm(
-                    base.getLatitude(), base.getLongitude(),
-                    entry.getValue().getLatitude(), entry.getValue().getLongitude());
-            if (dist < 0.5 && dist < bestDist) {
-                bestDist = dist;
-                bestId   = entry.getKey();
-            }
-        }
-        return bestId != null ? bestId : stopId; // fall back to original if nothing nearby
-    }
-
-    private StopDistance findNearestConnectedStop(double lat, double lon, Map<String, Stop> stops, Map<String, List<StopEdge>> adjacencyList) {
-        StopDistance nearest = null;
-        for (Map.Entry<String, Stop> entry : stops.entrySet()) {
-            String stopId = entry.getKey();
-            if (adjacencyList.getOrDefault(stopId, List.of()).isEmpty()) continue;
-            double distKm = emissionsCalculator.haversineDistanceKm(
-                    lat, lon, entry.getValue().getLatitude(), entry.getValue().getLongitude());
-            if (nearest == null || distKm < nearest.distanceKm()) {
-                nearest = new StopDistance(stopId, distKm);
-            }
-
-        }
-        return nearest;
-    }
-
-    // Similar to findNearestConnectedStop but only considers stops that have train service in the schedule, since those are more likely to be useful for intercity journeys where the user dropped a pin near a station.
-    private StopDistance findNearestTrainStop(
-            double lat, double lon,
-            Map<String, Stop> stops,
-            Map<String, List<ScheduledConnection>> schedule,
-            double maxKm
-    ) {
-        StopDistance nearest = null;
-        for (Map.Entry<String, List<ScheduledConnection>> entry : schedule.entrySet()) {
-            boolean hasTrain = entry.getValue().stream()
-                    .anyMatch(c -> c.getMode() == TransportMode.TRAIN);
-            if (!hasTrain) continue;
-
-            Stop stop = stops.get(entry.getKey());
-            if (stop == null) continue;
-
-            double distKm = emissionsCalculator.haversineDistanceKm(lat, lon, stop.getLatitude(), stop.getLongitude());
-            if (distKm <= maxKm && (nearest == null || distKm < nearest.distanceKm())) {
-                nearest = new StopDistance(entry.getKey(), distKm);
-            }
-        }
-        return nearest;
+        int stop = spatialIndex.indexOf(stopId);
+        if (stop < 0) return null;
+        if (spatialIndex.hasFlags(stop, StopSpatialIndex.HAS_SCHEDULE)) return stopId;
+
+        StopDistance nearest = findNearestStop(
+                spatialIndex.latitude(stop), spatialIndex.longitude(stop), 0.5, StopSpatialIndex.HAS_SCHEDULE, spatialIndex);
+        return nearest != null && nearest.distanceKm() < 0.5
+                ? nearest.stopId()
+                : stopId; // fall back to original if nothing nearby
     }
 
     // Extracts the segment of the route shape that corresponds to the leg between (fromLat, fromLon) and (toLat, toLon) by finding the nearest points on the shape to the start and end locations.
@@ -1220,39 +1426,37 @@ public class SearchJourneyUseCase {
         return best;
     }
 
-    // Returns all stops within maxKm of (lat,lon), sorted nearest-first
+    // Returns all stops within maxKm of (lat,lon) that have requiredFlags (StopSpatialIndex.HAS_*, 0 for any), sorted nearest-first
     private List<StopDistance> findNearbyStops(
-            double lat, double lon, double maxKm,
-            Map<String, Stop> stops
+            double lat, double lon, double maxKm, int requiredFlags,
+            StopSpatialIndex spatialIndex
     ) {
-        List<StopDistance> result = new ArrayList<>();
-        for (Map.Entry<String, Stop> entry : stops.entrySet()) {
-            double distKm = emissionsCalculator.haversineDistanceKm(
-                    lat, lon, entry.getValue().getLatitude(), entry.getValue().getLongitude());
-            if (distKm <= maxKm) {
-                result.add(new StopDistance(entry.getKey(), distKm));
-            }
-        }
-        result.sort(Comparator.comparingDouble(StopDistance::distanceKm));
-        return result;
+        return toStopDistances(spatialIndex.withinRadius(lat, lon, maxKm, requiredFlags), spatialIndex);
     }
 
-    private List<StopDistance> findNearbyConnectedStops(
-            double lat, double lon, double maxKm,
-            Map<String, Stop> stops,
-            Map<String, List<StopEdge>> adjacencyList
+    // Returns up to limit stops within maxKm of (lat,lon) that have requiredFlags, sorted nearest-first
+    private List<StopDistance> findNearestStops(
+            double lat, double lon, int limit, double maxKm, int requiredFlags,
+            StopSpatialIndex spatialIndex
     ) {
-        List<StopDistance> result = new ArrayList<>();
-        for (Map.Entry<String, Stop> entry : stops.entrySet()) {
-            String stopId = entry.getKey();
-            if (adjacencyList.getOrDefault(stopId, List.of()).isEmpty()) continue;
-            double distKm = emissionsCalculator.haversineDistanceKm(
-                    lat, lon, entry.getValue().getLatitude(), entry.getValue().getLongitude());
-            if (distKm <= maxKm) {
-                result.add(new StopDistance(stopId, distKm));
-            }
+        return toStopDistances(spatialIndex.nearest(lat, lon, limit, maxKm, requiredFlags), spatialIndex);
+    }
+
+    // Returns the nearest stop within maxKm of (lat,lon) that has requiredFlags, or null.
+    // e.g. HAS_TRAIN finds the nearest train station, which is useful for intercity journeys where the user dropped a pin near a station.
+    private StopDistance findNearestStop(
+            double lat, double lon, double maxKm, int requiredFlags,
+            StopSpatialIndex spatialIndex
+    ) {
+        StopSpatialIndex.Neighbour nearest = spatialIndex.nearestOne(lat, lon, maxKm, requiredFlags);
+        return nearest != null ? new StopDistance(spatialIndex.stopId(nearest.stop()), nearest.distanceKm()) : null;
+    }
+
+    private List<StopDistance> toStopDistances(List<StopSpatialIndex.Neighbour> neighbours, StopSpatialIndex spatialIndex) {
+        List<StopDistance> result = new ArrayList<>(neighbours.size());
+        for (StopSpatialIndex.Neighbour neighbour : neighbours) {
+            result.add(new StopDistance(spatialIndex.stopId(neighbour.stop()), neighbour.distanceKm()));
         }
-        result.sort(Comparator.comparingDouble(StopDistance::distanceKm));
         return result;
     }
 
@@ -1336,58 +1540,34 @@ public class SearchJourneyUseCase {
         return Double.compare(max, min) == 0 ? 0.0 : (value - min) / (max - min);
     }
 
-    // Classic Dijkstra — finds the shortest path using whatever weight function is passed in.
-    // The weight function is what makes it flexible: pass travel time → fastest, pass 1 → fewest hops.
-    // Uses a priority queue so it always expands the cheapest-so-far node first.
-    private PathResult dijkstra(
-            String originId,
-            String destinationId,
-            Map<String, List<StopEdge>> adjacencyList,
-            EdgeWeightFunction weightFn
+    // Shortest path over the averaged stop graph under the hierarchy's weight profile: fastest, fewest hops or balanced.
+    // The contraction hierarchy answers it with a bidirectional search that only climbs towards more important stops,
+    // so each call settles a few hundred stops at most instead of running a full Dijkstra over the graph.
+    private PathResult shortestPath(
+            String               originId,
+            String               destinationId,
+            CompactGraph         graph,
+            ContractionHierarchy hierarchy
     ) {
-        Map<String, Integer>     distance = new HashMap<>();
-        Map<String, String>      previous = new HashMap<>();
-        PriorityQueue<NodeCost>  queue    = new PriorityQueue<>(Comparator.comparingInt(NodeCost::cost));
-
-        distance.put(originId, 0);
-        queue.add(new NodeCost(originId, 0));
-
-        while (!queue.isEmpty()) {
-            NodeCost current = queue.poll();
-            if (current.cost() > distance.getOrDefault(current.stopId(), Integer.MAX_VALUE)) continue;
-            if (current.stopId().equals(destinationId)) break;
-
-            for (StopEdge edge : adjacencyList.getOrDefault(current.stopId(), Collections.emptyList())) {
-                int candidate = current.cost() + Math.max(1, weightFn.weight(edge));
-                if (candidate < distance.getOrDefault(edge.getToStopId(), Integer.MAX_VALUE)) {
-                    distance.put(edge.getToStopId(), candidate);
-                    previous.put(edge.getToStopId(), current.stopId());
-                    queue.add(new NodeCost(edge.getToStopId(), candidate));
-                }
-            }
-        }
-
-        if (!distance.containsKey(destinationId)) return null;
+        int[] stops = hierarchy.shortestPath(graph.indexOf(originId), graph.indexOf(destinationId));
+        if (stops == null) return null;
 
-        LinkedList<String> path = new LinkedList<>();
-        String cursor = destinationId;
-        path.addFirst(cursor);
-        while (previous.containsKey(cursor)) {
-            cursor = previous.get(cursor);
-            path.addFirst(cursor);
+        List<String> path = new ArrayList<>(stops.length);
+        for (int stop : stops) {
+            path.add(graph.stopId(stop));
         }
-        if (!path.getFirst().equals(originId)) return null;
-
-        return new PathResult(path, computeActualDuration(path, adjacencyList));
+        return new PathResult(path, computeActualDuration(path, graph));
     }
 
-    private int computeActualDuration(List<String> path, Map<String, List<StopEdge>> adjacencyList) {
+    private int computeActualDuration(List<String> path, CompactGraph graph) {
         int total = 0;
         for (int i = 1; i < path.size(); i++) {
+            int from = graph.indexOf(path.get(i - 1));
+            int to   = graph.indexOf(path.get(i));
             int best = Integer.MAX_VALUE;
-            for (StopEdge edge : adjacencyList.getOrDefault(path.get(i - 1), List.of())) {
-                if (path.get(i).equals(edge.getToStopId())) {
-                    best = Math.min(best, edge.getTravelTimeSeconds());
+            for (int edge = graph.edgeStart(from); edge < graph.edgeEnd(from); edge++) {
+                if (graph.edgeTarget(edge) == to) {
+                    best = Math.min(best, graph.edgeSeconds(edge));
                 }
             }
             if (best == Integer.MAX_VALUE) return Integer.MAX_VALUE;
@@ -1396,49 +1576,40 @@ public class SearchJourneyUseCase {
         return total;
     }
 
-    private static String stateKey(String stopId, String routeId) {
-        return stopId + ":" + (routeId != null ? routeId : "");
-    }
-
-    // Functional interface for providing edge weights to the Dijkstra search, allowing us to easily switch between different optimization criteria (fastest, fewest transfers, balanced).
+    // Stops that count as reaching the destination in a RAPTOR/CSA search, with the walk still needed from each
+    private record TargetStops(int[] stops, int[] egressSeconds) {}
 
-    private interface EdgeWeightFunction {
-        int weight(StopEdge edge);
-    }
+    // Boarding time at one origin candidate, worked out once and shared by the candidate's search variants.
+    // For arrive-by it is the backward scan's latest departure: the first variant to run computes it and any
+    // other variant already running waits for it. -1 means the deadline can't be met from this origin.
+    private static final class BoardingTime {
+        private final IntSupplier compute;
+        private int               value;
+        private boolean           computed;
 
-    // State node for the schedule-aware Dijkstra priority queue.
-    // walkedHere = true means we arrived at this stop via a footpath walk (prevents walk→walk chaining).
-    private record TripState(
-            String              stopId,
-            String              routeId,
-            int                 arrivalTime,
-            int                 transfers,
-            int                 score,
-            TripState           parent,
-            ScheduledConnection connection,
-            boolean             walkedHere
-    ) {}
+        BoardingTime(IntSupplier compute) {
+            this.compute = compute;
+        }
 
-    // One transit leg: board at fromStopId on a named route, alight at toStopId. 
-    private record PathLeg(
-            String        fromStopId,
-            String        toStopId,
-            String        routeId,
-            String        routeShortName,
-            TransportMode mode,
-            int           departureSeconds,
-            int           arrivalSeconds
-    ) {}
+        synchronized int get() {
+            if (!computed) {
+                value    = compute.getAsInt();
+                computed = true;
+            }
+            return value;
+        }
+    }
 
-    // A complete journey found by scheduleAwareDijkstra.
-    private record ScheduledPath(
-            List<PathLeg> legs,
-            int           totalDurationSeconds,
-            int           transfers
-    ) {}
+    // One independent search of runScheduledSearch, with what is needed to turn its paths into journey options
+    private record SearchTask(String destId, int walkSeconds, Callable<List<ScheduledPath>> search)
+            implements Callable<List<ScheduledPath>> {
+        @Override
+        public List<ScheduledPath> call() throws Exception {
+            return search.call();
+        }
+    }
 
     // Fallback Dijkstra support types
-    private record NodeCost(String stopId, int cost) {}
     private record PathResult(List<String> stopIds, int totalDurationSeconds) {}
     private record RoutingAnchors(
             String routingOriginStopId,
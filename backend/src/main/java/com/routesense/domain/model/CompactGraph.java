@@ -0,0 +1,345 @@
+package com.routesense.domain.model;
+
+import java.util.Arrays;
+import java.util.Map;
+
+// Integer-indexed snapshot of the stop graph, built once at load time so routing works on arrays instead of
+// String-keyed maps. Stops and routes are dense ints; stop numbering matches TransitTimetable.
+//
+// Layout (all CSR-style: an offsets array indexes into flat payload arrays):
+//   edges        — averaged graph edges out of stop s live in [edgeOffsets[s], edgeOffsets[s + 1])
+//   connections  — scheduled departures from stop s, sorted by departure time, in [connectionOffsets[s], connectionOffsets[s + 1]);
+//                  firstConnectionAtOrAfter binary-searches that range for the next departure
+//   footpaths    — walking links out of stop s live in [footpathOffsets[s], footpathOffsets[s + 1])
+//   stopRoutes   — sorted routes serving stop s live in [stopRouteOffsets[s], stopRouteOffsets[s + 1])
+//
+// stopRoutes drives the (stop, route) state numbering used by the schedule-aware Dijkstra: every stop gets
+// slot 0 for "not on a route", slot 1 for "on a route that doesn't serve this stop" and one slot per serving route.
+public class CompactGraph {
+
+    public static final int NO_ROUTE = -1;
+
+    private static final TransportMode[] MODES = TransportMode.values();
+
+    private final String[]             stopIds;
+    private final Map<String, Integer> stopIndexById;
+    private final double[]             stopLatitudes;
+    private final double[]             stopLongitudes;
+
+    private final String[]             routeIds;
+    private final Map<String, Integer> routeIndexById;
+    private final String[]             routeShortNames;
+    private final byte[]               routeModes;       // TransportMode ordinal
+
+    private final int[]  edgeOffsets;
+    private final int[]  edgeTargets;
+    private final int[]  edgeSeconds;
+    private final int[]  edgeRoutes;                     // NO_ROUTE if the edge has no route
+    private final byte[] edgeModes;                      // TransportMode ordinal, -1 if unknown
+
+    private final int[] connectionOffsets;
+    private final int[] connectionTargets;
+    private final int[] connectionRoutes;
+    private final int[] connectionDepartures;            // seconds since midnight (of the service date in forDays views)
+    private final int[] connectionArrivals;
+    private final int[] connectionServices;              // ServiceCalendar service number of the connection's trip
+
+    private final int[]   footpathOffsets;
+    private final int[]   footpathTargets;
+    private final short[] footpathSeconds;               // walks are capped by the footpath budget, so a short is plenty
+
+    private final int[] stopRouteOffsets;
+    private final int[] stopRoutes;
+
+    public CompactGraph(
+            String[]             stopIds,
+            Map<String, Integer> stopIndexById,
+            double[]             stopLatitudes,
+            double[]             stopLongitudes,
+            String[]             routeIds,
+            Map<String, Integer> routeIndexById,
+            String[]             routeShortNames,
+            byte[]               routeModes,
+            int[]                edgeOffsets,
+            int[]                edgeTargets,
+            int[]                edgeSeconds,
+            int[]                edgeRoutes,
+            byte[]               edgeModes,
+            int[]                connectionOffsets,
+            int[]                connectionTargets,
+            int[]                connectionRoutes,
+            int[]                connectionDepartures,
+            int[]                connectionArrivals,
+            int[]                connectionServices,
+            int[]                footpathOffsets,
+            int[]                footpathTargets,
+            short[]              footpathSeconds,
+            int[]                stopRouteOffsets,
+            int[]                stopRoutes
+    ) {
+        this.stopIds              = stopIds;
+        this.stopIndexById        = stopIndexById;
+        this.stopLatitudes        = stopLatitudes;
+        this.stopLongitudes       = stopLongitudes;
+        this.routeIds             = routeIds;
+        this.routeIndexById       = routeIndexById;
+        this.routeShortNames      = routeShortNames;
+        this.routeModes           = routeModes;
+        this.edgeOffsets          = edgeOffsets;
+        this.edgeTargets          = edgeTargets;
+        this.edgeSeconds          = edgeSeconds;
+        this.edgeRoutes           = edgeRoutes;
+        this.edgeModes            = edgeModes;
+        this.connectionOffsets    = connectionOffsets;
+        this.connectionTargets    = connectionTargets;
+        this.connectionRoutes     = connectionRoutes;
+        this.connectionDepartures = connectionDepartures;
+        this.connectionArrivals   = connectionArrivals;
+        this.connectionServices   = connectionServices;
+        this.footpathOffsets      = footpathOffsets;
+        this.footpathTargets      = footpathTargets;
+        this.footpathSeconds      = footpathSeconds;
+        this.stopRouteOffsets     = stopRouteOffsets;
+        this.stopRoutes           = stopRoutes;
+    }
+
+    // An empty graph — used before the GTFS feed has loaded.
+    public static CompactGraph empty() {
+        return new CompactGraph(new String[0], Map.of(), new double[0], new double[0],
+                new String[0], Map.of(), new String[0], new byte[0],
+                new int[]{0}, new int[0], new int[0], new int[0], new byte[0],
+                new int[]{0}, new int[0], new int[0], new int[0], new int[0], new int[0],
+                new int[]{0}, new int[0], new short[0],
+                new int[]{0}, new int[0]);
+    }
+
+    // The graph of one service date on a continuous time axis (seconds since that date's midnight), matching
+    // TransitTimetable.forDays: the date's own departures, the next day's shifted by +24 h, and the previous day's
+    // departures at or after 24:00:00 shifted by -24 h. Each stop's three sorted runs are merged, so departures stay
+    // sorted; stops, routes, edges, footpaths and the (stop, route) state numbering are shared with this graph.
+    public CompactGraph forDays(ServiceDay previousDay, ServiceDay day, ServiceDay nextDay) {
+        ServiceDay[] days    = { previousDay, day, nextDay };
+        int[]        offsets = { -DayTimetable.DAY_SECONDS, 0, DayTimetable.DAY_SECONDS };
+
+        int   stopCount = stopIds.length;
+        int[] counts    = new int[stopCount + 1];
+        for (int s = 0; s < stopCount; s++) {
+            for (int d = 0; d < days.length; d++) {
+                for (int c = connectionOffsets[s]; c < connectionOffsets[s + 1]; c++) {
+                    if (keeps(days[d], d, c)) counts[s + 1]++;
+                }
+            }
+            counts[s + 1] += counts[s];
+        }
+        int[] targets    = new int[counts[stopCount]];
+        int[] routes     = new int[targets.length];
+        int[] departures = new int[targets.length];
+        int[] arrivals   = new int[targets.length];
+        int[] services   = new int[targets.length];
+        int   slot       = 0;
+        int[] cursors    = new int[days.length];
+        for (int s = 0; s < stopCount; s++) {
+            Arrays.fill(cursors, connectionOffsets[s]);
+            while (true) {
+                // Next kept departure of each day; take the earliest, ties in day order
+                int best = -1;
+                for (int d = 0; d < days.length; d++) {
+                    while (cursors[d] < connectionOffsets[s + 1] && !keeps(days[d], d, cursors[d])) cursors[d]++;
+                    if (cursors[d] < connectionOffsets[s + 1] && (best < 0
+                            || connectionDepartures[cursors[d]] + offsets[d] < connectionDepartures[cursors[best]] + offsets[best])) {
+                        best = d;
+                    }
+                }
+                if (best < 0) break;
+                int c = cursors[best]++;
+                targets[slot]    = connectionTargets[c];
+                routes[slot]     = connectionRoutes[c];
+                departures[slot] = connectionDepartures[c] + offsets[best];
+                arrivals[slot]   = connectionArrivals[c] + offsets[best];
+                services[slot]   = connectionServices[c];
+                slot++;
+            }
+        }
+
+        return new CompactGraph(
+                stopIds, stopIndexById, stopLatitudes, stopLongitudes,
+                routeIds, routeIndexById, routeShortNames, routeModes,
+                edgeOffsets, edgeTargets, edgeSeconds, edgeRoutes, edgeModes,
+                counts, targets, routes, departures, arrivals, services,
+                footpathOffsets, footpathTargets, footpathSeconds,
+                stopRouteOffsets, stopRoutes);
+    }
+
+    // True if connection c belongs in forDays' run for day d (0 = previous day, which only contributes departures past midnight).
+    private boolean keeps(ServiceDay serviceDay, int d, int c) {
+        return serviceDay.runs(connectionServices[c]) && (d > 0 || connectionDepartures[c] >= DayTimetable.DAY_SECONDS);
+    }
+
+    // Stops
+
+    public int stopCount() {
+        return stopIds.length;
+    }
+
+    // Returns the dense index for a GTFS stop ID, or -1 if the stop is unknown.
+    public int indexOf(String stopId) {
+        if (stopId == null) return -1;
+        Integer index = stopIndexById.get(stopId);
+        return index != null ? index : -1;
+    }
+
+    public String stopId(int stop) {
+        return stopIds[stop];
+    }
+
+    public double latitude(int stop) {
+        return stopLatitudes[stop];
+    }
+
+    public double longitude(int stop) {
+        return stopLongitudes[stop];
+    }
+
+    // Routes
+
+    public int routeCount() {
+        return routeIds.length;
+    }
+
+    // Returns the dense index for a GTFS route ID, or NO_ROUTE if the route is unknown.
+    public int routeIndexOf(String routeId) {
+        if (routeId == null) return NO_ROUTE;
+        Integer index = routeIndexById.get(routeId);
+        return index != null ? index : NO_ROUTE;
+    }
+
+    public String routeId(int route) {
+        return route == NO_ROUTE ? null : routeIds[route];
+    }
+
+    public String routeShortName(int route) {
+        return route == NO_ROUTE ? null : routeShortNames[route];
+    }
+
+    public TransportMode routeMode(int route) {
+        return route == NO_ROUTE ? null : MODES[routeModes[route]];
+    }
+
+    // Edges
+
+    public int edgeStart(int stop) {
+        return edgeOffsets[stop];
+    }
+
+    public int edgeEnd(int stop) {
+        return edgeOffsets[stop + 1];
+    }
+
+    public int edgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    public int edgeSeconds(int edge) {
+        return edgeSeconds[edge];
+    }
+
+    public int edgeRoute(int edge) {
+        return edgeRoutes[edge];
+    }
+
+    public TransportMode edgeMode(int edge) {
+        return edgeModes[edge] < 0 ? null : MODES[edgeModes[edge]];
+    }
+
+    // Scheduled connections
+
+    public int connectionStart(int stop) {
+        return connectionOffsets[stop];
+    }
+
+    public int connectionEnd(int stop) {
+        return connectionOffsets[stop + 1];
+    }
+
+    // Index of the first connection leaving 'stop' at or after 'time', or connectionEnd(stop) if there is none.
+    // Each stop's departures are sorted, so this is a binary search instead of a scan over the whole day.
+    public int firstConnectionAtOrAfter(int stop, int time) {
+        int lo = connectionOffsets[stop];
+        int hi = connectionOffsets[stop + 1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (connectionDepartures[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public int connectionTarget(int connection) {
+        return connectionTargets[connection];
+    }
+
+    public int connectionRoute(int connection) {
+        return connectionRoutes[connection];
+    }
+
+    public int connectionDeparture(int connection) {
+        return connectionDepartures[connection];
+    }
+
+    public int connectionArrival(int connection) {
+        return connectionArrivals[connection];
+    }
+
+    public int connectionService(int connection) {
+        return connectionServices[connection];
+    }
+
+    // Footpaths
+
+    public int footpathStart(int stop) {
+        return footpathOffsets[stop];
+    }
+
+    public int footpathEnd(int stop) {
+        return footpathOffsets[stop + 1];
+    }
+
+    public int footpathTarget(int footpath) {
+        return footpathTargets[footpath];
+    }
+
+    public int footpathSeconds(int footpath) {
+        return footpathSeconds[footpath];
+    }
+
+    // (stop, route) states
+
+    // Number of distinct (stop, route context) states — the size of a per-query bestScore array.
+    public int stateCount() {
+        return stopRoutes.length + 2 * stopIds.length;
+    }
+
+    // Dense state index for being at 'stop' with 'route' as the route context (NO_ROUTE before the first boarding).
+    public int stateIndex(int stop, int route) {
+        int base = stopRouteOffsets[stop] + 2 * stop;
+        if (route == NO_ROUTE) return base;
+
+        int lo = stopRouteOffsets[stop];
+        int hi = stopRouteOffsets[stop + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int value = stopRoutes[mid];
+            if (value < route) {
+                lo = mid + 1;
+            } else if (value > route) {
+                hi = mid - 1;
+            } else {
+                return base + 2 + (mid - stopRouteOffsets[stop]);
+            }
+        }
+        return base + 1;
+    }
+}
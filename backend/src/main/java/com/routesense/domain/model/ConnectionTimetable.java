@@ -0,0 +1,177 @@
+package com.routesense.domain.model;
+
+import java.util.Arrays;
+
+// Flat view of the GTFS schedule used by the Connection Scan router.
+// Every stop-to-stop hop of every trip is one connection, and all connections live in parallel int arrays
+// sorted by departure time, so a query is a single forward scan with no priority queue.
+//
+// Trips are numbered globally; tripPattern / tripIndexInPattern map a trip back into the TransitTimetable
+// so a ride can be expanded into legs, and connectionPosition is the hop's position within that pattern.
+public class ConnectionTimetable {
+
+    private final int[] departureStops;      // dense stop index (same numbering as TransitTimetable)
+    private final int[] arrivalStops;
+    private final int[] departureTimes;      // seconds since midnight, ascending
+    private final int[] arrivalTimes;
+    private final int[] trips;               // global trip number
+    private final int[] positions;           // position of the departure stop within the trip's pattern
+
+    private final int[] tripPatterns;        // global trip → pattern
+    private final int[] tripIndexInPattern;  // global trip → trip index within its pattern
+    private final int[] tripServices;        // global trip → ServiceCalendar service number
+
+    public ConnectionTimetable(
+            int[] departureStops,
+            int[] arrivalStops,
+            int[] departureTimes,
+            int[] arrivalTimes,
+            int[] trips,
+            int[] positions,
+            int[] tripPatterns,
+            int[] tripIndexInPattern,
+            int[] tripServices
+    ) {
+        this.departureStops     = departureStops;
+        this.arrivalStops       = arrivalStops;
+        this.departureTimes     = departureTimes;
+        this.arrivalTimes       = arrivalTimes;
+        this.trips              = trips;
+        this.positions          = positions;
+        this.tripPatterns       = tripPatterns;
+        this.tripIndexInPattern = tripIndexInPattern;
+        this.tripServices       = tripServices;
+    }
+
+    // An empty connection list — used before the GTFS feed has loaded or when stop_times.txt is missing.
+    public static ConnectionTimetable empty() {
+        return new ConnectionTimetable(new int[0], new int[0], new int[0], new int[0],
+                new int[0], new int[0], new int[0], new int[0], new int[0]);
+    }
+
+    // Flattens every hop of every trip of the timetable into one connection array sorted by departure time, then duration.
+    // Connections are emitted in (trip, position) order first, so ties keep a trip's hops in riding order.
+    // Hops departing before midnight (the previous day's trips in a TransitTimetable.forDays view) are left out:
+    // no search starts before midnight, so they could never be boarded.
+    public static ConnectionTimetable fromTimetable(TransitTimetable timetable) {
+        int tripCount = 0;
+        int connectionCount = 0;
+        for (int p = 0; p < timetable.patternCount(); p++) {
+            tripCount += timetable.tripCount(p);
+            for (int t = 0; t < timetable.tripCount(p); t++) {
+                for (int i = 0; i < timetable.patternLength(p) - 1; i++) {
+                    if (timetable.time(p, t, i) >= 0) connectionCount++;
+                }
+            }
+        }
+
+        int[] tripPatterns       = new int[tripCount];
+        int[] tripIndexInPattern = new int[tripCount];
+        int[] tripServices       = new int[tripCount];
+        int[] connTrips          = new int[connectionCount];
+        int[] connPositions      = new int[connectionCount];
+        long[] sortKeys          = new long[connectionCount];
+
+        int trip = 0;
+        int c = 0;
+        for (int p = 0; p < timetable.patternCount(); p++) {
+            for (int t = 0; t < timetable.tripCount(p); t++, trip++) {
+                tripPatterns[trip]       = p;
+                tripIndexInPattern[trip] = t;
+                tripServices[trip]       = timetable.tripService(p, t);
+                for (int i = 0; i < timetable.patternLength(p) - 1; i++) {
+                    int departure = timetable.time(p, t, i);
+                    if (departure < 0) continue;
+                    int duration  = Math.max(0, timetable.time(p, t, i + 1) - departure);
+                    connTrips[c]     = trip;
+                    connPositions[c] = i;
+                    // departure (20 bits) | duration (16 bits) | emission index (27 bits) — sorts as a plain long
+                    sortKeys[c] = ((long) departure << 43) | ((long) Math.min(duration, 0xFFFF) << 27) | c;
+                    c++;
+                }
+            }
+        }
+        Arrays.sort(sortKeys);
+
+        int[] departureStops = new int[connectionCount];
+        int[] arrivalStops   = new int[connectionCount];
+        int[] departureTimes = new int[connectionCount];
+        int[] arrivalTimes   = new int[connectionCount];
+        int[] trips          = new int[connectionCount];
+        int[] positions      = new int[connectionCount];
+        for (int i = 0; i < connectionCount; i++) {
+            int source   = (int) (sortKeys[i] & ((1L << 27) - 1));
+            int p        = tripPatterns[connTrips[source]];
+            int t        = tripIndexInPattern[connTrips[source]];
+            int position = connPositions[source];
+            departureStops[i] = timetable.patternStop(p, position);
+            arrivalStops[i]   = timetable.patternStop(p, position + 1);
+            departureTimes[i] = timetable.time(p, t, position);
+            arrivalTimes[i]   = timetable.time(p, t, position + 1);
+            trips[i]          = connTrips[source];
+            positions[i]      = position;
+        }
+
+        return new ConnectionTimetable(departureStops, arrivalStops, departureTimes, arrivalTimes,
+                trips, positions, tripPatterns, tripIndexInPattern, tripServices);
+    }
+
+    public int connectionCount() {
+        return departureTimes.length;
+    }
+
+    public int tripCount() {
+        return tripPatterns.length;
+    }
+
+    // Index of the first connection departing at or after 'time' (connectionCount() if none) — where a scan starts.
+    public int firstDepartingAtOrAfter(int time) {
+        int lo = 0;
+        int hi = departureTimes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (departureTimes[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public int departureStop(int connection) {
+        return departureStops[connection];
+    }
+
+    public int arrivalStop(int connection) {
+        return arrivalStops[connection];
+    }
+
+    public int departureTime(int connection) {
+        return departureTimes[connection];
+    }
+
+    public int arrivalTime(int connection) {
+        return arrivalTimes[connection];
+    }
+
+    public int trip(int connection) {
+        return trips[connection];
+    }
+
+    public int position(int connection) {
+        return positions[connection];
+    }
+
+    public int tripPattern(int trip) {
+        return tripPatterns[trip];
+    }
+
+    public int tripIndexInPattern(int trip) {
+        return tripIndexInPattern[trip];
+    }
+
+    public int tripService(int trip) {
+        return tripServices[trip];
+    }
+}
@@ -0,0 +1,288 @@
+package com.routesense.domain.model;
+
+import java.util.Arrays;
+
+// Contraction hierarchy over the time-independent stop graph (CompactGraph edges) for one EdgeWeightProfile, built
+// once per generation so the fallback searches run two small upward searches instead of a full Dijkstra.
+// Stops were contracted one by one, least important first; contracting a stop added a shortcut between two of its
+// neighbours wherever the path through it was their only shortest one. A query then only ever climbs: forward from
+// the origin over edges to later-contracted stops, backward from the destination over edges from later-contracted
+// stops. The two searches meet at the highest stop of a shortest path, and its shortcuts are unpacked into stop hops.
+//
+// Layout (CSR-style; stop numbering matches CompactGraph):
+//   edges — from, to, weight; a shortcut also has the two edges it stands for in edgeFirst / edgeSecond, an original edge -1
+//   up    — edges out of stop s towards later-contracted stops: upEdges[upOffsets[s] .. upOffsets[s + 1])
+//   down  — edges into stop s from later-contracted stops: downEdges[downOffsets[s] .. downOffsets[s + 1])
+public class ContractionHierarchy {
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    // Query memory of each search thread, reused from query to query (see QueryWorkspace)
+    private static final ThreadLocal<QueryWorkspace> WORKSPACE = ThreadLocal.withInitial(QueryWorkspace::new);
+
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final int[] edgeWeight;
+    private final int[] edgeFirst;
+    private final int[] edgeSecond;
+
+    private final int[] upOffsets;
+    private final int[] upEdges;
+    private final int[] downOffsets;
+    private final int[] downEdges;
+
+    public ContractionHierarchy(
+            int[] edgeFrom,
+            int[] edgeTo,
+            int[] edgeWeight,
+            int[] edgeFirst,
+            int[] edgeSecond,
+            int[] upOffsets,
+            int[] upEdges,
+            int[] downOffsets,
+            int[] downEdges
+    ) {
+        this.edgeFrom    = edgeFrom;
+        this.edgeTo      = edgeTo;
+        this.edgeWeight  = edgeWeight;
+        this.edgeFirst   = edgeFirst;
+        this.edgeSecond  = edgeSecond;
+        this.upOffsets   = upOffsets;
+        this.upEdges     = upEdges;
+        this.downOffsets = downOffsets;
+        this.downEdges   = downEdges;
+    }
+
+    // No feed loaded yet
+    public static ContractionHierarchy empty() {
+        return new ContractionHierarchy(new int[0], new int[0], new int[0], new int[0], new int[0],
+                new int[1], new int[0], new int[1], new int[0]);
+    }
+
+    public int stopCount() {
+        return upOffsets.length - 1;
+    }
+
+    public int edgeCount() {
+        return edgeFrom.length;
+    }
+
+    // Number of edges that are shortcuts rather than original graph edges
+    public int shortcutCount() {
+        int count = 0;
+        for (int first : edgeFirst) {
+            if (first >= 0) count++;
+        }
+        return count;
+    }
+
+    // Returns the stops of a shortest path from origin to destination, both included, or null if there is none.
+    // The forward and backward searches take turns by smallest key and stop once neither can beat the best meeting point.
+    public int[] shortestPath(int origin, int destination) {
+        int stopCount = stopCount();
+        if (origin < 0 || destination < 0 || origin >= stopCount || destination >= stopCount) {
+            return null;
+        }
+        if (origin == destination) {
+            return new int[]{ origin };
+        }
+
+        QueryWorkspace workspace = WORKSPACE.get();
+        workspace.begin(stopCount);
+        int[]   forwardDistance  = workspace.forwardDistance;
+        int[]   backwardDistance = workspace.backwardDistance;
+        int[]   forwardEdge      = workspace.forwardEdge;   // up edge the forward search reached the stop by
+        int[]   backwardEdge     = workspace.backwardEdge;  // down edge the backward search reached the stop by
+        MinHeap forward          = workspace.forward;
+        MinHeap backward         = workspace.backward;
+        workspace.touch(origin);
+        workspace.touch(destination);
+
+        forwardDistance[origin]       = 0;
+        backwardDistance[destination] = 0;
+        forwardEdge[origin]           = -1;
+        backwardEdge[destination]     = -1;
+        forward.push(origin, 0);
+        backward.push(destination, 0);
+
+        int best = UNREACHED;
+        int meet = -1;
+        while (true) {
+            int forwardKey  = forward.isEmpty() ? UNREACHED : forward.peekKey();
+            int backwardKey = backward.isEmpty() ? UNREACHED : backward.peekKey();
+            if (Math.min(forwardKey, backwardKey) >= best) break;
+
+            boolean goForward = forwardKey <= backwardKey;
+            MinHeap heap      = goForward ? forward : backward;
+
+            int   distance = heap.peekKey();
+            int   stop     = heap.pop();
+            int[] own      = goForward ? forwardDistance : backwardDistance;
+            int[] other    = goForward ? backwardDistance : forwardDistance;
+            if (distance > own[stop]) continue; // stale entry
+
+            if (other[stop] != UNREACHED && distance + other[stop] < best) {
+                best = distance + other[stop];
+                meet = stop;
+            }
+
+            int[] offsets = goForward ? upOffsets : downOffsets;
+            int[] edges   = goForward ? upEdges : downEdges;
+            int[] reached = goForward ? forwardEdge : backwardEdge;
+            for (int slot = offsets[stop]; slot < offsets[stop + 1]; slot++) {
+                int edge      = edges[slot];
+                int next      = goForward ? edgeTo[edge] : edgeFrom[edge];
+                int candidate = distance + edgeWeight[edge];
+                workspace.touch(next);
+                if (candidate < own[next]) {
+                    own[next]     = candidate;
+                    reached[next] = edge;
+                    heap.push(next, candidate);
+                }
+            }
+        }
+        if (meet < 0) {
+            return null;
+        }
+
+        // Edges origin → meet (collected backwards), then meet → destination, each unpacked into original hops
+        int[] pathEdges = new int[8];
+        int   count     = 0;
+        for (int stop = meet; stop != origin; stop = edgeFrom[forwardEdge[stop]]) {
+            if (count == pathEdges.length) pathEdges = Arrays.copyOf(pathEdges, count * 2);
+            pathEdges[count++] = forwardEdge[stop];
+        }
+        reverse(pathEdges, count);
+        for (int stop = meet; stop != destination; stop = edgeTo[backwardEdge[stop]]) {
+            if (count == pathEdges.length) pathEdges = Arrays.copyOf(pathEdges, count * 2);
+            pathEdges[count++] = backwardEdge[stop];
+        }
+
+        int[] path   = new int[16];
+        int   length = 0;
+        path[length++] = origin;
+        int[] stack = new int[16];
+        for (int i = 0; i < count; i++) {
+            int depth = 0;
+            stack[depth++] = pathEdges[i];
+            while (depth > 0) {
+                int edge = stack[--depth];
+                if (edgeFirst[edge] >= 0) {
+                    if (depth + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                    stack[depth++] = edgeSecond[edge];  // popped after the first half is done
+                    stack[depth++] = edgeFirst[edge];
+                    continue;
+                }
+                if (length == path.length) path = Arrays.copyOf(path, length * 2);
+                path[length++] = edgeTo[edge];
+            }
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    private static void reverse(int[] values, int count) {
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int swap  = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+
+    // The distance and edge arrays of both searches plus their heaps, kept per thread so a query allocates only its
+    // result. Arrays are not cleared between queries: a stop is reset the first time a query touches it, which the
+    // stamp records against the query's epoch, so each query only pays for the stops it actually reaches.
+    private static final class QueryWorkspace {
+        private final MinHeap forward  = new MinHeap();
+        private final MinHeap backward = new MinHeap();
+        private int[] forwardDistance  = new int[0];
+        private int[] backwardDistance = new int[0];
+        private int[] forwardEdge      = new int[0];
+        private int[] backwardEdge     = new int[0];
+        private int[] stamp            = new int[0];
+        private int   epoch;
+
+        void begin(int stopCount) {
+            if (stamp.length != stopCount) {
+                forwardDistance  = new int[stopCount];
+                backwardDistance = new int[stopCount];
+                forwardEdge      = new int[stopCount];
+                backwardEdge     = new int[stopCount];
+                stamp            = new int[stopCount];
+                epoch            = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                epoch = 1;
+            }
+            forward.clear();
+            backward.clear();
+        }
+
+        // Makes the stop unreached in both directions if this query has not seen it yet
+        void touch(int stop) {
+            if (stamp[stop] != epoch) {
+                stamp[stop]            = epoch;
+                forwardDistance[stop]  = UNREACHED;
+                backwardDistance[stop] = UNREACHED;
+            }
+        }
+    }
+
+    // Binary min-heap of (stop, key) pairs in two parallel int arrays; stale entries are skipped by the caller.
+    private static final class MinHeap {
+        private int[] stops = new int[32];
+        private int[] keys  = new int[32];
+        private int   size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int peekKey() {
+            return keys[0];
+        }
+
+        void push(int stop, int key) {
+            if (size == stops.length) {
+                stops = Arrays.copyOf(stops, size * 2);
+                keys  = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                stops[i] = stops[parent];
+                keys[i]  = keys[parent];
+                i = parent;
+            }
+            stops[i] = stop;
+            keys[i]  = key;
+        }
+
+        int pop() {
+            int top = stops[0];
+            size--;
+            if (size > 0) {
+                int stop = stops[size];
+                int key  = keys[size];
+                int i    = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                    if (keys[child] >= key) break;
+                    stops[i] = stops[child];
+                    keys[i]  = keys[child];
+                    i = child;
+                }
+                stops[i] = stop;
+                keys[i]  = key;
+            }
+            return top;
+        }
+    }
+}
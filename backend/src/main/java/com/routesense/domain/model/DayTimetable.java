@@ -0,0 +1,18 @@
+package com.routesense.domain.model;
+
+import java.time.LocalDate;
+
+// A generation's routing timetables for one travel date, holding only the trips that actually run.
+// Times are seconds since the date's midnight on one continuous axis: the date's own trips, the next day's trips
+// past 24 h and the previous day's trips still running after midnight (GTFS times past 24:00:00). A search late in
+// the evening therefore rolls over into the next morning by itself. Same layouts and stop numbering as the full structures.
+// tripTransfers are the trip-based router's transfers over transitTimetable, built with it; null unless that engine is selected.
+public record DayTimetable(
+        LocalDate           date,
+        TransitTimetable    transitTimetable,
+        ConnectionTimetable connectionTimetable,
+        CompactGraph        compactGraph,
+        TripTransfers       tripTransfers) {
+
+    public static final int DAY_SECONDS = 24 * 3600;
+}
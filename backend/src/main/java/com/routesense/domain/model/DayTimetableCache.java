@@ -0,0 +1,115 @@
+package com.routesense.domain.model;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Per-date DayTimetables of one graph generation, built from the full timetables the first time a date is asked for.
+// Dates from today to horizonDays ahead are cached: today's and tomorrow's entries are always kept, the others are
+// evicted least-recently-used once more than maxEntries are held. Dates outside that window are built per request.
+// The cache belongs to its generation, so a feed reload starts with an empty one.
+// Once today's timetables are asked for, tomorrow's are built in the background, so the first search after midnight
+// finds them ready instead of building them (trip transfers included) inside its own deadline.
+public class DayTimetableCache {
+
+    private final ServiceCalendar  calendar;
+    private final TransitTimetable transitTimetable;
+    private final CompactGraph     compactGraph;
+    private final int              horizonDays;
+    private final int              maxEntries;
+    private final boolean          tripTransfers;
+
+    // Access-ordered, so iteration starts at the least recently used date. Guarded by itself.
+    private final LinkedHashMap<LocalDate, DayTimetable> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Date being built in the background, if any. Guarded by entries.
+    private LocalDate warming;
+
+    public DayTimetableCache(
+            ServiceCalendar  calendar,
+            TransitTimetable transitTimetable,
+            CompactGraph     compactGraph,
+            int              horizonDays,
+            int              maxEntries,
+            boolean          tripTransfers
+    ) {
+        this.calendar         = calendar;
+        this.transitTimetable = transitTimetable;
+        this.compactGraph     = compactGraph;
+        this.horizonDays      = Math.max(1, horizonDays);
+        this.maxEntries       = Math.max(2, maxEntries);
+        this.tripTransfers    = tripTransfers;
+    }
+
+    // No feed loaded yet
+    public static DayTimetableCache empty() {
+        return new DayTimetableCache(ServiceCalendar.empty(), TransitTimetable.empty(), CompactGraph.empty(), 1, 2, false);
+    }
+
+    // The timetables for one service date. Building happens outside the lock, so a slow first build for one date
+    // never blocks lookups of another; if two requests race on the same new date, the first one stored wins.
+    public DayTimetable forDate(LocalDate date) {
+        LocalDate today = LocalDate.now();
+        if (date.equals(today)) {
+            warm(today.plusDays(1));
+        }
+        synchronized (entries) {
+            DayTimetable cached = entries.get(date);
+            if (cached != null) return cached;
+        }
+
+        DayTimetable built = build(date);
+        if (date.isBefore(today) || date.isAfter(today.plusDays(horizonDays))) {
+            return built;
+        }
+        synchronized (entries) {
+            DayTimetable raced = entries.putIfAbsent(date, built);
+            if (raced != null) return raced;
+            evictBeyondCapacity(today);
+        }
+        return built;
+    }
+
+    // Number of dates currently cached
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // The date's trips plus the neighbouring days' on the same time axis (see DayTimetable)
+    private DayTimetable build(LocalDate date) {
+        ServiceDay previousDay = calendar.day(date.minusDays(1));
+        ServiceDay day         = calendar.day(date);
+        ServiceDay nextDay     = calendar.day(date.plusDays(1));
+        TransitTimetable timetable = transitTimetable.forDays(previousDay, day, nextDay);
+        return new DayTimetable(date,
+                timetable,
+                ConnectionTimetable.fromTimetable(timetable),
+                compactGraph.forDays(previousDay, day, nextDay),
+                tripTransfers ? TripTransfers.fromTimetable(timetable) : null);
+    }
+
+    // Builds and caches the date's timetables on the common pool unless they are cached or already being built
+    private void warm(LocalDate date) {
+        synchronized (entries) {
+            if (entries.containsKey(date) || date.equals(warming)) return;
+            warming = date;
+        }
+        CompletableFuture.runAsync(() -> forDate(date));
+    }
+
+    // Drops least recently used dates until the cache fits, never today or tomorrow. Caller holds the lock.
+    private void evictBeyondCapacity(LocalDate today) {
+        LocalDate tomorrow = today.plusDays(1);
+        Iterator<Map.Entry<LocalDate, DayTimetable>> lru = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && lru.hasNext()) {
+            LocalDate date = lru.next().getKey();
+            if (!date.equals(today) && !date.equals(tomorrow)) {
+                lru.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.routesense.domain.model;
+
+// Edge weightings of the time-independent fallback search over the averaged stop graph (CompactGraph edges).
+// Each one gets its own ContractionHierarchy, built once per graph generation.
+public enum EdgeWeightProfile {
+    FASTEST,     // average travel time — the fastest route
+    FEWEST_HOPS, // every hop costs the same — the route with the fewest hops, regardless of time
+    BALANCED;    // travel time plus a fixed penalty per hop — not much slower than the fastest, with fewer hops
+
+    // Per-hop penalty of BALANCED
+    public static final int BALANCED_HOP_PENALTY_SECONDS = 300;
+
+    // Weight of one edge with the given average travel time. Always at least 1, so every hop costs something.
+    public int weight(int travelSeconds) {
+        int weight = switch (this) {
+            case FASTEST     -> travelSeconds;
+            case FEWEST_HOPS -> 1;
+            case BALANCED    -> travelSeconds + BALANCED_HOP_PENALTY_SECONDS;
+        };
+        return Math.max(1, weight);
+    }
+}
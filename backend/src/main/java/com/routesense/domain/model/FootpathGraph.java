@@ -0,0 +1,90 @@
+package com.routesense.domain.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Walking links between nearby stops, generated once per feed and shared by every routing structure compiled from it.
+// Stop numbering is the sorted-stop-ID numbering of CompactGraph, TransitTimetable and StopSpatialIndex, so the
+// builders take the arrays as they are instead of re-keying a map.
+//
+// Layout (CSR): footpaths out of stop s live in [offsets[s], offsets[s + 1]) of targets / seconds, nearest first.
+// Symmetric: a footpath from s to t means one from t to s with the same walking time, so the list out of a stop is
+// also the list into it.
+// Walking times are shorts: the walking budget keeps them far below the 9 hours a short can hold.
+public class FootpathGraph {
+
+    private final String[] stopIds;
+    private final int[]    offsets;
+    private final int[]    targets;
+    private final short[]  seconds;
+
+    public FootpathGraph(String[] stopIds, int[] offsets, int[] targets, short[] seconds) {
+        this.stopIds = stopIds;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.seconds = seconds;
+    }
+
+    // No feed loaded yet: no stops, no footpaths
+    public static FootpathGraph empty() {
+        return new FootpathGraph(new String[0], new int[1], new int[0], new short[0]);
+    }
+
+    public int stopCount() {
+        return stopIds.length;
+    }
+
+    public String stopId(int stop) {
+        return stopIds[stop];
+    }
+
+    public int footpathCount() {
+        return targets.length;
+    }
+
+    public int footpathStart(int stop) {
+        return offsets[stop];
+    }
+
+    public int footpathEnd(int stop) {
+        return offsets[stop + 1];
+    }
+
+    public int footpathTarget(int slot) {
+        return targets[slot];
+    }
+
+    public int footpathSeconds(int slot) {
+        return seconds[slot];
+    }
+
+    // The flat arrays themselves, for builders that adopt them as their own footpath layout. Not to be modified.
+    public int[] offsets() {
+        return offsets;
+    }
+
+    public int[] targets() {
+        return targets;
+    }
+
+    public short[] seconds() {
+        return seconds;
+    }
+
+    // stopId → footpaths view for StopGraphRepository callers; only stops with at least one footpath get an entry.
+    public Map<String, List<FootpathEdge>> toMap() {
+        Map<String, List<FootpathEdge>> footpaths = new HashMap<>();
+        for (int stop = 0; stop < stopIds.length; stop++) {
+            if (offsets[stop] == offsets[stop + 1]) continue;
+            List<FootpathEdge> edges = new ArrayList<>(offsets[stop + 1] - offsets[stop]);
+            for (int slot = offsets[stop]; slot < offsets[stop + 1]; slot++) {
+                edges.add(new FootpathEdge(stopIds[targets[slot]], seconds[slot]));
+            }
+            footpaths.put(stopIds[stop], List.copyOf(edges));
+        }
+        return Collections.unmodifiableMap(footpaths);
+    }
+}
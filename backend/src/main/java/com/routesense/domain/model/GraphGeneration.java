@@ -0,0 +1,50 @@
+package com.routesense.domain.model;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// One immutable, fully built version of the transit graph: the GTFS maps plus every routing structure compiled from them.
+// The loader publishes a whole generation at once, so a request that reads its generation once at the start sees
+// a consistent graph from beginning to end even if a newer feed is swapped in while it runs.
+//
+// number counts generations since startup (1 = the feed loaded at boot); feedChecksum identifies the GTFS files it was built from.
+// footpaths holds the walking links between nearby stops, numbered like the compiled structures below.
+// fallbackHierarchies holds one ContractionHierarchy per edge weighting for the time-independent fallback search.
+// landmarkBounds gives the schedule-aware Dijkstra its A* lower bounds on the remaining travel time.
+// dayTimetables hands out the timetables cut down to one service date; searches and departures route on those.
+public record GraphGeneration(
+        long                                         number,
+        Instant                                      loadedAt,
+        long                                         feedChecksum,
+        Map<String, Stop>                            stops,
+        Map<String, List<StopEdge>>                  adjacencyList,
+        Map<String, List<ScheduledConnection>>       scheduleByStop,
+        Map<String, String>                          routeShortNames,
+        Map<String, List<double[]>>                  routeShapes,
+        FootpathGraph                                footpaths,
+        ServiceCalendar                              serviceCalendar,
+        TransitTimetable                             transitTimetable,
+        ConnectionTimetable                          connectionTimetable,
+        CompactGraph                                 compactGraph,
+        Map<EdgeWeightProfile, ContractionHierarchy> fallbackHierarchies,
+        LandmarkLowerBounds                          landmarkBounds,
+        StopSpatialIndex                             stopSpatialIndex,
+        DayTimetableCache                            dayTimetables) {
+
+    // Generation 0: no feed loaded yet
+    public static GraphGeneration empty() {
+        return new GraphGeneration(0L, Instant.EPOCH, 0L, Map.of(), Map.of(), Map.of(), Map.of(), Map.of(), FootpathGraph.empty(),
+                ServiceCalendar.empty(), TransitTimetable.empty(), ConnectionTimetable.empty(), CompactGraph.empty(), emptyHierarchies(),
+                LandmarkLowerBounds.empty(), StopSpatialIndex.empty(), DayTimetableCache.empty());
+    }
+
+    private static Map<EdgeWeightProfile, ContractionHierarchy> emptyHierarchies() {
+        Map<EdgeWeightProfile, ContractionHierarchy> hierarchies = new EnumMap<>(EdgeWeightProfile.class);
+        for (EdgeWeightProfile profile : EdgeWeightProfile.values()) {
+            hierarchies.put(profile, ContractionHierarchy.empty());
+        }
+        return hierarchies;
+    }
+}
@@ -0,0 +1,91 @@
+package com.routesense.domain.model;
+
+// ALT (A*, landmarks, triangle inequality) lower bounds on scheduled travel time, built once per generation so the
+// schedule-aware Dijkstra can expand states towards the destination first without ever changing its result.
+//
+// The bounds are taken over a time-independent graph where every stop pair is joined by its fastest scheduled hop or
+// its footpath, ignoring waits. No real journey can beat that graph, so for any landmark L the triangle inequality gives
+//   time(s → t) ≥ dist(L, t) − dist(L, s)   and   time(s → t) ≥ dist(s, L) − dist(t, L)
+// and the largest of these over all landmarks is a consistent A* heuristic in seconds.
+//
+// Layout: fromLandmark[l * stopCount + s] = dist(landmark l, s), toLandmark[l * stopCount + s] = dist(s, landmark l),
+// UNREACHED where no path exists. Stop numbering matches CompactGraph.
+public class LandmarkLowerBounds {
+
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final int   stopCount;
+    private final int[] landmarks;
+    private final int[] fromLandmark;
+    private final int[] toLandmark;
+
+    public LandmarkLowerBounds(int stopCount, int[] landmarks, int[] fromLandmark, int[] toLandmark) {
+        this.stopCount    = stopCount;
+        this.landmarks    = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark   = toLandmark;
+    }
+
+    // No feed loaded yet: no landmarks, every bound is 0
+    public static LandmarkLowerBounds empty() {
+        return new LandmarkLowerBounds(0, new int[0], new int[0], new int[0]);
+    }
+
+    public int landmarkCount() {
+        return landmarks.length;
+    }
+
+    // Bounds towards a set of goal stops, any of which ends the search (the destination and the stops within
+    // walking distance of it). Negative entries are ignored.
+    public Goal goal(int[] goalStops) {
+        int     count    = landmarks.length;
+        int[]   goalFrom = new int[count];  // min over goal stops of dist(L, goal)
+        int[]   goalTo   = new int[count];  // max over goal stops of dist(goal, L)
+        boolean anyGoal  = false;
+        for (int l = 0; l < count; l++) {
+            int base = l * stopCount;
+            int min  = UNREACHED;
+            int max  = 0;
+            for (int stop : goalStops) {
+                if (stop < 0 || stop >= stopCount) continue;
+                anyGoal = true;
+                min = Math.min(min, fromLandmark[base + stop]);
+                max = Math.max(max, toLandmark[base + stop]);
+            }
+            goalFrom[l] = min;
+            goalTo[l]   = max;
+        }
+        return anyGoal ? new Goal(goalFrom, goalTo) : new Goal(new int[0], new int[0]);
+    }
+
+    // Lower bounds from any stop to the nearest of one set of goal stops. Every goal stop gets 0.
+    public final class Goal {
+
+        private final int[] goalFrom;
+        private final int[] goalTo;
+
+        private Goal(int[] goalFrom, int[] goalTo) {
+            this.goalFrom = goalFrom;
+            this.goalTo   = goalTo;
+        }
+
+        // Seconds the journey from stop to the goal takes at least, or UNREACHED if no path leads there at all
+        public int lowerBound(int stop) {
+            int bound = 0;
+            for (int l = 0; l < goalFrom.length; l++) {
+                int base  = l * stopCount;
+                int fromL = fromLandmark[base + stop];
+                if (fromL != UNREACHED) {
+                    // L reaches the stop but none of the goals, so the stop cannot reach them either
+                    if (goalFrom[l] == UNREACHED) return UNREACHED;
+                    bound = Math.max(bound, goalFrom[l] - fromL);
+                }
+                int toL = toLandmark[base + stop];
+                if (toL != UNREACHED && goalTo[l] != UNREACHED) {
+                    bound = Math.max(bound, toL - goalTo[l]);
+                }
+            }
+            return bound;
+        }
+    }
+}
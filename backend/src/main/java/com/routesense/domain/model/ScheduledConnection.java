@@ -10,15 +10,17 @@ public class ScheduledConnection {
     private final int departureTimeSeconds; // seconds since midnight - when bus leaves the 'from' stop
     private final int arrivalTimeSeconds;   // seconds since midnight - when bus arrives at 'to' stop
     private final TransportMode mode;
+    private final String serviceId; // GTFS service_id of the trip (calendar.txt), or null if trips.txt has none
 
     // Constructor and getters
-    public ScheduledConnection(String routeId, String routeShortName, String toStopId, int departureTimeSeconds, int arrivalTimeSeconds, TransportMode mode) {
+    public ScheduledConnection(String routeId, String routeShortName, String toStopId, int departureTimeSeconds, int arrivalTimeSeconds, TransportMode mode, String serviceId) {
         this.routeId = routeId; // e.g. "route_1234" - used to look up the human-readable short name and other route details
         this.routeShortName = routeShortName;// e.g. "411", "409", "DART" - used for mode summary display
         this.toStopId = toStopId; // the stop ID of the next stop this connection goes to (e.g. "stop_5678"), used to link connections together in the Dijkstra algorithm
         this.departureTimeSeconds = departureTimeSeconds;
         this.arrivalTimeSeconds = arrivalTimeSeconds;
         this.mode = mode;
+        this.serviceId = serviceId;
     }
 
     public String getRouteId() {
@@ -44,4 +46,8 @@ public class ScheduledConnection {
     public TransportMode getMode() {
         return mode;
     }
+
+    public String getServiceId() {
+        return serviceId;
+    }
 }
@@ -0,0 +1,104 @@
+package com.routesense.domain.model;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+// Which GTFS services (calendar.txt service_id) run on which dates, with calendar_dates.txt exceptions already applied.
+// Services are numbered 0..n-1 and each one owns a bitset of active days, one bit per day from firstDay,
+// so trips and connections only carry a service number and checking them against a date is a single bit test.
+//
+// Layout:
+//   activeDays — day d of service s is bit (d & 63) of activeDays[s * wordsPerService + (d >>> 6)]
+public class ServiceCalendar {
+
+    // Service number of a trip whose service_id the calendar doesn't define; such trips run every day
+    public static final int NO_SERVICE = -1;
+
+    private final String[]             serviceIds;          // service number → GTFS service_id
+    private final Map<String, Integer> serviceIndexById;    // GTFS service_id → service number
+    private final LocalDate            firstDay;            // date of day 0
+    private final int                  dayCount;
+    private final int                  wordsPerService;
+    private final long[]               activeDays;
+
+    public ServiceCalendar(String[] serviceIds, LocalDate firstDay, int dayCount, long[] activeDays) {
+        this.serviceIds       = serviceIds;
+        this.serviceIndexById = new HashMap<>();
+        for (int s = 0; s < serviceIds.length; s++) {
+            serviceIndexById.put(serviceIds[s], s);
+        }
+        this.firstDay        = firstDay;
+        this.dayCount        = dayCount;
+        this.wordsPerService = (dayCount + 63) >>> 6;
+        this.activeDays      = activeDays;
+    }
+
+    // No calendar — calendar.txt and calendar_dates.txt are missing, or calendar filtering is switched off.
+    // Every trip runs every day.
+    public static ServiceCalendar empty() {
+        return new ServiceCalendar(new String[0], LocalDate.EPOCH, 0, new long[0]);
+    }
+
+    public boolean isEmpty() {
+        return serviceIds.length == 0;
+    }
+
+    public int serviceCount() {
+        return serviceIds.length;
+    }
+
+    public String serviceId(int service) {
+        return serviceIds[service];
+    }
+
+    // Returns the service number for a GTFS service_id, or NO_SERVICE if the calendar doesn't define it.
+    public int indexOf(String serviceId) {
+        if (serviceId == null) return NO_SERVICE;
+        Integer index = serviceIndexById.get(serviceId);
+        return index != null ? index : NO_SERVICE;
+    }
+
+    public LocalDate firstDay() {
+        return firstDay;
+    }
+
+    public int dayCount() {
+        return dayCount;
+    }
+
+    public int wordsPerService() {
+        return wordsPerService;
+    }
+
+    // Raw bitset word of one service — used to persist the calendar in the graph snapshot.
+    public long activeDayWord(int service, int word) {
+        return activeDays[service * wordsPerService + word];
+    }
+
+    public boolean isActive(int service, LocalDate date) {
+        if (service < 0) return true;
+        long day = date.toEpochDay() - firstDay.toEpochDay();
+        if (day < 0 || day >= dayCount) return false;
+        return (activeDays[service * wordsPerService + (int) (day >>> 6)] & (1L << day)) != 0;
+    }
+
+    // The services running on the given date. A date outside the calendar has no services at all,
+    // except for an empty calendar, where everything runs.
+    public ServiceDay day(LocalDate date) {
+        if (isEmpty()) return ServiceDay.ALL;
+
+        long[] active = new long[(serviceIds.length + 63) >>> 6];
+        long day = date.toEpochDay() - firstDay.toEpochDay();
+        if (day >= 0 && day < dayCount) {
+            int  word = (int) (day >>> 6);
+            long bit  = 1L << day;
+            for (int s = 0; s < serviceIds.length; s++) {
+                if ((activeDays[s * wordsPerService + word] & bit) != 0) {
+                    active[s >>> 6] |= 1L << s;
+                }
+            }
+        }
+        return new ServiceDay(active);
+    }
+}
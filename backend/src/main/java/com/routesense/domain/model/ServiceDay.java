@@ -0,0 +1,22 @@
+package com.routesense.domain.model;
+
+// The GTFS services running on one calendar date, as a bitset over ServiceCalendar's service numbers.
+// DayTimetableCache uses it to cut the compiled timetables down to the trips running that day.
+public final class ServiceDay {
+
+    // Every service runs — used when the feed has no calendar or calendar filtering is switched off
+    public static final ServiceDay ALL = new ServiceDay(null);
+
+    private final long[] activeServices;   // bit s set = service s runs; null = all services run
+
+    ServiceDay(long[] activeServices) {
+        this.activeServices = activeServices;
+    }
+
+    // True if trips of the given service run on this day. ServiceCalendar.NO_SERVICE (a trip whose service_id
+    // the calendar doesn't define) always runs, so feeds with incomplete calendars keep their trips.
+    public boolean runs(int service) {
+        if (activeServices == null || service < 0) return true;
+        return (activeServices[service >>> 6] & (1L << service)) != 0;
+    }
+}
@@ -0,0 +1,216 @@
+package com.routesense.domain.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Uniform-grid spatial index over all stops, built once at load time so nearest-stop lookups touch a few
+// grid cells instead of every stop. Stop numbering matches CompactGraph and TransitTimetable.
+//
+// Layout: the bounding box of all stops is cut into rows × cols cells of roughly equal size in km.
+// Stops in cell c live in cellStops[cellOffsets[c] .. cellOffsets[c + 1]) (CSR, like CompactGraph).
+//
+// Every stop also carries a few flag bits so queries can filter while they scan, e.g. "nearest stop with train service".
+public class StopSpatialIndex {
+
+    public static final int HAS_SCHEDULE       = 1;  // at least one scheduled departure
+    public static final int HAS_TRAIN          = 2;  // at least one scheduled train departure
+    public static final int HAS_OUTGOING_EDGES = 4;  // at least one edge in the adjacency list
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE   = EARTH_RADIUS_KM * Math.PI / 180.0;
+
+    // Slack on the equirectangular pre-filter in forEachWithinRadius
+    private static final double EQUIRECTANGULAR_MARGIN = 1.01;
+
+    private final String[] stopIds;
+    private final double[] stopLatitudes;
+    private final double[] stopLongitudes;
+    private final byte[]   stopFlags;
+
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double cellLatitudeDegrees;
+    private final double cellLongitudeDegrees;
+    private final int    rows;
+    private final int    cols;
+    private final int[]  cellOffsets;                  // rows * cols + 1 entries, cell = row * cols + col
+    private final int[]  cellStops;
+
+    public StopSpatialIndex(
+            String[] stopIds,
+            double[] stopLatitudes,
+            double[] stopLongitudes,
+            byte[]   stopFlags,
+            double   minLatitude,
+            double   minLongitude,
+            double   cellLatitudeDegrees,
+            double   cellLongitudeDegrees,
+            int      rows,
+            int      cols,
+            int[]    cellOffsets,
+            int[]    cellStops
+    ) {
+        this.stopIds              = stopIds;
+        this.stopLatitudes        = stopLatitudes;
+        this.stopLongitudes       = stopLongitudes;
+        this.stopFlags            = stopFlags;
+        this.minLatitude          = minLatitude;
+        this.minLongitude         = minLongitude;
+        this.cellLatitudeDegrees  = cellLatitudeDegrees;
+        this.cellLongitudeDegrees = cellLongitudeDegrees;
+        this.rows                 = rows;
+        this.cols                 = cols;
+        this.cellOffsets          = cellOffsets;
+        this.cellStops            = cellStops;
+    }
+
+    // An empty index — used before the GTFS feed has loaded.
+    public static StopSpatialIndex empty() {
+        return new StopSpatialIndex(new String[0], new double[0], new double[0], new byte[0],
+                0.0, 0.0, 1.0, 1.0, 1, 1, new int[]{0, 0}, new int[0]);
+    }
+
+    // A stop found by a query and its great-circle distance from the query point.
+    public record Neighbour(int stop, double distanceKm) {}
+
+    public int stopCount() {
+        return stopIds.length;
+    }
+
+    // Returns the dense index for a GTFS stop ID, or -1 if the stop is unknown. Stop IDs are sorted, so this is a binary search.
+    public int indexOf(String stopId) {
+        if (stopId == null) return -1;
+        int index = Arrays.binarySearch(stopIds, stopId);
+        return index >= 0 ? index : -1;
+    }
+
+    public String stopId(int stop) {
+        return stopIds[stop];
+    }
+
+    public double latitude(int stop) {
+        return stopLatitudes[stop];
+    }
+
+    public double longitude(int stop) {
+        return stopLongitudes[stop];
+    }
+
+    // True if the stop has every flag in requiredFlags (0 matches any stop).
+    public boolean hasFlags(int stop, int requiredFlags) {
+        return (stopFlags[stop] & requiredFlags) == requiredFlags;
+    }
+
+    // Every stop with requiredFlags within radiusKm of (lat, lon), nearest first (ties broken by stop index).
+    public List<Neighbour> withinRadius(double lat, double lon, double radiusKm, int requiredFlags) {
+        List<Neighbour> result = new ArrayList<>();
+        forEachWithinRadius(lat, lon, radiusKm, requiredFlags, (stop, distanceKm) -> result.add(new Neighbour(stop, distanceKm)));
+        result.sort(Comparator.comparingDouble(Neighbour::distanceKm).thenComparingInt(Neighbour::stop));
+        return result;
+    }
+
+    // Receives the stops found by forEachWithinRadius.
+    @FunctionalInterface
+    public interface NeighbourVisitor {
+        void visit(int stop, double distanceKm);
+    }
+
+    // Calls the visitor for every stop with requiredFlags within radiusKm of (lat, lon), in no particular order and
+    // without allocating, for bulk work such as footpath generation.
+    public void forEachWithinRadius(double lat, double lon, double radiusKm, int requiredFlags, NeighbourVisitor visitor) {
+        if (stopIds.length == 0 || radiusKm < 0) {
+            return;
+        }
+
+        // Latitude difference alone is a lower bound on distance, so rows further than radiusKm can be skipped
+        double latSpan = radiusKm / KM_PER_DEGREE;
+        int rowFrom = rowOf(lat - latSpan);
+        int rowTo   = rowOf(lat + latSpan);
+
+        // Longitude bound from the haversine formula at the highest latitude the radius reaches:
+        // sin(d / 2R) >= cos(maxLat) · sin(dLon / 2), so dLon <= 2 · asin(sin(d / 2R) / cos(maxLat))
+        double maxAbsLat = Math.min(90.0, Math.abs(lat) + latSpan);
+        double sinHalf   = Math.sin(Math.min(Math.PI / 2, radiusKm / (2 * EARTH_RADIUS_KM))) / Math.cos(Math.toRadians(maxAbsLat));
+        int colFrom = 0;
+        int colTo   = cols - 1;
+        if (sinHalf < 1.0) {
+            double lonSpan = Math.toDegrees(2 * Math.asin(sinHalf));
+            colFrom = colOf(lon - lonSpan);
+            colTo   = colOf(lon + lonSpan);
+        }
+
+        // Equirectangular pre-filter: flat-earth km with the narrowest longitude scale the radius reaches, which can
+        // only understate the distance, plus a margin for the curvature at small radii. Stops it rejects are certainly
+        // out of range; the rest get the exact haversine.
+        double lonKmScale  = KM_PER_DEGREE * Math.cos(Math.toRadians(maxAbsLat));
+        double prefilterKm = radiusKm * EQUIRECTANGULAR_MARGIN;
+        double prefilterSq = prefilterKm * prefilterKm;
+
+        for (int row = rowFrom; row <= rowTo; row++) {
+            for (int col = colFrom; col <= colTo; col++) {
+                int cell = row * cols + col;
+                for (int slot = cellOffsets[cell]; slot < cellOffsets[cell + 1]; slot++) {
+                    int stop = cellStops[slot];
+                    if ((stopFlags[stop] & requiredFlags) != requiredFlags) continue;
+                    double dy = (stopLatitudes[stop] - lat) * KM_PER_DEGREE;
+                    double dx = (stopLongitudes[stop] - lon) * lonKmScale;
+                    if (dx * dx + dy * dy > prefilterSq) continue;
+                    double distKm = haversineKm(lat, lon, stopLatitudes[stop], stopLongitudes[stop]);
+                    if (distKm <= radiusKm) {
+                        visitor.visit(stop, distKm);
+                    }
+                }
+            }
+        }
+    }
+
+    // Up to k stops with requiredFlags within maxKm of (lat, lon), nearest first.
+    // Searches a small radius first and doubles it until k stops are found, so nearby hits stay cheap
+    // while sparse filters (e.g. train stations) still find a stop many cells away.
+    public List<Neighbour> nearest(double lat, double lon, int k, double maxKm, int requiredFlags) {
+        if (k <= 0) {
+            return List.of();
+        }
+        double radiusKm = Math.min(maxKm, cellLatitudeDegrees * KM_PER_DEGREE);
+        while (true) {
+            List<Neighbour> found = withinRadius(lat, lon, radiusKm, requiredFlags);
+            if (found.size() >= k || radiusKm >= maxKm || radiusKm >= Math.PI * EARTH_RADIUS_KM) {
+                return found.size() > k ? new ArrayList<>(found.subList(0, k)) : found;
+            }
+            radiusKm = Math.min(maxKm, radiusKm * 2);
+        }
+    }
+
+    // The single nearest stop with requiredFlags within maxKm, or null if there is none.
+    public Neighbour nearestOne(double lat, double lon, double maxKm, int requiredFlags) {
+        List<Neighbour> found = nearest(lat, lon, 1, maxKm, requiredFlags);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    // Great-circle distance in km — same formula as EmissionsCalculator.haversineDistanceKm, so distances match exactly.
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1))
+                * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+
+    // Grid row containing the latitude, clamped to the grid (no stops lie outside it).
+    private int rowOf(double lat) {
+        int row = (int) Math.floor((lat - minLatitude) / cellLatitudeDegrees);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+
+    private int colOf(double lon) {
+        int col = (int) Math.floor((lon - minLongitude) / cellLongitudeDegrees);
+        return Math.max(0, Math.min(cols - 1, col));
+    }
+}
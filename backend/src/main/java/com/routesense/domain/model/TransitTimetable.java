@@ -0,0 +1,387 @@
+package com.routesense.domain.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Route-pattern view of the GTFS schedule used by the RAPTOR router, and read by the departures board and the map.
+// A pattern is every trip of one route that visits exactly the same ordered stops, with trips sorted so that
+// an earlier trip never overtakes a later one. Stops are dense ints so the router can work on plain arrays.
+//
+// Layout (all CSR-style: an offsets array indexes into a flat payload array):
+//   patternStops       — stops of pattern p live in [patternStopOffsets[p], patternStopOffsets[p + 1])
+//   patternStopMeters  — parallel to patternStops: straight-line distance along the pattern from its first stop
+//   stopTimes          — trip t of pattern p at position i is stopTimes[patternTimeOffsets[p] + t * length(p) + i]
+//   tripServices       — ServiceCalendar service number of trip t of pattern p is tripServices[patternTripOffsets[p] + t]
+//   stopPatterns       — patterns serving stop s (and the position within each) live in [stopPatternOffsets[s], stopPatternOffsets[s + 1])
+//   footpathTargets    — walking links out of stop s live in [footpathOffsets[s], footpathOffsets[s + 1])
+public class TransitTimetable {
+
+    private final String[]             stopIds;             // stop index → GTFS stop ID
+    private final Map<String, Integer> stopIndexById;       // GTFS stop ID → stop index
+
+    private final int[]           patternStopOffsets;
+    private final int[]           patternStops;
+    private final int[]           patternStopMeters;
+    private final int[]           patternTimeOffsets;
+    private final int[]           patternTripCounts;
+    private final int[]           stopTimes;                // seconds since midnight, trip-major per pattern 
+    private final int[]           patternTripOffsets;       // prefix sum of patternTripCounts
+    private final int[]           tripServices;
+    private final String[]        patternRouteIds;
+    private final String[]        patternShortNames;
+    private final TransportMode[] patternModes;
+
+    private final int[] stopPatternOffsets;
+    private final int[] stopPatterns;
+    private final int[] stopPatternPositions;
+
+    private final int[] footpathOffsets;
+    private final int[]   footpathTargets;
+    private final short[] footpathSeconds;
+
+    public TransitTimetable(
+            String[]             stopIds,
+            Map<String, Integer> stopIndexById,
+            int[]                patternStopOffsets,
+            int[]                patternStops,
+            int[]                patternStopMeters,
+            int[]                patternTimeOffsets,
+            int[]                patternTripCounts,
+            int[]                stopTimes,
+            int[]                tripServices,
+            String[]             patternRouteIds,
+            String[]             patternShortNames,
+            TransportMode[]      patternModes,
+            int[]                stopPatternOffsets,
+            int[]                stopPatterns,
+            int[]                stopPatternPositions,
+            int[]                footpathOffsets,
+            int[]                footpathTargets,
+            short[]              footpathSeconds
+    ) {
+        this.stopIds              = stopIds;
+        this.stopIndexById        = stopIndexById;
+        this.patternStopOffsets   = patternStopOffsets;
+        this.patternStops         = patternStops;
+        this.patternStopMeters    = patternStopMeters;
+        this.patternTimeOffsets   = patternTimeOffsets;
+        this.patternTripCounts    = patternTripCounts;
+        this.stopTimes            = stopTimes;
+        this.patternTripOffsets   = new int[patternTripCounts.length + 1];
+        for (int p = 0; p < patternTripCounts.length; p++) {
+            patternTripOffsets[p + 1] = patternTripOffsets[p] + patternTripCounts[p];
+        }
+        this.tripServices         = tripServices;
+        this.patternRouteIds      = patternRouteIds;
+        this.patternShortNames    = patternShortNames;
+        this.patternModes         = patternModes;
+        this.stopPatternOffsets   = stopPatternOffsets;
+        this.stopPatterns         = stopPatterns;
+        this.stopPatternPositions = stopPatternPositions;
+        this.footpathOffsets      = footpathOffsets;
+        this.footpathTargets      = footpathTargets;
+        this.footpathSeconds      = footpathSeconds;
+    }
+
+    // An empty timetable — used before the GTFS feed has loaded or when stop_times.txt is missing.
+    public static TransitTimetable empty() {
+        return new TransitTimetable(new String[0], Map.of(),
+                new int[]{0}, new int[0], new int[0], new int[]{0}, new int[0], new int[0], new int[0],
+                new String[0], new String[0], new TransportMode[0],
+                new int[]{0}, new int[0], new int[0],
+                new int[]{0}, new int[0], new short[0]);
+    }
+
+    // Stops
+
+    public int stopCount() {
+        return stopIds.length;
+    }
+
+    // Returns the dense index for a GTFS stop ID, or -1 if the stop is not in the timetable.
+    public int indexOf(String stopId) {
+        if (stopId == null) return -1;
+        Integer index = stopIndexById.get(stopId);
+        return index != null ? index : -1;
+    }
+
+    public String stopId(int stopIndex) {
+        return stopIds[stopIndex];
+    }
+
+    // Patterns
+
+    public int patternCount() {
+        return patternTripCounts.length;
+    }
+
+    public int patternLength(int pattern) {
+        return patternStopOffsets[pattern + 1] - patternStopOffsets[pattern];
+    }
+
+    public int patternStop(int pattern, int position) {
+        return patternStops[patternStopOffsets[pattern] + position];
+    }
+
+    // Metres from the pattern's first stop to the stop at 'position', following the stops in straight lines.
+    public int distanceMeters(int pattern, int position) {
+        return patternStopMeters[patternStopOffsets[pattern] + position];
+    }
+
+    public int tripCount(int pattern) {
+        return patternTripCounts[pattern];
+    }
+
+    // Time (seconds since midnight) at which trip 'trip' of the pattern is at the stop in 'position'.
+    public int time(int pattern, int trip, int position) {
+        return stopTimes[patternTimeOffsets[pattern] + trip * patternLength(pattern) + position];
+    }
+
+    // Trips numbered across all patterns: trip 'trip' of the pattern is number globalTrip(pattern, trip) of globalTripCount().
+    public int globalTripCount() {
+        return patternTripOffsets[patternTripCounts.length];
+    }
+
+    public int globalTrip(int pattern, int trip) {
+        return patternTripOffsets[pattern] + trip;
+    }
+
+    // Every (trip, position) stop event numbered by its slot in the stop-time array, from 0 to stopTimeCount() - 1.
+    // A trip's events are consecutive, in riding order.
+    public int stopTimeCount() {
+        return stopTimes.length;
+    }
+
+    public int stopTimeIndex(int pattern, int trip, int position) {
+        return patternTimeOffsets[pattern] + trip * patternLength(pattern) + position;
+    }
+
+    // ServiceCalendar service number of trip 'trip' of the pattern (ServiceCalendar.NO_SERVICE if unknown).
+    public int tripService(int pattern, int trip) {
+        return tripServices[patternTripOffsets[pattern] + trip];
+    }
+
+    // Returns the first trip of the pattern that is at 'position' at or after 'earliestTime', or -1 if none.
+    // Trips are FIFO within a pattern, so the times at any position are sorted and a binary search is enough.
+    public int earliestTrip(int pattern, int position, int earliestTime) {
+        int length = patternLength(pattern);
+        int base   = patternTimeOffsets[pattern] + position;
+        int lo = 0;
+        int hi = patternTripCounts[pattern];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (stopTimes[base + mid * length] < earliestTime) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo < patternTripCounts[pattern] ? lo : -1;
+    }
+
+    // The timetable of one service date on a continuous time axis (seconds since that date's midnight): the trips
+    // running on the date itself, the next day's trips shifted by +24 h, and the previous day's trips that are still
+    // running after midnight (GTFS times past 24:00:00) shifted by -24 h. One search can then ride through midnight.
+    // Each pattern's trips from the three days are merged by first departure and dealt back into FIFO lanes the way
+    // the builder splits patterns: the first lane keeps the pattern's number, the rare extra lane (a trip of one day
+    // overtaking one of the next) becomes a new pattern at the end. Stops and footpaths are shared with this timetable.
+    public TransitTimetable forDays(ServiceDay previousDay, ServiceDay day, ServiceDay nextDay) {
+        ServiceDay[] days    = { previousDay, day, nextDay };
+        int[]        offsets = { -DayTimetable.DAY_SECONDS, 0, DayTimetable.DAY_SECONDS };
+
+        // Each lane is a list of (day, trip) entries encoded as day * tripCount(pattern) + trip
+        int patternCount = patternTripCounts.length;
+        List<int[]>   lanes       = new ArrayList<>(patternCount);
+        List<Integer> extraSource = new ArrayList<>();
+        List<int[]>   extraLanes  = new ArrayList<>();
+        for (int p = 0; p < patternCount; p++) {
+            int    length   = patternLength(p);
+            int    trips    = patternTripCounts[p];
+            long[] keys     = new long[trips * days.length];
+            int    keyCount = 0;
+            for (int d = 0; d < days.length; d++) {
+                for (int t = 0; t < trips; t++) {
+                    if (!days[d].runs(tripServices[patternTripOffsets[p] + t])) continue;
+                    // Of the previous day, only trips still running after midnight
+                    if (d == 0 && time(p, t, length - 1) < DayTimetable.DAY_SECONDS) continue;
+                    long departure = time(p, t, 0) + offsets[d] + DayTimetable.DAY_SECONDS; // never negative
+                    keys[keyCount++] = departure << 32 | (d * trips + t);
+                }
+            }
+            Arrays.sort(keys, 0, keyCount); // by departure, ties in day then trip order
+
+            List<int[]> patternLanes = new ArrayList<>(1);
+            int[]       laneSizes    = new int[keyCount];
+            for (int k = 0; k < keyCount; k++) {
+                int entry = (int) keys[k];
+                int lane  = 0;
+                while (lane < patternLanes.size()
+                        && overtakes(p, entry, patternLanes.get(lane)[laneSizes[lane] - 1], trips, offsets)) {
+                    lane++;
+                }
+                if (lane == patternLanes.size()) {
+                    patternLanes.add(new int[keyCount]);
+                }
+                patternLanes.get(lane)[laneSizes[lane]++] = entry;
+            }
+            lanes.add(patternLanes.isEmpty() ? new int[0] : Arrays.copyOf(patternLanes.get(0), laneSizes[0]));
+            for (int lane = 1; lane < patternLanes.size(); lane++) {
+                extraSource.add(p);
+                extraLanes.add(Arrays.copyOf(patternLanes.get(lane), laneSizes[lane]));
+            }
+        }
+
+        // Pattern numbers ≥ patternCount are the extra lanes
+        int   newCount = patternCount + extraLanes.size();
+        int[] source   = new int[newCount];
+        for (int p = 0; p < newCount; p++) {
+            source[p] = p < patternCount ? p : extraSource.get(p - patternCount);
+        }
+        lanes.addAll(extraLanes);
+
+        int[] tripCounts  = new int[newCount];
+        int[] timeOffsets = new int[newCount + 1];
+        for (int p = 0; p < newCount; p++) {
+            tripCounts[p]      = lanes.get(p).length;
+            timeOffsets[p + 1] = timeOffsets[p] + tripCounts[p] * patternLength(source[p]);
+        }
+        int[] times    = new int[timeOffsets[newCount]];
+        int[] services = new int[Arrays.stream(tripCounts).sum()];
+        int   cursor   = 0;
+        int   trip     = 0;
+        for (int p = 0; p < newCount; p++) {
+            int from   = source[p];
+            int length = patternLength(from);
+            int trips  = patternTripCounts[from];
+            for (int entry : lanes.get(p)) {
+                int d    = entry / trips;
+                int t    = entry % trips;
+                int base = patternTimeOffsets[from] + t * length;
+                for (int i = 0; i < length; i++) {
+                    times[cursor++] = stopTimes[base + i] + offsets[d];
+                }
+                services[trip++] = tripServices[patternTripOffsets[from] + t];
+            }
+        }
+
+        if (newCount == patternCount) {
+            return new TransitTimetable(stopIds, stopIndexById,
+                    patternStopOffsets, patternStops, patternStopMeters, timeOffsets, tripCounts, times, services,
+                    patternRouteIds, patternShortNames, patternModes,
+                    stopPatternOffsets, stopPatterns, stopPatternPositions,
+                    footpathOffsets, footpathTargets, footpathSeconds);
+        }
+
+        // Extra lanes copy their source pattern's stops, route and mode, and the stop → pattern index is rebuilt
+        int[]           stopOffsets = new int[newCount + 1];
+        String[]        routeIds    = new String[newCount];
+        String[]        shortNames  = new String[newCount];
+        TransportMode[] modes       = new TransportMode[newCount];
+        for (int p = 0; p < newCount; p++) {
+            stopOffsets[p + 1] = stopOffsets[p] + patternLength(source[p]);
+            routeIds[p]        = patternRouteIds[source[p]];
+            shortNames[p]      = patternShortNames[source[p]];
+            modes[p]           = patternModes[source[p]];
+        }
+        int[] stops             = new int[stopOffsets[newCount]];
+        int[] stopMeters        = new int[stopOffsets[newCount]];
+        int[] stopPatternCounts = new int[stopIds.length];
+        for (int p = 0; p < newCount; p++) {
+            System.arraycopy(patternStops, patternStopOffsets[source[p]], stops, stopOffsets[p], patternLength(source[p]));
+            System.arraycopy(patternStopMeters, patternStopOffsets[source[p]], stopMeters, stopOffsets[p], patternLength(source[p]));
+            for (int i = stopOffsets[p]; i < stopOffsets[p + 1]; i++) {
+                stopPatternCounts[stops[i]]++;
+            }
+        }
+        int[] byStopOffsets = new int[stopIds.length + 1];
+        for (int s = 0; s < stopIds.length; s++) {
+            byStopOffsets[s + 1] = byStopOffsets[s] + stopPatternCounts[s];
+        }
+        int[] byStopPatterns  = new int[byStopOffsets[stopIds.length]];
+        int[] byStopPositions = new int[byStopOffsets[stopIds.length]];
+        int[] fill = Arrays.copyOf(byStopOffsets, stopIds.length);
+        for (int p = 0; p < newCount; p++) {
+            for (int i = stopOffsets[p]; i < stopOffsets[p + 1]; i++) {
+                int slot = fill[stops[i]]++;
+                byStopPatterns[slot]  = p;
+                byStopPositions[slot] = i - stopOffsets[p];
+            }
+        }
+
+        return new TransitTimetable(stopIds, stopIndexById,
+                stopOffsets, stops, stopMeters, timeOffsets, tripCounts, times, services,
+                routeIds, shortNames, modes,
+                byStopOffsets, byStopPatterns, byStopPositions,
+                footpathOffsets, footpathTargets, footpathSeconds);
+    }
+
+    // True if the (day, trip) entry 'later', which departs no earlier than 'earlier', reaches any stop of the pattern first.
+    private boolean overtakes(int pattern, int later, int earlier, int trips, int[] dayOffsets) {
+        int length      = patternLength(pattern);
+        int laterBase   = patternTimeOffsets[pattern] + (later % trips) * length;
+        int earlierBase = patternTimeOffsets[pattern] + (earlier % trips) * length;
+        int shift       = dayOffsets[later / trips] - dayOffsets[earlier / trips];
+        for (int i = 0; i < length; i++) {
+            if (stopTimes[laterBase + i] + shift < stopTimes[earlierBase + i]) return true;
+        }
+        return false;
+    }
+
+    public String patternRouteId(int pattern) {
+        return patternRouteIds[pattern];
+    }
+
+    public String patternShortName(int pattern) {
+        return patternShortNames[pattern];
+    }
+
+    public TransportMode patternMode(int pattern) {
+        return patternModes[pattern];
+    }
+
+    // Stop → patterns
+
+    public int stopPatternStart(int stop) {
+        return stopPatternOffsets[stop];
+    }
+
+    public int stopPatternEnd(int stop) {
+        return stopPatternOffsets[stop + 1];
+    }
+
+    public int stopPattern(int slot) {
+        return stopPatterns[slot];
+    }
+
+    public int stopPatternPosition(int slot) {
+        return stopPatternPositions[slot];
+    }
+
+    // True if a trip leaves the stop, i.e. some pattern serving it does not end there.
+    public boolean hasDepartures(int stop) {
+        for (int slot = stopPatternOffsets[stop]; slot < stopPatternOffsets[stop + 1]; slot++) {
+            if (stopPatternPositions[slot] < patternLength(stopPatterns[slot]) - 1) return true;
+        }
+        return false;
+    }
+
+    // Footpaths
+
+    public int footpathStart(int stop) {
+        return footpathOffsets[stop];
+    }
+
+    public int footpathEnd(int stop) {
+        return footpathOffsets[stop + 1];
+    }
+
+    public int footpathTarget(int slot) {
+        return footpathTargets[slot];
+    }
+
+    public int footpathSeconds(int slot) {
+        return footpathSeconds[slot];
+    }
+}
@@ -0,0 +1,215 @@
+package com.routesense.domain.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Trip-to-trip transfers of one TransitTimetable for the trip-based router: for every stop event (trip, position) at
+// which one can alight, the trips one can change onto there or one footpath away, as (pattern, trip, position).
+//
+// Only useful transfers are kept. A transfer onto the next trip of a pattern is the only one worth making towards
+// that pattern, a U-turn (getting off and riding or walking straight back to the previous stop) never is, and a
+// transfer is dropped when it gets to no stop earlier than the trip itself or the transfers already kept from its
+// later stops, neither on board nor one walk further. Walks don't chain, so arriving on board and arriving on foot
+// are compared separately. That leaves every Pareto-optimal journey (arrival time × transfers) reachable, with a few
+// transfers per event instead of one per departure.
+//
+// Layout (CSR-style): events are numbered by TransitTimetable.stopTimeIndex; transfers out of event e live in
+// [offsets[e], offsets[e + 1]) of the targetPatterns / targetTrips / targetPositions arrays.
+public class TripTransfers {
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final int[] offsets;
+    private final int[] targetPatterns;
+    private final int[] targetTrips;
+    private final int[] targetPositions;
+
+    public TripTransfers(int[] offsets, int[] targetPatterns, int[] targetTrips, int[] targetPositions) {
+        this.offsets         = offsets;
+        this.targetPatterns  = targetPatterns;
+        this.targetTrips     = targetTrips;
+        this.targetPositions = targetPositions;
+    }
+
+    // Computes the transfers of every trip of the timetable. Patterns are split into chunks worked on in parallel,
+    // each with its own scratch arrays; times before midnight are skipped, since no search starts that early.
+    public static TripTransfers fromTimetable(TransitTimetable timetable) {
+        int patternCount = timetable.patternCount();
+        int chunkCount   = Math.max(1, Math.min(patternCount, Runtime.getRuntime().availableProcessors() * 4));
+        List<int[]> chunks = IntStream.range(0, chunkCount).parallel()
+                .mapToObj(chunk -> new Scan(timetable).run(
+                        patternCount * chunk / chunkCount, patternCount * (chunk + 1) / chunkCount))
+                .toList();
+
+        // Each chunk holds (event, pattern, trip, position) quadruples; count, then fill in event order
+        int[] offsets = new int[timetable.stopTimeCount() + 1];
+        for (int[] found : chunks) {
+            for (int i = 0; i < found.length; i += 4) {
+                offsets[found[i] + 1]++;
+            }
+        }
+        for (int e = 0; e < timetable.stopTimeCount(); e++) {
+            offsets[e + 1] += offsets[e];
+        }
+        int   total     = offsets[timetable.stopTimeCount()];
+        int[] patterns  = new int[total];
+        int[] trips     = new int[total];
+        int[] positions = new int[total];
+        int[] fill      = Arrays.copyOf(offsets, timetable.stopTimeCount());
+        for (int[] found : chunks) {
+            for (int i = 0; i < found.length; i += 4) {
+                int slot = fill[found[i]]++;
+                patterns[slot]  = found[i + 1];
+                trips[slot]     = found[i + 2];
+                positions[slot] = found[i + 3];
+            }
+        }
+        return new TripTransfers(offsets, patterns, trips, positions);
+    }
+
+    public int transferCount() {
+        return targetPatterns.length;
+    }
+
+    public int transferStart(int event) {
+        return offsets[event];
+    }
+
+    public int transferEnd(int event) {
+        return offsets[event + 1];
+    }
+
+    public int targetPattern(int transfer) {
+        return targetPatterns[transfer];
+    }
+
+    public int targetTrip(int transfer) {
+        return targetTrips[transfer];
+    }
+
+    public int targetPosition(int transfer) {
+        return targetPositions[transfer];
+    }
+
+    // Transfer generation and reduction for a range of patterns. earliest[stop] is the earliest arrival at the stop
+    // from the current trip's later stops (riding on, or via a transfer already kept), earliestOnBoard[stop] the same
+    // without the final walk, which is what a further transfer can start from. Both are reset per trip.
+    private static final class Scan {
+        private final TransitTimetable timetable;
+        private final int[]            earliest;
+        private final int[]            earliestOnBoard;
+        private final int[]            touched;
+        private int                    touchedCount;
+        private int[]                  found = new int[256];
+        private int                    foundCount;
+
+        Scan(TransitTimetable timetable) {
+            this.timetable       = timetable;
+            this.earliest        = new int[timetable.stopCount()];
+            this.earliestOnBoard = new int[timetable.stopCount()];
+            this.touched         = new int[timetable.stopCount()];
+            Arrays.fill(earliest, UNREACHED);
+            Arrays.fill(earliestOnBoard, UNREACHED);
+        }
+
+        int[] run(int fromPattern, int toPattern) {
+            for (int p = fromPattern; p < toPattern; p++) {
+                for (int t = 0; t < timetable.tripCount(p); t++) {
+                    scanTrip(p, t);
+                }
+            }
+            return Arrays.copyOf(found, foundCount);
+        }
+
+        // Later stops first, so a transfer is only kept if it beats everything the rest of the trip already offers
+        private void scanTrip(int pattern, int trip) {
+            int length = timetable.patternLength(pattern);
+            for (int i = length - 1; i >= 1; i--) {
+                int arrival = timetable.time(pattern, trip, i);
+                if (arrival < 0) break;
+                int stop = timetable.patternStop(pattern, i);
+                reach(stop, arrival);
+
+                int event = timetable.stopTimeIndex(pattern, trip, i);
+                for (int slot = timetable.footpathStart(stop) - 1; slot < timetable.footpathEnd(stop); slot++) {
+                    boolean here  = slot < timetable.footpathStart(stop);
+                    int     board = here ? stop : timetable.footpathTarget(slot);
+                    int     ready = here ? arrival : arrival + timetable.footpathSeconds(slot);
+                    for (int s = timetable.stopPatternStart(board); s < timetable.stopPatternEnd(board); s++) {
+                        int toPattern  = timetable.stopPattern(s);
+                        int toPosition = timetable.stopPatternPosition(s);
+                        if (toPosition == timetable.patternLength(toPattern) - 1) continue; // last stop, nothing to ride
+                        if (toPattern == pattern && toPosition <= i) continue;              // this trip or one behind it
+                        int toTrip = timetable.earliestTrip(toPattern, toPosition, ready);
+                        if (toTrip < 0) continue;
+                        if (toPattern == pattern && toTrip == trip) continue;
+                        if (isUTurn(pattern, trip, i, toPattern, toTrip, toPosition)) continue;
+                        if (!here && walksBack(pattern, trip, i, board, toPattern, toTrip, toPosition)) continue;
+                        if (improvesAny(toPattern, toTrip, toPosition)) {
+                            add(event, toPattern, toTrip, toPosition);
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                earliest[touched[i]]        = UNREACHED;
+                earliestOnBoard[touched[i]] = UNREACHED;
+            }
+            touchedCount = 0;
+        }
+
+        // Back to the stop we just came from, in time for the same departure we could have changed onto there
+        private boolean isUTurn(int pattern, int trip, int i, int toPattern, int toTrip, int toPosition) {
+            return timetable.patternStop(pattern, i - 1) == timetable.patternStop(toPattern, toPosition + 1)
+                    && timetable.time(pattern, trip, i - 1) <= timetable.time(toPattern, toTrip, toPosition + 1);
+        }
+
+        // Walking back to the stop we just came from, to a departure we could have changed onto there without a walk
+        private boolean walksBack(int pattern, int trip, int i, int board, int toPattern, int toTrip, int toPosition) {
+            return timetable.patternStop(pattern, i - 1) == board
+                    && timetable.time(pattern, trip, i - 1) <= timetable.time(toPattern, toTrip, toPosition);
+        }
+
+        // Rides the target trip on from its boarding stop; true if it (or one walk from it) gets anywhere earliest
+        private boolean improvesAny(int pattern, int trip, int fromPosition) {
+            boolean improved = false;
+            for (int k = fromPosition + 1; k < timetable.patternLength(pattern); k++) {
+                improved |= reach(timetable.patternStop(pattern, k), timetable.time(pattern, trip, k));
+            }
+            return improved;
+        }
+
+        // Records arriving at the stop on board at 'arrival', and on foot at its footpath neighbours.
+        // True if that is earlier than before anywhere.
+        private boolean reach(int stop, int arrival) {
+            boolean improved = false;
+            if (arrival < earliestOnBoard[stop]) {
+                earliestOnBoard[stop] = arrival;
+                improved = true;
+            }
+            improved |= lower(stop, arrival);
+            for (int slot = timetable.footpathStart(stop); slot < timetable.footpathEnd(stop); slot++) {
+                improved |= lower(timetable.footpathTarget(slot), arrival + timetable.footpathSeconds(slot));
+            }
+            return improved;
+        }
+
+        private boolean lower(int stop, int arrival) {
+            if (arrival >= earliest[stop]) return false;
+            if (earliest[stop] == UNREACHED) touched[touchedCount++] = stop;
+            earliest[stop] = arrival;
+            return true;
+        }
+
+        private void add(int event, int pattern, int trip, int position) {
+            if (foundCount + 4 > found.length) {
+                found = Arrays.copyOf(found, found.length * 2);
+            }
+            found[foundCount++] = event;
+            found[foundCount++] = pattern;
+            found[foundCount++] = trip;
+            found[foundCount++] = position;
+        }
+    }
+}
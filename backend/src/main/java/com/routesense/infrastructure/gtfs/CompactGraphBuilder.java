@@ -0,0 +1,169 @@
+package com.routesense.infrastructure.gtfs;
+
+import com.routesense.domain.model.CompactGraph;
+import com.routesense.domain.model.FootpathGraph;
+import com.routesense.domain.model.ScheduledConnection;
+import com.routesense.domain.model.ServiceCalendar;
+import com.routesense.domain.model.Stop;
+import com.routesense.domain.model.StopEdge;
+import com.routesense.domain.model.TransportMode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Compiles the String-keyed graph maps into a CompactGraph. Runs once at the end of GtfsGraphLoader.loadGraph().
+final class CompactGraphBuilder {
+
+    private CompactGraphBuilder() {}
+
+    static CompactGraph build(
+            Map<String, Stop>                      stops,
+            Map<String, List<StopEdge>>            adjacencyList,
+            Map<String, List<ScheduledConnection>> schedule,
+            FootpathGraph                          footpaths,
+            ServiceCalendar                        calendar
+    ) {
+        // Dense stop indices, sorted by ID — the same numbering TransitTimetableBuilder uses
+        String[] stopIds = stops.keySet().stream().sorted().toArray(String[]::new);
+        Map<String, Integer> stopIndexById = new HashMap<>();
+        double[] latitudes  = new double[stopIds.length];
+        double[] longitudes = new double[stopIds.length];
+        for (int i = 0; i < stopIds.length; i++) {
+            stopIndexById.put(stopIds[i], i);
+            latitudes[i]  = stops.get(stopIds[i]).getLatitude();
+            longitudes[i] = stops.get(stopIds[i]).getLongitude();
+        }
+
+        // Dense route indices. Scheduled connections carry the short name and mode; edge-only routes fall back to the edge mode.
+        Map<String, RouteLabel> labelsByRouteId = new TreeMap<>();
+        for (List<ScheduledConnection> connections : schedule.values()) {
+            for (ScheduledConnection conn : connections) {
+                labelsByRouteId.putIfAbsent(conn.getRouteId(), new RouteLabel(conn.getRouteShortName(), conn.getMode()));
+            }
+        }
+        for (List<StopEdge> edges : adjacencyList.values()) {
+            for (StopEdge edge : edges) {
+                if (edge.getRouteId() != null) {
+                    labelsByRouteId.putIfAbsent(edge.getRouteId(), new RouteLabel(null, edge.getTransportMode()));
+                }
+            }
+        }
+        String[] routeIds        = labelsByRouteId.keySet().toArray(new String[0]);
+        String[] routeShortNames = new String[routeIds.length];
+        byte[]   routeModes      = new byte[routeIds.length];
+        Map<String, Integer> routeIndexById = new HashMap<>();
+        for (int r = 0; r < routeIds.length; r++) {
+            RouteLabel label = labelsByRouteId.get(routeIds[r]);
+            routeIndexById.put(routeIds[r], r);
+            routeShortNames[r] = label.shortName();
+            routeModes[r]      = (byte) (label.mode() != null ? label.mode() : TransportMode.BUS).ordinal();
+        }
+
+        // Edges
+        int[] edgeOffsets = new int[stopIds.length + 1];
+        for (int s = 0; s < stopIds.length; s++) {
+            int count = 0;
+            for (StopEdge edge : adjacencyList.getOrDefault(stopIds[s], List.of())) {
+                if (stopIndexById.containsKey(edge.getToStopId())) count++;
+            }
+            edgeOffsets[s + 1] = edgeOffsets[s] + count;
+        }
+        int[]  edgeTargets = new int[edgeOffsets[stopIds.length]];
+        int[]  edgeSeconds = new int[edgeTargets.length];
+        int[]  edgeRoutes  = new int[edgeTargets.length];
+        byte[] edgeModes   = new byte[edgeTargets.length];
+        for (int s = 0; s < stopIds.length; s++) {
+            int slot = edgeOffsets[s];
+            for (StopEdge edge : adjacencyList.getOrDefault(stopIds[s], List.of())) {
+                Integer target = stopIndexById.get(edge.getToStopId());
+                if (target == null) continue;
+                edgeTargets[slot] = target;
+                edgeSeconds[slot] = edge.getTravelTimeSeconds();
+                edgeRoutes[slot]  = edge.getRouteId() != null ? routeIndexById.get(edge.getRouteId()) : CompactGraph.NO_ROUTE;
+                edgeModes[slot]   = (byte) (edge.getTransportMode() != null ? edge.getTransportMode().ordinal() : -1);
+                slot++;
+            }
+        }
+
+        // Scheduled connections — the per-stop lists are already sorted by departure time, so order is kept as is
+        int[] connectionOffsets = new int[stopIds.length + 1];
+        for (int s = 0; s < stopIds.length; s++) {
+            int count = 0;
+            for (ScheduledConnection conn : schedule.getOrDefault(stopIds[s], List.of())) {
+                if (stopIndexById.containsKey(conn.getToStopId())) count++;
+            }
+            connectionOffsets[s + 1] = connectionOffsets[s] + count;
+        }
+        int[] connectionTargets    = new int[connectionOffsets[stopIds.length]];
+        int[] connectionRoutes     = new int[connectionTargets.length];
+        int[] connectionDepartures = new int[connectionTargets.length];
+        int[] connectionArrivals   = new int[connectionTargets.length];
+        int[] connectionServices   = new int[connectionTargets.length];
+        for (int s = 0; s < stopIds.length; s++) {
+            int slot = connectionOffsets[s];
+            for (ScheduledConnection conn : schedule.getOrDefault(stopIds[s], List.of())) {
+                Integer target = stopIndexById.get(conn.getToStopId());
+                if (target == null) continue;
+                connectionTargets[slot]    = target;
+                connectionRoutes[slot]     = routeIndexById.get(conn.getRouteId());
+                connectionDepartures[slot] = conn.getDepartureTimeSeconds();
+                connectionArrivals[slot]   = conn.getArrivalTimeSeconds();
+                connectionServices[slot]   = calendar.indexOf(conn.getServiceId());
+                slot++;
+            }
+        }
+
+        // Footpaths: FootpathGraph already uses this stop numbering, so its arrays are adopted as they are
+        if (footpaths.stopCount() != stopIds.length) {
+            throw new IllegalArgumentException("Footpaths cover " + footpaths.stopCount() + " stops, the graph " + stopIds.length);
+        }
+        int[]   footpathOffsets = footpaths.offsets();
+        int[]   footpathTargets = footpaths.targets();
+        short[] footpathSeconds = footpaths.seconds();
+
+        // Routes serving each stop (departing or arriving), sorted — defines the (stop, route) state slots
+        int[][] routesByStop = new int[stopIds.length][];
+        int[] stopRouteOffsets = new int[stopIds.length + 1];
+        for (int s = 0; s < stopIds.length; s++) {
+            routesByStop[s] = new int[0];
+        }
+        for (int s = 0; s < stopIds.length; s++) {
+            for (int c = connectionOffsets[s]; c < connectionOffsets[s + 1]; c++) {
+                int target = connectionTargets[c];
+                routesByStop[s]      = appendRoute(routesByStop[s], connectionRoutes[c]);
+                routesByStop[target] = appendRoute(routesByStop[target], connectionRoutes[c]);
+            }
+        }
+        for (int s = 0; s < stopIds.length; s++) {
+            Arrays.sort(routesByStop[s]);
+            stopRouteOffsets[s + 1] = stopRouteOffsets[s] + routesByStop[s].length;
+        }
+        int[] stopRoutes = new int[stopRouteOffsets[stopIds.length]];
+        for (int s = 0; s < stopIds.length; s++) {
+            System.arraycopy(routesByStop[s], 0, stopRoutes, stopRouteOffsets[s], routesByStop[s].length);
+        }
+
+        return new CompactGraph(
+                stopIds, stopIndexById, latitudes, longitudes,
+                routeIds, routeIndexById, routeShortNames, routeModes,
+                edgeOffsets, edgeTargets, edgeSeconds, edgeRoutes, edgeModes,
+                connectionOffsets, connectionTargets, connectionRoutes, connectionDepartures, connectionArrivals, connectionServices,
+                footpathOffsets, footpathTargets, footpathSeconds,
+                stopRouteOffsets, stopRoutes);
+    }
+
+    // Adds a route to a stop's small route list unless it is already there. Lists are a handful of entries long.
+    private static int[] appendRoute(int[] routes, int route) {
+        for (int existing : routes) {
+            if (existing == route) return routes;
+        }
+        int[] grown = Arrays.copyOf(routes, routes.length + 1);
+        grown[routes.length] = route;
+        return grown;
+    }
+
+    private record RouteLabel(String shortName, TransportMode mode) {}
+}
@@ -0,0 +1,326 @@
+package com.routesense.infrastructure.gtfs;
+
+import com.routesense.domain.model.CompactGraph;
+import com.routesense.domain.model.ContractionHierarchy;
+import com.routesense.domain.model.EdgeWeightProfile;
+
+import java.util.Arrays;
+
+// Contracts the CompactGraph edge graph into a ContractionHierarchy for one weight profile. Runs once per
+// generation, at the end of GtfsGraphLoader's compile step.
+//
+// Stops are contracted in order of a lazily updated priority: shortcuts the contraction would add, minus the edges it
+// removes, plus how many neighbours are already contracted (which spreads contraction evenly over the graph).
+// Whether a shortcut u → w is needed is decided by a witness search: a Dijkstra from u that avoids the stop being
+// contracted and gives up after WITNESS_SETTLE_LIMIT stops. Giving up early only costs a redundant shortcut.
+final class ContractionHierarchyBuilder {
+
+    // Stops a witness search may settle before it assumes there is no other path
+    private static final int WITNESS_SETTLE_LIMIT = 64;
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    // Edge storage, grown on demand; a shortcut records the two edges it replaces
+    private int[] edgeFrom   = new int[1024];
+    private int[] edgeTo     = new int[1024];
+    private int[] edgeWeight = new int[1024];
+    private int[] edgeFirst  = new int[1024];
+    private int[] edgeSecond = new int[1024];
+    private int   edgeCount;
+
+    // Edges out of / into each stop, including ones to contracted stops (skipped when read)
+    private final int[][] outEdges;
+    private final int[]   outCount;
+    private final int[][] inEdges;
+    private final int[]   inCount;
+
+    private final boolean[] contracted;
+    private final int[]     contractedNeighbours;
+
+    // Witness search state, reset through the touched list after every search
+    private final int[] witnessDistance;
+    private final int[] touched;
+    private int         touchedCount;
+    private final Heap  witnessHeap = new Heap();
+
+    // Shortcuts found by the last contract() call: from, to, weight, first edge, second edge
+    private int[] pending = new int[64];
+    private int   pendingCount;
+
+    private ContractionHierarchyBuilder(int stopCount) {
+        outEdges             = new int[stopCount][];
+        outCount             = new int[stopCount];
+        inEdges              = new int[stopCount][];
+        inCount              = new int[stopCount];
+        contracted           = new boolean[stopCount];
+        contractedNeighbours = new int[stopCount];
+        witnessDistance      = new int[stopCount];
+        touched              = new int[stopCount];
+        Arrays.fill(witnessDistance, UNREACHED);
+        for (int stop = 0; stop < stopCount; stop++) {
+            outEdges[stop] = new int[4];
+            inEdges[stop]  = new int[4];
+        }
+    }
+
+    static ContractionHierarchy build(CompactGraph graph, EdgeWeightProfile profile) {
+        int stopCount = graph.stopCount();
+        ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder(stopCount);
+
+        // Original edges, one per (from, to) pair with the lowest weight, no self loops
+        for (int from = 0; from < stopCount; from++) {
+            for (int edge = graph.edgeStart(from); edge < graph.edgeEnd(from); edge++) {
+                int to = graph.edgeTarget(edge);
+                if (to == from) continue;
+                builder.addOrImprove(from, to, profile.weight(graph.edgeSeconds(edge)), -1, -1);
+            }
+        }
+
+        // Contraction order. A popped stop's priority is recomputed; if it got worse than the next one it goes back in.
+        int[] rank = new int[stopCount];
+        Heap  order = new Heap();
+        for (int stop = 0; stop < stopCount; stop++) {
+            order.push(stop, builder.priority(stop));
+        }
+        int nextRank = 0;
+        while (!order.isEmpty()) {
+            int stop = order.pop();
+            int priority = builder.priority(stop);
+            if (!order.isEmpty() && priority > order.peekKey()) {
+                order.push(stop, priority);
+                continue;
+            }
+            builder.contract(stop);
+            rank[stop] = nextRank++;
+        }
+        return builder.toHierarchy(rank);
+    }
+
+    // Contraction
+
+    private int priority(int stop) {
+        findShortcuts(stop);
+        int removed = 0;
+        for (int i = 0; i < outCount[stop]; i++) {
+            if (!contracted[edgeTo[outEdges[stop][i]]]) removed++;
+        }
+        for (int i = 0; i < inCount[stop]; i++) {
+            if (!contracted[edgeFrom[inEdges[stop][i]]]) removed++;
+        }
+        return pendingCount - removed + contractedNeighbours[stop];
+    }
+
+    private void contract(int stop) {
+        findShortcuts(stop);
+        for (int i = 0; i < pendingCount; i++) {
+            int base = i * 5;
+            addOrImprove(pending[base], pending[base + 1], pending[base + 2], pending[base + 3], pending[base + 4]);
+        }
+        contracted[stop] = true;
+        for (int i = 0; i < outCount[stop]; i++) {
+            contractedNeighbours[edgeTo[outEdges[stop][i]]]++;
+        }
+        for (int i = 0; i < inCount[stop]; i++) {
+            contractedNeighbours[edgeFrom[inEdges[stop][i]]]++;
+        }
+    }
+
+    // Fills pending with the shortcuts contracting 'stop' needs: one u → w for every remaining in-neighbour u and
+    // out-neighbour w whose path through stop is shorter than any witness path around it.
+    private void findShortcuts(int stop) {
+        pendingCount = 0;
+        int maxOut = 0;
+        for (int i = 0; i < outCount[stop]; i++) {
+            int edge = outEdges[stop][i];
+            if (!contracted[edgeTo[edge]]) maxOut = Math.max(maxOut, edgeWeight[edge]);
+        }
+
+        for (int i = 0; i < inCount[stop]; i++) {
+            int in   = inEdges[stop][i];
+            int from = edgeFrom[in];
+            if (contracted[from]) continue;
+
+            witnessSearch(from, stop, edgeWeight[in] + maxOut);
+            for (int j = 0; j < outCount[stop]; j++) {
+                int out = outEdges[stop][j];
+                int to  = edgeTo[out];
+                if (contracted[to] || to == from) continue;
+                int through = edgeWeight[in] + edgeWeight[out];
+                if (witnessDistance[to] <= through) continue;
+
+                if (pendingCount * 5 + 5 > pending.length) pending = Arrays.copyOf(pending, pending.length * 2);
+                int base = pendingCount++ * 5;
+                pending[base]     = from;
+                pending[base + 1] = to;
+                pending[base + 2] = through;
+                pending[base + 3] = in;
+                pending[base + 4] = out;
+            }
+            resetWitness();
+        }
+    }
+
+    // Dijkstra from 'source' over uncontracted stops other than 'avoid', up to maxDistance or WITNESS_SETTLE_LIMIT stops
+    private void witnessSearch(int source, int avoid, int maxDistance) {
+        witnessHeap.clear();
+        witnessDistance[source] = 0;
+        touched[touchedCount++] = source;
+        witnessHeap.push(source, 0);
+        int settled = 0;
+        while (!witnessHeap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+            int distance = witnessHeap.peekKey();
+            int stop     = witnessHeap.pop();
+            if (distance > witnessDistance[stop]) continue;
+            if (distance > maxDistance) break;
+            settled++;
+            for (int i = 0; i < outCount[stop]; i++) {
+                int edge = outEdges[stop][i];
+                int next = edgeTo[edge];
+                if (next == avoid || contracted[next]) continue;
+                int candidate = distance + edgeWeight[edge];
+                if (candidate < witnessDistance[next]) {
+                    if (witnessDistance[next] == UNREACHED) touched[touchedCount++] = next;
+                    witnessDistance[next] = candidate;
+                    witnessHeap.push(next, candidate);
+                }
+            }
+        }
+    }
+
+    private void resetWitness() {
+        for (int i = 0; i < touchedCount; i++) {
+            witnessDistance[touched[i]] = UNREACHED;
+        }
+        touchedCount = 0;
+    }
+
+    // Adds the edge from → to, or lowers the weight of the existing one (keeping one edge per pair)
+    private void addOrImprove(int from, int to, int weight, int first, int second) {
+        for (int i = 0; i < outCount[from]; i++) {
+            int edge = outEdges[from][i];
+            if (edgeTo[edge] != to) continue;
+            if (weight < edgeWeight[edge]) {
+                edgeWeight[edge] = weight;
+                edgeFirst[edge]  = first;
+                edgeSecond[edge] = second;
+            }
+            return;
+        }
+
+        if (edgeCount == edgeFrom.length) {
+            int capacity = edgeCount * 2;
+            edgeFrom   = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo     = Arrays.copyOf(edgeTo, capacity);
+            edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+            edgeFirst  = Arrays.copyOf(edgeFirst, capacity);
+            edgeSecond = Arrays.copyOf(edgeSecond, capacity);
+        }
+        int edge = edgeCount++;
+        edgeFrom[edge]   = from;
+        edgeTo[edge]     = to;
+        edgeWeight[edge] = weight;
+        edgeFirst[edge]  = first;
+        edgeSecond[edge] = second;
+
+        if (outCount[from] == outEdges[from].length) outEdges[from] = Arrays.copyOf(outEdges[from], outCount[from] * 2);
+        outEdges[from][outCount[from]++] = edge;
+        if (inCount[to] == inEdges[to].length) inEdges[to] = Arrays.copyOf(inEdges[to], inCount[to] * 2);
+        inEdges[to][inCount[to]++] = edge;
+    }
+
+    // Splits every edge by rank into the upward graph of its tail or the downward graph of its head (CSR)
+    private ContractionHierarchy toHierarchy(int[] rank) {
+        int   stopCount   = rank.length;
+        int[] upOffsets   = new int[stopCount + 1];
+        int[] downOffsets = new int[stopCount + 1];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            if (rank[edgeFrom[edge]] < rank[edgeTo[edge]]) {
+                upOffsets[edgeFrom[edge] + 1]++;
+            } else {
+                downOffsets[edgeTo[edge] + 1]++;
+            }
+        }
+        for (int stop = 0; stop < stopCount; stop++) {
+            upOffsets[stop + 1]   += upOffsets[stop];
+            downOffsets[stop + 1] += downOffsets[stop];
+        }
+
+        int[] upEdges   = new int[upOffsets[stopCount]];
+        int[] downEdges = new int[downOffsets[stopCount]];
+        int[] upNext    = Arrays.copyOf(upOffsets, stopCount);
+        int[] downNext  = Arrays.copyOf(downOffsets, stopCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            if (rank[edgeFrom[edge]] < rank[edgeTo[edge]]) {
+                upEdges[upNext[edgeFrom[edge]]++] = edge;
+            } else {
+                downEdges[downNext[edgeTo[edge]]++] = edge;
+            }
+        }
+
+        return new ContractionHierarchy(
+                Arrays.copyOf(edgeFrom, edgeCount),
+                Arrays.copyOf(edgeTo, edgeCount),
+                Arrays.copyOf(edgeWeight, edgeCount),
+                Arrays.copyOf(edgeFirst, edgeCount),
+                Arrays.copyOf(edgeSecond, edgeCount),
+                upOffsets, upEdges, downOffsets, downEdges);
+    }
+
+    // Binary min-heap of (stop, key) pairs; used for the contraction order and the witness searches
+    private static final class Heap {
+        private int[] stops = new int[64];
+        private int[] keys  = new int[64];
+        private int   size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int peekKey() {
+            return keys[0];
+        }
+
+        void push(int stop, int key) {
+            if (size == stops.length) {
+                stops = Arrays.copyOf(stops, size * 2);
+                keys  = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                stops[i] = stops[parent];
+                keys[i]  = keys[parent];
+                i = parent;
+            }
+            stops[i] = stop;
+            keys[i]  = key;
+        }
+
+        int pop() {
+            int top = stops[0];
+            size--;
+            if (size > 0) {
+                int stop = stops[size];
+                int key  = keys[size];
+                int i    = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                    if (keys[child] >= key) break;
+                    stops[i] = stops[child];
+                    keys[i]  = keys[child];
+                    i = child;
+                }
+                stops[i] = stop;
+                keys[i]  = key;
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.routesense.infrastructure.gtfs;
+
+import com.routesense.domain.model.FootpathGraph;
+import com.routesense.domain.model.StopSpatialIndex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Generates the FootpathGraph: every pair of stops within walking range of each other in a straight line, limited
+// to each stop's nearest few. It runs in GtfsGraphLoader's footpath stage as soon as stops.txt has been read, and its
+// result is what a GraphSnapshot stores.
+//
+// The range is the whole walking budget, so one footpath models any walk within it (straight-line walks never get
+// shorter by passing another stop), which is what the routers assume. Dense city centres would otherwise give every
+// stop hundreds of footpaths, so a link is kept only if each end is among the other's maxPerStop nearest. That
+// bounds every stop's fan-out and keeps the graph symmetric, which the backward scans rely on.
+//
+// Stops are split into contiguous chunks that are searched in parallel. Each chunk asks the StopSpatialIndex grid
+// for its stops' neighbours (flat-earth pre-filter, then the exact haversine) and appends the nearest to its own
+// primitive buffers; the chunks are in stop order, so laying them end to end gives the CSR arrays directly.
+final class FootpathBuilder {
+
+    private FootpathBuilder() {}
+
+    // maxPerStop <= 0 keeps every stop within range.
+    static FootpathGraph build(StopSpatialIndex index, double radiusKm, double walkSpeedKmh, int maxPerStop) {
+        int nearest    = maxPerStop > 0 ? maxPerStop : Integer.MAX_VALUE;
+        int stopCount  = index.stopCount();
+        int chunkCount = Math.max(1, Math.min(stopCount, Runtime.getRuntime().availableProcessors() * 4));
+        List<Chunk> chunks = IntStream.range(0, chunkCount).parallel()
+                .mapToObj(chunk -> new Chunk(index, radiusKm, walkSpeedKmh, nearest).run(
+                        stopCount * chunk / chunkCount, stopCount * (chunk + 1) / chunkCount))
+                .toList();
+
+        int     total   = chunks.stream().mapToInt(chunk -> chunk.count).sum();
+        int[]   offsets = new int[stopCount + 1];
+        int[]   targets = new int[total];
+        short[] seconds = new short[total];
+        int     filled  = 0;
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.targets, 0, targets, filled, chunk.count);
+            System.arraycopy(chunk.seconds, 0, seconds, filled, chunk.count);
+            for (int stop = chunk.fromStop; stop < chunk.toStop; stop++) {
+                offsets[stop + 1] = filled + chunk.ends[stop - chunk.fromStop];
+            }
+            filled += chunk.count;
+        }
+
+        String[] stopIds = new String[stopCount];
+        for (int stop = 0; stop < stopCount; stop++) {
+            stopIds[stop] = index.stopId(stop);
+        }
+        return maxPerStop > 0 ? mutual(stopIds, offsets, targets, seconds) : new FootpathGraph(stopIds, offsets, targets, seconds);
+    }
+
+    // Keeps the footpaths whose target also lists their source. Both lists are at most maxPerStop long, so looking
+    // the source up in the target's list is a short scan; the kept footpaths stay nearest first.
+    private static FootpathGraph mutual(String[] stopIds, int[] offsets, int[] targets, short[] seconds) {
+        int     stopCount   = stopIds.length;
+        int[]   keptOffsets = new int[stopCount + 1];
+        int[]   keptTargets = new int[targets.length];
+        short[] keptSeconds = new short[targets.length];
+        int     count       = 0;
+        for (int stop = 0; stop < stopCount; stop++) {
+            for (int slot = offsets[stop]; slot < offsets[stop + 1]; slot++) {
+                int target = targets[slot];
+                for (int back = offsets[target]; back < offsets[target + 1]; back++) {
+                    if (targets[back] == stop) {
+                        keptTargets[count] = target;
+                        keptSeconds[count] = seconds[slot];
+                        count++;
+                        break;
+                    }
+                }
+            }
+            keptOffsets[stop + 1] = count;
+        }
+        return new FootpathGraph(stopIds, keptOffsets, Arrays.copyOf(keptTargets, count), Arrays.copyOf(keptSeconds, count));
+    }
+
+    // Footpaths out of one range of stops. ends[i] is the end of stop (fromStop + i)'s footpaths within this chunk.
+    private static final class Chunk implements StopSpatialIndex.NeighbourVisitor {
+        private final StopSpatialIndex index;
+        private final double           radiusKm;
+        private final double           walkSpeedKmh;
+        private final int              nearest;
+        private int                    fromStop;
+        private int                    toStop;
+        private int[]                  ends;
+        private int[]                  targets = new int[256];
+        private short[]                seconds = new short[256];
+        private int                    count;
+
+        // Neighbours of the stop being searched, before sorting
+        private int                    current;
+        private int[]                  nearStops = new int[16];
+        private double[]               nearKm    = new double[16];
+        private int                    nearCount;
+
+        Chunk(StopSpatialIndex index, double radiusKm, double walkSpeedKmh, int nearest) {
+            this.index        = index;
+            this.radiusKm     = radiusKm;
+            this.walkSpeedKmh = walkSpeedKmh;
+            this.nearest      = nearest;
+        }
+
+        Chunk run(int fromStop, int toStop) {
+            this.fromStop = fromStop;
+            this.toStop   = toStop;
+            this.ends     = new int[toStop - fromStop];
+            for (int stop = fromStop; stop < toStop; stop++) {
+                current   = stop;
+                nearCount = 0;
+                index.forEachWithinRadius(index.latitude(stop), index.longitude(stop), radiusKm, 0, this);
+                sortNearestFirst();
+                for (int i = 0; i < Math.min(nearCount, nearest); i++) {
+                    append(nearStops[i], (int) Math.min(Short.MAX_VALUE, Math.round((nearKm[i] / walkSpeedKmh) * 3600)));
+                }
+                ends[stop - fromStop] = count;
+            }
+            return this;
+        }
+
+        @Override
+        public void visit(int stop, double distanceKm) {
+            if (stop == current) return;
+            if (nearCount == nearStops.length) {
+                nearStops = Arrays.copyOf(nearStops, nearCount * 2);
+                nearKm    = Arrays.copyOf(nearKm, nearCount * 2);
+            }
+            nearStops[nearCount] = stop;
+            nearKm[nearCount]    = distanceKm;
+            nearCount++;
+        }
+
+        // Nearest first, ties by stop index (the order StopSpatialIndex.withinRadius returns). Lists are short,
+        // so an insertion sort on the two parallel arrays is enough.
+        private void sortNearestFirst() {
+            for (int i = 1; i < nearCount; i++) {
+                int    stop = nearStops[i];
+                double km   = nearKm[i];
+                int    j    = i - 1;
+                while (j >= 0 && (nearKm[j] > km || (nearKm[j] == km && nearStops[j] > stop))) {
+                    nearStops[j + 1] = nearStops[j];
+                    nearKm[j + 1]    = nearKm[j];
+                    j--;
+                }
+                nearStops[j + 1] = stop;
+                nearKm[j + 1]    = km;
+            }
+        }
+
+        private void append(int target, int walkSeconds) {
+            if (count == targets.length) {
+                targets = Arrays.copyOf(targets, count * 2);
+                seconds = Arrays.copyOf(seconds, count * 2);
+            }
+            targets[count] = target;
+            seconds[count] = (short) walkSeconds;
+            count++;
+        }
+    }
+}
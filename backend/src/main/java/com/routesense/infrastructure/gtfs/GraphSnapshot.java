@@ -0,0 +1,418 @@
+package com.routesense.infrastructure.gtfs;
+
+import com.routesense.domain.model.FootpathGraph;
+import com.routesense.domain.model.ScheduledConnection;
+import com.routesense.domain.model.ServiceCalendar;
+import com.routesense.domain.model.Stop;
+import com.routesense.domain.model.StopEdge;
+import com.routesense.domain.model.TransportMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Versioned binary dump of a ParsedFeed, so a restart on an unchanged feed memory-maps one file instead of
+// re-parsing every GTFS CSV. The header carries the feed checksum and the footpath settings; a snapshot whose
+// version, checksum or footpath settings don't match is ignored and rebuilt from the CSVs.
+//
+// Layout (big-endian, as written by DataOutputStream):
+//   header     — magic, format version, feed checksum, footpath radius in metres, footpaths kept per stop
+//   strings    — every distinct stop ID, name, route ID, short name and service ID once, as UTF-8; later sections refer to them by index (-1 = null)
+//   stops      — id, name, lat, lon
+//   adjacency  — per stop: edges (to, seconds, mode, route)
+//   schedule   — per stop: connections (route, short name, to, departure, arrival, mode, service), already sorted by departure
+//   names      — routeId → short name
+//   shapes     — routeId → [lat, lon] points
+//   footpaths  — FootpathGraph CSR in sorted-stop-ID numbering: stop count, offsets, then (to, seconds) per footpath
+//   calendar   — service IDs, first day, day count, then each service's active-day bitset words
+//   trips      — TransitTimetableBuilder trip groups: route, short name, mode, stop list, then per trip its service and times
+final class GraphSnapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphSnapshot.class);
+
+    private static final int MAGIC = 0x52534753; // "RSGS"
+
+    // Bump whenever the layout below changes, so old snapshots are rebuilt instead of misread
+    private static final int VERSION = 5;
+
+    private static final byte NO_MODE = -1;
+    private static final TransportMode[] MODES = TransportMode.values();
+
+    private GraphSnapshot() {}
+
+    // Maps the snapshot and decodes it, or returns null if there is no usable snapshot for this feed checksum and
+    // footpath settings.
+    static ParsedFeed read(Path file, long feedChecksum, int footpathRadiusMeters, int footpathsPerStop) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                LOGGER.warn("GTFS snapshot {} is larger than 2 GB and can't be mapped; parsing the feed instead", file);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 24 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                LOGGER.info("GTFS snapshot {} has an unknown format version; rebuilding it", file);
+                return null;
+            }
+            if (buffer.getLong() != feedChecksum) {
+                LOGGER.info("GTFS feed changed since snapshot {} was written; rebuilding it", file);
+                return null;
+            }
+            if (buffer.getInt() != footpathRadiusMeters || buffer.getInt() != footpathsPerStop) {
+                LOGGER.info("Footpath settings changed since snapshot {} was written; rebuilding it", file);
+                return null;
+            }
+            return decode(buffer);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            LOGGER.warn("GTFS snapshot {} is unreadable; parsing the feed instead", file, e);
+            return null;
+        }
+    }
+
+    // Writes the snapshot to a temporary file next to the target and moves it into place, so a crash
+    // mid-write never leaves a truncated snapshot behind. Failures are logged, not thrown: the snapshot is only a cache.
+    static void write(Path file, long feedChecksum, int footpathRadiusMeters, int footpathsPerStop, ParsedFeed feed) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Map<String, Integer> strings = collectStrings(feed);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(feedChecksum);
+                out.writeInt(footpathRadiusMeters);
+                out.writeInt(footpathsPerStop);
+                encode(out, feed, strings);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info("GTFS snapshot written to {} ({} KB)", file, Files.size(file) / 1024);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write GTFS snapshot {}; the next start will parse the feed again", file, e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {}
+        }
+    }
+
+    // Encoding
+
+    // Assigns every distinct string in the feed an index in the string table.
+    private static Map<String, Integer> collectStrings(ParsedFeed feed) {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (Stop stop : feed.stops().values()) {
+            intern(strings, stop.getId());
+            intern(strings, stop.getName());
+        }
+        for (Map.Entry<String, List<StopEdge>> entry : feed.adjacencyList().entrySet()) {
+            intern(strings, entry.getKey());
+            for (StopEdge edge : entry.getValue()) {
+                intern(strings, edge.getToStopId());
+                intern(strings, edge.getRouteId());
+            }
+        }
+        for (Map.Entry<String, List<ScheduledConnection>> entry : feed.scheduleByStop().entrySet()) {
+            intern(strings, entry.getKey());
+            for (ScheduledConnection conn : entry.getValue()) {
+                intern(strings, conn.getToStopId());
+                intern(strings, conn.getRouteId());
+                intern(strings, conn.getRouteShortName());
+                intern(strings, conn.getServiceId());
+            }
+        }
+        for (Map.Entry<String, String> entry : feed.routeShortNames().entrySet()) {
+            intern(strings, entry.getKey());
+            intern(strings, entry.getValue());
+        }
+        for (String routeId : feed.routeShapes().keySet()) {
+            intern(strings, routeId);
+        }
+        ServiceCalendar calendar = feed.serviceCalendar();
+        for (int service = 0; service < calendar.serviceCount(); service++) {
+            intern(strings, calendar.serviceId(service));
+        }
+        for (TransitTimetableBuilder.TripGroup group : feed.timetableBuilder().tripGroups()) {
+            intern(strings, group.routeId());
+            intern(strings, group.shortName());
+            for (String stopId : group.stopIds()) {
+                intern(strings, stopId);
+            }
+            for (TransitTimetableBuilder.Trip trip : group.trips()) {
+                intern(strings, trip.serviceId());
+            }
+        }
+        return strings;
+    }
+
+    private static void intern(Map<String, Integer> strings, String value) {
+        if (value != null) {
+            strings.putIfAbsent(value, strings.size());
+        }
+    }
+
+    private static void encode(DataOutputStream out, ParsedFeed feed, Map<String, Integer> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String value : strings.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        out.writeInt(feed.stops().size());
+        for (Stop stop : feed.stops().values()) {
+            out.writeInt(ref(strings, stop.getId()));
+            out.writeInt(ref(strings, stop.getName()));
+            out.writeDouble(stop.getLatitude());
+            out.writeDouble(stop.getLongitude());
+        }
+
+        out.writeInt(feed.adjacencyList().size());
+        for (Map.Entry<String, List<StopEdge>> entry : feed.adjacencyList().entrySet()) {
+            out.writeInt(ref(strings, entry.getKey()));
+            out.writeInt(entry.getValue().size());
+            for (StopEdge edge : entry.getValue()) {
+                out.writeInt(ref(strings, edge.getToStopId()));
+                out.writeInt(edge.getTravelTimeSeconds());
+                out.writeByte(mode(edge.getTransportMode()));
+                out.writeInt(ref(strings, edge.getRouteId()));
+            }
+        }
+
+        out.writeInt(feed.scheduleByStop().size());
+        for (Map.Entry<String, List<ScheduledConnection>> entry : feed.scheduleByStop().entrySet()) {
+            out.writeInt(ref(strings, entry.getKey()));
+            out.writeInt(entry.getValue().size());
+            for (ScheduledConnection conn : entry.getValue()) {
+                out.writeInt(ref(strings, conn.getRouteId()));
+                out.writeInt(ref(strings, conn.getRouteShortName()));
+                out.writeInt(ref(strings, conn.getToStopId()));
+                out.writeInt(conn.getDepartureTimeSeconds());
+                out.writeInt(conn.getArrivalTimeSeconds());
+                out.writeByte(mode(conn.getMode()));
+                out.writeInt(ref(strings, conn.getServiceId()));
+            }
+        }
+
+        out.writeInt(feed.routeShortNames().size());
+        for (Map.Entry<String, String> entry : feed.routeShortNames().entrySet()) {
+            out.writeInt(ref(strings, entry.getKey()));
+            out.writeInt(ref(strings, entry.getValue()));
+        }
+
+        out.writeInt(feed.routeShapes().size());
+        for (Map.Entry<String, List<double[]>> entry : feed.routeShapes().entrySet()) {
+            out.writeInt(ref(strings, entry.getKey()));
+            out.writeInt(entry.getValue().size());
+            for (double[] point : entry.getValue()) {
+                out.writeDouble(point[0]);
+                out.writeDouble(point[1]);
+            }
+        }
+
+        FootpathGraph footpaths = feed.footpaths();
+        out.writeInt(footpaths.stopCount());
+        for (int offset : footpaths.offsets()) {
+            out.writeInt(offset);
+        }
+        for (int slot = 0; slot < footpaths.footpathCount(); slot++) {
+            out.writeInt(footpaths.footpathTarget(slot));
+            out.writeInt(footpaths.footpathSeconds(slot));
+        }
+
+        ServiceCalendar calendar = feed.serviceCalendar();
+        out.writeInt(calendar.serviceCount());
+        for (int service = 0; service < calendar.serviceCount(); service++) {
+            out.writeInt(ref(strings, calendar.serviceId(service)));
+        }
+        out.writeLong(calendar.firstDay().toEpochDay());
+        out.writeInt(calendar.dayCount());
+        for (int service = 0; service < calendar.serviceCount(); service++) {
+            for (int word = 0; word < calendar.wordsPerService(); word++) {
+                out.writeLong(calendar.activeDayWord(service, word));
+            }
+        }
+
+        List<TransitTimetableBuilder.TripGroup> groups = feed.timetableBuilder().tripGroups();
+        out.writeInt(groups.size());
+        for (TransitTimetableBuilder.TripGroup group : groups) {
+            out.writeInt(ref(strings, group.routeId()));
+            out.writeInt(ref(strings, group.shortName()));
+            out.writeByte(mode(group.mode()));
+            out.writeInt(group.stopIds().length);
+            for (String stopId : group.stopIds()) {
+                out.writeInt(ref(strings, stopId));
+            }
+            out.writeInt(group.trips().size());
+            for (TransitTimetableBuilder.Trip trip : group.trips()) {
+                out.writeInt(ref(strings, trip.serviceId()));
+                for (int time : trip.times()) {
+                    out.writeInt(time);
+                }
+            }
+        }
+    }
+
+    private static int ref(Map<String, Integer> strings, String value) {
+        return value == null ? -1 : strings.get(value);
+    }
+
+    private static byte mode(TransportMode mode) {
+        return mode == null ? NO_MODE : (byte) mode.ordinal();
+    }
+
+    // Decoding — the same order as encode(). Maps are refilled in the order they were written, so they iterate
+    // exactly like the freshly parsed ones; collections are frozen the same way GtfsGraphLoader freezes parsed data.
+
+    private static ParsedFeed decode(ByteBuffer in) {
+        String[] strings = new String[in.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int stopCount = in.getInt();
+        Map<String, Stop> stops = new HashMap<>();
+        for (int i = 0; i < stopCount; i++) {
+            String id   = string(strings, in.getInt());
+            String name = string(strings, in.getInt());
+            stops.put(id, new Stop(id, name, in.getDouble(), in.getDouble()));
+        }
+
+        int adjacencyCount = in.getInt();
+        Map<String, List<StopEdge>> adjacency = new HashMap<>();
+        for (int i = 0; i < adjacencyCount; i++) {
+            String from = string(strings, in.getInt());
+            StopEdge[] edges = new StopEdge[in.getInt()];
+            for (int e = 0; e < edges.length; e++) {
+                String        to      = string(strings, in.getInt());
+                int           seconds = in.getInt();
+                TransportMode mode    = mode(in.get());
+                edges[e] = new StopEdge(from, to, seconds, mode, string(strings, in.getInt()));
+            }
+            adjacency.put(from, List.of(edges));
+        }
+
+        int scheduleCount = in.getInt();
+        Map<String, List<ScheduledConnection>> schedule = new HashMap<>();
+        for (int i = 0; i < scheduleCount; i++) {
+            String stopId = string(strings, in.getInt());
+            ScheduledConnection[] connections = new ScheduledConnection[in.getInt()];
+            for (int c = 0; c < connections.length; c++) {
+                String routeId   = string(strings, in.getInt());
+                String shortName = string(strings, in.getInt());
+                String to        = string(strings, in.getInt());
+                int    departure = in.getInt();
+                int    arrival   = in.getInt();
+                TransportMode mode = mode(in.get());
+                connections[c] = new ScheduledConnection(routeId, shortName, to, departure, arrival, mode, string(strings, in.getInt()));
+            }
+            schedule.put(stopId, List.of(connections));
+        }
+
+        int nameCount = in.getInt();
+        Map<String, String> shortNames = new HashMap<>();
+        for (int i = 0; i < nameCount; i++) {
+            shortNames.put(string(strings, in.getInt()), string(strings, in.getInt()));
+        }
+
+        int shapeCount = in.getInt();
+        Map<String, List<double[]>> shapes = new HashMap<>();
+        for (int i = 0; i < shapeCount; i++) {
+            String routeId = string(strings, in.getInt());
+            int pointCount = in.getInt();
+            List<double[]> points = new ArrayList<>(pointCount);
+            for (int p = 0; p < pointCount; p++) {
+                points.add(new double[]{ in.getDouble(), in.getDouble() });
+            }
+            shapes.put(routeId, points);
+        }
+
+        String[] footpathStopIds = stops.keySet().stream().sorted().toArray(String[]::new);
+        int[]    footpathOffsets = new int[in.getInt() + 1];
+        for (int i = 0; i < footpathOffsets.length; i++) {
+            footpathOffsets[i] = in.getInt();
+        }
+        int[]   footpathTargets = new int[footpathOffsets[footpathOffsets.length - 1]];
+        short[] footpathSeconds = new short[footpathTargets.length];
+        for (int slot = 0; slot < footpathTargets.length; slot++) {
+            footpathTargets[slot] = in.getInt();
+            footpathSeconds[slot] = (short) in.getInt();
+        }
+        FootpathGraph footpaths = new FootpathGraph(footpathStopIds, footpathOffsets, footpathTargets, footpathSeconds);
+
+        String[] serviceIds = new String[in.getInt()];
+        for (int service = 0; service < serviceIds.length; service++) {
+            serviceIds[service] = string(strings, in.getInt());
+        }
+        LocalDate firstDay   = LocalDate.ofEpochDay(in.getLong());
+        int       dayCount   = in.getInt();
+        long[]    activeDays = new long[serviceIds.length * ((dayCount + 63) >>> 6)];
+        for (int i = 0; i < activeDays.length; i++) {
+            activeDays[i] = in.getLong();
+        }
+        ServiceCalendar calendar = new ServiceCalendar(serviceIds, firstDay, dayCount, activeDays);
+
+        TransitTimetableBuilder timetableBuilder = new TransitTimetableBuilder();
+        int groupCount = in.getInt();
+        for (int i = 0; i < groupCount; i++) {
+            String        routeId   = string(strings, in.getInt());
+            String        shortName = string(strings, in.getInt());
+            TransportMode mode      = mode(in.get());
+            String[]      stopIds   = new String[in.getInt()];
+            for (int s = 0; s < stopIds.length; s++) {
+                stopIds[s] = string(strings, in.getInt());
+            }
+            int tripCount = in.getInt();
+            List<TransitTimetableBuilder.Trip> trips = new ArrayList<>(tripCount);
+            for (int t = 0; t < tripCount; t++) {
+                String serviceId = string(strings, in.getInt());
+                int[]  times     = new int[stopIds.length];
+                for (int s = 0; s < times.length; s++) {
+                    times[s] = in.getInt();
+                }
+                trips.add(new TransitTimetableBuilder.Trip(serviceId, times));
+            }
+            timetableBuilder.addTrips(routeId, shortName, mode, stopIds, trips);
+        }
+
+        return new ParsedFeed(
+                Collections.unmodifiableMap(stops),
+                Collections.unmodifiableMap(adjacency),
+                Collections.unmodifiableMap(schedule),
+                Collections.unmodifiableMap(shortNames),
+                Collections.unmodifiableMap(shapes),
+                footpaths,
+                calendar,
+                timetableBuilder);
+    }
+
+    private static String string(String[] strings, int ref) {
+        return ref < 0 ? null : strings[ref];
+    }
+
+    private static TransportMode mode(byte ordinal) {
+        return ordinal == NO_MODE ? null : MODES[ordinal];
+    }
+}
@@ -0,0 +1,305 @@
+package com.routesense.infrastructure.gtfs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Row-at-a-time GTFS CSV tokenizer that works in place over a char buffer.
+// A row is split into field spans (start/end offsets into the buffer) instead of Strings, so the hot loaders can
+// compare, look up and parse ints / GTFS times straight from the buffer and only allocate the Strings they keep.
+//
+// Same dialect as the old line-based parser: one row per line (CR/LF stripped), ',' separates fields,
+// '"' toggles quoting and "" inside quotes is a literal quote. Field values are trimmed like String.trim().
+//
+// Reads either from a Reader (refilling the buffer as rows are consumed) or from a fixed char array,
+// which is how the parallel stop_times.txt parser hands each worker its chunk.
+final class GtfsCsvReader implements Closeable {
+
+    private static final int INITIAL_BUFFER_CHARS = 1 << 16;
+
+    private final Reader reader;              // null for a fixed char array
+    private char[]       buffer;
+    private int          limit;               // chars of buffer holding data
+    private int          position;            // start of the next row
+    private boolean      endOfInput;
+
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds   = new int[16];
+    private int   fieldCount;
+
+    GtfsCsvReader(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[INITIAL_BUFFER_CHARS];
+    }
+
+    GtfsCsvReader(char[] chars, int length) {
+        this.reader     = null;
+        this.buffer     = chars;
+        this.limit      = length;
+        this.endOfInput = true;
+    }
+
+    // Reads the header row and returns column name (trimmed, lower-case) → index, or null if the input is empty.
+    Map<String, Integer> readHeader() throws IOException {
+        if (!next()) return null;
+        if (fieldCount > 0 && fieldEnds[0] > fieldStarts[0] && buffer[fieldStarts[0]] == '\uFEFF') {
+            fieldStarts[0]++; // UTF-8 byte order mark
+        }
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < fieldCount; i++) {
+            index.put(getString(i).toLowerCase(Locale.ROOT), i);
+        }
+        return index;
+    }
+
+    // Advances to the next row. Returns false at the end of the input.
+    boolean next() throws IOException {
+        int lineEnd = findLineEnd();
+        if (lineEnd < 0) return false;
+
+        int rowEnd = lineEnd;
+        if (rowEnd > position && buffer[rowEnd - 1] == '\r') rowEnd--;
+        tokenize(position, rowEnd);
+        position = Math.min(limit, lineEnd + 1);
+        return true;
+    }
+
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    // True if the column is missing from this row or holds only whitespace.
+    boolean isBlank(int column) {
+        if (column < 0 || column >= fieldCount) return true;
+        return trimmedStart(column) >= trimmedEnd(column);
+    }
+
+    // The trimmed field value, or "" if the column is missing from this row.
+    String getString(int column) {
+        if (column < 0 || column >= fieldCount) return "";
+        int start = trimmedStart(column);
+        return new String(buffer, start, Math.max(0, trimmedEnd(column) - start));
+    }
+
+    // True if the trimmed field equals value, without allocating.
+    boolean fieldEquals(int column, String value) {
+        if (column < 0 || column >= fieldCount) return value.isEmpty();
+        int start = trimmedStart(column);
+        int end   = trimmedEnd(column);
+        if (end - start != value.length()) return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer[start + i] != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // Index of the trimmed field value in symbols, or -1 if it isn't one of them. Doesn't allocate.
+    int symbol(int column, Symbols symbols) {
+        if (column < 0 || column >= fieldCount) return -1;
+        return symbols.find(buffer, trimmedStart(column), trimmedEnd(column));
+    }
+
+    // Parses a decimal int (optional sign) like Integer.parseInt, straight from the buffer.
+    int getInt(int column) {
+        if (column < 0 || column >= fieldCount) throw new NumberFormatException("Missing column " + column);
+        return parseInt(trimmedStart(column), trimmedEnd(column));
+    }
+
+    // Parses a GTFS time "H:MM:SS" (hours may exceed 23) into seconds since midnight.
+    int getTime(int column) {
+        if (column < 0 || column >= fieldCount) throw new NumberFormatException("Missing column " + column);
+        int start  = trimmedStart(column);
+        int end    = trimmedEnd(column);
+        int colon1 = indexOf(':', start, end);
+        int colon2 = colon1 < 0 ? -1 : indexOf(':', colon1 + 1, end);
+        if (colon2 < 0 || indexOf(':', colon2 + 1, end) >= 0) {
+            throw new NumberFormatException("Invalid GTFS time: " + new String(buffer, start, end - start));
+        }
+        return parseInt(start, colon1) * 3600 + parseInt(colon1 + 1, colon2) * 60 + parseInt(colon2 + 1, end);
+    }
+
+    double getDouble(int column) {
+        return Double.parseDouble(getString(column));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) reader.close();
+    }
+
+    // Buffer handling
+
+    // Offset of the '\n' ending the next row (or limit for a last row without one), refilling as needed; -1 at end of input.
+    private int findLineEnd() throws IOException {
+        int scanFrom = position;
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (buffer[i] == '\n') return i;
+            }
+            if (endOfInput) {
+                return position < limit ? limit : -1;
+            }
+            scanFrom = limit - position;
+            fill();
+        }
+    }
+
+    // Moves the unread tail to the front of the buffer (growing it if one row fills it) and reads more input.
+    private void fill() throws IOException {
+        int unread = limit - position;
+        if (unread == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        } else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, unread);
+        }
+        position = 0;
+        limit    = unread;
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    // Splits [start, end) into field spans. Quoted fields are unescaped in place, which only ever shortens them.
+    private void tokenize(int start, int end) {
+        fieldCount = 0;
+        int fieldStart = start;
+        int write      = start;
+        boolean insideQuotes = false;
+        boolean quoted       = false;
+
+        for (int i = start; i < end; i++) {
+            char c = buffer[i];
+            if (c == '"') {
+                quoted = true;
+                if (insideQuotes && i + 1 < end && buffer[i + 1] == '"') {
+                    buffer[write++] = '"';
+                    i++;
+                } else {
+                    insideQuotes = !insideQuotes;
+                }
+            } else if (c == ',' && !insideQuotes) {
+                addField(fieldStart, quoted ? write : i);
+                fieldStart = i + 1;
+                write      = i + 1;
+                quoted     = false;
+            } else {
+                if (quoted) buffer[write] = c;
+                write++;
+            }
+        }
+        addField(fieldStart, quoted ? write : end);
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds   = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount]   = end;
+        fieldCount++;
+    }
+
+    private int trimmedStart(int column) {
+        int start = fieldStarts[column];
+        int end   = fieldEnds[column];
+        while (start < end && buffer[start] <= ' ') start++;
+        return start;
+    }
+
+    private int trimmedEnd(int column) {
+        int start = fieldStarts[column];
+        int end   = fieldEnds[column];
+        while (end > start && buffer[end - 1] <= ' ') end--;
+        return end;
+    }
+
+    private int indexOf(char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (buffer[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private int parseInt(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        if (i >= end) throw new NumberFormatException("Not a number: " + new String(buffer, start, end - start));
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException("Not a number: " + new String(buffer, start, end - start));
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) throw new NumberFormatException("Out of range: " + new String(buffer, start, end - start));
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) throw new NumberFormatException("Out of range: " + new String(buffer, start, end - start));
+        return (int) value;
+    }
+
+    // Fixed set of Strings (e.g. every stop ID) numbered 0..n-1, looked up by char range without allocating.
+    // Open addressing on String.hashCode(); read-only after construction, so safe to share between parser threads.
+    static final class Symbols {
+
+        private final String[] values;
+        private final int[]    slots;   // value index + 1, 0 = empty
+        private final int      mask;
+
+        private Symbols(String[] values) {
+            this.values = values;
+            int capacity = Integer.highestOneBit(Math.max(4, values.length * 2) - 1) << 1;
+            this.slots = new int[capacity];
+            this.mask  = capacity - 1;
+            for (int i = 0; i < values.length; i++) {
+                int slot = values[i].hashCode() & mask;
+                while (slots[slot] != 0) slot = (slot + 1) & mask;
+                slots[slot] = i + 1;
+            }
+        }
+
+        static Symbols of(Collection<String> values) {
+            return new Symbols(values.stream().distinct().toArray(String[]::new));
+        }
+
+        int size() {
+            return values.length;
+        }
+
+        String value(int index) {
+            return values[index];
+        }
+
+        int find(char[] chars, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) hash = 31 * hash + chars[i];
+            int length = end - start;
+            for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                String candidate = values[slots[slot] - 1];
+                if (candidate.length() == length && regionEquals(candidate, chars, start)) {
+                    return slots[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean regionEquals(String candidate, char[] chars, int start) {
+            for (int i = 0; i < candidate.length(); i++) {
+                if (candidate.charAt(i) != chars[start + i]) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -1,32 +1,61 @@
 package com.routesense.infrastructure.gtfs;
 
+import com.routesense.application.routing.RoutingEngine;
+import com.routesense.domain.model.CompactGraph;
+import com.routesense.domain.model.ConnectionTimetable;
+import com.routesense.domain.model.ContractionHierarchy;
+import com.routesense.domain.model.DayTimetableCache;
+import com.routesense.domain.model.EdgeWeightProfile;
 import com.routesense.domain.model.FootpathEdge;
+import com.routesense.domain.model.FootpathGraph;
+import com.routesense.domain.model.GraphGeneration;
+import com.routesense.domain.model.LandmarkLowerBounds;
 import com.routesense.domain.model.ScheduledConnection;
+import com.routesense.domain.model.ServiceCalendar;
 import com.routesense.domain.model.Stop;
 import com.routesense.domain.model.StopEdge;
+import com.routesense.domain.model.StopSpatialIndex;
+import com.routesense.domain.model.TransitTimetable;
 import com.routesense.domain.model.TransportMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
-import java.io.BufferedReader;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
 
 /// Loads GTFS data from the classpath and builds in-memory graph structures for stops, edges, and schedules.
 /// This is used by InMemoryStopGraphRepository to serve data to the application, and by InMemoryMapDataSource to serve stop and departure data to the map.
@@ -34,81 +63,382 @@ import java.util.stream.Collectors;
 public class GtfsGraphLoader {
 
     private static final int    DEFAULT_EDGE_TIME_SECONDS  = 120;
-    private static final double MAX_FOOTPATH_DISTANCE_KM   = 0.3;  // 300 m — max walking distance for a mid-journey transfer
+    private static final double MIN_FOOTPATH_DISTANCE_KM   = 0.3;  // 300 m — stops this close are always linked for a mid-journey transfer
     private static final double WALK_SPEED_KMH             = 4.8;  // walking speed used to compute footpath travel time
     private static final Logger LOGGER = LoggerFactory.getLogger(GtfsGraphLoader.class);
 
-    private Map<String, Stop> stops = Map.of();// stopId → Stop
-    private Map<String, List<StopEdge>> adjacencyList = Map.of();// stopId → list of outgoing edges (sorted by toStopId for deterministic iteration order)
-    private Map<String, List<ScheduledConnection>> scheduleByStop = Map.of();// stopId → list of departing connections (sorted by departure time)
-    private Map<String, String> routeShortNames = Map.of(); // routeId → shortName (e.g. "405", "DART")
-    private Map<String, List<double[]>> routeShapes = Map.of(); // routeId → ordered [lat,lon] shape points (train routes only)
-    private Map<String, List<FootpathEdge>> footpaths = Map.of(); // stopId → nearby stops reachable on foot
+    // GTFS files the graph is built from — the feed checksum covers exactly these
+    private static final String[] FEED_FILES = {
+            "stops.txt", "routes.txt", "trips.txt", "stop_times.txt", "shapes.txt", "calendar.txt", "calendar_dates.txt" };
 
-    @PostConstruct// Load the GTFS graph at startup.  This is a heavy operation but it only happens once and makes all subsequent queries fast.
+    // calendar.txt weekday columns, in ServiceCalendarBuilder bit order (Monday = bit 0)
+    private static final String[] WEEKDAY_COLUMNS = {
+            "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday" };
+
+    // Cache the parsed feed in a binary snapshot so restarts on an unchanged feed skip CSV parsing
+    @Value("${app.gtfs.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
+    // Where the snapshot lives; rewritten whenever the feed checksum changes
+    @Value("${app.gtfs.snapshot.path:data/gtfs-graph.snapshot}")
+    private String snapshotPath;
+
+    // Only route on the services calendar.txt / calendar_dates.txt say are running on the requested date.
+    // When off (or when the feed has no calendar), every trip runs every day.
+    @Value("${app.gtfs.calendar.enabled:true}")
+    private boolean calendarEnabled;
+
+    // Timetables cut down to one service date are built on first use and cached for dates up to horizon-days ahead.
+    // Today's and tomorrow's are always kept; other dates are evicted least-recently-used beyond max-entries.
+    @Value("${app.gtfs.day-timetables.horizon-days:7}")
+    private int dayTimetableHorizonDays;
+
+    @Value("${app.gtfs.day-timetables.max-entries:4}")
+    private int dayTimetableMaxEntries;
+
+    // Day timetables carry the trip-based router's transfers only when that engine answers the searches
+    @Value("${app.routing.engine:mcraptor}")
+    private String routingEngine;
+
+    // Stops are linked directly within the distance walked in max-walk-seconds (at least 300 m; 0 = 300 m), so one
+    // footpath covers any walk within the budget. A link is kept only if each stop is among the other's max-per-stop
+    // nearest (0 = no limit).
+    @Value("${app.gtfs.footpaths.max-walk-seconds:600}")
+    private int footpathMaxWalkSeconds;
+
+    @Value("${app.gtfs.footpaths.max-per-stop:32}")
+    private int footpathMaxPerStop;
+
+    // Threads used to tokenize stop_times.txt; 0 = one per available processor
+    @Value("${app.gtfs.parse-threads:0}")
+    private int parseThreads;
+
+    // Optional directory holding the GTFS files. Files found there win over the ones bundled on the classpath,
+    // so operators can drop in a new feed and reload without rebuilding the jar.
+    @Value("${app.gtfs.feed-dir:}")
+    private String feedDir;
+
+    // Watch feed-dir and reload automatically once its files have been quiet for the given period
+    @Value("${app.gtfs.reload.watch:false}")
+    private boolean watchFeedDir;
+
+    @Value("${app.gtfs.reload.quiet-period-ms:10000}")
+    private long reloadQuietPeriodMs;
+
+    // The live graph. Replaced as a whole by reload(); readers take one reference and use it for the entire request.
+    private volatile GraphGeneration generation = GraphGeneration.empty();
+    private WatchService feedWatchService;
+
+    @PostConstruct// Load the GTFS graph at startup.  This is a heavy operation but it only happens once per feed version and makes all subsequent queries fast.
     public void loadGraph() {
-        Map<String, Stop> parsedStops = loadStops(); // stopID - stops
-        LoadedEdgeData edgeData = loadEdges(parsedStops);
+        reload();
+        startFeedWatcher();
+    }
 
-        this.stops = Collections.unmodifiableMap(parsedStops);
+    @PreDestroy
+    public void stopFeedWatcher() throws IOException {
+        if (feedWatchService != null) {
+            feedWatchService.close();
+        }
+    }
 
-        // Freeze adjacency list
-        Map<String, List<StopEdge>> immutableAdjacency = new HashMap<>();
-        for (Map.Entry<String, List<StopEdge>> entry : edgeData.adjacencyList().entrySet()) {
-            immutableAdjacency.put(entry.getKey(), List.copyOf(entry.getValue()));
+    // Builds a new generation from the current GTFS files and swaps it in with a single volatile write.
+    // The old generation keeps serving until then, and searches that already hold it finish on it.
+    // Reloads are serialized; a reload that finds the feed checksum unchanged keeps the live generation.
+    public synchronized GraphGeneration reload() {
+        GraphGeneration current = generation;
+        long started = System.nanoTime();
+        long feedChecksum = computeFeedChecksum();
+        if (current.number() > 0 && current.feedChecksum() == feedChecksum) {
+            LOGGER.info("GTFS feed unchanged; generation {} stays live", current.number());
+            return current;
         }
-        this.adjacencyList = Collections.unmodifiableMap(immutableAdjacency);
-
-        // Sort each stop's schedule by departure time, then freeze
-        Map<String, List<ScheduledConnection>> immutableSchedule = new HashMap<>();
-        for (Map.Entry<String, List<ScheduledConnection>> entry : edgeData.scheduleByStop().entrySet()) {
-            List<ScheduledConnection> sorted = new ArrayList<>(entry.getValue());
-            sorted.sort(Comparator.comparingInt(ScheduledConnection::getDepartureTimeSeconds));
-            immutableSchedule.put(entry.getKey(), List.copyOf(sorted));
+
+        // Restore the parsed feed from the binary snapshot when the feed hasn't changed since it was written;
+        // otherwise parse the CSVs and write a fresh snapshot for the next start.
+        ParsedFeed feed = null;
+        Path snapshotFile = Path.of(snapshotPath);
+        if (snapshotEnabled) {
+            feed = GraphSnapshot.read(snapshotFile, feedChecksum, footpathRadiusMeters(), footpathMaxPerStop);
+            if (feed != null) {
+                LOGGER.info("GTFS feed restored from snapshot {} in {} ms", snapshotFile, (System.nanoTime() - started) / 1_000_000);
+            }
+        }
+        if (feed == null) {
+            feed = parseFeed();
+            if (snapshotEnabled) {
+                GraphSnapshot.write(snapshotFile, feedChecksum, footpathRadiusMeters(), footpathMaxPerStop, feed);
+            }
         }
-        this.scheduleByStop = Collections.unmodifiableMap(immutableSchedule);
 
-        // Build routeId → shortName lookup from routes.txt (used to label legs in the fallback Dijkstra)
-        Map<String, String> shortNameMap = new HashMap<>();
-        for (Map.Entry<String, RouteInfo> entry : loadRouteInfoByRouteId().entrySet()) {
-            if (entry.getValue().shortName() != null && !entry.getValue().shortName().isBlank()) {
-                shortNameMap.put(entry.getKey(), entry.getValue().shortName());
+        GraphGeneration next = compile(feed, current.number() + 1, feedChecksum);
+        generation = next;
+        LOGGER.info("GTFS generation {} is live (feed checksum {}, built in {} ms)",
+                next.number(), Long.toHexString(feedChecksum), (System.nanoTime() - started) / 1_000_000);
+        return next;
+    }
+
+    public GraphGeneration getGeneration() {
+        return generation;
+    }
+
+    // Reads every GTFS file exactly once and returns the frozen stop, edge, schedule, route and footpath maps plus the collected trips.
+    //
+    // Staged so that independent work overlaps:
+    //   stops.txt ─────────────┬──> footpaths
+    //   routes.txt ─> trips.txt ┼──> shapes.txt
+    //                           └──> stop_times.txt (edges, schedule, trips) on the calling thread
+    //   calendar.txt + calendar_dates.txt (independent of everything else)
+    // routes.txt and trips.txt are read once into a shared FeedIndex that every later stage consumes.
+    private ParsedFeed parseFeed() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService stages = Executors.newFixedThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "gtfs-load-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletableFuture<Map<String, Stop>> stopsStage = CompletableFuture.supplyAsync(this::loadStops, stages);
+            CompletableFuture<FeedIndex> indexStage = CompletableFuture.supplyAsync(this::loadRouteInfoByRouteId, stages)
+                    .thenApply(this::loadFeedIndex);
+            CompletableFuture<ServiceCalendar> calendarStage = CompletableFuture.supplyAsync(this::loadServiceCalendar, stages);
+
+            // Footpaths only need stop coordinates, so they are built while stop_times.txt is still being parsed
+            CompletableFuture<FootpathGraph> footpathStage = stopsStage.thenApplyAsync(
+                    loadedStops -> buildFootpaths(StopSpatialIndexBuilder.build(loadedStops, Map.of(), Map.of())), stages);
+            CompletableFuture<Map<String, List<double[]>>> shapeStage = indexStage.thenApplyAsync(
+                    index -> loadRouteShapes(index.shapeIdByTrainRouteId()), stages);
+
+            Map<String, Stop> parsedStops = join(stopsStage); // stopID - stops
+            FeedIndex feedIndex = join(indexStage);
+            TransitTimetableBuilder timetableBuilder = new TransitTimetableBuilder();
+            LoadedEdgeData edgeData = loadEdges(parsedStops, feedIndex.tripInfoByTripId(), timetableBuilder);
+
+            Map<String, Stop> frozenStops = Collections.unmodifiableMap(parsedStops);
+
+            // Freeze adjacency list
+            Map<String, List<StopEdge>> immutableAdjacency = new HashMap<>();
+            for (Map.Entry<String, List<StopEdge>> entry : edgeData.adjacencyList().entrySet()) {
+                immutableAdjacency.put(entry.getKey(), List.copyOf(entry.getValue()));
+            }
+            Map<String, List<StopEdge>> frozenAdjacency = Collections.unmodifiableMap(immutableAdjacency);
+
+            // Sort each stop's schedule by departure time, then freeze
+            Map<String, List<ScheduledConnection>> immutableSchedule = new HashMap<>();
+            for (Map.Entry<String, List<ScheduledConnection>> entry : edgeData.scheduleByStop().entrySet()) {
+                List<ScheduledConnection> sorted = new ArrayList<>(entry.getValue());
+                sorted.sort(Comparator.comparingInt(ScheduledConnection::getDepartureTimeSeconds));
+                immutableSchedule.put(entry.getKey(), List.copyOf(sorted));
             }
+            Map<String, List<ScheduledConnection>> frozenSchedule = Collections.unmodifiableMap(immutableSchedule);
+
+            // Build routeId → shortName lookup from routes.txt (used to label legs in the fallback Dijkstra)
+            Map<String, String> shortNameMap = new HashMap<>();
+            for (Map.Entry<String, RouteInfo> entry : feedIndex.routeInfoByRouteId().entrySet()) {
+                if (entry.getValue().shortName() != null && !entry.getValue().shortName().isBlank()) {
+                    shortNameMap.put(entry.getKey(), entry.getValue().shortName());
+                }
+            }
+
+            Map<String, List<double[]>> shapes = Collections.unmodifiableMap(join(shapeStage));
+
+            // Walking links between stops within the walking budget of each other, each stop's nearest only.
+            // This is what enables train → walk → bus multi-modal journeys.
+            FootpathGraph walkingLinks = join(footpathStage);
+
+            return new ParsedFeed(frozenStops, frozenAdjacency, frozenSchedule,
+                    Collections.unmodifiableMap(shortNameMap), shapes, walkingLinks, join(calendarStage), timetableBuilder);
+        } finally {
+            stages.shutdownNow();
+        }
+    }
+
+    // Waits for a load stage, rethrowing its failure unwrapped so callers see the same exception as a sequential load.
+    private static <T> T join(CompletableFuture<T> stage) {
+        try {
+            return stage.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    // Compiles the routing structures from a parsed feed into a new, fully built generation.
+    private GraphGeneration compile(ParsedFeed feed, long number, long feedChecksum) {
+        // Service numbers are resolved against the calendar; with calendar filtering off every trip gets NO_SERVICE and always runs
+        ServiceCalendar calendar = calendarEnabled ? feed.serviceCalendar() : ServiceCalendar.empty();
+
+        // Grid index over stop coordinates for radius / nearest-stop queries, tagged with schedule, train and edge flags
+        StopSpatialIndex spatialIndex = StopSpatialIndexBuilder.build(feed.stops(), feed.adjacencyList(), feed.scheduleByStop());
+
+        // Walking links within the budget, one footpath per walk, shared by every structure below
+        FootpathGraph footpaths = feed.footpaths();
+
+        // Group trips into FIFO route patterns for RAPTOR. Needs the footpaths, so it is compiled last.
+        TransitTimetable timetable = feed.timetableBuilder().build(feed.stops(), footpaths, calendar);
+        ConnectionTimetable connections = ConnectionTimetable.fromTimetable(timetable);
+
+        // Compile stops, edges, schedule and footpaths into dense int arrays so the hot routing loops never hash a String
+        CompactGraph graph = CompactGraphBuilder.build(feed.stops(), feed.adjacencyList(), feed.scheduleByStop(), footpaths, calendar);
+
+        // Contraction hierarchies over the graph edges for the time-independent fallback search, one per weight profile
+        Map<EdgeWeightProfile, ContractionHierarchy> hierarchies = buildHierarchies(graph);
+
+        // ALT landmark distances, the A* lower bounds for the schedule-aware Dijkstra
+        long landmarksStarted = System.nanoTime();
+        LandmarkLowerBounds landmarkBounds = LandmarkLowerBoundsBuilder.build(graph);
+        LOGGER.info("{} routing landmarks computed in {} ms",
+                landmarkBounds.landmarkCount(), (System.nanoTime() - landmarksStarted) / 1_000_000);
+
+        LOGGER.info("GTFS loaded: {} stops, {} stops with edges, {} stops with schedule data, {} routes with short names, {} train route shapes, {} footpath links, {} route patterns, {} connections, {} routes",
+                feed.stops().size(), feed.adjacencyList().size(), feed.scheduleByStop().size(), feed.routeShortNames().size(), feed.routeShapes().size(), footpaths.footpathCount(), timetable.patternCount(), connections.connectionCount(), graph.routeCount());
+
+        // Today's timetables are built before the generation goes live (tomorrow's follow in the background),
+        // so the first searches on it don't build them, or the trip transfers, inside their deadline.
+        long dayStarted = System.nanoTime();
+        DayTimetableCache dayTimetables = new DayTimetableCache(calendar, timetable, graph, dayTimetableHorizonDays,
+                dayTimetableMaxEntries, RoutingEngine.fromProperty(routingEngine) == RoutingEngine.TRIP_BASED);
+        dayTimetables.forDate(LocalDate.now());
+        LOGGER.info("Day timetables for today built in {} ms", (System.nanoTime() - dayStarted) / 1_000_000);
+
+        return new GraphGeneration(number, Instant.now(), feedChecksum,
+                feed.stops(), feed.adjacencyList(), feed.scheduleByStop(), feed.routeShortNames(), feed.routeShapes(), footpaths,
+                calendar, timetable, connections, graph, hierarchies, landmarkBounds, spatialIndex, dayTimetables);
+    }
+
+    // Contracts the graph once per EdgeWeightProfile; the profiles are independent, so they are contracted in parallel.
+    private static Map<EdgeWeightProfile, ContractionHierarchy> buildHierarchies(CompactGraph graph) {
+        long started = System.nanoTime();
+        Map<EdgeWeightProfile, CompletableFuture<ContractionHierarchy>> builds = new EnumMap<>(EdgeWeightProfile.class);
+        for (EdgeWeightProfile profile : EdgeWeightProfile.values()) {
+            builds.put(profile, CompletableFuture.supplyAsync(() -> ContractionHierarchyBuilder.build(graph, profile)));
+        }
+        Map<EdgeWeightProfile, ContractionHierarchy> hierarchies = new EnumMap<>(EdgeWeightProfile.class);
+        builds.forEach((profile, build) -> hierarchies.put(profile, join(build)));
+
+        ContractionHierarchy fastest = hierarchies.get(EdgeWeightProfile.FASTEST);
+        LOGGER.info("Contraction hierarchies built in {} ms ({} edges, {} of them shortcuts, for the fastest profile)",
+                (System.nanoTime() - started) / 1_000_000, fastest.edgeCount(), fastest.shortcutCount());
+        return Collections.unmodifiableMap(hierarchies);
+    }
+
+    // Feed directory watching
+
+    private void startFeedWatcher() {
+        if (!watchFeedDir || feedWatchService != null) return;
+        if (feedDir.isBlank()) {
+            LOGGER.warn("app.gtfs.reload.watch is set but app.gtfs.feed-dir is empty; GTFS feed will not be watched");
+            return;
+        }
+
+        Path dir = Path.of(feedDir);
+        try {
+            feedWatchService = dir.getFileSystem().newWatchService();
+            dir.register(feedWatchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot watch GTFS feed directory {}; reload via the admin endpoint instead", dir, e);
+            return;
         }
-        this.routeShortNames = Collections.unmodifiableMap(shortNameMap);
 
-        this.routeShapes = Collections.unmodifiableMap(loadRouteShapes());
+        Thread watcher = new Thread(this::watchFeedDir, "gtfs-feed-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        LOGGER.info("Watching {} for GTFS feed updates", dir);
+    }
 
-        // Build walking links between stops that are within 300 m of each other.
-        // This is what enables train → walk → bus multi-modal journeys.
-        this.footpaths = Collections.unmodifiableMap(buildFootpaths(parsedStops));
+    // Waits for a change in the feed directory, then for a quiet period with no further changes
+    // (a feed upload touches several large files), then reloads. A failed reload leaves the live generation in place.
+    private void watchFeedDir() {
+        try {
+            while (true) {
+                drain(feedWatchService.take());
+                WatchKey more;
+                while ((more = feedWatchService.poll(reloadQuietPeriodMs, TimeUnit.MILLISECONDS)) != null) {
+                    drain(more);
+                }
+                try {
+                    reload();
+                } catch (RuntimeException e) {
+                    LOGGER.error("GTFS reload after feed change failed; generation {} stays live", generation.number(), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+            // application shutting down
+        }
+    }
 
-        LOGGER.info("GTFS loaded: {} stops, {} stops with edges, {} stops with schedule data, {} routes with short names, {} train route shapes, {} stops with footpath links",
-                parsedStops.size(), immutableAdjacency.size(), immutableSchedule.size(), shortNameMap.size(), this.routeShapes.size(), this.footpaths.size());
+    private static void drain(WatchKey key) {
+        key.pollEvents();
+        key.reset();
+    }
+
+    // Fingerprint of the GTFS files the graph is built from: CRC32C of their contents in the low 32 bits,
+    // total size in the high 32 bits. A snapshot is only reused when this matches.
+    private long computeFeedChecksum() {
+        CRC32C crc = new CRC32C();
+        long totalBytes = 0L;
+        byte[] buffer = new byte[1 << 16];
+        for (String fileName : FEED_FILES) {
+            crc.update(fileName.getBytes(StandardCharsets.UTF_8));
+            try (InputStream stream = openGtfsStream(fileName)) {
+                int read;
+                while ((read = stream.read(buffer)) > 0) {
+                    crc.update(buffer, 0, read);
+                    totalBytes += read;
+                }
+            } catch (IOException e) {
+                crc.update(0); // missing file — still part of the fingerprint, so adding it later invalidates the snapshot
+            }
+        }
+        return (totalBytes << 32) ^ crc.getValue();
     }
 
     public Map<String, Stop> getStops() {
-        return stops;
+        return generation.stops();
     }
 
     public Map<String, List<StopEdge>> getAdjacencyList() {
-        return adjacencyList;
+        return generation.adjacencyList();
     }
 
     public Map<String, List<ScheduledConnection>> getSchedule() {
-        return scheduleByStop;
+        return generation.scheduleByStop();
     }
 
     public Map<String, String> getRouteShortNames() {
-        return routeShortNames;
+        return generation.routeShortNames();
     }
 
     public Map<String, List<double[]>> getRouteShapes() {
-        return routeShapes;
+        return generation.routeShapes();
     }
 
     public Map<String, List<FootpathEdge>> getFootpaths() {
-        return footpaths;
+        return generation.footpaths().toMap();
+    }
+
+    public ServiceCalendar getServiceCalendar() {
+        return generation.serviceCalendar();
+    }
+
+    public TransitTimetable getTransitTimetable() {
+        return generation.transitTimetable();
+    }
+
+    public ConnectionTimetable getConnectionTimetable() {
+        return generation.connectionTimetable();
+    }
+
+    public CompactGraph getCompactGraph() {
+        return generation.compactGraph();
+    }
+
+    public StopSpatialIndex getStopSpatialIndex() {
+        return generation.stopSpatialIndex();
     }
 
 
@@ -118,14 +448,13 @@ public class GtfsGraphLoader {
     // Loads stops.txt and builds a map of stopId → Stop with the stop's name and coordinates.
     private Map<String, Stop> loadStops() {
         Map<String, Stop> result = new HashMap<>();
+        StringPool stopNames = new StringPool(); // both platforms / directions of a stop usually share its name
 
         // Required columns: stop_id, stop_lat, stop_lon.  stop_name is optional (some GTFS feeds omit it) but we load it when available for better map labels.
-        try (BufferedReader reader = openGtfsReader("stops.txt")) {
-            String header = reader.readLine();
-            if (header == null) return result;
-
+        try (GtfsCsvReader csv = openGtfsCsv("stops.txt")) {
             // Build a column index to handle arbitrary column order and detect missing required columns.
-            Map<String, Integer> col = buildColumnIndex(header);
+            Map<String, Integer> col = csv.readHeader();
+            if (col == null) return result;
             Integer stopIdIdx    = col.get("stop_id");
             Integer stopNameIdx  = col.get("stop_name");
             Integer stopLatIdx   = col.get("stop_lat");
@@ -136,19 +465,14 @@ public class GtfsGraphLoader {
                 return result;
             }
 
-            // Parse each line into a Stop object and add it to the result map.  Skip lines with missing or invalid data.
-            String line;
-            while ((line = reader.readLine()) != null) {
-                List<String> tokens = parseCsvLine(line);
-                String stopId  = getValue(tokens, stopIdIdx);
-                String name    = getValue(tokens, stopNameIdx);
-                String lat     = getValue(tokens, stopLatIdx);
-                String lon     = getValue(tokens, stopLonIdx);
-
-                if (isBlank(stopId) || isBlank(lat) || isBlank(lon)) continue;
+            // Parse each row into a Stop object and add it to the result map.  Skip rows with missing or invalid data.
+            while (csv.next()) {
+                if (csv.isBlank(stopIdIdx) || csv.isBlank(stopLatIdx) || csv.isBlank(stopLonIdx)) continue;
 
                 try {
-                    result.put(stopId, new Stop(stopId, name, Double.parseDouble(lat), Double.parseDouble(lon)));
+                    String stopId = csv.getString(stopIdIdx);
+                    result.put(stopId, new Stop(stopId, stopNames.intern(csv.getString(stopNameIdx)),
+                            csv.getDouble(stopLatIdx), csv.getDouble(stopLonIdx)));
                 } catch (NumberFormatException ignored) {}
             }
         } catch (IOException e) {
@@ -167,73 +491,25 @@ public class GtfsGraphLoader {
             Map<String, List<StopEdge>> adjacencyList,
             Map<String, List<ScheduledConnection>> scheduleByStop) {}
 
-    private LoadedEdgeData loadEdges(Map<String, Stop> loadedStops) {
+    private LoadedEdgeData loadEdges(
+            Map<String, Stop> loadedStops,
+            Map<String, TripInfo> tripInfoByTripId,
+            TransitTimetableBuilder timetableBuilder
+    ) {
         // aggregatedByLink: keyed by "fromStopId->toStopId:routeId" to keep each route's edge separate.
         // This is what fixes the 402/405 blending problem - each route now has its own average edge.
         Map<String, StopEdgeStats> aggregatedByLink = new HashMap<>();
         Map<String, List<ScheduledConnection>> scheduleByStop  = new HashMap<>();
 
-        Map<String, TripInfo> tripInfoByTripId = loadTripInfoByTripId();
-
-        // Load stop_times.txt and build edges and schedules.  This is the most complex part of the GTFS loading because we have to:
-        try (BufferedReader reader = openGtfsReader("stop_times.txt")) {
-            String header = reader.readLine();
-            if (header == null) return new LoadedEdgeData(Map.of(), Map.of());
-
-            // Build a column index to handle arbitrary column order and detect missing required columns.
-            Map<String, Integer> col = buildColumnIndex(header);
-            Integer tripIdIdx       = col.get("trip_id");
-            Integer arrivalTimeIdx  = col.get("arrival_time");
-            Integer stopIdIdx       = col.get("stop_id");
-            Integer stopSeqIdx      = col.get("stop_sequence");
-
-            if (tripIdIdx == null || arrivalTimeIdx == null || stopIdIdx == null || stopSeqIdx == null) {
-                return new LoadedEdgeData(Map.of(), Map.of());
-            }
-
-            String currentTripId = null;
-            TripInfo currentTripInfo = null;
-            List<StopTimeRow> currentTripRows = new ArrayList<>();
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                List<String> tokens = parseCsvLine(line);
-
-                String tripId       = getValue(tokens, tripIdIdx);
-                String stopId       = getValue(tokens, stopIdIdx);
-                String arrivalTime  = getValue(tokens, arrivalTimeIdx);
-                String stopSequence = getValue(tokens, stopSeqIdx);
-
-                if (isBlank(tripId) || isBlank(stopId) || isBlank(arrivalTime) || isBlank(stopSequence)) continue;
-                if (!loadedStops.containsKey(stopId)) continue;
-
-                int sequence;
-                int arrivalSeconds;
-                try {
-                    sequence       = Integer.parseInt(stopSequence);
-                    arrivalSeconds = parseGtfsTimeToSeconds(arrivalTime);
-                } catch (NumberFormatException ex) {
-                    continue;
-                }
-
-                if (currentTripId == null) {
-                    currentTripId   = tripId;
-                    currentTripInfo = tripInfoByTripId.get(tripId);
-                }
-
-                if (!currentTripId.equals(tripId)) {
-                    processTripRows(currentTripRows, currentTripInfo, aggregatedByLink, scheduleByStop);
-                    currentTripRows.clear();
-                    currentTripId   = tripId;
-                    currentTripInfo = tripInfoByTripId.get(tripId);
-                }
-
-                currentTripRows.add(new StopTimeRow(stopId, sequence, arrivalSeconds));
-            }
-
-            // Process the last trip in the file
-            processTripRows(currentTripRows, currentTripInfo, aggregatedByLink, scheduleByStop);
-
+        // Load stop_times.txt and build edges and schedules.  The file is tokenized in parallel chunks by StopTimesParser,
+        // which hands back whole trips in file order, so the aggregation below runs exactly as a sequential read would.
+        GtfsCsvReader.Symbols stopSymbols = GtfsCsvReader.Symbols.of(loadedStops.keySet());
+        GtfsCsvReader.Symbols tripSymbols = GtfsCsvReader.Symbols.of(tripInfoByTripId.keySet());
+        StopTimesParser parser = new StopTimesParser(stopSymbols, tripSymbols, parseThreads);
+        try (InputStream in = openGtfsStream("stop_times.txt")) {
+            boolean parsed = parser.parse(in, (tripId, tripRows) -> processTripRows(
+                    tripRows, stopSymbols, tripInfoByTripId.get(tripId), aggregatedByLink, scheduleByStop, timetableBuilder));
+            if (!parsed) return new LoadedEdgeData(Map.of(), Map.of());
         } catch (IOException e) {
             LOGGER.warn("GTFS stop_times.txt not found or unreadable; graph will be empty", e);
             return new LoadedEdgeData(Map.of(), Map.of());
@@ -257,33 +533,39 @@ public class GtfsGraphLoader {
 
     // Processes all stop times for a single trip, updating the aggregated edge stats and schedule entries.
     // This is where we build the edges and schedules for each trip, and aggregate them by stop-pair + route.
+    // The whole trip is also handed to the timetable builder so RAPTOR can ride it stop by stop.
     private void processTripRows(
-            List<StopTimeRow> tripRows,
+            TripRows tripRows,
+            GtfsCsvReader.Symbols stopSymbols,
             TripInfo tripInfo,
             Map<String, StopEdgeStats> aggregatedByLink,
-            Map<String, List<ScheduledConnection>> scheduleByStop
+            Map<String, List<ScheduledConnection>> scheduleByStop,
+            TransitTimetableBuilder timetableBuilder
     ) {
         if (tripRows.size() < 2) return;
 
-        tripRows.sort(Comparator.comparingInt(StopTimeRow::sequence));
+        tripRows.sortBySequence();
 
         String routeId    = tripInfo != null ? tripInfo.routeId()    : null;
         String shortName  = tripInfo != null ? tripInfo.shortName()  : null;
         TransportMode mode = tripInfo != null ? tripInfo.mode()      : null;
+        String serviceId  = tripInfo != null ? tripInfo.serviceId()  : null;
 
         for (int i = 1; i < tripRows.size(); i++) {
-            StopTimeRow from = tripRows.get(i - 1);
-            StopTimeRow to   = tripRows.get(i);
+            if (tripRows.stop(i - 1) == tripRows.stop(i)) continue;
 
-            if (from.stopId().equals(to.stopId())) continue;
+            String fromStopId  = stopSymbols.value(tripRows.stop(i - 1));
+            String toStopId    = stopSymbols.value(tripRows.stop(i));
+            int    fromSeconds = tripRows.arrivalSeconds(i - 1);
+            int    toSeconds   = tripRows.arrivalSeconds(i);
 
             //travel time in seconds, with a fallback default if the GTFS data is bad (e.g. arrival time goes backwards or is the same at two consecutive stops) 
-            int travelSeconds = Math.max(DEFAULT_EDGE_TIME_SECONDS, to.arrivalSeconds() - from.arrivalSeconds());
+            int travelSeconds = Math.max(DEFAULT_EDGE_TIME_SECONDS, toSeconds - fromSeconds);
 
             // Route-aware edge key: "from->to:routeId" keeps Bus 402 and Bus 405 separate
-            String edgeKey = from.stopId() + "->" + to.stopId() + (routeId != null ? ":" + routeId : "");
+            String edgeKey = fromStopId + "->" + toStopId + (routeId != null ? ":" + routeId : "");
             StopEdgeStats stats = aggregatedByLink.computeIfAbsent(
-                    edgeKey, ignored -> new StopEdgeStats(from.stopId(), to.stopId(), routeId));
+                    edgeKey, ignored -> new StopEdgeStats(fromStopId, toStopId, routeId));
             stats.addObservation(travelSeconds, mode);
 
             // Only build schedule entries when we have a route ID - required for schedule-aware routing
@@ -291,14 +573,34 @@ public class GtfsGraphLoader {
                 ScheduledConnection conn = new ScheduledConnection(
                         routeId,
                         shortName,
-                        to.stopId(),
-                        from.arrivalSeconds(), // use arrival time as proxy for departure (GTFS often omits departure_time)
-                        to.arrivalSeconds(),
-                        mode
+                        toStopId,
+                        fromSeconds, // use arrival time as proxy for departure (GTFS often omits departure_time)
+                        toSeconds,
+                        mode,
+                        serviceId
                 );
-                scheduleByStop.computeIfAbsent(from.stopId(), ignored -> new ArrayList<>()).add(conn);
+                scheduleByStop.computeIfAbsent(fromStopId, ignored -> new ArrayList<>()).add(conn);
             }
         }
+
+        if (routeId != null) {
+            // Same hop rules as above: repeated rows for one stop collapse into a single pattern stop,
+            // keeping the later time since that is when the vehicle actually leaves
+            String[] patternStopIds = new String[tripRows.size()];
+            int[]    patternTimes   = new int[tripRows.size()];
+            int      patternLength  = 0;
+            for (int i = 0; i < tripRows.size(); i++) {
+                if (i > 0 && tripRows.stop(i - 1) == tripRows.stop(i)) {
+                    patternTimes[patternLength - 1] = tripRows.arrivalSeconds(i);
+                    continue;
+                }
+                patternStopIds[patternLength] = stopSymbols.value(tripRows.stop(i));
+                patternTimes[patternLength]   = tripRows.arrivalSeconds(i);
+                patternLength++;
+            }
+            timetableBuilder.addTrip(routeId, shortName, mode, serviceId, Arrays.asList(patternStopIds).subList(0, patternLength),
+                    Arrays.copyOf(patternTimes, patternLength));
+        }
     }
 
     
@@ -308,65 +610,83 @@ public class GtfsGraphLoader {
     // Holds the mode and short name for a GTFS route (e.g. mode=BUS, shortName="411")
     private record RouteInfo(TransportMode mode, String shortName) {}
 
-    // Holds everything we need per trip: mode, the route's ID, and the route's short name
-    private record TripInfo(TransportMode mode, String routeId, String shortName) {}
+    // Holds everything we need per trip: mode, the route's ID, the route's short name and the trip's service_id
+    private record TripInfo(TransportMode mode, String routeId, String shortName, String serviceId) {}
 
-    private Map<String, TripInfo> loadTripInfoByTripId() {
-        Map<String, RouteInfo> routeInfoByRouteId = loadRouteInfoByRouteId();
-        if (routeInfoByRouteId.isEmpty()) return Map.of();
+    // routes.txt and trips.txt digested once for every later stage: route info, per-trip route info for stop_times.txt,
+    // and one representative shape_id per train route for shapes.txt.
+    private record FeedIndex(
+            Map<String, RouteInfo> routeInfoByRouteId,
+            Map<String, TripInfo> tripInfoByTripId,
+            Map<String, String> shapeIdByTrainRouteId) {}
 
-        Map<String, TripInfo> tripInfoByTripId = new HashMap<>();
-        try (BufferedReader reader = openGtfsReader("trips.txt")) {
-            String header = reader.readLine();
-            if (header == null) return Map.of();
+    // Single pass over trips.txt. Trip info needs trip_id + route_id, shapes need route_id + shape_id;
+    // a feed missing one pair of columns still gets the other.
+    private FeedIndex loadFeedIndex(Map<String, RouteInfo> routeInfoByRouteId) {
+        if (routeInfoByRouteId.isEmpty()) return new FeedIndex(Map.of(), Map.of(), Map.of());
+
+        // One TripInfo per (route, service), shared by all of its trips. Route IDs are matched against the routes.txt keys
+        // straight from the CSV buffer, so every trip, edge and connection references the same route ID String.
+        GtfsCsvReader.Symbols routeIds = GtfsCsvReader.Symbols.of(routeInfoByRouteId.keySet());
+        Map<TripInfo, TripInfo> sharedTripInfo = new HashMap<>();
+        StringPool serviceIds = new StringPool();
 
-            Map<String, Integer> col = buildColumnIndex(header);
+        Map<String, TripInfo> tripInfoByTripId = new HashMap<>();
+        Map<String, String>   routeToShapeId   = new HashMap<>();
+        try (GtfsCsvReader csv = openGtfsCsv("trips.txt")) {
+            Map<String, Integer> col = csv.readHeader();
+            if (col == null) return new FeedIndex(routeInfoByRouteId, Map.of(), Map.of());
             Integer tripIdIdx   = col.get("trip_id");
             Integer routeIdIdx  = col.get("route_id");
-            if (tripIdIdx == null || routeIdIdx == null) return Map.of();
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                List<String> tokens = parseCsvLine(line);
-                String tripId  = getValue(tokens, tripIdIdx);
-                String routeId = getValue(tokens, routeIdIdx);
-                if (isBlank(tripId) || isBlank(routeId)) continue;
-
-                RouteInfo info = routeInfoByRouteId.get(routeId);
-                if (info != null) {
-                    tripInfoByTripId.put(tripId, new TripInfo(info.mode(), routeId, info.shortName()));
+            Integer shapeIdIdx  = col.get("shape_id");
+            Integer serviceIdIdx = col.get("service_id");
+            if (routeIdIdx == null) return new FeedIndex(routeInfoByRouteId, Map.of(), Map.of());
+            boolean wantTrips  = tripIdIdx != null;
+            boolean wantShapes = shapeIdIdx != null;
+
+            while (csv.next()) {
+                int route = csv.symbol(routeIdIdx, routeIds);
+                if (route < 0) continue; // blank or not in routes.txt
+                String    routeId   = routeIds.value(route);
+                RouteInfo routeInfo = routeInfoByRouteId.get(routeId);
+
+                if (wantTrips && !csv.isBlank(tripIdIdx)) {
+                    String serviceId = serviceIdIdx != null && !csv.isBlank(serviceIdIdx)
+                            ? serviceIds.intern(csv.getString(serviceIdIdx)) : null;
+                    TripInfo info = new TripInfo(routeInfo.mode(), routeId, routeInfo.shortName(), serviceId);
+                    TripInfo shared = sharedTripInfo.putIfAbsent(info, info);
+                    tripInfoByTripId.put(csv.getString(tripIdIdx), shared != null ? shared : info);
+                }
+                if (wantShapes && routeInfo.mode() == TransportMode.TRAIN && !csv.isBlank(shapeIdIdx)
+                        && !routeToShapeId.containsKey(routeId)) {
+                    routeToShapeId.put(routeId, csv.getString(shapeIdIdx));
                 }
             }
         } catch (IOException e) {
-            LOGGER.warn("GTFS trips.txt not found or unreadable; route info may be missing", e);
+            LOGGER.warn("GTFS trips.txt not found or unreadable; route info and train polylines may be missing", e);
         }
 
-        return tripInfoByTripId;
+        return new FeedIndex(routeInfoByRouteId, tripInfoByTripId, routeToShapeId);
     }
 
     private Map<String, RouteInfo> loadRouteInfoByRouteId() {
         Map<String, RouteInfo> result = new HashMap<>();
-        try (BufferedReader reader = openGtfsReader("routes.txt")) {
-            String header = reader.readLine();
-            if (header == null) return Map.of();
-
-            Map<String, Integer> col = buildColumnIndex(header);
+        StringPool shortNames = new StringPool(); // many route IDs share a public short name
+        try (GtfsCsvReader csv = openGtfsCsv("routes.txt")) {
+            Map<String, Integer> col = csv.readHeader();
+            if (col == null) return Map.of();
             Integer routeIdIdx        = col.get("route_id");
             Integer routeTypeIdx      = col.get("route_type");
             Integer routeShortNameIdx = col.get("route_short_name"); // e.g. "411", "409", "DART"
             if (routeIdIdx == null || routeTypeIdx == null) return Map.of();
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                List<String> tokens = parseCsvLine(line);
-                String routeId   = getValue(tokens, routeIdIdx);
-                String routeType = getValue(tokens, routeTypeIdx);
-                if (isBlank(routeId) || isBlank(routeType)) continue;
+            while (csv.next()) {
+                if (csv.isBlank(routeIdIdx) || csv.isBlank(routeTypeIdx)) continue;
 
                 try {
-                    TransportMode mode = mapGtfsRouteType(Integer.parseInt(routeType));
-                    String shortName   = routeShortNameIdx != null ? getValue(tokens, routeShortNameIdx) : "";
-                    result.put(routeId, new RouteInfo(mode, shortName));
+                    TransportMode mode = mapGtfsRouteType(csv.getInt(routeTypeIdx));
+                    String shortName   = routeShortNameIdx != null ? shortNames.intern(csv.getString(routeShortNameIdx)) : "";
+                    result.put(csv.getString(routeIdIdx), new RouteInfo(mode, shortName));
                 } catch (NumberFormatException ignored) {}
             }
         } catch (IOException e) {
@@ -385,78 +705,113 @@ public class GtfsGraphLoader {
         };
     }
 
-    
-    // Shape loading (train routes only — shapes.txt is 90 MB so we filter aggressively)
-    
 
-   
-    // Loads route shapes for train routes only, since shapes.txt can be very large and most modes don't have useful shapes.
-    // The process is:
-    // 1. Load route info to find all train route IDs.
-    // 2. Scan trips.txt to find one representative shape_id for each train route.
-    // 3. Load shapes.txt and keep only the points for the needed shape IDs.
-    private Map<String, List<double[]>> loadRouteShapes() {
-        // Step 1: collect train route IDs
-        Map<String, RouteInfo> routeInfoByRouteId = loadRouteInfoByRouteId();
-        Set<String> trainRouteIds = new HashSet<>();
-        for (Map.Entry<String, RouteInfo> e : routeInfoByRouteId.entrySet()) {
-            if (e.getValue().mode() == TransportMode.TRAIN) {
-                trainRouteIds.add(e.getKey());
+    // Service calendar loading
+
+
+    // Reads calendar.txt (weekly patterns between start_date and end_date) and calendar_dates.txt (single days added
+    // or removed) into a ServiceCalendar. Both files are optional in GTFS; a feed with neither gets an empty calendar,
+    // in which every trip runs every day.
+    private ServiceCalendar loadServiceCalendar() {
+        ServiceCalendarBuilder builder = new ServiceCalendarBuilder();
+        StringPool serviceIds = new StringPool(); // the same IDs appear in both files
+
+        try (GtfsCsvReader csv = openGtfsCsv("calendar.txt")) {
+            Map<String, Integer> col = csv.readHeader();
+            Integer serviceIdIdx = col != null ? col.get("service_id") : null;
+            Integer startDateIdx = col != null ? col.get("start_date") : null;
+            Integer endDateIdx   = col != null ? col.get("end_date")   : null;
+            int[]   weekdayIdx   = new int[WEEKDAY_COLUMNS.length];
+            boolean complete     = serviceIdIdx != null && startDateIdx != null && endDateIdx != null;
+            for (int d = 0; d < WEEKDAY_COLUMNS.length && complete; d++) {
+                Integer idx = col.get(WEEKDAY_COLUMNS[d]);
+                complete      = idx != null;
+                weekdayIdx[d] = complete ? idx : -1;
+            }
+
+            while (complete && csv.next()) {
+                if (csv.isBlank(serviceIdIdx)) continue;
+                try {
+                    int weekdays = 0;
+                    for (int d = 0; d < weekdayIdx.length; d++) {
+                        if (csv.fieldEquals(weekdayIdx[d], "1")) weekdays |= 1 << d;
+                    }
+                    builder.addWeeklyRule(serviceIds.intern(csv.getString(serviceIdIdx)), weekdays,
+                            parseGtfsDate(csv, startDateIdx), parseGtfsDate(csv, endDateIdx));
+                } catch (NumberFormatException | DateTimeException ignored) {}
             }
+        } catch (IOException e) {
+            LOGGER.info("GTFS calendar.txt not found; using calendar_dates.txt only");
         }
-        if (trainRouteIds.isEmpty()) return Map.of();
-
-        // Step 2: map train routeId → one representative shape_id from trips.txt
-        Map<String, String> routeToShapeId = new HashMap<>();
-        try (BufferedReader reader = openGtfsReader("trips.txt")) {
-            String header = reader.readLine();
-            if (header == null) return Map.of();
-            Map<String, Integer> col = buildColumnIndex(header);
-            Integer routeIdIdx = col.get("route_id");
-            Integer shapeIdIdx = col.get("shape_id");
-            if (routeIdIdx == null || shapeIdIdx == null) return Map.of();
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                List<String> tokens = parseCsvLine(line);
-                String routeId = getValue(tokens, routeIdIdx);
-                String shapeId = getValue(tokens, shapeIdIdx);
-                if (isBlank(routeId) || isBlank(shapeId)) continue;
-                if (trainRouteIds.contains(routeId)) {
-                    routeToShapeId.putIfAbsent(routeId, shapeId);
-                }
+
+        try (GtfsCsvReader csv = openGtfsCsv("calendar_dates.txt")) {
+            Map<String, Integer> col = csv.readHeader();
+            Integer serviceIdIdx     = col != null ? col.get("service_id")     : null;
+            Integer dateIdx          = col != null ? col.get("date")           : null;
+            Integer exceptionTypeIdx = col != null ? col.get("exception_type") : null;
+            boolean complete = serviceIdIdx != null && dateIdx != null && exceptionTypeIdx != null;
+
+            while (complete && csv.next()) {
+                if (csv.isBlank(serviceIdIdx)) continue;
+                try {
+                    int exceptionType = csv.getInt(exceptionTypeIdx);
+                    if (exceptionType != 1 && exceptionType != 2) continue;
+                    builder.addException(serviceIds.intern(csv.getString(serviceIdIdx)),
+                            parseGtfsDate(csv, dateIdx), exceptionType == 1);
+                } catch (NumberFormatException | DateTimeException ignored) {}
             }
         } catch (IOException e) {
-            LOGGER.warn("trips.txt unreadable for shape loading; train polylines will use stop coords", e);
-            return Map.of();
+            LOGGER.info("GTFS calendar_dates.txt not found; using calendar.txt only");
         }
 
+        ServiceCalendar calendar = builder.build();
+        if (calendar.isEmpty()) {
+            LOGGER.warn("GTFS feed has no service calendar; every trip will be treated as running every day");
+        }
+        return calendar;
+    }
+
+    // GTFS dates are YYYYMMDD
+    private static LocalDate parseGtfsDate(GtfsCsvReader csv, int column) {
+        int value = csv.getInt(column);
+        return LocalDate.of(value / 10000, value / 100 % 100, value % 100);
+    }
+
+    
+    // Shape loading (train routes only — shapes.txt is 90 MB so we filter aggressively)
+    
+
+   
+    // Loads route shapes for train routes only, since shapes.txt can be very large and most modes don't have useful shapes.
+    // The process is:
+    // 1. Take the representative shape_id of each train route (collected from trips.txt by loadFeedIndex).
+    // 2. Load shapes.txt and keep only the points for the needed shape IDs.
+    private Map<String, List<double[]>> loadRouteShapes(Map<String, String> routeToShapeId) {
         Set<String> neededShapeIds = new HashSet<>(routeToShapeId.values());
         if (neededShapeIds.isEmpty()) return Map.of();
 
-        // Step 3: load shape points only for the needed shape IDs
+        // Step 2: load shape points only for the needed shape IDs
         // Raw: shapeId → list of [sequence, lat, lon]
         Map<String, List<double[]>> rawByShapeId = new HashMap<>();
-        try (BufferedReader reader = openGtfsReader("shapes.txt")) {
-            String header = reader.readLine();
-            if (header == null) return Map.of();
-            Map<String, Integer> col = buildColumnIndex(header);
+        try (GtfsCsvReader csv = openGtfsCsv("shapes.txt")) {
+            Map<String, Integer> col = csv.readHeader();
+            if (col == null) return Map.of();
             Integer shapeIdIdx = col.get("shape_id");
             Integer latIdx     = col.get("shape_pt_lat");
             Integer lonIdx     = col.get("shape_pt_lon");
             Integer seqIdx     = col.get("shape_pt_sequence");
             if (shapeIdIdx == null || latIdx == null || lonIdx == null || seqIdx == null) return Map.of();
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                List<String> tokens = parseCsvLine(line);
-                String shapeId = getValue(tokens, shapeIdIdx);
-                if (!neededShapeIds.contains(shapeId)) continue;
+            // Shape IDs are matched straight from the buffer, so the millions of unneeded points cost no Strings
+            GtfsCsvReader.Symbols neededShapes = GtfsCsvReader.Symbols.of(neededShapeIds);
+            while (csv.next()) {
+                int shape = csv.symbol(shapeIdIdx, neededShapes);
+                if (shape < 0) continue;
                 try {
-                    double lat = Double.parseDouble(getValue(tokens, latIdx));
-                    double lon = Double.parseDouble(getValue(tokens, lonIdx));
-                    int    seq = Integer.parseInt(getValue(tokens, seqIdx));
-                    rawByShapeId.computeIfAbsent(shapeId, k -> new ArrayList<>())
+                    double lat = csv.getDouble(latIdx);
+                    double lon = csv.getDouble(lonIdx);
+                    int    seq = csv.getInt(seqIdx);
+                    rawByShapeId.computeIfAbsent(neededShapes.value(shape), k -> new ArrayList<>())
                                 .add(new double[]{seq, lat, lon});
                 } catch (NumberFormatException ignored) {}
             }
@@ -465,7 +820,7 @@ public class GtfsGraphLoader {
             return Map.of();
         }
 
-        // Step 4: sort each shape by sequence and strip the sequence number
+        // Step 3: sort each shape by sequence and strip the sequence number
         Map<String, List<double[]>> shapeById = new HashMap<>();
         for (Map.Entry<String, List<double[]>> entry : rawByShapeId.entrySet()) {
             List<double[]> sorted = entry.getValue().stream()
@@ -475,7 +830,7 @@ public class GtfsGraphLoader {
             shapeById.put(entry.getKey(), sorted);
         }
 
-        // Step 5: build routeId → shape
+        // Step 4: build routeId → shape
         Map<String, List<double[]>> result = new HashMap<>();
         for (Map.Entry<String, String> entry : routeToShapeId.entrySet()) {
             List<double[]> shape = shapeById.get(entry.getValue());
@@ -490,66 +845,45 @@ public class GtfsGraphLoader {
     // Footpath computation
 
 
-    // Builds a map of stopId → list of nearby stops reachable on foot (within 300 m).
+    // Builds the walking links between stops within footpathRadiusMeters() of each other.
     // This is the key to multi-modal routing: after arriving at a train station by train,
     // the Dijkstra can "walk" to a nearby bus stop and continue the journey by bus.
     //
-    // Uses a grid to avoid checking every pair of 14,000+ stops (which would be ~200M comparisons).
-    // Each grid cell is ~300 m wide so we only compare a stop against its 3x3 neighbourhood of cells.
-    private Map<String, List<FootpathEdge>> buildFootpaths(Map<String, Stop> stops) {
-        // Bucket stops into ~300 m grid cells (0.003° lat ≈ 333 m, 0.005° lon ≈ 334 m at 53°N)
-        final double cellLat = 0.003;
-        final double cellLon = 0.005;
-
-        Map<String, List<Stop>> grid = new HashMap<>();
-        for (Stop stop : stops.values()) {
-            int gLat = (int) Math.floor(stop.getLatitude()  / cellLat);
-            int gLon = (int) Math.floor(stop.getLongitude() / cellLon);
-            grid.computeIfAbsent(gLat + "," + gLon, k -> new ArrayList<>()).add(stop);
-        }
-
-        Map<String, List<FootpathEdge>> footpaths = new HashMap<>();
-        for (Stop stop : stops.values()) {
-            int gLat = (int) Math.floor(stop.getLatitude()  / cellLat);
-            int gLon = (int) Math.floor(stop.getLongitude() / cellLon);
-
-            // Check the 3×3 neighbourhood of grid cells to find all stops within 300 m
-            for (int dLat = -1; dLat <= 1; dLat++) {
-                for (int dLon = -1; dLon <= 1; dLon++) {
-                    String cell = (gLat + dLat) + "," + (gLon + dLon);
-                    for (Stop other : grid.getOrDefault(cell, List.of())) {
-                        if (other.getId().equals(stop.getId())) continue;
-                        double distKm = footpathHaversineKm(
-                                stop.getLatitude(), stop.getLongitude(),
-                                other.getLatitude(), other.getLongitude());
-                        if (distKm <= MAX_FOOTPATH_DISTANCE_KM) {
-                            int walkSecs = (int) Math.round((distKm / WALK_SPEED_KMH) * 3600);
-                            footpaths.computeIfAbsent(stop.getId(), k -> new ArrayList<>())
-                            .add(new FootpathEdge(other.getId(), walkSecs));
-                        }
-                    }
-                }
-            }
-        }
+    // Uses the stop spatial index to avoid checking every pair of 14,000+ stops (which would be ~200M comparisons):
+    // each stop is only compared against the stops in the few grid cells within the radius of it, and FootpathBuilder
+    // spreads the stops over all cores.
+    private FootpathGraph buildFootpaths(StopSpatialIndex index) {
+        long started = System.nanoTime();
+        FootpathGraph footpaths = FootpathBuilder.build(index, footpathRadiusMeters() / 1000.0, WALK_SPEED_KMH, footpathMaxPerStop);
+        LOGGER.info("{} footpaths between {} stops generated in {} ms (within {} m, mutual {} nearest)",
+                footpaths.footpathCount(), footpaths.stopCount(), (System.nanoTime() - started) / 1_000_000,
+                footpathRadiusMeters(), footpathMaxPerStop);
         return footpaths;
     }
 
-    // Haversine distance in km — local copy used during graph loading (avoids a Spring bean dependency).
-    private double footpathHaversineKm(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371.0;
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                 + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                 * Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        return R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    // Straight-line distance walked in the footpath budget, so a stop within the budget is linked even with no stop
+    // in between; never below 300 m. Part of the snapshot header with max-per-stop, since the snapshot stores the links.
+    private int footpathRadiusMeters() {
+        double budgetKm = Math.max(0, footpathMaxWalkSeconds) * WALK_SPEED_KMH / 3600;
+        return (int) Math.round(Math.max(MIN_FOOTPATH_DISTANCE_KM, budgetKm) * 1000);
     }
 
 
     // CSV / file utilities (unchanged from original)
     
 
-    private BufferedReader openGtfsReader(String fileName) throws IOException {
+    private GtfsCsvReader openGtfsCsv(String fileName) throws IOException {
+        return new GtfsCsvReader(new InputStreamReader(openGtfsStream(fileName), StandardCharsets.UTF_8));
+    }
+
+    private InputStream openGtfsStream(String fileName) throws IOException {
+        if (!feedDir.isBlank()) {
+            Path file = Path.of(feedDir, fileName);
+            if (Files.isRegularFile(file)) {
+                return Files.newInputStream(file);
+            }
+        }
+
         String[] candidatePaths = {
                 "gtfs/" + fileName,
                 "gtfs/google_transit.zip/" + fileName,
@@ -559,71 +893,17 @@ public class GtfsGraphLoader {
         for (String path : candidatePaths) {
             ClassPathResource candidate = new ClassPathResource(path);
             if (candidate.exists()) {
-                InputStream stream = candidate.getInputStream();
-                return new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+                return candidate.getInputStream();
             }
         }
 
         throw new IOException("GTFS file not found: " + fileName);
     }
 
-    private Map<String, Integer> buildColumnIndex(String headerLine) {
-        List<String> columns = parseCsvLine(headerLine);
-        Map<String, Integer> index = new HashMap<>();
-        for (int i = 0; i < columns.size(); i++) {
-            index.put(columns.get(i).trim().toLowerCase(Locale.ROOT), i);
-        }
-        return index;
-    }
-
-    private List<String> parseCsvLine(String line) {
-        List<String> values = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        boolean insideQuotes = false;
-
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '"') {
-                if (insideQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    current.append('"');
-                    i++;
-                } else {
-                    insideQuotes = !insideQuotes;
-                }
-            } else if (c == ',' && !insideQuotes) {
-                values.add(current.toString());
-                current.setLength(0);
-            } else {
-                current.append(c);
-            }
-        }
-
-        values.add(current.toString());
-        return values;
-    }
-
-    private String getValue(List<String> tokens, int index) {
-        if (index < 0 || index >= tokens.size()) return "";
-        return tokens.get(index).trim();
-    }
-
-    private int parseGtfsTimeToSeconds(String hhmmss) {
-        String[] parts = hhmmss.split(":");
-        if (parts.length != 3) throw new NumberFormatException("Invalid GTFS time: " + hhmmss);
-        return Integer.parseInt(parts[0]) * 3600 + Integer.parseInt(parts[1]) * 60 + Integer.parseInt(parts[2]);
-    }
-
-    private boolean isBlank(String value) {
-        return value == null || value.isBlank();
-    }
-
     
     // Inner helpers
     
 
-    private record StopTimeRow(String stopId, int sequence, int arrivalSeconds) {}
-
-
     // Helper class to aggregate edge stats while processing trips.txt. We keep track of total travel time, sample count, and mode counts for each stop-pair + route combination.
     // This allows us to compute an average travel time and dominant mode for each edge in the adjacency list, which improves routing accuracy and provides better default times for edges without schedule data.
     private static class StopEdgeStats {
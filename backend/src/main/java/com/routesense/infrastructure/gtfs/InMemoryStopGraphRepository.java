@@ -1,10 +1,15 @@
 package com.routesense.infrastructure.gtfs;
 
 import com.routesense.application.port.StopGraphRepository;
+import com.routesense.domain.model.CompactGraph;
+import com.routesense.domain.model.ConnectionTimetable;
 import com.routesense.domain.model.FootpathEdge;
+import com.routesense.domain.model.GraphGeneration;
 import com.routesense.domain.model.ScheduledConnection;
 import com.routesense.domain.model.Stop;
 import com.routesense.domain.model.StopEdge;
+import com.routesense.domain.model.StopSpatialIndex;
+import com.routesense.domain.model.TransitTimetable;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -21,6 +26,16 @@ public class InMemoryStopGraphRepository implements StopGraphRepository {
         this.gtfsGraphLoader = gtfsGraphLoader;
     }
 
+    @Override
+    public GraphGeneration getGraph() {
+        return gtfsGraphLoader.getGeneration();
+    }
+
+    @Override
+    public GraphGeneration reload() {
+        return gtfsGraphLoader.reload();
+    }
+
     // Helper method to determine the transport mode for a stop based on its outbound edges.  
     // Defaults to BUS if no edges or unknown route types.
     @Override
@@ -55,4 +70,24 @@ public class InMemoryStopGraphRepository implements StopGraphRepository {
     public Map<String, List<FootpathEdge>> getFootpaths() {
         return gtfsGraphLoader.getFootpaths();
     }
+
+    @Override
+    public TransitTimetable getTransitTimetable() {
+        return gtfsGraphLoader.getTransitTimetable();
+    }
+
+    @Override
+    public ConnectionTimetable getConnectionTimetable() {
+        return gtfsGraphLoader.getConnectionTimetable();
+    }
+
+    @Override
+    public CompactGraph getCompactGraph() {
+        return gtfsGraphLoader.getCompactGraph();
+    }
+
+    @Override
+    public StopSpatialIndex getStopSpatialIndex() {
+        return gtfsGraphLoader.getStopSpatialIndex();
+    }
 }
@@ -0,0 +1,231 @@
+package com.routesense.infrastructure.gtfs;
+
+import com.routesense.domain.model.CompactGraph;
+import com.routesense.domain.model.LandmarkLowerBounds;
+import com.routesense.domain.model.StopSpatialIndex;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Picks the ALT landmarks and runs their one-to-all searches for LandmarkLowerBounds. Runs once per generation,
+// at the end of GtfsGraphLoader's compile step.
+//
+// The lower-bound graph has one edge per stop pair: the shortest ride of any scheduled connection between them
+// (waits ignored, so it holds on every service day) or the footpath, whichever is quicker. Landmarks are chosen
+// farthest-first by straight-line distance among stops with departures, which puts them on the edges of the network
+// where the triangle inequality is tightest. Each landmark then gets a forward and a backward Dijkstra.
+final class LandmarkLowerBoundsBuilder {
+
+    static final int LANDMARK_COUNT = 8;
+
+    private static final int UNREACHED = LandmarkLowerBounds.UNREACHED;
+
+    private LandmarkLowerBoundsBuilder() {}
+
+    static LandmarkLowerBounds build(CompactGraph graph) {
+        int stopCount = graph.stopCount();
+
+        // Forward edges (CSR), one per (from, to) pair with the lowest ride or walk time
+        int[] offsets = new int[stopCount + 1];
+        int[] targets = new int[64];
+        int[] seconds = new int[64];
+        int   count   = 0;
+        int[] best    = new int[stopCount];
+        int[] touched = new int[stopCount];
+        Arrays.fill(best, UNREACHED);
+        for (int from = 0; from < stopCount; from++) {
+            int touchedCount = 0;
+            for (int conn = graph.connectionStart(from); conn < graph.connectionEnd(from); conn++) {
+                int to   = graph.connectionTarget(conn);
+                int ride = Math.max(0, graph.connectionArrival(conn) - graph.connectionDeparture(conn));
+                if (best[to] == UNREACHED) touched[touchedCount++] = to;
+                best[to] = Math.min(best[to], ride);
+            }
+            for (int fp = graph.footpathStart(from); fp < graph.footpathEnd(from); fp++) {
+                int to = graph.footpathTarget(fp);
+                if (best[to] == UNREACHED) touched[touchedCount++] = to;
+                best[to] = Math.min(best[to], graph.footpathSeconds(fp));
+            }
+            if (count + touchedCount > targets.length) {
+                int capacity = Math.max(targets.length * 2, count + touchedCount);
+                targets = Arrays.copyOf(targets, capacity);
+                seconds = Arrays.copyOf(seconds, capacity);
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int to = touched[i];
+                if (to != from) {
+                    targets[count] = to;
+                    seconds[count] = best[to];
+                    count++;
+                }
+                best[to] = UNREACHED;
+            }
+            offsets[from + 1] = count;
+        }
+
+        // Backward edges: the same edges grouped by their target
+        int[] reverseOffsets = new int[stopCount + 1];
+        for (int edge = 0; edge < count; edge++) {
+            reverseOffsets[targets[edge] + 1]++;
+        }
+        for (int stop = 0; stop < stopCount; stop++) {
+            reverseOffsets[stop + 1] += reverseOffsets[stop];
+        }
+        int[] reverseTargets = new int[count];
+        int[] reverseSeconds = new int[count];
+        int[] fill = Arrays.copyOf(reverseOffsets, stopCount);
+        for (int from = 0; from < stopCount; from++) {
+            for (int edge = offsets[from]; edge < offsets[from + 1]; edge++) {
+                int slot = fill[targets[edge]]++;
+                reverseTargets[slot] = from;
+                reverseSeconds[slot] = seconds[edge];
+            }
+        }
+
+        int[] landmarks    = chooseLandmarks(graph);
+        int[] fromLandmark = new int[landmarks.length * stopCount];
+        int[] toLandmark   = new int[landmarks.length * stopCount];
+        int[] edgeTargets  = targets;
+        int[] edgeSeconds  = seconds;
+        // The searches are independent, so every landmark's pair of them runs in parallel
+        IntStream.range(0, landmarks.length).parallel().forEach(l -> {
+            int base = l * stopCount;
+            dijkstra(landmarks[l], offsets, edgeTargets, edgeSeconds, fromLandmark, base, stopCount);
+            dijkstra(landmarks[l], reverseOffsets, reverseTargets, reverseSeconds, toLandmark, base, stopCount);
+        });
+        return new LandmarkLowerBounds(stopCount, landmarks, fromLandmark, toLandmark);
+    }
+
+    // Farthest-first: start at the stop farthest from an arbitrary one, then repeatedly add the stop whose nearest
+    // landmark is farthest away. Only stops with departures are candidates.
+    private static int[] chooseLandmarks(CompactGraph graph) {
+        int      stopCount = graph.stopCount();
+        double[] nearestKm = new double[stopCount];
+        int      seed      = -1;
+        for (int stop = 0; stop < stopCount; stop++) {
+            if (graph.connectionStart(stop) < graph.connectionEnd(stop)) {
+                seed = stop;
+                break;
+            }
+        }
+        if (seed < 0) {
+            return new int[0];
+        }
+
+        Arrays.fill(nearestKm, Double.MAX_VALUE);
+        updateNearest(graph, seed, nearestKm);
+        int[] landmarks = new int[LANDMARK_COUNT];
+        int   chosen    = 0;
+        while (chosen < LANDMARK_COUNT) {
+            int    farthest   = -1;
+            double farthestKm = 0;
+            for (int stop = 0; stop < stopCount; stop++) {
+                if (graph.connectionStart(stop) == graph.connectionEnd(stop)) continue;
+                if (nearestKm[stop] > farthestKm) {
+                    farthestKm = nearestKm[stop];
+                    farthest   = stop;
+                }
+            }
+            if (farthest < 0) break;
+            if (chosen == 0) {
+                // The seed itself is not a landmark; restart the distances from the first real one
+                Arrays.fill(nearestKm, Double.MAX_VALUE);
+            }
+            landmarks[chosen++] = farthest;
+            updateNearest(graph, farthest, nearestKm);
+        }
+        return Arrays.copyOf(landmarks, chosen);
+    }
+
+    private static void updateNearest(CompactGraph graph, int landmark, double[] nearestKm) {
+        double lat = graph.latitude(landmark);
+        double lon = graph.longitude(landmark);
+        for (int stop = 0; stop < nearestKm.length; stop++) {
+            double km = StopSpatialIndex.haversineKm(lat, lon, graph.latitude(stop), graph.longitude(stop));
+            if (km < nearestKm[stop]) nearestKm[stop] = km;
+        }
+    }
+
+    // One-to-all Dijkstra from source over a CSR edge list, writing into distances[base .. base + stopCount)
+    private static void dijkstra(
+            int   source,
+            int[] offsets,
+            int[] targets,
+            int[] seconds,
+            int[] distances,
+            int   base,
+            int   stopCount
+    ) {
+        Arrays.fill(distances, base, base + stopCount, UNREACHED);
+        Heap heap = new Heap();
+        distances[base + source] = 0;
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            int key  = heap.peekKey();
+            int stop = heap.pop();
+            if (key > distances[base + stop]) continue;
+            for (int edge = offsets[stop]; edge < offsets[stop + 1]; edge++) {
+                int next     = targets[edge];
+                int distance = key + seconds[edge];
+                if (distance < distances[base + next]) {
+                    distances[base + next] = distance;
+                    heap.push(next, distance);
+                }
+            }
+        }
+    }
+
+    // Binary min-heap of stops keyed by distance; stale entries are skipped by the caller
+    private static final class Heap {
+        private int[] stops = new int[64];
+        private int[] keys  = new int[64];
+        private int   size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int peekKey() {
+            return keys[0];
+        }
+
+        void push(int stop, int key) {
+            if (size == stops.length) {
+                stops = Arrays.copyOf(stops, size * 2);
+                keys  = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                stops[i] = stops[parent];
+                keys[i]  = keys[parent];
+                i = parent;
+            }
+            stops[i] = stop;
+            keys[i]  = key;
+        }
+
+        int pop() {
+            int top = stops[0];
+            size--;
+            if (size > 0) {
+                int stop = stops[size];
+                int key  = keys[size];
+                int i    = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                    if (keys[child] >= key) break;
+                    stops[i] = stops[child];
+                    keys[i]  = keys[child];
+                    i = child;
+                }
+                stops[i] = stop;
+                keys[i]  = key;
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.routesense.infrastructure.gtfs;
+
+import com.routesense.domain.model.FootpathGraph;
+import com.routesense.domain.model.ScheduledConnection;
+import com.routesense.domain.model.ServiceCalendar;
+import com.routesense.domain.model.Stop;
+import com.routesense.domain.model.StopEdge;
+
+import java.util.List;
+import java.util.Map;
+
+// Everything GtfsGraphLoader reads from the GTFS files, already frozen and sorted, before the routing
+// structures are compiled from it. This is exactly what a GraphSnapshot stores, so a snapshot load can
+// skip CSV parsing and go straight to compiling.
+record ParsedFeed(
+        Map<String, Stop>                      stops,
+        Map<String, List<StopEdge>>            adjacencyList,
+        Map<String, List<ScheduledConnection>> scheduleByStop,
+        Map<String, String>                    routeShortNames,
+        Map<String, List<double[]>>            routeShapes,
+        FootpathGraph                          footpaths,
+        ServiceCalendar                        serviceCalendar,
+        TransitTimetableBuilder                timetableBuilder) {}
@@ -0,0 +1,84 @@
+package com.routesense.infrastructure.gtfs;
+
+import com.routesense.domain.model.ServiceCalendar;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Collects calendar.txt weekly rules and calendar_dates.txt exceptions and compiles them into a ServiceCalendar.
+// The calendar spans from the earliest to the latest date any rule or exception mentions; a service's bitset
+// is its weekly pattern over [start_date, end_date], then exceptions add (type 1) or remove (type 2) single days.
+final class ServiceCalendarBuilder {
+
+    private final List<WeeklyRule>    rules      = new ArrayList<>();
+    private final List<DateException> exceptions = new ArrayList<>();
+
+    // weekdays: bit 0 = Monday .. bit 6 = Sunday, as in the calendar.txt columns
+    void addWeeklyRule(String serviceId, int weekdays, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) return;
+        rules.add(new WeeklyRule(serviceId, weekdays, startDate, endDate));
+    }
+
+    void addException(String serviceId, LocalDate date, boolean added) {
+        exceptions.add(new DateException(serviceId, date, added));
+    }
+
+    ServiceCalendar build() {
+        // Sorted service IDs so the numbering is stable across restarts
+        TreeSet<String> serviceIdSet = new TreeSet<>();
+        LocalDate first = null;
+        LocalDate last  = null;
+        for (WeeklyRule rule : rules) {
+            serviceIdSet.add(rule.serviceId());
+            first = first == null || rule.startDate().isBefore(first) ? rule.startDate() : first;
+            last  = last  == null || rule.endDate().isAfter(last)     ? rule.endDate()   : last;
+        }
+        for (DateException exception : exceptions) {
+            serviceIdSet.add(exception.serviceId());
+            first = first == null || exception.date().isBefore(first) ? exception.date() : first;
+            last  = last  == null || exception.date().isAfter(last)   ? exception.date() : last;
+        }
+        if (serviceIdSet.isEmpty()) {
+            return ServiceCalendar.empty();
+        }
+
+        String[] serviceIds = serviceIdSet.toArray(new String[0]);
+        Map<String, Integer> serviceIndexById = new HashMap<>();
+        for (int s = 0; s < serviceIds.length; s++) {
+            serviceIndexById.put(serviceIds[s], s);
+        }
+        int      dayCount   = (int) (last.toEpochDay() - first.toEpochDay()) + 1;
+        int      words      = (dayCount + 63) >>> 6;
+        long[]   activeDays = new long[serviceIds.length * words];
+        long     firstDay   = first.toEpochDay();
+
+        for (WeeklyRule rule : rules) {
+            int base = serviceIndexById.get(rule.serviceId()) * words;
+            for (long day = rule.startDate().toEpochDay(); day <= rule.endDate().toEpochDay(); day++) {
+                // 1970-01-01 was a Thursday; Math.floorMod(day + 3, 7) is 0 for Monday
+                if ((rule.weekdays() & (1 << Math.floorMod(day + 3, 7))) == 0) continue;
+                int d = (int) (day - firstDay);
+                activeDays[base + (d >>> 6)] |= 1L << d;
+            }
+        }
+        for (DateException exception : exceptions) {
+            int base = serviceIndexById.get(exception.serviceId()) * words;
+            int d    = (int) (exception.date().toEpochDay() - firstDay);
+            if (exception.added()) {
+                activeDays[base + (d >>> 6)] |= 1L << d;
+            } else {
+                activeDays[base + (d >>> 6)] &= ~(1L << d);
+            }
+        }
+
+        return new ServiceCalendar(serviceIds, first, dayCount, activeDays);
+    }
+
+    private record WeeklyRule(String serviceId, int weekdays, LocalDate startDate, LocalDate endDate) {}
+
+    private record DateException(String serviceId, LocalDate date, boolean added) {}
+}
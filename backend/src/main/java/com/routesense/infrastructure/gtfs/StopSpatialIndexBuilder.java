@@ -0,0 +1,102 @@
+package com.routesense.infrastructure.gtfs;
+
+import com.routesense.domain.model.ScheduledConnection;
+import com.routesense.domain.model.Stop;
+import com.routesense.domain.model.StopEdge;
+import com.routesense.domain.model.StopSpatialIndex;
+import com.routesense.domain.model.TransportMode;
+
+import java.util.List;
+import java.util.Map;
+
+// Buckets every stop into a uniform lat/lon grid and tags it with the StopSpatialIndex filter flags.
+// Runs once in GtfsGraphLoader.loadGraph(), before the footpaths, which are the index's first user.
+final class StopSpatialIndexBuilder {
+
+    // Target cell height: ~0.005° latitude ≈ 556 m, so a 300 m footpath query touches at most 3×3 cells
+    private static final double CELL_LATITUDE_DEGREES = 0.005;
+
+    // Upper bound on cells per axis, so a stray stop with bogus coordinates can't blow up the grid
+    private static final int MAX_CELLS_PER_AXIS = 2048;
+
+    private StopSpatialIndexBuilder() {}
+
+    static StopSpatialIndex build(
+            Map<String, Stop>                      stops,
+            Map<String, List<StopEdge>>            adjacencyList,
+            Map<String, List<ScheduledConnection>> schedule
+    ) {
+        if (stops.isEmpty()) {
+            return StopSpatialIndex.empty();
+        }
+
+        // Dense stop indices, sorted by ID — the same numbering CompactGraphBuilder and TransitTimetableBuilder use
+        String[] stopIds    = stops.keySet().stream().sorted().toArray(String[]::new);
+        double[] latitudes  = new double[stopIds.length];
+        double[] longitudes = new double[stopIds.length];
+        byte[]   flags      = new byte[stopIds.length];
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int s = 0; s < stopIds.length; s++) {
+            Stop stop = stops.get(stopIds[s]);
+            latitudes[s]  = stop.getLatitude();
+            longitudes[s] = stop.getLongitude();
+            minLat = Math.min(minLat, latitudes[s]);
+            maxLat = Math.max(maxLat, latitudes[s]);
+            minLon = Math.min(minLon, longitudes[s]);
+            maxLon = Math.max(maxLon, longitudes[s]);
+            flags[s] = stopFlags(stopIds[s], adjacencyList, schedule);
+        }
+
+        // Roughly square cells: a degree of longitude shrinks with cos(latitude), so longitude cells are wider
+        double midLatCos  = Math.max(0.01, Math.cos(Math.toRadians((minLat + maxLat) / 2)));
+        double cellLat    = Math.max(CELL_LATITUDE_DEGREES, (maxLat - minLat) / MAX_CELLS_PER_AXIS);
+        double cellLon    = Math.max(CELL_LATITUDE_DEGREES / midLatCos, (maxLon - minLon) / MAX_CELLS_PER_AXIS);
+        int    rows       = (int) Math.floor((maxLat - minLat) / cellLat) + 1;
+        int    cols       = (int) Math.floor((maxLon - minLon) / cellLon) + 1;
+
+        // Counting sort of stops into cells (CSR)
+        int[] cellOfStop  = new int[stopIds.length];
+        int[] cellOffsets = new int[rows * cols + 1];
+        for (int s = 0; s < stopIds.length; s++) {
+            int row = Math.min(rows - 1, (int) Math.floor((latitudes[s] - minLat) / cellLat));
+            int col = Math.min(cols - 1, (int) Math.floor((longitudes[s] - minLon) / cellLon));
+            cellOfStop[s] = row * cols + col;
+            cellOffsets[cellOfStop[s] + 1]++;
+        }
+        for (int c = 0; c < rows * cols; c++) {
+            cellOffsets[c + 1] += cellOffsets[c];
+        }
+        int[] cellStops = new int[stopIds.length];
+        int[] fill      = new int[rows * cols];
+        for (int s = 0; s < stopIds.length; s++) {
+            int cell = cellOfStop[s];
+            cellStops[cellOffsets[cell] + fill[cell]++] = s;
+        }
+
+        return new StopSpatialIndex(stopIds, latitudes, longitudes, flags,
+                minLat, minLon, cellLat, cellLon, rows, cols, cellOffsets, cellStops);
+    }
+
+    private static byte stopFlags(
+            String                                 stopId,
+            Map<String, List<StopEdge>>            adjacencyList,
+            Map<String, List<ScheduledConnection>> schedule
+    ) {
+        int flags = 0;
+        List<ScheduledConnection> departures = schedule.getOrDefault(stopId, List.of());
+        if (!departures.isEmpty()) {
+            flags |= StopSpatialIndex.HAS_SCHEDULE;
+        }
+        for (ScheduledConnection conn : departures) {
+            if (conn.getMode() == TransportMode.TRAIN) {
+                flags |= StopSpatialIndex.HAS_TRAIN;
+                break;
+            }
+        }
+        if (!adjacencyList.getOrDefault(stopId, List.of()).isEmpty()) {
+            flags |= StopSpatialIndex.HAS_OUTGOING_EDGES;
+        }
+        return (byte) flags;
+    }
+}
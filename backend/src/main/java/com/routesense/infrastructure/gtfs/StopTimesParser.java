@@ -0,0 +1,252 @@
+package com.routesense.infrastructure.gtfs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Streams stop_times.txt — by far the largest GTFS file — through a pool of parser threads.
+//
+// The calling thread reads the file in fixed-size byte chunks cut at line ends and hands each chunk to a worker,
+// which decodes and tokenizes it with GtfsCsvReader into compact int columns (stop index, sequence, arrival).
+// Stop and trip IDs are resolved against pre-built symbol tables, so rows cost no Strings at all.
+// The calling thread then consumes the parsed chunks strictly in file order and stitches them back into whole trips,
+// so a trip split across two chunks is seen exactly as if the file had been read line by line.
+// Only a bounded number of chunks is in flight, which keeps memory flat however large the file is.
+final class StopTimesParser {
+
+    private static final int CHUNK_BYTES          = 1 << 22;  // 4 MB of CSV per parse task
+    private static final int CHUNKS_PER_THREAD    = 2;        // parsed-but-unconsumed chunks allowed per worker
+
+    // Receives each trip's rows in file order. rows is reused after the call returns.
+    interface TripConsumer {
+        void accept(String tripId, TripRows rows);
+    }
+
+    private final GtfsCsvReader.Symbols stops;
+    private final GtfsCsvReader.Symbols trips;
+    private final int                   threads;
+
+    StopTimesParser(GtfsCsvReader.Symbols stops, GtfsCsvReader.Symbols trips, int threads) {
+        this.stops   = stops;
+        this.trips   = trips;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    // Parses the whole stream. Returns false if the header lacks a required column (nothing is consumed then).
+    boolean parse(InputStream in, TripConsumer consumer) throws IOException {
+        byte[] pending = new byte[CHUNK_BYTES];
+        int pendingLength = readFully(in, pending, 0);
+
+        // Header row
+        int headerEnd;
+        while ((headerEnd = indexOf(pending, 0, pendingLength, (byte) '\n')) < 0 && pendingLength == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+            pendingLength += readFully(in, pending, pendingLength);
+        }
+        int headerLength = headerEnd < 0 ? pendingLength : headerEnd;
+        if (headerLength == 0 && pendingLength == 0) return false;
+        char[] headerChars = new String(pending, 0, headerLength, StandardCharsets.UTF_8).toCharArray();
+        Map<String, Integer> col = new GtfsCsvReader(headerChars, headerChars.length).readHeader();
+        if (col == null) return false;
+        Integer tripIdIdx      = col.get("trip_id");
+        Integer arrivalTimeIdx = col.get("arrival_time");
+        Integer stopIdIdx      = col.get("stop_id");
+        Integer stopSeqIdx     = col.get("stop_sequence");
+        if (tripIdIdx == null || arrivalTimeIdx == null || stopIdIdx == null || stopSeqIdx == null) {
+            return false;
+        }
+        Columns columns = new Columns(tripIdIdx, arrivalTimeIdx, stopIdIdx, stopSeqIdx);
+
+        int consumed = headerEnd < 0 ? pendingLength : headerEnd + 1;
+        pendingLength -= consumed;
+        System.arraycopy(pending, consumed, pending, 0, pendingLength);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "gtfs-parse-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Stitcher stitcher = new Stitcher(consumer);
+        Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+        try {
+            boolean endOfInput = false;
+            while (!endOfInput || pendingLength > 0) {
+                if (!endOfInput && pendingLength < pending.length) {
+                    int read = readFully(in, pending, pendingLength);
+                    endOfInput = pendingLength + read < pending.length;
+                    pendingLength += read;
+                }
+
+                // Cut at the last line end; a single line longer than the buffer grows it
+                int cut = endOfInput ? pendingLength : lastIndexOf(pending, pendingLength, (byte) '\n') + 1;
+                if (cut == 0) {
+                    pending = Arrays.copyOf(pending, pending.length * 2);
+                    continue;
+                }
+
+                byte[] chunk = Arrays.copyOf(pending, cut);
+                inFlight.add(pool.submit(() -> parseChunk(chunk, columns)));
+                pendingLength -= cut;
+                System.arraycopy(pending, cut, pending, 0, pendingLength);
+
+                while (inFlight.size() >= threads * CHUNKS_PER_THREAD) {
+                    stitcher.consume(await(inFlight.poll()));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                stitcher.consume(await(inFlight.poll()));
+            }
+            stitcher.finish();
+        } finally {
+            pool.shutdownNow();
+        }
+        return true;
+    }
+
+    // Worker side: decode one chunk and keep only the rows the loader can use, as int columns.
+    private ParsedChunk parseChunk(byte[] bytes, Columns columns) throws IOException {
+        CharBuffer chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(bytes));
+        GtfsCsvReader csv = new GtfsCsvReader(chars.array(), chars.limit());
+        ParsedChunk chunk = new ParsedChunk();
+        String currentTripId = null;
+
+        while (csv.next()) {
+            if (csv.isBlank(columns.tripId()) || csv.isBlank(columns.stopId())
+                    || csv.isBlank(columns.arrivalTime()) || csv.isBlank(columns.stopSequence())) continue;
+
+            int stop = csv.symbol(columns.stopId(), stops);
+            if (stop < 0) continue; // stop not in stops.txt
+
+            int sequence;
+            int arrivalSeconds;
+            try {
+                sequence       = csv.getInt(columns.stopSequence());
+                arrivalSeconds = csv.getTime(columns.arrivalTime());
+            } catch (NumberFormatException ex) {
+                continue;
+            }
+
+            if (currentTripId == null || !csv.fieldEquals(columns.tripId(), currentTripId)) {
+                int trip = csv.symbol(columns.tripId(), trips);
+                currentTripId = trip >= 0 ? trips.value(trip) : csv.getString(columns.tripId());
+                chunk.startTrip(currentTripId);
+            }
+            chunk.addRow(stop, sequence, arrivalSeconds);
+        }
+        return chunk;
+    }
+
+    private static ParsedChunk await(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing stop_times.txt", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse stop_times.txt", e.getCause());
+        }
+    }
+
+    // Reads until the buffer is full or the stream ends; returns the number of bytes read.
+    private static int readFully(InputStream in, byte[] buffer, int offset) throws IOException {
+        int total = 0;
+        while (offset + total < buffer.length) {
+            int read = in.read(buffer, offset + total, buffer.length - offset - total);
+            if (read < 0) break;
+            total += read;
+        }
+        return total;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] bytes, int to, byte value) {
+        for (int i = to - 1; i >= 0; i--) {
+            if (bytes[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private record Columns(int tripId, int arrivalTime, int stopId, int stopSequence) {}
+
+    // Rows of one chunk grouped into runs of the same trip ID, in file order.
+    private static final class ParsedChunk {
+        private String[] tripIds   = new String[64];
+        private int[]    tripEnds  = new int[64];     // row index one past each run
+        private int      tripCount;
+        private int[]    stops     = new int[1024];
+        private int[]    sequences = new int[1024];
+        private int[]    arrivals  = new int[1024];
+        private int      rowCount;
+
+        void startTrip(String tripId) {
+            if (tripCount == tripIds.length) {
+                tripIds  = Arrays.copyOf(tripIds, tripCount * 2);
+                tripEnds = Arrays.copyOf(tripEnds, tripCount * 2);
+            }
+            tripIds[tripCount++] = tripId;
+        }
+
+        void addRow(int stop, int sequence, int arrivalSeconds) {
+            if (rowCount == stops.length) {
+                stops     = Arrays.copyOf(stops, rowCount * 2);
+                sequences = Arrays.copyOf(sequences, rowCount * 2);
+                arrivals  = Arrays.copyOf(arrivals, rowCount * 2);
+            }
+            stops[rowCount]     = stop;
+            sequences[rowCount] = sequence;
+            arrivals[rowCount]  = arrivalSeconds;
+            rowCount++;
+            tripEnds[tripCount - 1] = rowCount;
+        }
+    }
+
+    // Consumer side: joins runs of the same trip across chunk boundaries and emits each finished trip.
+    private static final class Stitcher {
+        private final TripConsumer consumer;
+        private final TripRows     rows = new TripRows();
+        private String             openTripId;
+
+        Stitcher(TripConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        void consume(ParsedChunk chunk) {
+            int row = 0;
+            for (int t = 0; t < chunk.tripCount; t++) {
+                if (openTripId != null && !openTripId.equals(chunk.tripIds[t])) {
+                    finish();
+                }
+                openTripId = chunk.tripIds[t];
+                for (; row < chunk.tripEnds[t]; row++) {
+                    rows.add(chunk.stops[row], chunk.sequences[row], chunk.arrivals[row]);
+                }
+            }
+        }
+
+        void finish() {
+            if (openTripId != null) {
+                consumer.accept(openTripId, rows);
+            }
+            rows.clear();
+            openTripId = null;
+        }
+    }
+}
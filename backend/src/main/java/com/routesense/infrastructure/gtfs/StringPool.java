@@ -0,0 +1,18 @@
+package com.routesense.infrastructure.gtfs;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Load-time canonicalizer for repeated GTFS values (stop names, route short names).
+// Every equal value maps to one String instance, so the graph holds each distinct value once
+// instead of once per CSV row it came from. Not thread-safe — each load stage uses its own pool.
+final class StringPool {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    String intern(String value) {
+        if (value == null) return null;
+        String canonical = values.putIfAbsent(value, value);
+        return canonical != null ? canonical : value;
+    }
+}
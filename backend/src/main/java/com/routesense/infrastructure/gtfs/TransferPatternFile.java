@@ -0,0 +1,128 @@
+package com.routesense.infrastructure.gtfs;
+
+import com.routesense.application.port.TransferPatternRepository;
+import com.routesense.application.routing.TransferPatternSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Stores the transfer patterns in one small binary file next to the graph snapshot, written the same way:
+// to a temporary file first and then moved into place, so a crash mid-write never leaves a truncated file behind.
+//
+// Layout (big-endian, as written by DataOutputStream):
+//   header   — magic, format version, feed checksum, first date (epoch day), day count, stop count
+//   entries  — count, then per pair: origin stop ID, destination stop ID, query count, pattern ints (-1 = none)
+@Component
+public class TransferPatternFile implements TransferPatternRepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransferPatternFile.class);
+
+    private static final int MAGIC = 0x52535450; // "RSTP"
+
+    // Bump whenever the layout or the pattern encoding changes, so old files are ignored instead of misread
+    private static final int VERSION = 2;
+
+    // Keep learned patterns across restarts
+    @Value("${app.routing.transfer-patterns.persist:true}")
+    private boolean persist;
+
+    // Where the patterns live; rewritten whenever a batch of precomputations finishes
+    @Value("${app.routing.transfer-patterns.path:data/transfer-patterns.bin}")
+    private String path;
+
+    @Override
+    public TransferPatternSnapshot load() {
+        if (!persist) {
+            return null;
+        }
+        Path file = Path.of(path);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Transfer patterns {} have an unknown format version; they will be recomputed", file);
+                return null;
+            }
+            long      feedChecksum = in.readLong();
+            LocalDate firstDate    = LocalDate.ofEpochDay(in.readLong());
+            int       days         = in.readInt();
+            int       stopCount    = in.readInt();
+            int       entryCount   = in.readInt();
+            List<TransferPatternSnapshot.Entry> entries = new ArrayList<>(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                String origin      = in.readUTF();
+                String destination = in.readUTF();
+                int    queries     = in.readInt();
+                int    length      = in.readInt();
+                int[]  patterns    = length < 0 ? null : new int[length];
+                for (int j = 0; j < length; j++) {
+                    patterns[j] = in.readInt();
+                }
+                entries.add(new TransferPatternSnapshot.Entry(origin, destination, queries, patterns));
+            }
+            return new TransferPatternSnapshot(feedChecksum, firstDate, days, stopCount, entries);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (EOFException e) {
+            LOGGER.warn("Transfer patterns {} are truncated; they will be recomputed", file);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Transfer patterns {} are unreadable; they will be recomputed", file, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void save(TransferPatternSnapshot snapshot) {
+        if (!persist) {
+            return;
+        }
+        Path file = Path.of(path);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(snapshot.feedChecksum());
+                out.writeLong(snapshot.firstDate().toEpochDay());
+                out.writeInt(snapshot.days());
+                out.writeInt(snapshot.stopCount());
+                out.writeInt(snapshot.entries().size());
+                for (TransferPatternSnapshot.Entry entry : snapshot.entries()) {
+                    out.writeUTF(entry.originStopId());
+                    out.writeUTF(entry.destinationStopId());
+                    out.writeInt(entry.queries());
+                    int[] patterns = entry.patterns();
+                    out.writeInt(patterns == null ? -1 : patterns.length);
+                    if (patterns == null) continue;
+                    for (int value : patterns) {
+                        out.writeInt(value);
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.debug("Transfer patterns written to {} ({} pairs)", file, snapshot.entries().size());
+        } catch (IOException e) {
+            LOGGER.warn("Could not write transfer patterns {}; they will be recomputed after a restart", file, e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.routesense.infrastructure.gtfs;
+
+import com.routesense.domain.model.FootpathGraph;
+import com.routesense.domain.model.ServiceCalendar;
+import com.routesense.domain.model.Stop;
+import com.routesense.domain.model.StopSpatialIndex;
+import com.routesense.domain.model.TransitTimetable;
+import com.routesense.domain.model.TransportMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Collects trips while stop_times.txt is streamed and compiles them into a TransitTimetable
+// (ConnectionTimetable.fromTimetable flattens that into the connection array used by the CSA router).
+// Trips are grouped by (route, ordered stop list) into patterns. A trip that would overtake an earlier trip
+// of the same pattern is moved into a separate pattern so that every pattern stays FIFO, which is what lets
+// RAPTOR pick the earliest catchable trip with a binary search.
+class TransitTimetableBuilder {
+
+    // Pattern key "routeId|stopA,stopB,..." → trips on that stop sequence. TreeMap keeps pattern numbering deterministic.
+    private final Map<String, PatternTrips> tripsByPatternKey = new TreeMap<>();
+
+    // Records one trip. stopIds and times must be in stop_sequence order with consecutive duplicate stops removed.
+    // serviceId is the trip's GTFS service_id (null if unknown), resolved against the ServiceCalendar in build().
+    void addTrip(String routeId, String shortName, TransportMode mode, String serviceId, List<String> stopIds, int[] times) {
+        if (routeId == null || stopIds.size() < 2) return;
+
+        String key = routeId + "|" + String.join(",", stopIds);
+        PatternTrips pattern = tripsByPatternKey.computeIfAbsent(
+                key, ignored -> new PatternTrips(routeId, shortName, mode, stopIds.toArray(new String[0])));
+        pattern.trips.add(new Trip(serviceId, times));
+    }
+
+    // Records a whole (route, stop list) group at once — used when restoring trips from a GraphSnapshot.
+    void addTrips(String routeId, String shortName, TransportMode mode, String[] stopIds, List<Trip> trips) {
+        if (routeId == null || stopIds.length < 2) return;
+
+        String key = routeId + "|" + String.join(",", stopIds);
+        tripsByPatternKey.computeIfAbsent(key, ignored -> new PatternTrips(routeId, shortName, mode, stopIds))
+                .trips.addAll(trips);
+    }
+
+    // The trips recorded so far, grouped by (route, stop list) in pattern-key order and in insertion order within
+    // a group. Replaying these through addTrips() rebuilds an identical timetable, which is what GraphSnapshot relies on.
+    List<TripGroup> tripGroups() {
+        List<TripGroup> groups = new ArrayList<>(tripsByPatternKey.size());
+        for (PatternTrips group : tripsByPatternKey.values()) {
+            groups.add(new TripGroup(group.routeId, group.shortName, group.mode, group.stopIds, group.trips));
+        }
+        return groups;
+    }
+
+    record TripGroup(String routeId, String shortName, TransportMode mode, String[] stopIds, List<Trip> trips) {}
+
+    // One trip's service_id and its times at each stop of the group.
+    record Trip(String serviceId, int[] times) {}
+
+    TransitTimetable build(Map<String, Stop> stops, FootpathGraph footpaths, ServiceCalendar calendar) {
+        // Dense stop indices, sorted by ID so the numbering is stable across restarts
+        String[] stopIds = stops.keySet().stream().sorted().toArray(String[]::new);
+        Map<String, Integer> stopIndexById = new HashMap<>();
+        for (int i = 0; i < stopIds.length; i++) {
+            stopIndexById.put(stopIds[i], i);
+        }
+
+        // Split every (route, stop list) group into FIFO patterns
+        List<PatternTrips> patterns = new ArrayList<>();
+        for (PatternTrips group : tripsByPatternKey.values()) {
+            patterns.addAll(group.splitIntoFifoPatterns());
+        }
+
+        int patternCount = patterns.size();
+        int[]           patternStopOffsets = new int[patternCount + 1];
+        int[]           patternTimeOffsets = new int[patternCount + 1];
+        int[]           patternTripOffsets = new int[patternCount + 1];
+        int[]           patternTripCounts  = new int[patternCount];
+        String[]        patternRouteIds    = new String[patternCount];
+        String[]        patternShortNames  = new String[patternCount];
+        TransportMode[] patternModes       = new TransportMode[patternCount];
+
+        for (int p = 0; p < patternCount; p++) {
+            PatternTrips pattern = patterns.get(p);
+            patternStopOffsets[p + 1] = patternStopOffsets[p] + pattern.stopIds.length;
+            patternTimeOffsets[p + 1] = patternTimeOffsets[p] + pattern.stopIds.length * pattern.trips.size();
+            patternTripOffsets[p + 1] = patternTripOffsets[p] + pattern.trips.size();
+            patternTripCounts[p]      = pattern.trips.size();
+            patternRouteIds[p]        = pattern.routeId;
+            patternShortNames[p]      = pattern.shortName;
+            patternModes[p]           = pattern.mode != null ? pattern.mode : TransportMode.BUS;
+        }
+
+        int[] patternStops      = new int[patternStopOffsets[patternCount]];
+        int[] patternStopMeters = new int[patternStopOffsets[patternCount]];
+        int[] stopTimes    = new int[patternTimeOffsets[patternCount]];
+        int[] tripServices = new int[patternTripOffsets[patternCount]];
+        int[] stopPatternCounts = new int[stopIds.length];
+
+        for (int p = 0; p < patternCount; p++) {
+            PatternTrips pattern = patterns.get(p);
+            double meters = 0;
+            for (int i = 0; i < pattern.stopIds.length; i++) {
+                int stop = stopIndexById.get(pattern.stopIds[i]);
+                if (i > 0) {
+                    Stop from = stops.get(pattern.stopIds[i - 1]);
+                    Stop to   = stops.get(pattern.stopIds[i]);
+                    meters += 1000 * StopSpatialIndex.haversineKm(
+                            from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+                }
+                patternStops[patternStopOffsets[p] + i]      = stop;
+                patternStopMeters[patternStopOffsets[p] + i] = (int) Math.round(meters);
+                stopPatternCounts[stop]++;
+            }
+            int cursor = patternTimeOffsets[p];
+            int trip   = patternTripOffsets[p];
+            for (Trip t : pattern.trips) {
+                System.arraycopy(t.times(), 0, stopTimes, cursor, t.times().length);
+                cursor += t.times().length;
+                tripServices[trip++] = calendar.indexOf(t.serviceId());
+            }
+        }
+
+        // Stop → (pattern, position) index
+        int[] stopPatternOffsets = prefixSum(stopPatternCounts);
+        int[] stopPatterns         = new int[stopPatternOffsets[stopIds.length]];
+        int[] stopPatternPositions = new int[stopPatternOffsets[stopIds.length]];
+        int[] fill = Arrays.copyOf(stopPatternOffsets, stopIds.length);
+        for (int p = 0; p < patternCount; p++) {
+            for (int i = patternStopOffsets[p]; i < patternStopOffsets[p + 1]; i++) {
+                int slot = fill[patternStops[i]]++;
+                stopPatterns[slot]         = p;
+                stopPatternPositions[slot] = i - patternStopOffsets[p];
+            }
+        }
+
+        // Footpaths: FootpathGraph already uses this stop numbering, so its arrays are adopted as they are
+        if (footpaths.stopCount() != stopIds.length) {
+            throw new IllegalArgumentException("Footpaths cover " + footpaths.stopCount() + " stops, the timetable " + stopIds.length);
+        }
+        int[]   footpathOffsets = footpaths.offsets();
+        int[]   footpathTargets = footpaths.targets();
+        short[] footpathSeconds = footpaths.seconds();
+
+        return new TransitTimetable(
+                stopIds, stopIndexById,
+                patternStopOffsets, patternStops, patternStopMeters, patternTimeOffsets, patternTripCounts, stopTimes, tripServices,
+                patternRouteIds, patternShortNames, patternModes,
+                stopPatternOffsets, stopPatterns, stopPatternPositions,
+                footpathOffsets, footpathTargets, footpathSeconds);
+    }
+
+    private static int[] prefixSum(int[] counts) {
+        int[] offsets = new int[counts.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            offsets[i + 1] = offsets[i] + counts[i];
+        }
+        return offsets;
+    }
+
+    // All trips sharing one route and stop sequence, before FIFO splitting.
+    private static class PatternTrips {
+        private final String        routeId;
+        private final String        shortName;
+        private final TransportMode mode;
+        private final String[]      stopIds;
+        private final List<Trip>    trips = new ArrayList<>();
+
+        PatternTrips(String routeId, String shortName, TransportMode mode, String[] stopIds) {
+            this.routeId   = routeId;
+            this.shortName = shortName;
+            this.mode      = mode;
+            this.stopIds   = stopIds;
+        }
+
+        // Sorts trips by their first departure and deals them into the first pattern they don't overtake.
+        // Real feeds almost always produce a single pattern here; express/stopping pairs produce two.
+        List<PatternTrips> splitIntoFifoPatterns() {
+            trips.sort(Comparator.comparingInt((Trip trip) -> trip.times()[0]));
+
+            List<PatternTrips> result = new ArrayList<>();
+            for (Trip trip : trips) {
+                PatternTrips target = null;
+                for (PatternTrips candidate : result) {
+                    if (!overtakes(trip.times(), candidate.trips.get(candidate.trips.size() - 1).times())) {
+                        target = candidate;
+                        break;
+                    }
+                }
+                if (target == null) {
+                    target = new PatternTrips(routeId, shortName, mode, stopIds);
+                    result.add(target);
+                }
+                target.trips.add(trip);
+            }
+            return result;
+        }
+
+        // True if 'later' (which starts no earlier than 'earlier') reaches any stop before 'earlier' does.
+        private static boolean overtakes(int[] later, int[] earlier) {
+            for (int i = 0; i < later.length; i++) {
+                if (later[i] < earlier[i]) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.routesense.infrastructure.gtfs;
+
+import java.util.Arrays;
+
+// The stop_times.txt rows of one trip as parallel int arrays (stop index, stop_sequence, arrival seconds).
+// One instance is reused for every trip while loading, so a trip costs no per-row objects.
+final class TripRows {
+
+    private int[] stops      = new int[64];
+    private int[] sequences  = new int[64];
+    private int[] arrivals   = new int[64];
+    private int   size;
+
+    void add(int stop, int sequence, int arrivalSeconds) {
+        if (size == stops.length) {
+            stops     = Arrays.copyOf(stops, size * 2);
+            sequences = Arrays.copyOf(sequences, size * 2);
+            arrivals  = Arrays.copyOf(arrivals, size * 2);
+        }
+        stops[size]     = stop;
+        sequences[size] = sequence;
+        arrivals[size]  = arrivalSeconds;
+        size++;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int stop(int row) {
+        return stops[row];
+    }
+
+    int arrivalSeconds(int row) {
+        return arrivals[row];
+    }
+
+    // Stable insertion sort by stop_sequence. Rows almost always arrive in order, so this is a single pass.
+    void sortBySequence() {
+        for (int i = 1; i < size; i++) {
+            int stop     = stops[i];
+            int sequence = sequences[i];
+            int arrival  = arrivals[i];
+            int j = i - 1;
+            while (j >= 0 && sequences[j] > sequence) {
+                stops[j + 1]     = stops[j];
+                sequences[j + 1] = sequences[j];
+                arrivals[j + 1]  = arrivals[j];
+                j--;
+            }
+            stops[j + 1]     = stop;
+            sequences[j + 1] = sequence;
+            arrivals[j + 1]  = arrival;
+        }
+    }
+}
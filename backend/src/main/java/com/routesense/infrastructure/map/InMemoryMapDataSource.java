@@ -5,9 +5,9 @@ import com.routesense.domain.model.*;
 import com.routesense.infrastructure.gtfs.GtfsGraphLoader;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 // In-memory implementation of MapDataSource that serves stop and departure data for the map from the GTFS-loaded graph.
 // This is used by MapController to get the list of stops to display on the map, and to get live departure info for each stop when the user clicks on it.
@@ -35,21 +35,22 @@ public class InMemoryMapDataSource implements MapDataSource {
         double[] bounds = CITY_BOUNDS.getOrDefault(location, CITY_BOUNDS.get("Galway"));
         double minLat = bounds[0], minLng = bounds[1], maxLat = bounds[2], maxLng = bounds[3];
 
-        Map<String, List<StopEdge>>            adjacency = loader.getAdjacencyList();
-        Map<String, List<ScheduledConnection>> schedule  = loader.getSchedule();
+        GraphGeneration  generation = loader.getGeneration(); // one consistent feed version for the whole listing
+        TransitTimetable timetable  = generation.transitTimetable();
 
         List<TransportStop> result = new ArrayList<>();
 
-        for (Stop stop : loader.getStops().values()) {
+        for (Stop stop : generation.stops().values()) {
             // Must be inside the city bounding box
             if (stop.getLatitude()  < minLat || stop.getLatitude()  > maxLat) continue;
             if (stop.getLongitude() < minLng || stop.getLongitude() > maxLng) continue;
 
             // Only show stops that have scheduled departures (skip ghost stops)
-            if (!schedule.containsKey(stop.getId())) continue;
+            int index = timetable.indexOf(stop.getId());
+            if (index < 0 || !timetable.hasDepartures(index)) continue;
 
-            // Determine the mode from outbound edges; default to BUS if unknown
-            TransportMode mode = getModeForStop(stop.getId(), adjacency);
+            // Determine the mode from the route patterns leaving the stop; default to BUS if unknown
+            TransportMode mode = getModeForStop(timetable, index);
 
             // Apply the mode filter from the UI (empty set = show all)
             if (!modes.isEmpty() && !modes.contains(mode)) continue;
@@ -61,37 +62,70 @@ public class InMemoryMapDataSource implements MapDataSource {
         return result;
     }
 
-    // Looks at the first outbound edge to determine the stop's transport mode.
-    private TransportMode getModeForStop(String stopId, Map<String, List<StopEdge>> adjacency) {
-        List<StopEdge> edges = adjacency.get(stopId);
-        if (edges == null || edges.isEmpty()) return TransportMode.BUS;
-        TransportMode mode = edges.get(0).getTransportMode();
-        return mode != null ? mode : TransportMode.BUS;
+    // Takes the mode of the first route pattern that departs from the stop.
+    private TransportMode getModeForStop(TransitTimetable timetable, int stop) {
+        for (int slot = timetable.stopPatternStart(stop); slot < timetable.stopPatternEnd(stop); slot++) {
+            int pattern = timetable.stopPattern(slot);
+            if (timetable.stopPatternPosition(slot) == timetable.patternLength(pattern) - 1) continue;
+            TransportMode mode = timetable.patternMode(pattern);
+            if (mode != null) return mode;
+        }
+        return TransportMode.BUS;
     }
 
     // Retrieves the next departures for a given stop ID. If live=true, only returns departures after the current time;
     // otherwise returns all scheduled departures.
+    // Reads the route patterns serving the stop in today's DayTimetable. Trips within a pattern never overtake, so each
+    // pattern's next trip is found by binary search and the patterns' departures are merged in time order until five
+    // are listed — no filtering or re-sorting of the whole day per click.
+    // Only trips of services that run today (calendar.txt / calendar_dates.txt) are in that timetable. It runs on past
+    // midnight, so late in the evening the first departures of the next morning are listed.
     @Override
     public List<Departure> getDeparturesForStop(String stopId, boolean live) {
-        List<ScheduledConnection> connections = loader.getSchedule().get(stopId);
-        if (connections == null || connections.isEmpty()) return List.of();
+        GraphGeneration  generation = loader.getGeneration();
+        TransitTimetable timetable  = generation.dayTimetables().forDate(LocalDate.now()).transitTimetable();
+        int stop = timetable.indexOf(stopId);
+        if (stop < 0) return List.of();
 
         // Find departures after the current time and return the next 5
         int nowSeconds = LocalTime.now().toSecondOfDay();
 
-        return connections.stream()
-                .filter(c -> c.getDepartureTimeSeconds() > nowSeconds)
-                .sorted(Comparator.comparingInt(ScheduledConnection::getDepartureTimeSeconds))
-                .limit(5)
-                .map(c -> {
-                    int minsUntil = (c.getDepartureTimeSeconds() - nowSeconds) / 60;
-                    String label = (c.getRouteShortName() != null && !c.getRouteShortName().isBlank())
-                            ? c.getRouteShortName()
-                            : c.getRouteId();
-                    int totalMins = c.getDepartureTimeSeconds() / 60;
-                    String scheduledTime = String.format("%02d:%02d", (totalMins / 60) % 24, totalMins % 60);
-                    return new Departure(label, minsUntil, scheduledTime);
-                })
-                .collect(Collectors.toList());
+        // Next trip of each pattern leaving the stop, -1 once it has none left (or ends at this stop)
+        int   start    = timetable.stopPatternStart(stop);
+        int[] nextTrip = new int[timetable.stopPatternEnd(stop) - start];
+        for (int k = 0; k < nextTrip.length; k++) {
+            int pattern  = timetable.stopPattern(start + k);
+            int position = timetable.stopPatternPosition(start + k);
+            nextTrip[k] = position < timetable.patternLength(pattern) - 1
+                    ? timetable.earliestTrip(pattern, position, nowSeconds + 1) : -1;
+        }
+
+        List<Departure> departures = new ArrayList<>();
+        while (departures.size() < 5) {
+            int earliest         = -1;
+            int departureSeconds = Integer.MAX_VALUE;
+            for (int k = 0; k < nextTrip.length; k++) {
+                if (nextTrip[k] < 0) continue;
+                int time = timetable.time(timetable.stopPattern(start + k), nextTrip[k], timetable.stopPatternPosition(start + k));
+                if (time < departureSeconds) {
+                    departureSeconds = time;
+                    earliest         = k;
+                }
+            }
+            if (earliest < 0) break;
+
+            int pattern = timetable.stopPattern(start + earliest);
+            nextTrip[earliest] = nextTrip[earliest] + 1 < timetable.tripCount(pattern) ? nextTrip[earliest] + 1 : -1;
+
+            int    minsUntil = (departureSeconds - nowSeconds) / 60;
+            String shortName = timetable.patternShortName(pattern);
+            String label = (shortName != null && !shortName.isBlank())
+                    ? shortName
+                    : timetable.patternRouteId(pattern);
+            int totalMins = departureSeconds / 60;
+            String scheduledTime = String.format("%02d:%02d", (totalMins / 60) % 24, totalMins % 60);
+            departures.add(new Departure(label, minsUntil, scheduledTime));
+        }
+        return departures;
     }
 }
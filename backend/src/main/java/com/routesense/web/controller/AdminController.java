@@ -0,0 +1,63 @@
+package com.routesense.web.controller;
+
+import com.routesense.application.usecase.GetGraphGenerationUseCase;
+import com.routesense.application.usecase.ReloadGraphUseCase;
+import com.routesense.domain.model.GraphGeneration;
+import com.routesense.web.dto.GraphGenerationDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+// Operator endpoints for the transit graph: see which GTFS generation is live and load a new feed without a restart.
+// The reload endpoint is off unless app.gtfs.reload.admin-endpoint.enabled is set, since any caller could otherwise
+// make the server checksum the feed and recompile the graph.
+@RestController
+@RequestMapping("/api/admin/graph")
+public class AdminController {
+
+    private final GetGraphGenerationUseCase getGeneration;
+    private final ReloadGraphUseCase reloadGraph;
+    private final boolean reloadEnabled;
+
+    public AdminController(
+            GetGraphGenerationUseCase getGeneration,
+            ReloadGraphUseCase reloadGraph,
+            @Value("${app.gtfs.reload.admin-endpoint.enabled:false}") boolean reloadEnabled
+    ) {
+        this.getGeneration = getGeneration;
+        this.reloadGraph = reloadGraph;
+        this.reloadEnabled = reloadEnabled;
+    }
+
+    // GET /api/admin/graph
+    @GetMapping
+    public GraphGenerationDto current() {
+        return toDto(getGeneration.execute());
+    }
+
+    // POST /api/admin/graph/reload — blocks until the new generation is live (or the feed turned out unchanged).
+    // 404 while the endpoint is disabled.
+    @PostMapping("/reload")
+    public GraphGenerationDto reload() {
+        if (!reloadEnabled) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return toDto(reloadGraph.execute());
+    }
+
+    private GraphGenerationDto toDto(GraphGeneration generation) {
+        return new GraphGenerationDto(
+                generation.number(),
+                generation.loadedAt().toString(),
+                Long.toHexString(generation.feedChecksum()),
+                generation.stops().size(),
+                generation.transitTimetable().patternCount(),
+                generation.connectionTimetable().connectionCount(),
+                generation.dayTimetables().size()
+        );
+    }
+}
@@ -41,7 +41,9 @@ public class JourneyController {
                 request.getDestinationLat(),
                 request.getDestinationLon(),
                 request.getDepartureTimeSeconds(),
-                request.getArriveBySeconds()
+                request.getArriveBySeconds(),
+                request.getDepartureWindowMinutes(),
+                request.getDate()
         );
 
         // stream().map().collect() is Java's way of converting every item in a list from one type to another
@@ -0,0 +1,11 @@
+package com.routesense.web.dto;
+
+// DTO describing the live transit graph generation for the admin endpoints.
+public record GraphGenerationDto(
+        long generation,
+        String loadedAt,
+        String feedChecksum,
+        int stops,
+        int routePatterns,
+        int connections,
+        int cachedServiceDays) {}
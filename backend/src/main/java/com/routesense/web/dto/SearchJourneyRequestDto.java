@@ -1,5 +1,7 @@
 package com.routesense.web.dto;
 
+import java.time.LocalDate;
+
 /**
  * Request payload for journey search.
  * Origin and destination can each be provided as a stop ID or as geographic coordinates (lat/lon).
@@ -13,6 +15,8 @@ public class SearchJourneyRequestDto {
     private Double  destinationLon;
     private Integer departureTimeSeconds;
     private Integer arriveBySeconds;
+    private Integer departureWindowMinutes; // list every worthwhile departure in this window; null = best journeys only
+    private LocalDate date;           // travel date (ISO yyyy-MM-dd) for the service calendar; null = today
 
     public SearchJourneyRequestDto() {
     }
@@ -85,4 +89,20 @@ public class SearchJourneyRequestDto {
     public void setArriveBySeconds(Integer arriveBySeconds) {
         this.arriveBySeconds = arriveBySeconds;
     }
+
+    public Integer getDepartureWindowMinutes() {
+        return departureWindowMinutes;
+    }
+
+    public void setDepartureWindowMinutes(Integer departureWindowMinutes) {
+        this.departureWindowMinutes = departureWindowMinutes;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
 }